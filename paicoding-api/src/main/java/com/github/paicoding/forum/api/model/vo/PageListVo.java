@@ -5,6 +5,7 @@ import lombok.Data;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * @author XuYifei
@@ -23,6 +24,11 @@ public class PageListVo<T> {
      */
     private Boolean hasMore;
 
+    /**
+     * 下一页的游标，还有更多数据时返回，请求下一页时原样回传即可
+     */
+    private String cursor;
+
     public static <T> PageListVo<T> emptyVo() {
         PageListVo<T> vo = new PageListVo<>();
         vo.setList(Collections.emptyList());
@@ -36,4 +42,20 @@ public class PageListVo<T> {
         vo.setHasMore(vo.getList().size() == pageSize);
         return vo;
     }
+
+    /**
+     * 带游标的分页结果
+     *
+     * @param list     当前页数据
+     * @param pageSize 页大小
+     * @param cursorFn 根据当前页最后一条数据生成下一页的游标
+     * @return
+     */
+    public static <T> PageListVo<T> newVo(List<T> list, long pageSize, Function<T, SeekCursor> cursorFn) {
+        PageListVo<T> vo = newVo(list, pageSize);
+        if (vo.getHasMore() && !vo.getList().isEmpty()) {
+            vo.setCursor(cursorFn.apply(vo.getList().get(vo.getList().size() - 1)).encode());
+        }
+        return vo;
+    }
 }
@@ -26,6 +26,12 @@ public class PageParam {
     private long offset;
     private long limit;
 
+    /**
+     * 游标分页时，上一页最后一条记录的定位信息；为空时按 offset 分页
+     */
+    @Schema(hidden = true)
+    private SeekCursor cursor;
+
     public static PageParam newPageInstance() {
         return newPageInstance(DEFAULT_PAGE_NUM, DEFAULT_PAGE_SIZE);
     }
@@ -49,6 +55,19 @@ public class PageParam {
         return pageParam;
     }
 
+    /**
+     * 游标分页，始终从游标之后取 pageSize 条，不再跳过 offset 行
+     *
+     * @param cursor   上一页返回的游标，为空表示第一页
+     * @param pageSize 页大小
+     * @return
+     */
+    public static PageParam newCursorInstance(String cursor, Long pageSize) {
+        PageParam pageParam = newPageInstance(DEFAULT_PAGE_NUM, pageSize == null ? DEFAULT_PAGE_SIZE : pageSize);
+        pageParam.cursor = SeekCursor.decode(cursor);
+        return pageParam;
+    }
+
     public static String getLimitSql(PageParam pageParam) {
         return String.format("limit %s,%s", pageParam.offset, pageParam.limit);
     }
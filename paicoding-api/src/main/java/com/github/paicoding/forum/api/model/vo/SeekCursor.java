@@ -0,0 +1,92 @@
+package com.github.paicoding.forum.api.model.vo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 游标分页的定位信息：上一页最后一条记录的 排序字段 + id
+ * <p>
+ * 下一页直接以 where (排序字段, id) < (游标值) 定位，不再需要 limit offset 扫描并丢弃前面的数据，翻到多深查询代价都一样。
+ * 对外只暴露编码后的字符串，前端原样回传即可
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+public class SeekCursor {
+    private static final String SEPARATOR = "_";
+
+    /**
+     * 排序字段的值（时间类型用毫秒数表示），最后一位固定为记录id
+     */
+    private final long[] keys;
+
+    private SeekCursor(long[] keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * @param keys 按排序优先级依次传入排序字段的值，最后一位为记录id
+     * @return
+     */
+    public static SeekCursor of(long... keys) {
+        if (keys == null || keys.length == 0) {
+            throw new IllegalArgumentException("cursor keys can not be empty!");
+        }
+        return new SeekCursor(keys.clone());
+    }
+
+    /**
+     * 解析前端回传的游标
+     *
+     * @param token 游标
+     * @return 为空或者格式不合法时返回null，即从第一页开始查询
+     */
+    public static SeekCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String[] cells = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR);
+            return new SeekCursor(Arrays.stream(cells).mapToLong(Long::parseLong).toArray());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public String encode() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                builder.append(SEPARATOR);
+            }
+            builder.append(keys[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return 排序字段的个数（含id）
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    public long key(int index) {
+        return keys[index];
+    }
+
+    public Date time(int index) {
+        return new Date(keys[index]);
+    }
+
+    public long id() {
+        return keys[keys.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(keys);
+    }
+}
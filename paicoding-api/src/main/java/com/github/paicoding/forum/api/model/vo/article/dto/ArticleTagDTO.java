@@ -0,0 +1,18 @@
+package com.github.paicoding.forum.api.model.vo.article.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 带文章id的标签信息，用于批量查询多篇文章的标签
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class ArticleTagDTO extends TagDTO {
+    private static final long serialVersionUID = 3461093375462530198L;
+
+    private Long articleId;
+}
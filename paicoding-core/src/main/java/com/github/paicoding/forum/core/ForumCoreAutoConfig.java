@@ -1,10 +1,17 @@
 package com.github.paicoding.forum.core;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.paicoding.forum.core.async.AsyncUtil;
 import com.github.paicoding.forum.core.cache.RedisClient;
+import com.github.paicoding.forum.core.config.AsyncProperties;
 import com.github.paicoding.forum.core.config.ProxyProperties;
+import com.github.paicoding.forum.core.config.SnowflakeProperties;
+import com.github.paicoding.forum.core.dal.SqlStatProperties;
+import com.github.paicoding.forum.core.dal.SqlStateInterceptor;
 import com.github.paicoding.forum.core.net.ProxyCenter;
+import com.github.paicoding.forum.core.util.id.IdUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
@@ -21,12 +28,18 @@ import java.util.concurrent.TimeUnit;
  * @date 2024-07-12
  */
 @Configuration
-@EnableConfigurationProperties(ProxyProperties.class)
+@EnableConfigurationProperties({ProxyProperties.class, SnowflakeProperties.class, SqlStatProperties.class, AsyncProperties.class})
 @ComponentScan(basePackages = "com.github.paicoding.forum.core")
 public class ForumCoreAutoConfig {
     @Autowired
     private ProxyProperties proxyProperties;
 
+    @Autowired
+    private SnowflakeProperties snowflakeProperties;
+
+    @Autowired
+    private AsyncProperties asyncProperties;
+
     public ForumCoreAutoConfig(RedisTemplate<String, Object> redisTemplate) {
         RedisClient.register(redisTemplate);
     }
@@ -50,9 +63,23 @@ public class ForumCoreAutoConfig {
         return cacheManager;
     }
 
+    /**
+     * sql执行情况统计，单数据源与多数据源都生效；配置 paicoding.sql-stat.mode=off 时不注册
+     *
+     * @param sqlStatProperties
+     * @return
+     */
+    @Bean
+    @ConditionalOnExpression("!'off'.equalsIgnoreCase('${paicoding.sql-stat.mode:metrics}')")
+    public SqlStateInterceptor sqlStateInterceptor(SqlStatProperties sqlStatProperties) {
+        return new SqlStateInterceptor(sqlStatProperties);
+    }
+
     @PostConstruct
     public void init() {
         // 这里借助手动解析配置信息，并实例化为Java POJO对象，来实现代理池的初始化
         ProxyCenter.initProxyPool(proxyProperties.getProxy());
+        IdUtil.init(snowflakeProperties);
+        AsyncUtil.init(asyncProperties);
     }
 }
@@ -38,6 +38,13 @@ public @interface AsyncExecute {
      */
     TimeUnit unit() default TimeUnit.SECONDS;
 
+    /**
+     * 执行任务的线程池，默认io线程池
+     *
+     * @return
+     */
+    AsyncPool pool() default AsyncPool.IO;
+
     /**
      * 当出现超时返回的兜底逻辑,支持SpEL
      * 如果返回的是空字符串，则表示抛出异常
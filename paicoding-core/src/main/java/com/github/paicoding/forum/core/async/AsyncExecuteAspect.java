@@ -46,7 +46,7 @@ public class AsyncExecuteAspect implements ApplicationContextAware {
 
         try {
             // 携带超时时间的执行调用
-            return AsyncUtil.callWithTimeLimit(asyncExecute.timeOut(), asyncExecute.unit(), () -> {
+            return AsyncUtil.callWithTimeLimit(asyncExecute.pool(), asyncExecute.timeOut(), asyncExecute.unit(), () -> {
                 try {
                     return joinPoint.proceed();
                 } catch (Throwable e) {
@@ -0,0 +1,23 @@
+package com.github.paicoding.forum.core.async;
+
+/**
+ * 异步任务的线程池分组，不同类型的任务互不影响
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+public enum AsyncPool {
+    /**
+     * 访问 redis/mysql/第三方接口等io密集的任务，如并发查询、图片转存；默认的线程池
+     */
+    IO,
+    /**
+     * 计算密集的任务，线程数与cpu核数相当
+     */
+    CPU,
+    /**
+     * 可以丢弃的后台任务，如站点访问计数；线程池繁忙时直接拒绝，不会回落到请求线程执行
+     */
+    BACKGROUND,
+    ;
+}
@@ -1,9 +1,9 @@
 package com.github.paicoding.forum.core.async;
 
-import cn.hutool.core.thread.ExecutorBuilder;
 import cn.hutool.core.util.ArrayUtil;
 import com.alibaba.ttl.TransmittableThreadLocal;
 import com.alibaba.ttl.threadpool.TtlExecutors;
+import com.github.paicoding.forum.core.config.AsyncProperties;
 import com.github.paicoding.forum.core.util.EnvUtil;
 import com.google.common.util.concurrent.SimpleTimeLimiter;
 import lombok.extern.slf4j.Slf4j;
@@ -11,6 +11,8 @@ import org.springframework.util.CollectionUtils;
 
 import java.io.Closeable;
 import java.text.NumberFormat;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -19,18 +21,16 @@ import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 /**
  * 异步工具类
+ * <p>
+ * 任务按类型提交到 io / cpu / background 三个线程池，每个线程池可以单独配置执行模式，见 {@link MonitoredExecutor}
  *
  * @author XuYifei
  * @date 2024/7/8
@@ -38,48 +38,71 @@ import java.util.function.Supplier;
 @Slf4j
 public class AsyncUtil {
     private static final TransmittableThreadLocal<CompletableFutureBridge> THREAD_LOCAL = new TransmittableThreadLocal<>();
-    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
-        private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
-        private final AtomicInteger threadNumber = new AtomicInteger(1);
+    private static final Map<AsyncPool, MonitoredExecutor> POOLS = new EnumMap<>(AsyncPool.class);
+    private static final Map<AsyncPool, ExecutorService> EXECUTORS = new EnumMap<>(AsyncPool.class);
+    private static final Map<AsyncPool, SimpleTimeLimiter> TIME_LIMITERS = new EnumMap<>(AsyncPool.class);
 
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread thread = this.defaultFactory.newThread(r);
-            if (!thread.isDaemon()) {
-                thread.setDaemon(true);
-            }
+    static {
+        int cpu = Runtime.getRuntime().availableProcessors();
+        // 默认线程池的参数选择原则:
+        //  1. io: 技术派的异步任务大部分是 redis/mysql 等io操作，沿用原有的无队列线程池，核心线程数满就创建线程执行，超过最大线程，就直接当前线程执行
+        //  2. cpu: 线程数与cpu核数相同，队列满时由提交线程执行，形成背压
+        //  3. background: 可丢弃的后台任务，队列满时直接拒绝，不占用请求线程
+        initExecutorService(cpu * 2, 50);
+        initExecutorService(AsyncPool.CPU, AsyncProperties.Pool.of(AsyncProperties.Profile.BOUNDED, cpu, cpu, 256, AsyncProperties.Overflow.CALLER_RUNS));
+        initExecutorService(AsyncPool.BACKGROUND, AsyncProperties.Pool.of(AsyncProperties.Profile.BOUNDED, 2, 4, 1024, AsyncProperties.Overflow.ABORT));
+    }
 
-            thread.setName("paicoding-" + this.threadNumber.getAndIncrement());
-            return thread;
+    /**
+     * 根据配置重建线程池，没有配置的线程池保持默认
+     *
+     * @param properties
+     */
+    public static void init(AsyncProperties properties) {
+        if (properties == null || CollectionUtils.isEmpty(properties.getPools())) {
+            return;
         }
-    };
-    private static ExecutorService executorService;
-    private static SimpleTimeLimiter simpleTimeLimiter;
-
-    static {
-        initExecutorService(Runtime.getRuntime().availableProcessors() * 2, 50);
+        properties.getPools().forEach(AsyncUtil::initExecutorService);
     }
 
     public static void initExecutorService(int core, int max) {
-        // 异步工具类的默认线程池构建, 参数选择原则:
-        //  1. 技术派不存在cpu密集型任务，大部分操作都设计到 redis/mysql 等io操作
-        //  2. 统一的异步封装工具，这里的线程池是一个公共的执行仓库，不希望被其他的线程执行影响，因此队列长度为0, 核心线程数满就创建线程执行，超过最大线程，就直接当前线程执行
-        //  3. 同样因为属于通用工具类，再加上技术派的异步使用的情况实际上并不是非常饱和的，因此空闲线程直接回收掉即可；大部分场景下，cpu * 2的线程数即可满足要求了
-        max = Math.max(core, max);
-        executorService = new ExecutorBuilder()
-                .setCorePoolSize(core)
-                .setMaxPoolSize(max)
-                .setKeepAliveTime(0)
-                .setKeepAliveTime(0, TimeUnit.SECONDS)
-                .setWorkQueue(new SynchronousQueue<Runnable>())
-                .setHandler(new ThreadPoolExecutor.CallerRunsPolicy())
-                .setThreadFactory(THREAD_FACTORY)
-                .buildFinalizable();
+        initExecutorService(AsyncPool.IO, AsyncProperties.Pool.of(AsyncProperties.Profile.CALLER_RUNS, core, Math.max(core, max), 0, AsyncProperties.Overflow.CALLER_RUNS));
+    }
+
+    public static synchronized void initExecutorService(AsyncPool pool, AsyncProperties.Pool conf) {
+        MonitoredExecutor executor = new MonitoredExecutor(pool.name().toLowerCase(), conf);
         // 包装一下线程池，避免出现上下文复用场景
-        executorService = TtlExecutors.getTtlExecutorService(executorService);
-        simpleTimeLimiter = SimpleTimeLimiter.create(executorService);
+        ExecutorService ttlExecutor = TtlExecutors.getTtlExecutorService(executor);
+        MonitoredExecutor old = POOLS.put(pool, executor);
+        EXECUTORS.put(pool, ttlExecutor);
+        TIME_LIMITERS.put(pool, SimpleTimeLimiter.create(ttlExecutor));
+        if (old != null) {
+            // 已提交的任务继续执行完毕
+            old.shutdown();
+        }
+        log.info("async pool [{}] initialized: {}", pool, conf);
     }
 
+    /**
+     * 获取线程池，用于 CompletableFuture 等需要指定线程池的场景
+     *
+     * @param pool
+     * @return
+     */
+    public static ExecutorService executor(AsyncPool pool) {
+        return EXECUTORS.get(pool);
+    }
+
+    /**
+     * 各线程池的运行指标
+     *
+     * @return key: 线程池
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        POOLS.forEach((pool, executor) -> stats.put(pool.name().toLowerCase(), executor.stats()));
+        return stats;
+    }
 
     /**
      * 带超时时间的方法调用执行，当执行时间超过给定的时间，则返回一个超时异常，内部的任务还是正常执行
@@ -92,16 +115,44 @@ public class AsyncUtil {
      * @return
      */
     public static <T> T callWithTimeLimit(long time, TimeUnit unit, Callable<T> call) throws ExecutionException, InterruptedException, TimeoutException {
-        return simpleTimeLimiter.callWithTimeout(call, time, unit);
+        return callWithTimeLimit(AsyncPool.IO, time, unit, call);
+    }
+
+    public static <T> T callWithTimeLimit(AsyncPool pool, long time, TimeUnit unit, Callable<T> call) throws ExecutionException, InterruptedException, TimeoutException {
+        return TIME_LIMITERS.get(pool).callWithTimeout(call, time, unit);
     }
 
 
     public static void execute(Runnable call) {
-        executorService.execute(call);
+        execute(AsyncPool.IO, call);
+    }
+
+    public static void execute(AsyncPool pool, Runnable call) {
+        EXECUTORS.get(pool).execute(call);
+    }
+
+    /**
+     * 提交可以丢弃的任务，线程池满时不抛异常
+     *
+     * @param pool
+     * @param call
+     * @return false 表示任务被拒绝，未执行
+     */
+    public static boolean tryExecute(AsyncPool pool, Runnable call) {
+        try {
+            EXECUTORS.get(pool).execute(call);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
     }
 
     public static <T> Future<T> submit(Callable<T> t) {
-        return executorService.submit(t);
+        return submit(AsyncPool.IO, t);
+    }
+
+    public static <T> Future<T> submit(AsyncPool pool, Callable<T> t) {
+        return EXECUTORS.get(pool).submit(t);
     }
 
 
@@ -139,7 +190,7 @@ public class AsyncUtil {
         private ExecutorService executorService;
 
         public CompletableFutureBridge() {
-            this(AsyncUtil.executorService, "CompletableFutureExecute");
+            this(AsyncUtil.executor(AsyncPool.IO), "CompletableFutureExecute");
         }
 
         public CompletableFutureBridge(ExecutorService executorService, String task) {
@@ -298,7 +349,7 @@ public class AsyncUtil {
 
     public static CompletableFutureBridge concurrentExecutor(String... name) {
         if (name.length > 0) {
-            return new CompletableFutureBridge(AsyncUtil.executorService, name[0]);
+            return new CompletableFutureBridge(AsyncUtil.executor(AsyncPool.IO), name[0]);
         }
         return new CompletableFutureBridge();
     }
@@ -0,0 +1,219 @@
+package com.github.paicoding.forum.core.async;
+
+import com.github.paicoding.forum.core.config.AsyncProperties;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带运行指标的线程池，支持三种执行模式
+ * <p>
+ * 1. caller-runs: 无队列，线程数达到上限后由提交线程执行
+ * 2. bounded: 有界队列，队列满时拒绝或由提交线程执行
+ * 3. virtual: 每个任务一个虚拟线程，信号量限制同时执行的任务数，拿不到许可的任务挂起等待，不占用平台线程
+ * <p>
+ * 所有模式都统计 执行中、排队中、拒绝、由提交线程执行 的任务数
+ * <p>
+ * 执行失败的任务计入 failed，不计入 completed：execute() 的任务以抛出异常为准，submit() 的任务以 FutureTask 的结果为准；
+ * CompletableFuture.xxxAsync 提交的任务把异常保存在 CompletableFuture 中，线程池无法感知，始终计入 completed
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+public class MonitoredExecutor extends AbstractExecutorService {
+    private final String name;
+    private final AsyncProperties.Pool conf;
+    private final ExecutorService delegate;
+    /**
+     * virtual 模式下限制同时执行的任务数
+     */
+    private final Semaphore permits;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger peakActive = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+
+    public MonitoredExecutor(String name, AsyncProperties.Pool conf) {
+        this.name = name;
+        this.conf = conf;
+        int max = Math.max(1, conf.getMax());
+        int core = Math.max(0, Math.min(conf.getCore(), max));
+        switch (conf.getProfile()) {
+            case VIRTUAL -> {
+                permits = new Semaphore(max);
+                delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("paicoding-" + name + "-", 1).factory());
+            }
+            case BOUNDED -> {
+                permits = null;
+                delegate = new ThreadPoolExecutor(core, max, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(Math.max(1, conf.getQueueSize())), threadFactory(name), (r, executor) -> overflow((Task) r));
+            }
+            default -> {
+                permits = null;
+                delegate = new ThreadPoolExecutor(core, max, 0, TimeUnit.SECONDS,
+                        new SynchronousQueue<>(), threadFactory(name), (r, executor) -> overflow((Task) r));
+            }
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+        return r -> {
+            Thread thread = defaultFactory.newThread(r);
+            thread.setDaemon(true);
+            thread.setName("paicoding-" + name + "-" + threadNumber.getAndIncrement());
+            return thread;
+        };
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        submitted.increment();
+        Task task = new Task(command);
+        queued.incrementAndGet();
+        if (permits == null) {
+            // 线程池满时由 overflow 处理
+            delegate.execute(task);
+            return;
+        }
+
+        if (conf.getQueueSize() > 0 && queued.get() > conf.getQueueSize() + permits.availablePermits()) {
+            overflow(task);
+            return;
+        }
+        try {
+            delegate.execute(task);
+        } catch (RejectedExecutionException e) {
+            // 线程池已关闭
+            task.abandon();
+            throw e;
+        }
+    }
+
+    private void overflow(Task task) {
+        boolean callerRun = conf.getProfile() == AsyncProperties.Profile.CALLER_RUNS || conf.getOverflow() == AsyncProperties.Overflow.CALLER_RUNS;
+        if (callerRun && !delegate.isShutdown()) {
+            callerRuns.increment();
+            task.runDirect();
+            return;
+        }
+        task.abandon();
+        throw new RejectedExecutionException("async pool [" + name + "] is full, active: " + active.get() + ", queued: " + queued.get());
+    }
+
+    private class Task implements Runnable {
+        private final Runnable command;
+
+        private Task(Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            if (permits == null) {
+                runDirect();
+                return;
+            }
+            permits.acquireUninterruptibly();
+            try {
+                runDirect();
+            } finally {
+                permits.release();
+            }
+        }
+
+        private void runDirect() {
+            queued.decrementAndGet();
+            peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            boolean success = false;
+            try {
+                command.run();
+                // submit() 的任务异常被 FutureTask 捕获，不会抛出
+                success = !(command instanceof FutureTask<?> future && future.state() == Future.State.FAILED);
+            } finally {
+                active.decrementAndGet();
+                if (success) {
+                    completed.increment();
+                } else {
+                    failed.increment();
+                }
+            }
+        }
+
+        private void abandon() {
+            queued.decrementAndGet();
+            rejected.increment();
+        }
+    }
+
+    public AsyncProperties.Profile profile() {
+        return conf.getProfile();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("profile", conf.getProfile());
+        stats.put("max", conf.getMax());
+        stats.put("threads", delegate instanceof ThreadPoolExecutor executor ? executor.getPoolSize() : active.get());
+        stats.put("active", active.get());
+        stats.put("peakActive", peakActive.get());
+        stats.put("queued", queued.get());
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", completed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("callerRuns", callerRuns.sum());
+        return stats;
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "MonitoredExecutor[" + name + ", " + conf.getProfile() + "]";
+    }
+}
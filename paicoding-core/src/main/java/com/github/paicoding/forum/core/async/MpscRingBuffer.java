@@ -0,0 +1,90 @@
+package com.github.paicoding.forum.core.async;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界的多生产者-单消费者环形缓冲区
+ * <p>
+ * 生产者通过 CAS 抢占写入位置，消费者单线程顺序读取，全程无锁；缓冲区满时 offer 直接返回false，由调用方决定丢弃还是重试
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+public class MpscRingBuffer<E> {
+    private final AtomicReferenceArray<E> buffer;
+    private final int mask;
+    private final int capacity;
+
+    /**
+     * 下一个待写入的位置
+     */
+    private final AtomicLong producerIndex = new AtomicLong();
+    /**
+     * 下一个待读取的位置，只有消费线程会修改
+     */
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    /**
+     * @param capacity 容量，会向上取整为2的幂
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, but got " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.buffer = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    /**
+     * 写入元素，可被多个线程并发调用
+     *
+     * @param e 元素
+     * @return 缓冲区已满时返回false
+     */
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            long index = producerIndex.get();
+            if (index - consumerIndex.get() >= capacity) {
+                return false;
+            }
+            if (producerIndex.compareAndSet(index, index + 1)) {
+                buffer.lazySet((int) index & mask, e);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 读取元素，只允许单个消费线程调用
+     *
+     * @return 没有可读元素时返回null
+     */
+    public E poll() {
+        long index = consumerIndex.get();
+        int offset = (int) index & mask;
+        E e = buffer.get(offset);
+        if (e == null) {
+            // 缓冲区为空，或者生产者已抢占位置但还未写入
+            return null;
+        }
+        buffer.lazySet(offset, null);
+        consumerIndex.lazySet(index + 1);
+        return e;
+    }
+
+    /**
+     * @return 当前缓冲的元素数量（近似值）
+     */
+    public int size() {
+        return (int) Math.max(0, producerIndex.get() - consumerIndex.get());
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
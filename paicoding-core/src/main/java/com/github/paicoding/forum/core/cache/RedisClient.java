@@ -5,9 +5,11 @@ import com.google.common.collect.Maps;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.connection.zset.Tuple;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.util.CollectionUtils;
 
 import java.nio.charset.Charset;
@@ -50,6 +52,16 @@ public class RedisClient {
         template.delete(key);
     }
 
+    /**
+     * 发布消息，用于多节点之间的本地缓存同步
+     *
+     * @param channel 频道
+     * @param msg     消息内容
+     */
+    public static void publish(String channel, String msg) {
+        template.execute((RedisCallback<Long>) con -> con.publish(channel.getBytes(CODE), msg.getBytes(CODE)));
+    }
+
     /**
      * 技术派的缓存值序列化处理
      *
@@ -328,6 +340,16 @@ public class RedisClient {
     }
 
 
+    /**
+     * 基数统计(HyperLogLog)，多个key时返回并集的基数
+     *
+     * @param keys
+     * @return
+     */
+    public static Long pfCount(String... keys) {
+        return template.execute((RedisCallback<Long>) con -> con.hyperLogLogCommands().pfCount(keyBytes(Arrays.asList(keys))));
+    }
+
     /**
      * 分数更新
      *
@@ -456,6 +478,45 @@ public class RedisClient {
         });
     }
 
+    /**
+     * 执行返回整数的lua脚本，优先使用 evalsha，服务端没有缓存脚本时再回退为 eval
+     *
+     * @param script lua脚本
+     * @param keys   key列表，会自动加上技术派的key前缀
+     * @param args   参数列表
+     * @return 脚本返回值
+     */
+    public static Long evalLong(RedisScript<Long> script, List<String> keys, List<String> args) {
+        byte[][] keysAndArgs = new byte[keys.size() + args.size()][];
+        int index = 0;
+        for (String key : keys) {
+            keysAndArgs[index++] = keyBytes(key);
+        }
+        for (String arg : args) {
+            keysAndArgs[index++] = arg.getBytes(CODE);
+        }
+        return template.execute((RedisCallback<Long>) con -> {
+            try {
+                return con.scriptingCommands().evalSha(script.getSha1(), ReturnType.INTEGER, keys.size(), keysAndArgs);
+            } catch (DataAccessException e) {
+                if (!isNoScriptError(e)) {
+                    throw e;
+                }
+                return con.scriptingCommands().eval(script.getScriptAsString().getBytes(CODE), ReturnType.INTEGER, keys.size(), keysAndArgs);
+            }
+        });
+    }
+
+    private static boolean isNoScriptError(Throwable e) {
+        while (e != null) {
+            if (e.getMessage() != null && e.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+            e = e.getCause();
+        }
+        return false;
+    }
+
     private static <T> T toObj(byte[] ans, Class<T> clz) {
         if (ans == null) {
             return null;
@@ -469,6 +530,36 @@ public class RedisClient {
     }
 
 
+    /**
+     * 将redis中的数值直接解析为int，不经过json反序列化；hIncrBy 写入的计数以及 hMSet 写入的数字都是十进制的字符串
+     *
+     * @param ans redis返回的原始值
+     * @return 为空时返回0
+     */
+    public static int toInt(byte[] ans) {
+        if (ans == null || ans.length == 0) {
+            return 0;
+        }
+
+        int i = 0;
+        boolean negative = ans[0] == '-';
+        if (negative) {
+            i = 1;
+        }
+        long val = 0;
+        for (; i < ans.length; i++) {
+            int digit = ans[i] - '0';
+            if (digit < 0 || digit > 9) {
+                // 非纯数字的值（如json格式的字符串），走通用的反序列化
+                Integer obj = toObj(ans, Integer.class);
+                return obj == null ? 0 : obj;
+            }
+            val = Math.min(val * 10 + digit, Integer.MAX_VALUE);
+        }
+        return (int) (negative ? -val : val);
+    }
+
+
     public static PipelineAction pipelineAction() {
         return new PipelineAction();
     }
@@ -498,6 +589,23 @@ public class RedisClient {
                 return null;
             });
         }
+
+        /**
+         * 执行管道中的命令，并返回每条命令的原始结果，结果的顺序与 add 的顺序一致（每个 add 中只能发起一条命令）
+         * <p>
+         * 与 execute 不同，这里不经过 RedisTemplate 的反序列化，hGetAll 返回的是 Map&lt;byte[], byte[]&gt;，由调用方按需解码
+         *
+         * @return 命令的原始结果
+         */
+        public List<Object> executeAndGet() {
+            List<Object> ans = template.execute((RedisCallback<List<Object>>) connection -> {
+                PipelineAction.this.connection = connection;
+                connection.openPipeline();
+                run.forEach(Runnable::run);
+                return connection.closePipeline();
+            });
+            return ans == null ? Collections.emptyList() : ans;
+        }
     }
 
     @FunctionalInterface
@@ -25,6 +25,11 @@ public class CommonConstants {
     public static final String MESSAGE_QUEUE_KEY_NOTIFY = "notify";
     public static final String MESSAGE_QUEUE_KEY_TEST = "test";
     public static final String MESSAGE_QUEUE_NAME_NOTIFY_EVENT = "queue.notify";
+    /**
+     * 重试后仍无法写入的通知消息转入死信队列，人工排查后可重新投递
+     */
+    public static final String MESSAGE_QUEUE_KEY_NOTIFY_DEAD = "notify.dead";
+    public static final String MESSAGE_QUEUE_NAME_NOTIFY_DEAD = "queue.notify.dead";
 
     /**
      * 分类类型
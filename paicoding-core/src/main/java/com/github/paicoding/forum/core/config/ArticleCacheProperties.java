@@ -26,4 +26,14 @@ public class ArticleCacheProperties {
      */
     private Integer maximumSize = 10;
 
+    /**
+     * 本地一级缓存的最大权重，按缓存内容的字符数估算，默认约 32M 字符
+     */
+    private Long localMaximumWeight = 32 * 1024 * 1024L;
+
+    /**
+     * 本地一级缓存的过期时间，默认为5分钟，单位为秒；跨节点失效依赖redis的发布订阅，这里作为兜底
+     */
+    private Long localExpireSeconds = 5 * 60L;
+
 }
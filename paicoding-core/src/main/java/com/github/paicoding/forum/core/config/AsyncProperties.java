@@ -0,0 +1,89 @@
+package com.github.paicoding.forum.core.config;
+
+import com.github.paicoding.forum.core.async.AsyncPool;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * AsyncUtil 各线程池的配置，未配置的线程池使用 AsyncUtil 中的默认配置
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Data
+@ConfigurationProperties(prefix = "paicoding.async")
+public class AsyncProperties {
+    /**
+     * key: io / cpu / background
+     */
+    private Map<AsyncPool, Pool> pools = new EnumMap<>(AsyncPool.class);
+
+    @Data
+    public static class Pool {
+        /**
+         * 线程池的执行模式
+         */
+        private Profile profile = Profile.CALLER_RUNS;
+
+        /**
+         * 核心线程数，virtual 模式下不生效
+         */
+        private int core = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * 最大线程数；virtual 模式下表示同时执行的任务数上限
+         */
+        private int max = Runtime.getRuntime().availableProcessors() * 2;
+
+        /**
+         * 等待执行的任务数上限，caller-runs 模式下不生效；virtual 模式下 0 表示不限制
+         */
+        private int queueSize = 1024;
+
+        /**
+         * 任务数超过上限时的处理方式，caller-runs 模式下固定为由提交线程执行
+         */
+        private Overflow overflow = Overflow.ABORT;
+
+        public static Pool of(Profile profile, int core, int max, int queueSize, Overflow overflow) {
+            Pool pool = new Pool();
+            pool.setProfile(profile);
+            pool.setCore(core);
+            pool.setMax(max);
+            pool.setQueueSize(queueSize);
+            pool.setOverflow(overflow);
+            return pool;
+        }
+    }
+
+    public enum Profile {
+        /**
+         * 无队列的线程池，线程数达到上限后由提交线程执行（原有的方式）
+         */
+        CALLER_RUNS,
+        /**
+         * 有界队列的线程池，队列满时按 overflow 处理，并记录拒绝次数
+         */
+        BOUNDED,
+        /**
+         * 每个任务一个虚拟线程，通过信号量限制同时执行的任务数
+         */
+        VIRTUAL,
+        ;
+    }
+
+    public enum Overflow {
+        /**
+         * 拒绝，抛出 RejectedExecutionException
+         */
+        ABORT,
+        /**
+         * 由提交线程执行
+         */
+        CALLER_RUNS,
+        ;
+    }
+}
@@ -41,10 +41,35 @@ public class RabbitmqProperties {
     private String virtualhost;
 
     /**
-     * 连接池大小
+     * 连接池大小，即消息发送使用的长连接数
      */
     private Integer poolSize;
 
+    /**
+     * 每个连接上最多保持的 channel 数
+     */
+    private int channelsPerConnection = 8;
+
+    /**
+     * 等待空闲 channel 的超时时间，ms
+     */
+    private long borrowTimeout = 1000;
+
+    /**
+     * 是否开启 publisher confirm
+     */
+    private boolean publisherConfirms = true;
+
+    /**
+     * 批量发送时等待确认的超时时间，ms
+     */
+    private long confirmTimeout = 5000;
+
+    /**
+     * 被 nack 或 channel 异常关闭时未确认的消息，最多重新投递的次数
+     */
+    private int maxRetries = 1;
+
     /**
      * 开关 false-关闭，true-打开
      */
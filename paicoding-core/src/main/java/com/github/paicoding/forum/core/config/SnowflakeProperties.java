@@ -0,0 +1,32 @@
+package com.github.paicoding.forum.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 全局id生成器的配置
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Data
+@ConfigurationProperties(prefix = "paicoding.snowflake")
+public class SnowflakeProperties {
+    /**
+     * 生成器类型
+     * pai: 秒级时间 + 按天分段的id，由单线程预生成后放入队列（默认）
+     * lock-free: 毫秒级时间 + CAS状态字的无锁生成器，适用于批量导入、聊天消息等突发写入场景
+     */
+    private String mode = "pai";
+
+    /**
+     * 机器id，取值 [0, 127]；不配置时根据本机ip推算
+     */
+    private Integer workerId;
+
+    /**
+     * 数据中心，取值 [0, 7]；不配置时根据本机ip推算
+     */
+    private Integer dataCenter;
+
+}
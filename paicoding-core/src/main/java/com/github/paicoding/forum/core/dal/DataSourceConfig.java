@@ -4,6 +4,7 @@ import com.alibaba.druid.pool.DruidDataSource;
 import com.alibaba.druid.support.jakarta.StatViewServlet;
 import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
@@ -14,6 +15,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 import org.springframework.util.CollectionUtils;
 
 import javax.sql.DataSource;
@@ -44,19 +46,27 @@ public class DataSourceConfig {
     }
 
     @Bean
-    public SqlStateInterceptor sqlStateInterceptor() {
-        return new SqlStateInterceptor();
+    @ConditionalOnProperty(prefix = DsProperties.DS_PREFIX + ".routing", name = "auto", havingValue = "true")
+    public ReadWriteRouter readWriteRouter(DsProperties dsProperties) {
+        return new ReadWriteRouter(dsProperties.getRouting());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = DsProperties.DS_PREFIX + ".routing", name = "auto", havingValue = "true")
+    public ReadWriteRouteInterceptor readWriteRouteInterceptor(ReadWriteRouter readWriteRouter) {
+        return new ReadWriteRouteInterceptor(readWriteRouter);
     }
 
     /**
      * 整合主从数据源
      *
      * @param dsProperties
+     * @param routerProvider 开启自动读写分离时存在
      * @return 1
      */
     @Bean
     @Primary
-    public DataSource dataSource(DsProperties dsProperties) {
+    public DataSource dataSource(DsProperties dsProperties, ObjectProvider<ReadWriteRouter> routerProvider) {
         Map<Object, Object> targetDataSources = Maps.newHashMapWithExpectedSize(dsProperties.getDatasource().size());
         dsProperties.getDatasource().forEach((k, v) -> targetDataSources.put(k.toUpperCase(), initDataSource(k, v)));
 
@@ -78,7 +88,18 @@ public class DataSourceConfig {
         log.info("动态数据源，默认启用为： " + key);
         myRoutingDataSource.setDefaultTargetDataSource(targetDataSources.get(key));
         myRoutingDataSource.setTargetDataSources(targetDataSources);
-        return myRoutingDataSource;
+
+        ReadWriteRouter router = routerProvider.getIfAvailable();
+        if (router == null) {
+            return myRoutingDataSource;
+        }
+
+        router.init((String) key, targetDataSources);
+        myRoutingDataSource.setRouter(router);
+        // 返回的是代理，需要手动完成路由数据源的初始化
+        myRoutingDataSource.afterPropertiesSet();
+        // 延迟到第一条sql执行时才真正获取连接，此时事务的只读属性、语句类型都已确定，才能选择主库或从库
+        return new LazyConnectionDataSourceProxy(myRoutingDataSource);
     }
 
 
@@ -4,6 +4,7 @@ import lombok.Data;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -25,4 +26,37 @@ public class DsProperties {
      * 多数据源配置
      */
     private Map<String, DataSourceProperties> datasource;
+
+    /**
+     * 自动读写分离配置
+     */
+    private Routing routing = new Routing();
+
+    @Data
+    public static class Routing {
+        /**
+         * 是否开启自动读写分离；关闭时只有 @DsAno / DsSelectExecutor 显式指定才会切换数据源
+         */
+        private boolean auto = false;
+
+        /**
+         * 从库权重，key为数据源名，未配置的默认为1，配置为0表示不参与读请求分发
+         */
+        private Map<String, Integer> weight = new HashMap<>();
+
+        /**
+         * 写入后读请求固定走主库的时长，毫秒
+         */
+        private long stickyMillis = 3000;
+
+        /**
+         * 允许的最大复制延迟，秒；超过后从库暂时摘除
+         */
+        private long maxLagSeconds = 5;
+
+        /**
+         * 从库延迟与可用性的检测间隔，毫秒
+         */
+        private long checkInterval = 5000;
+    }
 }
\ No newline at end of file
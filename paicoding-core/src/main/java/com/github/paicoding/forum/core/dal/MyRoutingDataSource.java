@@ -8,10 +8,28 @@ import org.springframework.lang.Nullable;
  * @date 2024-07-12
  */
 public class MyRoutingDataSource extends AbstractRoutingDataSource {
+    /**
+     * 开启自动读写分离时存在，未显式指定数据源时由它选择主库或从库
+     */
+    private ReadWriteRouter router;
+
+    public void setRouter(ReadWriteRouter router) {
+        this.router = router;
+    }
+
     @Nullable
     @Override
     protected Object determineCurrentLookupKey() {
-        return DsContextHolder.get();
+        String ds = DsContextHolder.get();
+        if (router == null) {
+            return ds;
+        }
+
+        if (ds == null) {
+            ds = router.route();
+        }
+        ReadWriteRouter.current(ds);
+        return ds;
     }
 
 }
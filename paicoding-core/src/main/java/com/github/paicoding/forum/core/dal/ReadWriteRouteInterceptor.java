@@ -0,0 +1,61 @@
+package com.github.paicoding.forum.core.dal;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.Properties;
+
+/**
+ * 自动读写分离时，在sql执行前标记语句类型，供 {@link ReadWriteRouter} 在获取连接时选择主库或从库；
+ * 同时按数据源统计sql的执行次数与耗时，写入成功后将后续的读请求固定到主库
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Intercepts({@Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})})
+public class ReadWriteRouteInterceptor implements Interceptor {
+    private final ReadWriteRouter router;
+
+    public ReadWriteRouteInterceptor(ReadWriteRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        boolean read = ms.getSqlCommandType() == SqlCommandType.SELECT;
+        Boolean pre = ReadWriteRouter.markStatement(read);
+        long start = System.nanoTime();
+        boolean error = false;
+        try {
+            Object rs = invocation.proceed();
+            if (!read) {
+                router.written();
+            }
+            return rs;
+        } catch (Throwable e) {
+            error = true;
+            throw e;
+        } finally {
+            router.record(System.nanoTime() - start, error);
+            ReadWriteRouter.restoreStatement(pre);
+        }
+    }
+
+    @Override
+    public Object plugin(Object o) {
+        return Plugin.wrap(o, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+}
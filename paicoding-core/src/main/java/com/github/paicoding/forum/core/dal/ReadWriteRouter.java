@@ -0,0 +1,305 @@
+package com.github.paicoding.forum.core.dal;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.paicoding.forum.api.model.context.ReqInfoContext;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自动读写分离的路由规则
+ * <p>
+ * 1. 通过 @DsAno / DsSelectExecutor 显式指定的数据源优先
+ * 2. 读写事务走主库；只读事务、非事务的查询语句按权重分发到从库
+ * 3. 写入后的一段时间内，当前线程与当前登录用户的读请求都固定走主库，保证能读到自己刚写入的数据
+ * 4. 后台定时检测从库的复制延迟与可用性，延迟过大或不可用的从库暂时摘除，全部摘除时退化为只读主库
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+public class ReadWriteRouter {
+    /**
+     * 当前执行的sql是否为查询语句，由 ReadWriteRouteInterceptor 在执行前写入
+     */
+    private static final ThreadLocal<Boolean> READ_STATEMENT = new ThreadLocal<>();
+
+    /**
+     * 当前线程写入后固定走主库的截止时间
+     */
+    private static final ThreadLocal<Long> MASTER_PIN = new ThreadLocal<>();
+
+    /**
+     * 当前线程最近一次获取连接时路由到的数据源，用于按数据源统计耗时
+     */
+    private static final ThreadLocal<String> CURRENT_DS = new ThreadLocal<>();
+
+    private final DsProperties.Routing routing;
+
+    /**
+     * 最近有写入的用户 -> 写入时间
+     */
+    private final Cache<Long, Long> userPins;
+
+    private final Map<String, DsStat> dsStats = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService monitor;
+
+    private String master;
+
+    private final Map<String, DataSource> replicas = new LinkedHashMap<>();
+
+    /**
+     * 当前可用的从库，按权重展开后的数组，随机取一个即为按权重选择；每次检测后整体替换
+     */
+    private volatile String[] available = new String[0];
+
+    public ReadWriteRouter(DsProperties.Routing routing) {
+        this.routing = routing;
+        this.userPins = Caffeine.newBuilder().expireAfterWrite(routing.getStickyMillis(), TimeUnit.MILLISECONDS)
+                .maximumSize(100_000).build();
+        this.monitor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ds-replica-monitor").setDaemon(true).build());
+    }
+
+    /**
+     * @param master      主库的key
+     * @param dataSources 所有数据源，除主库外都视为从库
+     */
+    public void init(String master, Map<Object, Object> dataSources) {
+        this.master = master;
+        dataSources.forEach((k, v) -> {
+            dsStats.put((String) k, new DsStat());
+            if (!master.equals(k)) {
+                replicas.put((String) k, (DataSource) v);
+            }
+        });
+        checkReplicas();
+        monitor.scheduleWithFixedDelay(this::checkReplicas, routing.getCheckInterval(), routing.getCheckInterval(), TimeUnit.MILLISECONDS);
+        log.info("开启自动读写分离, 主库: {}, 从库: {}", master, replicas.keySet());
+    }
+
+    /**
+     * 选择本次获取连接使用的数据源
+     *
+     * @return
+     */
+    public String route() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // 事务的连接在第一条sql执行时才获取，读写事务此时还不知道后续是否写入，统一走主库
+            return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? select() : master;
+        }
+
+        if (!Boolean.TRUE.equals(READ_STATEMENT.get())) {
+            return master;
+        }
+
+        return pinned() ? master : select();
+    }
+
+    private String select() {
+        String[] candidates = available;
+        if (candidates.length == 0) {
+            return master;
+        }
+        return candidates[ThreadLocalRandom.current().nextInt(candidates.length)];
+    }
+
+    /**
+     * 写入成功后调用，之后一段时间内当前线程与当前用户的读请求都走主库
+     */
+    void written() {
+        MASTER_PIN.set(System.currentTimeMillis() + routing.getStickyMillis());
+        Long userId = loginUser();
+        if (userId != null) {
+            userPins.put(userId, System.currentTimeMillis());
+        }
+    }
+
+    private boolean pinned() {
+        Long until = MASTER_PIN.get();
+        if (until != null) {
+            if (until > System.currentTimeMillis()) {
+                return true;
+            }
+            MASTER_PIN.remove();
+        }
+        Long userId = loginUser();
+        return userId != null && userPins.getIfPresent(userId) != null;
+    }
+
+    private Long loginUser() {
+        ReqInfoContext.ReqInfo reqInfo = ReqInfoContext.getReqInfo();
+        return reqInfo == null ? null : reqInfo.getUserId();
+    }
+
+    /**
+     * 检测从库的复制延迟，摘除延迟过大或者不可用的从库，并更新各数据源的qps
+     */
+    private void checkReplicas() {
+        List<String> list = new ArrayList<>();
+        replicas.forEach((key, ds) -> {
+            DsStat stat = dsStats.get(key);
+            long lag = replicationLag(key, ds);
+            stat.lag = lag;
+            stat.healthy = lag >= 0 && lag <= routing.getMaxLagSeconds();
+            if (stat.healthy) {
+                int weight = Math.max(0, routing.getWeight().getOrDefault(key.toLowerCase(), 1));
+                for (int i = 0; i < weight; i++) {
+                    list.add(key);
+                }
+            }
+        });
+        available = list.toArray(new String[0]);
+
+        long now = System.currentTimeMillis();
+        dsStats.values().forEach(stat -> stat.refreshQps(now));
+    }
+
+    /**
+     * @return 复制延迟的秒数；-1 表示从库不可用或者复制已中断
+     */
+    private long replicationLag(String key, DataSource ds) {
+        try (Connection connection = ds.getConnection(); Statement statement = connection.createStatement()) {
+            ResultSet rs;
+            try {
+                rs = statement.executeQuery("SHOW REPLICA STATUS");
+            } catch (SQLException e) {
+                // mysql 8.0.22 之前的版本
+                rs = statement.executeQuery("SHOW SLAVE STATUS");
+            }
+            try (ResultSet result = rs) {
+                if (!result.next()) {
+                    // 没有配置复制关系（如本地开发时从库与主库为同一个库），视为无延迟
+                    return 0;
+                }
+                Object lag = lagColumn(result);
+                return lag == null ? -1 : Long.parseLong(lag.toString());
+            }
+        } catch (Exception e) {
+            log.warn("从库状态检测失败: {}", key, e);
+            return -1;
+        }
+    }
+
+    private Object lagColumn(ResultSet rs) throws SQLException {
+        try {
+            return rs.getObject("Seconds_Behind_Source");
+        } catch (SQLException e) {
+            return rs.getObject("Seconds_Behind_Master");
+        }
+    }
+
+    /**
+     * 记录一次sql执行
+     *
+     * @param cost  耗时，纳秒
+     * @param error 是否执行异常
+     */
+    public void record(long cost, boolean error) {
+        String ds = CURRENT_DS.get();
+        DsStat stat = ds == null ? null : dsStats.get(ds);
+        if (stat == null) {
+            return;
+        }
+        stat.count.increment();
+        stat.cost.add(cost);
+        if (error) {
+            stat.errors.increment();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("master", master);
+        dsStats.forEach((k, v) -> stats.put(k, v.toMap()));
+        return stats;
+    }
+
+    public void shutdown() {
+        monitor.shutdownNow();
+    }
+
+    static void current(String ds) {
+        CURRENT_DS.set(ds);
+    }
+
+    /**
+     * 标记接下来执行的sql是否为查询语句
+     *
+     * @param read
+     * @return 之前的标记，执行完毕后需要通过 {@link #restoreStatement(Boolean)} 恢复
+     */
+    static Boolean markStatement(boolean read) {
+        Boolean pre = READ_STATEMENT.get();
+        READ_STATEMENT.set(read);
+        return pre;
+    }
+
+    static void restoreStatement(Boolean pre) {
+        if (pre == null) {
+            READ_STATEMENT.remove();
+        } else {
+            READ_STATEMENT.set(pre);
+        }
+    }
+
+    /**
+     * 请求结束时清理当前线程的路由状态
+     */
+    public static void clear() {
+        MASTER_PIN.remove();
+        CURRENT_DS.remove();
+    }
+
+    private static class DsStat {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder cost = new LongAdder();
+        private final AtomicLong lastCount = new AtomicLong();
+        private volatile long lastTime = System.currentTimeMillis();
+        private volatile double qps;
+        private volatile long lag;
+        private volatile boolean healthy = true;
+
+        private void refreshQps(long now) {
+            long cnt = count.sum();
+            long pre = lastCount.getAndSet(cnt);
+            long interval = now - lastTime;
+            lastTime = now;
+            if (interval > 0) {
+                qps = (cnt - pre) * 1000.0 / interval;
+            }
+        }
+
+        private Map<String, Object> toMap() {
+            long cnt = count.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", cnt);
+            map.put("errors", errors.sum());
+            map.put("qps", qps);
+            map.put("avgCostMs", cnt == 0 ? 0 : cost.sum() / cnt / 1_000_000.0);
+            map.put("lagSeconds", lag);
+            map.put("healthy", healthy);
+            return map;
+        }
+    }
+}
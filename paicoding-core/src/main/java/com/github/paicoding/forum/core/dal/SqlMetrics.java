@@ -0,0 +1,147 @@
+package com.github.paicoding.forum.core.dal;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * sql执行指标，按 MappedStatement 统计耗时分布、影响行数、异常数，并保留最近的慢sql
+ * <p>
+ * 全部基于 LongAdder / Atomic 实现，记录时不加锁
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+public class SqlMetrics {
+    /**
+     * 耗时分布的桶上限，毫秒；超过最后一个上限的落入额外的溢出桶
+     */
+    private static final long[] BUCKETS = {1, 5, 10, 50, 100, 500, 1000, 5000};
+
+    /**
+     * 统计信息中返回的sql条数，按总耗时倒序
+     */
+    private static final int TOP_STATEMENTS = 50;
+
+    private final ConcurrentHashMap<String, StatementStat> statements = new ConcurrentHashMap<>();
+
+    /**
+     * 慢sql环形队列，写满后覆盖最早的记录
+     */
+    private final AtomicReferenceArray<SlowSql> slowQueue;
+    private final AtomicLong slowIndex = new AtomicLong();
+
+    public SqlMetrics(int slowQueueSize) {
+        this.slowQueue = new AtomicReferenceArray<>(Math.max(1, slowQueueSize));
+    }
+
+    /**
+     * 记录一次sql执行
+     *
+     * @param statement MappedStatement id
+     * @param cost      耗时，毫秒
+     * @param rows      返回或影响的行数
+     * @param error     是否执行异常
+     */
+    public void record(String statement, long cost, long rows, boolean error) {
+        StatementStat stat = statements.computeIfAbsent(statement, k -> new StatementStat());
+        stat.count.increment();
+        stat.totalCost.add(cost);
+        stat.rows.add(rows);
+        if (error) {
+            stat.errors.increment();
+        }
+        stat.maxCost.accumulateAndGet(cost, Math::max);
+        stat.histogram.incrementAndGet(bucket(cost));
+    }
+
+    public void recordSlow(String statement, String sql, long cost, long rows) {
+        long index = slowIndex.getAndIncrement();
+        slowQueue.set((int) (index % slowQueue.length()),
+                new SlowSql(statement, sql, cost, rows, System.currentTimeMillis(), Thread.currentThread().getName()));
+    }
+
+    private int bucket(long cost) {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (cost <= BUCKETS[i]) {
+                return i;
+            }
+        }
+        return BUCKETS.length;
+    }
+
+    /**
+     * @return 最近的慢sql，按时间倒序
+     */
+    public List<SlowSql> slowQueries() {
+        long end = slowIndex.get();
+        long start = Math.max(0, end - slowQueue.length());
+        List<SlowSql> result = new ArrayList<>((int) (end - start));
+        for (long i = end - 1; i >= start; i--) {
+            SlowSql sql = slowQueue.get((int) (i % slowQueue.length()));
+            if (sql != null) {
+                result.add(sql);
+            }
+        }
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        List<Map.Entry<String, StatementStat>> list = new ArrayList<>(statements.entrySet());
+        list.sort(Comparator.comparingLong((Map.Entry<String, StatementStat> e) -> e.getValue().totalCost.sum()).reversed());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<String, StatementStat> entry : list.subList(0, Math.min(TOP_STATEMENTS, list.size()))) {
+            result.put(entry.getKey(), entry.getValue().toMap());
+        }
+        return result;
+    }
+
+    private static class StatementStat {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalCost = new LongAdder();
+        private final AtomicLong maxCost = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+
+        private Map<String, Object> toMap() {
+            long cnt = count.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", cnt);
+            map.put("errors", errors.sum());
+            map.put("rows", rows.sum());
+            map.put("totalCostMs", totalCost.sum());
+            map.put("avgCostMs", cnt == 0 ? 0 : totalCost.sum() / cnt);
+            map.put("maxCostMs", maxCost.get());
+
+            Map<String, Long> buckets = new LinkedHashMap<>();
+            for (int i = 0; i < BUCKETS.length; i++) {
+                buckets.put("<=" + BUCKETS[i] + "ms", histogram.get(i));
+            }
+            buckets.put(">" + BUCKETS[BUCKETS.length - 1] + "ms", histogram.get(BUCKETS.length));
+            map.put("histogram", buckets);
+            return map;
+        }
+    }
+
+    /**
+     * 慢sql记录
+     *
+     * @param statement MappedStatement id
+     * @param sql       拼接参数后的完整sql
+     * @param cost      耗时，毫秒
+     * @param rows      返回或影响的行数
+     * @param time      执行完成的时间戳
+     * @param thread    执行线程
+     */
+    public record SlowSql(String statement, String sql, long cost, long rows, long time, String thread) {
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.paicoding.forum.core.dal;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * sql执行情况统计的配置
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Data
+@ConfigurationProperties(prefix = "paicoding.sql-stat")
+public class SqlStatProperties {
+    public static final String MODE_FULL = "full";
+
+    /**
+     * 统计模式
+     * metrics: 只在内存中记录每条 MappedStatement 的耗时分布、影响行数、异常数，慢sql与抽样的sql才拼接完整语句输出（默认）
+     * full: 每条sql都拼接参数并输出日志，适用于本地开发排查问题
+     * off: 不注册拦截器
+     */
+    private String mode = "metrics";
+
+    /**
+     * 慢sql阈值，毫秒
+     */
+    private long slowThreshold = 500;
+
+    /**
+     * 非慢sql的抽样输出比例，取值 [0, 1]
+     */
+    private double sampleRate = 0;
+
+    /**
+     * 保留的最近慢sql条数
+     */
+    private int slowQueueSize = 100;
+
+    public boolean fullMode() {
+        return MODE_FULL.equalsIgnoreCase(mode);
+    }
+}
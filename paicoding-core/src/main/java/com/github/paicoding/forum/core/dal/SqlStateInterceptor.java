@@ -1,7 +1,7 @@
 package com.github.paicoding.forum.core.dal;
 
 import com.alibaba.druid.pool.DruidPooledPreparedStatement;
-import com.baomidou.mybatisplus.core.MybatisParameterHandler;
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
 import com.github.paicoding.forum.core.util.DateUtil;
 import com.mysql.cj.MysqlConnection;
 import com.zaxxer.hikari.pool.HikariProxyConnection;
@@ -14,21 +14,24 @@ import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.plugin.*;
 import org.apache.ibatis.reflection.MetaObject;
-import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.springframework.util.CollectionUtils;
 
-import java.lang.reflect.Field;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.Statement;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.regex.Matcher;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * mybatis拦截器。输出sql执行情况
+ * <p>
+ * 默认为 metrics 模式：只在内存中按 MappedStatement 记录耗时分布、行数、异常数，仅慢sql、抽样命中以及执行异常的sql才拼接完整语句输出；
+ * full 模式下保留原有的每条sql都拼接参数并打印的行为，便于本地开发排查
  *
  * @author XuYifei
  * @date 2024-07-12
@@ -36,8 +39,55 @@ import java.util.regex.Matcher;
 @Slf4j
 @Intercepts({@Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}), @Signature(type = StatementHandler.class, method = "update", args = {Statement.class})})
 public class SqlStateInterceptor implements Interceptor {
+    private final SqlStatProperties properties;
+
+    private final SqlMetrics metrics;
+
+    public SqlStateInterceptor(SqlStatProperties properties) {
+        this.properties = properties;
+        this.metrics = new SqlMetrics(properties.getSlowQueueSize());
+    }
+
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
+        if (properties.fullMode()) {
+            return fullIntercept(invocation);
+        }
+
+        StatementHandler statementHandler = (StatementHandler) invocation.getTarget();
+        long start = System.nanoTime();
+        Object rs = null;
+        boolean error = false;
+        try {
+            rs = invocation.proceed();
+            return rs;
+        } catch (Throwable e) {
+            error = true;
+            log.error("error sql: " + replaceContinueSpace(buildSql(statementHandler)), e);
+            throw e;
+        } finally {
+            long cost = (System.nanoTime() - start) / 1_000_000;
+            MappedStatement ms = mappedStatement(statementHandler);
+            String statement = ms == null ? "unknown" : ms.getId();
+            long rows = rows(rs);
+            metrics.record(statement, cost, rows, error);
+
+            if (!error) {
+                if (cost >= properties.getSlowThreshold()) {
+                    String sql = replaceContinueSpace(buildSql(statementHandler));
+                    metrics.recordSlow(statement, sql, cost, rows);
+                    log.warn("slow sql ----> {} | cost: {}ms | rows: {} | {}", statement, cost, rows, sql);
+                } else if (properties.getSampleRate() > 0 && ThreadLocalRandom.current().nextDouble() < properties.getSampleRate()) {
+                    log.info("sample sql ----> {} | cost: {}ms | rows: {} | {}", statement, cost, rows, replaceContinueSpace(buildSql(statementHandler)));
+                }
+            }
+        }
+    }
+
+    /**
+     * 全量输出模式，每条sql都拼接参数并打印
+     */
+    private Object fullIntercept(Invocation invocation) throws Throwable {
         long time = System.currentTimeMillis();
         StatementHandler statementHandler = (StatementHandler) invocation.getTarget();
         String sql = buildSql(statementHandler);
@@ -72,6 +122,36 @@ public class SqlStateInterceptor implements Interceptor {
         return rs;
     }
 
+    /**
+     * 查询返回结果集的条数，更新返回影响的行数
+     */
+    private long rows(Object rs) {
+        if (rs instanceof List) {
+            return ((List<?>) rs).size();
+        } else if (rs instanceof Number) {
+            return ((Number) rs).longValue();
+        }
+        return 0;
+    }
+
+    private MappedStatement mappedStatement(StatementHandler statementHandler) {
+        try {
+            return PluginUtils.mpStatementHandler(statementHandler).mappedStatement();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", properties.getMode());
+        stats.put("slowThresholdMs", properties.getSlowThreshold());
+        stats.put("sampleRate", properties.getSampleRate());
+        stats.put("statements", metrics.stats());
+        stats.put("slowQueries", metrics.slowQueries());
+        return stats;
+    }
+
     /**
      * 拼接sql
      *
@@ -99,34 +179,14 @@ public class SqlStateInterceptor implements Interceptor {
 
     private String buildSql(StatementHandler statementHandler) {
         BoundSql boundSql = statementHandler.getBoundSql();
-        Configuration configuration = null;
-
-        if (statementHandler.getParameterHandler() instanceof DefaultParameterHandler) {
-            DefaultParameterHandler handler = (DefaultParameterHandler) statementHandler.getParameterHandler();
-            configuration = (Configuration) getFieldVal(handler, "configuration");
-        } else if (statementHandler.getParameterHandler() instanceof MybatisParameterHandler) {
-            MybatisParameterHandler paramHandler = (MybatisParameterHandler) statementHandler.getParameterHandler();
-            configuration = ((MappedStatement) getFieldVal(paramHandler, "mappedStatement")).getConfiguration();
-        }
-
-        if (configuration == null) {
+        MappedStatement ms = mappedStatement(statementHandler);
+        if (ms == null) {
             return boundSql.getSql();
         }
 
-        return getSql(boundSql, configuration);
-    }
-
-    private Object getFieldVal(Object obj, String fieldName) {
-        try {
-            Field field = obj.getClass().getDeclaredField(fieldName);
-            field.setAccessible(true);
-            return field.get(obj);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            throw new RuntimeException("Failed to get field value", e);
-        }
+        return getSql(boundSql, ms.getConfiguration());
     }
 
-
     /**
      * 生成要执行的SQL命令
      *
@@ -143,6 +203,8 @@ public class SqlStateInterceptor implements Interceptor {
         }
 
         MetaObject mo = configuration.newMetaObject(boundSql.getParameterObject());
+        StringBuilder builder = new StringBuilder(sql.length() + parameterMappings.size() * 8);
+        int from = 0;
         for (ParameterMapping parameterMapping : parameterMappings) {
             if (parameterMapping.getMode() == ParameterMode.OUT) {
                 continue;
@@ -161,11 +223,16 @@ public class SqlStateInterceptor implements Interceptor {
             } else {
                 value = mo.getValue(propertyName);
             }
-            String param = Matcher.quoteReplacement(getParameter(value));
-            sql = sql.replaceFirst("\\?", param);
+            // 依次替换占位符，避免每个参数都做一次正则匹配
+            int index = sql.indexOf('?', from);
+            if (index < 0) {
+                break;
+            }
+            builder.append(sql, from, index).append(getParameter(value));
+            from = index + 1;
         }
-        sql += ";";
-        return sql;
+        builder.append(sql, from, sql.length()).append(';');
+        return builder.toString();
     }
 
     public String getParameter(Object parameter) {
@@ -177,6 +244,8 @@ public class SqlStateInterceptor implements Interceptor {
         } else if (parameter instanceof java.util.Date) {
             // 日期格式化
             return "'" + DateUtil.format(DateUtil.DB_FORMAT, ((java.util.Date) parameter).getTime()) + "'";
+        } else if (parameter == null) {
+            return "null";
         }
         return parameter.toString();
     }
@@ -1,9 +1,19 @@
 package com.github.paicoding.forum.core.rabbitmq;
 
 import com.github.paicoding.forum.core.common.CommonConstants;
+import com.github.paicoding.forum.core.util.TransactionUtil;
+import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.amqp.rabbit.retry.MessageRecoverer;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -16,6 +26,15 @@ import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class RabbitMqConfig {
+    /**
+     * 批量消费的监听容器
+     */
+    public static final String BATCH_LISTENER_CONTAINER_FACTORY = "batchListenerContainerFactory";
+    /**
+     * 通知消息的死信转发
+     */
+    public static final String NOTIFY_DEAD_LETTER_RECOVERER = "notifyDeadLetterRecoverer";
+
     @Bean
     public MessageConverter messageConverter(){
         // 1.定义消息转换器
@@ -46,8 +65,75 @@ public class RabbitMqConfig {
         return new Queue(CommonConstants.MESSAGE_QUEUE_NAME_NOTIFY_EVENT, true);
     }
 
+    @Bean
+    public Queue notifyDeadQueue() {
+        return new Queue(CommonConstants.MESSAGE_QUEUE_NAME_NOTIFY_DEAD, true);
+    }
+
+    /**
+     * 将消息连同异常信息转发到死信队列；没有在 notifyQueue 上声明 x-dead-letter-exchange，避免与已存在的队列参数冲突
+     *
+     * @param amqpTemplate
+     * @return
+     */
+    @Bean(NOTIFY_DEAD_LETTER_RECOVERER)
+    public MessageRecoverer notifyDeadLetterRecoverer(AmqpTemplate amqpTemplate) {
+        return new RepublishMessageRecoverer(amqpTemplate, CommonConstants.MESSAGE_QUEUE_EXCHANGE_NAME_DIRECT, CommonConstants.MESSAGE_QUEUE_KEY_NOTIFY_DEAD);
+    }
+
+    /**
+     * 批量消费的监听容器：攒够 batch-size 条或等待 receive-timeout 毫秒后交给监听方法处理，
+     * 监听方法正常返回（业务事务已提交）后整批确认；抛出异常时在当前线程内按退避间隔重试整批消息，
+     * 重试 max-attempts 次仍失败时：db不可用等瞬时故障整批重新入队，恢复后继续消费，不会丢失通知；
+     * 其他异常整批转入死信队列后确认，避免同一批消息无限循环
+     *
+     * @param configurer
+     * @param connectionFactory
+     * @param notifyDeadLetterRecoverer
+     * @param batchSize
+     * @param receiveTimeout
+     * @param maxAttempts
+     * @return
+     */
+    @Bean(BATCH_LISTENER_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                              ConnectionFactory connectionFactory,
+                                                                              MessageRecoverer notifyDeadLetterRecoverer,
+                                                                              @Value("${paicoding.notify-consumer.batch-size:100}") int batchSize,
+                                                                              @Value("${paicoding.notify-consumer.receive-timeout:200}") long receiveTimeout,
+                                                                              @Value("${paicoding.notify-consumer.max-attempts:5}") int maxAttempts) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeout);
+        // 预取数量不小于批大小，否则一批永远攒不满
+        factory.setPrefetchCount(batchSize * 2);
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        // 批量监听的 recoverer 需要实现 MessageBatchRecoverer，逐条转发
+        MessageBatchRecoverer recoverer = (messages, cause) -> {
+            if (TransactionUtil.isTransientFailure(cause)) {
+                // 抛出异常后消息重新入队，再次投递时重新开始退避重试
+                throw new AmqpException("db is unavailable, requeue " + messages.size() + " messages", cause);
+            }
+            messages.forEach(message -> notifyDeadLetterRecoverer.recover(message, cause));
+        };
+        factory.setAdviceChain(RetryInterceptorBuilder.stateless()
+                .maxAttempts(maxAttempts)
+                .backOffOptions(500, 2.0, 5000)
+                .recoverer(recoverer)
+                .build());
+        return factory;
+    }
+
     @Bean
     public Binding bindingPraise(Queue notifyQueue, DirectExchange directExchange){
         return BindingBuilder.bind(notifyQueue).to(directExchange).with(CommonConstants.MESSAGE_QUEUE_KEY_NOTIFY);
     }
+
+    @Bean
+    public Binding bindingNotifyDead(Queue notifyDeadQueue, DirectExchange directExchange) {
+        return BindingBuilder.bind(notifyDeadQueue).to(directExchange).with(CommonConstants.MESSAGE_QUEUE_KEY_NOTIFY_DEAD);
+    }
 }
@@ -0,0 +1,428 @@
+package com.github.paicoding.forum.core.rabbitmq;
+
+import com.github.paicoding.forum.core.config.RabbitmqProperties;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * rabbitmq 消息发送的 channel 池
+ * <p>
+ * 1. 固定数量的长连接，channel 按需在各连接上轮流创建，用完归还后复用，不再每次发送都新建 channel
+ * 2. 借出时校验 channel 及其所属连接是否可用，失效的 channel 直接丢弃；连接断开后，下一次在该连接上创建 channel 时重新建立连接
+ * 3. 开启 publisher confirm 时，单条发送不等待确认，由 ConfirmListener 异步统计确认耗时；被 nack 或 channel 异常关闭时尚未确认的消息，
+ * 在下一次发送时重新投递；批量发送时整批只等待一次确认
+ * 4. 统计 借出的等待耗时、使用中的 channel 数、确认耗时、重投与丢失的消息数
+ * <p>
+ * 连接由传入的 ConnectionFactory 创建，测试时可以替换为进程内的模拟实现
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+public class RabbitmqChannelPool implements Closeable {
+    /**
+     * 每次发送前最多补发的待重投消息数，避免单次发送被重投拖慢
+     */
+    private static final int RETRY_BATCH = 64;
+
+    private final ConnectionFactory factory;
+    private final int connectionSize;
+    private final int capacity;
+    private final long borrowTimeout;
+    private final long confirmTimeout;
+    private final boolean confirm;
+    private final int maxRetries;
+
+    private final Connection[] connections;
+    private final Object[] connectionLocks;
+    private final AtomicInteger nextConnection = new AtomicInteger();
+    private final BlockingQueue<PooledChannel> idle = new LinkedBlockingQueue<>();
+    /**
+     * 借出的 + 空闲的 channel 总数不超过 capacity
+     */
+    private final Semaphore permits;
+    /**
+     * 被 nack 或 channel 关闭时未确认，等待重新投递的消息
+     */
+    private final Queue<Pending> retries = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger peakInUse = new AtomicInteger();
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder borrowWaitNanos = new LongAdder();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final LongAdder borrowTimeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder replaced = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder nacked = new LongAdder();
+    private final LongAdder republished = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+    private final LongAdder confirmNanos = new LongAdder();
+    private final AtomicLong maxConfirmNanos = new AtomicLong();
+    private final LongAdder batchWaits = new LongAdder();
+    private final LongAdder batchWaitNanos = new LongAdder();
+
+    public RabbitmqChannelPool(ConnectionFactory factory, RabbitmqProperties properties) {
+        this.factory = factory;
+        this.connectionSize = Math.max(1, properties.getPoolSize() == null ? 1 : properties.getPoolSize());
+        this.capacity = connectionSize * Math.max(1, properties.getChannelsPerConnection());
+        this.borrowTimeout = properties.getBorrowTimeout();
+        this.confirmTimeout = properties.getConfirmTimeout();
+        this.confirm = properties.isPublisherConfirms();
+        this.maxRetries = properties.getMaxRetries();
+        this.connections = new Connection[connectionSize];
+        this.connectionLocks = new Object[connectionSize];
+        for (int i = 0; i < connectionSize; i++) {
+            connectionLocks[i] = new Object();
+        }
+        this.permits = new Semaphore(capacity);
+    }
+
+    /**
+     * 发送一条消息，开启 confirm 时不等待确认
+     *
+     * @param msg
+     * @throws IOException          发送失败
+     * @throws TimeoutException     等待空闲 channel 超时，或建立连接超时
+     * @throws InterruptedException
+     */
+    public void publish(Msg msg) throws IOException, TimeoutException, InterruptedException {
+        execute(List.of(msg), false);
+    }
+
+    /**
+     * 在同一个 channel 上发送一批消息，然后整批等待一次确认
+     *
+     * @param msgs
+     * @return false 表示有消息被 nack，被 nack 的消息会在后续的发送中重新投递
+     * @throws IOException          发送失败
+     * @throws TimeoutException     等待空闲 channel 或等待确认超时
+     * @throws InterruptedException
+     */
+    public boolean publishAndWait(List<Msg> msgs) throws IOException, TimeoutException, InterruptedException {
+        return execute(msgs, true);
+    }
+
+    private boolean execute(List<Msg> msgs, boolean wait) throws IOException, TimeoutException, InterruptedException {
+        PooledChannel ch = borrow();
+        boolean broken = false;
+        try {
+            drainRetries(ch);
+            for (Msg msg : msgs) {
+                ch.publish(new Pending(msg, 0, System.nanoTime()));
+            }
+            if (!wait || !confirm) {
+                return true;
+            }
+            long start = System.nanoTime();
+            boolean allAcked = ch.channel.waitForConfirms(confirmTimeout);
+            batchWaits.increment();
+            batchWaitNanos.add(System.nanoTime() - start);
+            return allAcked;
+        } catch (IOException | RuntimeException e) {
+            // 发送出错的 channel 不再复用，关闭后其未确认的消息进入重投队列
+            broken = true;
+            throw e;
+        } finally {
+            release(ch, broken);
+        }
+    }
+
+    private void drainRetries(PooledChannel ch) throws IOException {
+        Pending pending;
+        for (int i = 0; i < RETRY_BATCH && (pending = retries.poll()) != null; i++) {
+            try {
+                ch.publish(new Pending(pending.msg(), pending.attempt(), System.nanoTime()));
+            } catch (IOException | RuntimeException e) {
+                retries.offer(pending);
+                throw e;
+            }
+            republished.increment();
+        }
+    }
+
+    private PooledChannel borrow() throws IOException, TimeoutException, InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("rabbitmq channel pool is closed");
+        }
+        long start = System.nanoTime();
+        if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+            borrowTimeouts.increment();
+            throw new TimeoutException("borrow rabbitmq channel timeout, inUse: " + inUse.get() + ", capacity: " + capacity);
+        }
+        long cost = System.nanoTime() - start;
+        borrowed.increment();
+        borrowWaitNanos.add(cost);
+        maxBorrowWaitNanos.accumulateAndGet(cost, Math::max);
+
+        try {
+            PooledChannel ch;
+            while ((ch = idle.poll()) != null && !ch.isOpen()) {
+                discard(ch);
+            }
+            if (ch == null) {
+                ch = create();
+            }
+            peakInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+            return ch;
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(PooledChannel ch, boolean broken) {
+        inUse.decrementAndGet();
+        if (!broken && !closed && ch.isOpen()) {
+            idle.offer(ch);
+        } else {
+            discard(ch);
+        }
+        permits.release();
+    }
+
+    private PooledChannel create() throws IOException, TimeoutException {
+        Connection connection = connection(Math.floorMod(nextConnection.getAndIncrement(), connectionSize));
+        Channel channel = connection.createChannel();
+        if (channel == null) {
+            throw new IOException("no channel available on rabbitmq connection: " + connection);
+        }
+        created.increment();
+        return new PooledChannel(channel);
+    }
+
+    private Connection connection(int slot) throws IOException, TimeoutException {
+        synchronized (connectionLocks[slot]) {
+            Connection connection = connections[slot];
+            if (connection != null && connection.isOpen()) {
+                return connection;
+            }
+            if (connection != null) {
+                reconnects.increment();
+                log.warn("rabbitmq publisher connection-{} is closed, reconnect! cause: {}", slot, connection.getCloseReason());
+            }
+            connection = factory.newConnection("paicoding-publisher-" + slot);
+            connections[slot] = connection;
+            return connection;
+        }
+    }
+
+    private void discard(PooledChannel ch) {
+        replaced.increment();
+        ch.closeQuietly();
+    }
+
+    private void retry(Pending pending, String reason) {
+        if (closed || pending.attempt() >= maxRetries) {
+            lost.increment();
+            log.error("rabbitmq message lost after {} attempts! reason: {}, exchange: {}, key: {}", pending.attempt() + 1, reason,
+                    pending.msg().exchange(), pending.msg().routingKey());
+            return;
+        }
+        retries.offer(new Pending(pending.msg(), pending.attempt() + 1, 0));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connections", connectionSize);
+        stats.put("capacity", capacity);
+        stats.put("confirm", confirm);
+        stats.put("inUse", inUse.get());
+        stats.put("peakInUse", peakInUse.get());
+        stats.put("idle", idle.size());
+        stats.put("borrowed", borrowed.sum());
+        stats.put("borrowWaitAvgMs", millis(borrowWaitNanos.sum(), borrowed.sum()));
+        stats.put("borrowWaitMaxMs", millis(maxBorrowWaitNanos.get(), 1));
+        stats.put("borrowTimeouts", borrowTimeouts.sum());
+        stats.put("created", created.sum());
+        stats.put("replaced", replaced.sum());
+        stats.put("reconnects", reconnects.sum());
+        stats.put("published", published.sum());
+        stats.put("acked", acked.sum());
+        stats.put("nacked", nacked.sum());
+        stats.put("republished", republished.sum());
+        stats.put("pendingRetries", retries.size());
+        stats.put("lost", lost.sum());
+        stats.put("confirmAvgMs", millis(confirmNanos.sum(), acked.sum()));
+        stats.put("confirmMaxMs", millis(maxConfirmNanos.get(), 1));
+        stats.put("batchWaits", batchWaits.sum());
+        stats.put("batchWaitAvgMs", millis(batchWaitNanos.sum(), batchWaits.sum()));
+        return stats;
+    }
+
+    private static double millis(long nanos, long cnt) {
+        return cnt == 0 ? 0 : Math.round(nanos / 10_000.0 / cnt) / 100.0;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledChannel ch;
+        while ((ch = idle.poll()) != null) {
+            ch.closeQuietly();
+        }
+        for (Connection connection : connections) {
+            if (connection != null && connection.isOpen()) {
+                try {
+                    connection.close();
+                } catch (IOException | RuntimeException e) {
+                    log.warn("close rabbitmq publisher connection error!", e);
+                }
+            }
+        }
+        int remaining = retries.size();
+        retries.clear();
+        if (remaining > 0) {
+            lost.add(remaining);
+            log.error("rabbitmq channel pool closed, {} messages waiting for republish are lost!", remaining);
+        }
+    }
+
+    /**
+     * 待发送的消息
+     *
+     * @param exchange
+     * @param routingKey
+     * @param props      消息属性，如持久化、发送时间
+     * @param body
+     */
+    public record Msg(String exchange, String routingKey, AMQP.BasicProperties props, byte[] body) {
+    }
+
+    /**
+     * 已发送未确认的消息
+     *
+     * @param msg
+     * @param attempt 已重投的次数
+     * @param sentAt  发送时间，nanoTime
+     */
+    private record Pending(Msg msg, int attempt, long sentAt) {
+    }
+
+    /**
+     * 池中的 channel，记录其上已发送未确认的消息
+     */
+    private class PooledChannel implements ConfirmListener, ShutdownListener {
+        private final Channel channel;
+        private final ConcurrentNavigableMap<Long, Pending> unconfirmed = new ConcurrentSkipListMap<>();
+
+        private PooledChannel(Channel channel) throws IOException {
+            this.channel = channel;
+            if (confirm) {
+                channel.confirmSelect();
+                channel.addConfirmListener(this);
+            }
+            channel.addShutdownListener(this);
+        }
+
+        private boolean isOpen() {
+            return channel.isOpen() && channel.getConnection().isOpen();
+        }
+
+        private void publish(Pending pending) throws IOException {
+            Msg msg = pending.msg();
+            if (!confirm) {
+                channel.basicPublish(msg.exchange(), msg.routingKey(), msg.props(), msg.body());
+                published.increment();
+                return;
+            }
+
+            // 先登记再发送，确认可能在 basicPublish 返回前就到达
+            long seq = channel.getNextPublishSeqNo();
+            unconfirmed.put(seq, pending);
+            try {
+                channel.basicPublish(msg.exchange(), msg.routingKey(), msg.props(), msg.body());
+            } catch (IOException | RuntimeException e) {
+                unconfirmed.remove(seq);
+                throw e;
+            }
+            published.increment();
+        }
+
+        @Override
+        public void handleAck(long deliveryTag, boolean multiple) {
+            confirmed(deliveryTag, multiple, true);
+        }
+
+        @Override
+        public void handleNack(long deliveryTag, boolean multiple) {
+            confirmed(deliveryTag, multiple, false);
+        }
+
+        private void confirmed(long deliveryTag, boolean multiple, boolean ack) {
+            long now = System.nanoTime();
+            if (!multiple) {
+                confirmed(unconfirmed.remove(deliveryTag), now, ack);
+                return;
+            }
+            Map.Entry<Long, Pending> entry;
+            while ((entry = unconfirmed.firstEntry()) != null && entry.getKey() <= deliveryTag) {
+                confirmed(unconfirmed.remove(entry.getKey()), now, ack);
+            }
+        }
+
+        private void confirmed(Pending pending, long now, boolean ack) {
+            if (pending == null) {
+                return;
+            }
+            if (ack) {
+                long cost = now - pending.sentAt();
+                acked.increment();
+                confirmNanos.add(cost);
+                maxConfirmNanos.accumulateAndGet(cost, Math::max);
+            } else {
+                nacked.increment();
+                retry(pending, "nack");
+            }
+        }
+
+        @Override
+        public void shutdownCompleted(ShutdownSignalException cause) {
+            // channel 关闭后不会再收到确认，未确认的消息重新投递
+            Map.Entry<Long, Pending> entry;
+            while ((entry = unconfirmed.pollFirstEntry()) != null) {
+                retry(entry.getValue(), "channel closed");
+            }
+        }
+
+        private void closeQuietly() {
+            if (!channel.isOpen()) {
+                shutdownCompleted(null);
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException | TimeoutException | RuntimeException e) {
+                log.debug("close rabbitmq channel error: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.github.paicoding.forum.core.senstive;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.github.houbb.sensitive.word.api.IWordAllow;
 import com.github.houbb.sensitive.word.api.IWordDeny;
 import com.github.houbb.sensitive.word.bs.SensitiveWordBs;
@@ -7,19 +10,33 @@ import com.github.houbb.sensitive.word.support.allow.WordAllowSystem;
 import com.github.houbb.sensitive.word.support.deny.WordDenySystem;
 import com.github.paicoding.forum.core.autoconf.DynamicConfigContainer;
 import com.github.paicoding.forum.core.cache.RedisClient;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.BooleanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 敏感词服务类
+ * <p>
+ * 1. 词库编译为 SensitiveWordBs 的词树后整体替换，每次替换生成新的词库版本
+ * 2. 替换结果按 (文本摘要, 词库版本) 缓存，db中读出的文本不变时不再重复扫描；词库变化后版本号改变，旧结果自然失效
+ * 3. 敏感词命中计数先在内存中累加，定时批量写入redis
  *
  * @author XuYifei
  * @date 2024-07-12
@@ -31,15 +48,47 @@ public class SensitiveService {
      * 敏感词命中计数统计
      */
     private static final String SENSITIVE_WORD_CNT_PREFIX = "sensitive_word";
-    private volatile SensitiveWordBs sensitiveWordBs;
+
+    /**
+     * 替换结果缓存的容量，按条数计，替换后的文本每1k字符额外占用1个单位
+     */
+    @Value("${paicoding.sensitive.cache-size:20000}")
+    private long cacheSize;
+
+    private volatile Dictionary dictionary;
     @Autowired
     private SensitiveProperty sensitiveConfig;
     @Autowired
     private DynamicConfigContainer dynamicConfigContainer;
 
+    private Cache<TextKey, Replaced> replaceCache;
+
+    /**
+     * key: 敏感词, value: 尚未写入redis的命中次数
+     */
+    private final ConcurrentHashMap<String, LongAdder> hitBuffer = new ConcurrentHashMap<>();
+
+    private final AtomicLong version = new AtomicLong();
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong lastBuildCost = new AtomicLong();
+
     @PostConstruct
-    public void refresh() {
+    public void init() {
+        replaceCache = Caffeine.newBuilder().maximumWeight(cacheSize)
+                .weigher((TextKey key, Replaced value) -> 1 + (value.txt() == null ? 0 : value.txt().length() >> 10))
+                .recordStats()
+                .build();
         dynamicConfigContainer.registerRefreshCallback(sensitiveConfig, this::refresh);
+        refresh();
+    }
+
+    /**
+     * 重新编译词库，编译完成后整体替换，替换前的请求继续使用旧词库
+     */
+    public void refresh() {
+        long start = System.currentTimeMillis();
         IWordDeny deny = () -> {
             List<String> sub = WordDenySystem.getInstance().deny();
             sub.addAll(sensitiveConfig.getDeny());
@@ -51,11 +100,22 @@ public class SensitiveService {
             sub.addAll(sensitiveConfig.getAllow());
             return sub;
         };
-        sensitiveWordBs = SensitiveWordBs.newInstance()
+        SensitiveWordBs bs = SensitiveWordBs.newInstance()
                 .wordDeny(deny)
                 .wordAllow(allow)
                 .init();
-        log.info("敏感词初始化完成!");
+        dictionary = new Dictionary(version.incrementAndGet(), bs);
+        // 旧版本的结果已经不会再被命中，直接释放
+        replaceCache.invalidateAll();
+        lastBuildCost.set(System.currentTimeMillis() - start);
+        log.info("敏感词初始化完成! version: {}", dictionary.version());
+    }
+
+    /**
+     * @return true 表示开启了敏感词校验
+     */
+    public boolean enabled() {
+        return BooleanUtils.isTrue(sensitiveConfig.getEnable());
     }
 
     /**
@@ -65,22 +125,55 @@ public class SensitiveService {
      * @return 返回命中的敏感词
      */
     public List<String> contains(String txt) {
-        if (!BooleanUtils.isTrue(sensitiveConfig.getEnable())) {
+        if (!enabled()) {
             return Collections.emptyList();
         }
 
-        List<String> ans = sensitiveWordBs.findAll(txt);
+        scans.increment();
+        List<String> ans = dictionary.bs().findAll(txt);
         if (CollectionUtils.isEmpty(ans)) {
             return ans;
         }
 
-        // 敏感词命中次数+1
-        RedisClient.PipelineAction action = RedisClient.pipelineAction();
-        ans.forEach(key -> action.add(SENSITIVE_WORD_CNT_PREFIX, key, (connection, k, v) -> connection.hIncrBy(k, v, 1)));
-        action.execute();
+        // 敏感词命中次数+1，只写内存
+        ans.forEach(key -> hitBuffer.computeIfAbsent(key, k -> new LongAdder()).increment());
         return ans;
     }
 
+    /**
+     * 定时把内存中的命中次数批量累加到redis，默认每5s一次
+     */
+    @Scheduled(fixedDelayString = "${paicoding.sensitive.flush-interval:5000}")
+    public synchronized void flushHits() {
+        Map<String, Long> deltas = new HashMap<>();
+        // 敏感词的数量受词库限制，计数器常驻内存，不需要移除
+        hitBuffer.forEach((word, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta > 0) {
+                deltas.put(word, delta);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            RedisClient.PipelineAction action = RedisClient.pipelineAction();
+            deltas.forEach((word, cnt) -> action.add(SENSITIVE_WORD_CNT_PREFIX, word, (connection, k, v) -> connection.hIncrBy(k, v, cnt)));
+            action.execute();
+            flushCount.incrementAndGet();
+        } catch (Exception e) {
+            // 写入失败时把增量放回，下一轮再试
+            flushFailures.increment();
+            deltas.forEach((word, cnt) -> hitBuffer.computeIfAbsent(word, k -> new LongAdder()).add(cnt));
+            log.error("flush sensitive word hits error! size: {}", deltas.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushHits();
+    }
 
     /**
      * 返回已命中的敏感词
@@ -97,6 +190,7 @@ public class SensitiveService {
      * @param word
      */
     public void removeSensitiveWord(String word) {
+        hitBuffer.remove(word);
         RedisClient.hDel(SENSITIVE_WORD_CNT_PREFIX, word);
     }
 
@@ -104,13 +198,21 @@ public class SensitiveService {
      * 敏感词替换
      *
      * @param txt
-     * @return
+     * @return 不包含敏感词时，返回原文本对象
      */
     public String replace(String txt) {
-        if (BooleanUtils.isTrue(sensitiveConfig.getEnable())) {
-            return sensitiveWordBs.replace(txt);
+        if (!enabled() || txt == null || txt.isEmpty()) {
+            return txt;
         }
-        return txt;
+
+        Dictionary dict = dictionary;
+        TextKey key = new TextKey(dict.version(), txt.length(), Hashing.murmur3_128().hashUnencodedChars(txt));
+        Replaced replaced = replaceCache.get(key, k -> {
+            scans.increment();
+            String ans = dict.bs().replace(txt);
+            return new Replaced(txt.equals(ans) ? null : ans);
+        });
+        return replaced.txt() == null ? txt : replaced.txt();
     }
 
     /**
@@ -120,6 +222,42 @@ public class SensitiveService {
      * @return 命中的敏感词
      */
     public List<String> findAll(String txt) {
-        return sensitiveWordBs.findAll(txt);
+        return dictionary.bs().findAll(txt);
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats cacheStats = replaceCache.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", dictionary.version());
+        stats.put("lastBuildCostMs", lastBuildCost.get());
+        stats.put("scans", scans.sum());
+        stats.put("cached", replaceCache.estimatedSize());
+        stats.put("cacheHitRate", cacheStats.hitRate());
+        stats.put("cacheEvictions", cacheStats.evictionCount());
+        stats.put("bufferedHits", hitBuffer.values().stream().mapToLong(LongAdder::sum).sum());
+        stats.put("flushCount", flushCount.get());
+        stats.put("flushFailures", flushFailures.sum());
+        return stats;
+    }
+
+    /**
+     * 编译好的词库
+     *
+     * @param version 词库版本，每次重新编译后递增
+     * @param bs      词库
+     */
+    private record Dictionary(long version, SensitiveWordBs bs) {
+    }
+
+    /**
+     * 替换结果的缓存key，使用128位摘要代替原文，避免缓存持有大文本
+     */
+    private record TextKey(long version, int length, HashCode hash) {
+    }
+
+    /**
+     * @param txt 替换后的文本，null 表示不包含敏感词
+     */
+    private record Replaced(String txt) {
     }
 }
@@ -51,7 +51,7 @@ public class SensitiveReadInterceptor implements Interceptor {
     public Object intercept(Invocation invocation) throws Throwable {
         final List<Object> results = (List<Object>) invocation.proceed();
 
-        if (results.isEmpty()) {
+        if (results.isEmpty() || !sensitiveService.enabled()) {
             return results;
         }
 
@@ -66,6 +66,10 @@ public class SensitiveReadInterceptor implements Interceptor {
         Object firstObject = firstOpt.get();
         // 找到需要进行敏感词替换的数据库实体类的成员信息
         SensitiveObjectMeta sensitiveObjectMeta = findSensitiveObjectMeta(firstObject);
+        if (!Boolean.TRUE.equals(sensitiveObjectMeta.getEnabledSensitiveReplace())) {
+            // 没有标注敏感词的成员，不需要逐个对象处理
+            return results;
+        }
 
         // 执行替换的敏感词替换
         replaceSensitiveResults(results, mappedStatement, sensitiveObjectMeta);
@@ -92,8 +96,11 @@ public class SensitiveReadInterceptor implements Interceptor {
                     return;
                 } else if (value instanceof String) {
                     String strValue = (String) value;
+                    // 相同的文本命中替换结果缓存，不包含敏感词时返回原对象，非绑定字段无需回写
                     String processVal = sensitiveService.replace(strValue);
-                    objMetaObject.setValue(i.getName(), processVal);
+                    if (processVal != strValue || StringUtils.isNotBlank(i.getBindField())) {
+                        objMetaObject.setValue(i.getName(), processVal);
+                    }
                 } else if (value instanceof Collection) {
                     Collection listValue = (Collection) value;
                     if (CollectionUtils.isNotEmpty(listValue)) {
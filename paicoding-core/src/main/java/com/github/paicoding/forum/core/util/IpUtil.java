@@ -1,6 +1,7 @@
 package com.github.paicoding.forum.core.util;
 
-import com.github.hui.quick.plugin.base.file.FileWriteUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.paicoding.forum.core.region.IpRegionInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ObjectUtils;
@@ -8,8 +9,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.lionsoul.ip2region.xdb.Searcher;
 
 import jakarta.servlet.http.HttpServletRequest;
-import java.io.File;
-import java.io.IOException;
+import java.io.InputStream;
 import java.net.*;
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -172,60 +172,67 @@ public class IpUtil {
      * <a href="https://github.com/lionsoul2014/ip2region/tree/master/binding/java"/>
      */
     private static final String dbPath = "data/ip2region.xdb";
-    private static String tmpPath = null;
-    private static volatile byte[] vIndex = null;
 
-    private static void initVIndex() {
-        if (vIndex == null) {
+    /**
+     * 基于内存的查询对象，整个ip库一次性加载到内存中，不再持有文件句柄，线程安全，全局共享一个实例即可
+     */
+    private static volatile Searcher searcher = null;
+
+    /**
+     * ip -> 区域信息 的本地缓存，登录、会话校验等场景同一个ip会被频繁查询
+     */
+    private static final Cache<String, IpRegionInfo> REGION_CACHE = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    private static Searcher getSearcher() {
+        if (searcher == null) {
             synchronized (IpUtil.class) {
-                if (vIndex == null) {
-                    try {
-                        String file = IpUtil.class.getClassLoader().getResource(dbPath).getFile();
-                        if (file.contains(".jar!")) {
-                            // RandomAccessFile 无法加载jar包内的文件，因此我们将资源拷贝到临时目录下
-                            FileWriteUtil.FileInfo tmpFile = new FileWriteUtil.FileInfo("/tmp/data", "ip2region", "xdb");
-                            tmpPath = tmpFile.getAbsFile();
-                            if (!new File(tmpPath).exists()) {
-                                // fixme 如果已经存在，则无需继续拷贝，因此当ip库变更之后，需要手动去删除 临时目录下生成的文件，避免出现更新不生效；更好的方式则是比较两个文件的差异性；当不同时，也需要拷贝过去
-                                FileWriteUtil.saveFileByStream(IpUtil.class.getClassLoader().getResourceAsStream(dbPath), tmpFile);
-                            }
-                        } else {
-                            tmpPath = file;
+                if (searcher == null) {
+                    // 直接从classpath读取字节，jar包内的资源也无需再拷贝到临时目录
+                    try (InputStream stream = IpUtil.class.getClassLoader().getResourceAsStream(dbPath)) {
+                        if (stream == null) {
+                            log.error("ip2region db not found: {}", dbPath);
+                            return null;
                         }
-                        vIndex = Searcher.loadVectorIndexFromFile(tmpPath);
+                        searcher = Searcher.newWithBuffer(stream.readAllBytes());
                     } catch (Exception e) {
-                        log.error("failed to load vector index from {}\n", dbPath, e);
+                        log.error("failed to load ip2region db from {}\n", dbPath, e);
                     }
                 }
             }
         }
+        return searcher;
     }
 
     /**
      * 根据ip查询对应的地址: 国家|区域|省份|城市|ISP
      * 若对应的位置不存在值，则为0
+     * <p>
+     * 返回的对象会被缓存共享，调用方不要修改
      *
      * @param ip
      * @return
      */
     public static IpRegionInfo getLocationByIp(String ip) {
-        // 2、使用全局的 vIndex 创建带 VectorIndex 缓存的查询对象。
-        initVIndex();
-        Searcher searcher = null;
+        if (StringUtils.isBlank(ip)) {
+            return new IpRegionInfo("");
+        }
+
+        IpRegionInfo info = REGION_CACHE.getIfPresent(ip);
+        if (info != null) {
+            return info;
+        }
+
+        Searcher current = getSearcher();
+        if (current == null) {
+            return new IpRegionInfo("");
+        }
         try {
-            searcher = Searcher.newWithVectorIndex(tmpPath, vIndex);
-            return new IpRegionInfo(searcher.search(ip));
+            info = new IpRegionInfo(current.search(ip));
+            REGION_CACHE.put(ip, info);
+            return info;
         } catch (Exception e) {
-            log.error("failed to create vectorIndex cached searcher with {}: {}\n", dbPath, e);
+            log.error("failed to search ip {} with {}: {}\n", ip, dbPath, e);
             return new IpRegionInfo("");
-        } finally {
-            if (searcher != null) {
-                try {
-                    searcher.close();
-                } catch (IOException e) {
-                    log.error("failed to close file:{}\n", dbPath, e);
-                }
-            }
         }
     }
 }
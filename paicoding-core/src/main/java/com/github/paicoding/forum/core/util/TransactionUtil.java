@@ -1,8 +1,14 @@
 package com.github.paicoding.forum.core.util;
 
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+
 /**
  * 事务辅助工具类
  *
@@ -82,4 +88,22 @@ public class TransactionUtil {
             runnable.run();
         }
     }
+
+    /**
+     * 是否为db的瞬时故障：获取连接失败(CannotGetJdbcConnectionException)、锁等待超时、死锁等，稍后重试可能成功；
+     * 与数据本身不合法(如 DataIntegrityViolationException)等重试也无法成功的错误区分开。会沿着异常链查找，可直接传入包装后的异常
+     *
+     * @param e
+     * @return
+     */
+    public static boolean isTransientFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -1,9 +1,17 @@
 package com.github.paicoding.forum.core.util.id;
 
 import com.github.paicoding.forum.core.async.AsyncUtil;
+import com.github.paicoding.forum.core.config.SnowflakeProperties;
 import com.github.paicoding.forum.core.util.CompressUtil;
+import com.github.paicoding.forum.core.util.IpUtil;
+import com.github.paicoding.forum.core.util.id.snowflake.IdGenerator;
+import com.github.paicoding.forum.core.util.id.snowflake.LockFreeSnowflakeIdGenerator;
 import com.github.paicoding.forum.core.util.id.snowflake.PaiSnowflakeIdGenerator;
 import com.github.paicoding.forum.core.util.id.snowflake.SnowflakeProducer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.List;
 
 import static com.github.paicoding.forum.core.util.CompressUtil.int2str;
 
@@ -11,11 +19,59 @@ import static com.github.paicoding.forum.core.util.CompressUtil.int2str;
  * @author XuYifei
  * @date 2024-07-12
  */
+@Slf4j
 public class IdUtil {
+    public static final String MODE_LOCK_FREE = "lock-free";
+
+    /**
+     * 默认的id生成器，未通过 {@link #init(SnowflakeProperties)} 指定时，首次使用才创建
+     */
+    private static volatile IdGenerator DEFAULT_ID_GENERATOR;
+
     /**
-     * 默认的id生成器
+     * 根据配置初始化全局id生成器
+     *
+     * @param properties
      */
-    public static SnowflakeProducer DEFAULT_ID_PRODUCER = new SnowflakeProducer(new PaiSnowflakeIdGenerator());
+    public static synchronized void init(SnowflakeProperties properties) {
+        if (!MODE_LOCK_FREE.equalsIgnoreCase(properties.getMode())) {
+            if (properties.getWorkerId() == null || properties.getDataCenter() == null) {
+                DEFAULT_ID_GENERATOR = new SnowflakeProducer(new PaiSnowflakeIdGenerator());
+            } else {
+                DEFAULT_ID_GENERATOR = new SnowflakeProducer(new PaiSnowflakeIdGenerator(properties.getWorkerId(), properties.getDataCenter()));
+            }
+            return;
+        }
+
+        long workerId, dataCenter;
+        if (properties.getWorkerId() != null && properties.getDataCenter() != null) {
+            workerId = properties.getWorkerId();
+            dataCenter = properties.getDataCenter();
+        } else {
+            // 未配置时根据本机ip推算：首段作为数据中心，末段作为机器id
+            try {
+                String[] cells = StringUtils.split(IpUtil.getLocalIp4Address(), ".");
+                dataCenter = properties.getDataCenter() != null ? properties.getDataCenter() : Integer.parseInt(cells[0]) & LockFreeSnowflakeIdGenerator.MAX_DATA_CENTER;
+                workerId = properties.getWorkerId() != null ? properties.getWorkerId() : Integer.parseInt(cells[3]) & LockFreeSnowflakeIdGenerator.MAX_WORKER_ID;
+            } catch (Exception e) {
+                dataCenter = properties.getDataCenter() != null ? properties.getDataCenter() : 1;
+                workerId = properties.getWorkerId() != null ? properties.getWorkerId() : 1;
+            }
+        }
+        DEFAULT_ID_GENERATOR = new LockFreeSnowflakeIdGenerator(workerId, dataCenter);
+        log.info("use lock-free snowflake id generator, dataCenter: {}, workerId: {}", dataCenter, workerId);
+    }
+
+    private static IdGenerator generator() {
+        if (DEFAULT_ID_GENERATOR == null) {
+            synchronized (IdUtil.class) {
+                if (DEFAULT_ID_GENERATOR == null) {
+                    DEFAULT_ID_GENERATOR = new SnowflakeProducer(new PaiSnowflakeIdGenerator());
+                }
+            }
+        }
+        return DEFAULT_ID_GENERATOR;
+    }
 
     /**
      * 生成全局id
@@ -23,7 +79,17 @@ public class IdUtil {
      * @return
      */
     public static Long genId() {
-        return DEFAULT_ID_PRODUCER.genId();
+        return generator().nextId();
+    }
+
+    /**
+     * 批量生成全局id
+     *
+     * @param n 数量
+     * @return
+     */
+    public static List<Long> genIds(int n) {
+        return generator().nextIds(n);
     }
 
     /**
@@ -1,5 +1,8 @@
 package com.github.paicoding.forum.core.util.id.snowflake;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author XuYifei
  * @date 2024-07-12
@@ -11,4 +14,18 @@ public interface IdGenerator {
      * @return
      */
     Long nextId();
+
+    /**
+     * 批量生成分布式id
+     *
+     * @param n 数量
+     * @return
+     */
+    default List<Long> nextIds(int n) {
+        List<Long> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ids.add(nextId());
+        }
+        return ids;
+    }
 }
@@ -0,0 +1,119 @@
+package com.github.paicoding.forum.core.util.id.snowflake;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁的雪花算法生成器
+ * <p>
+ * 时间(毫秒, 41位) + 数据中心(3位) + 机器id(7位) + 序列号(12位)
+ * <p>
+ * 时间戳与序列号合并成一个状态字，通过 CAS 推进，不需要加锁；单节点每毫秒最多 4096 个id。
+ * 当出现时钟回拨时，沿用上次的时间戳继续自增序列号，直到系统时间追上来，保证id不重复且单调递增
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+public class LockFreeSnowflakeIdGenerator implements IdGenerator {
+    /**
+     * 起始时间 2024-01-01 00:00:00 (GMT+8)
+     */
+    private static final long EPOCH = 1704038400000L;
+
+    private static final long SEQUENCE_BITS = 12L;
+    private static final long WORKER_ID_BITS = 7L;
+    private static final long DATA_CENTER_BITS = 3L;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    public static final long MAX_DATA_CENTER = (1L << DATA_CENTER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final long WORKER_ID_LEFT_SHIFT_BITS = SEQUENCE_BITS;
+    private static final long DATACENTER_LEFT_SHIFT_BITS = SEQUENCE_BITS + WORKER_ID_BITS;
+    private static final long TIMESTAMP_LEFT_SHIFT_BITS = DATACENTER_LEFT_SHIFT_BITS + DATA_CENTER_BITS;
+
+    /**
+     * 数据中心 + 机器id，生成id时直接或上去
+     */
+    private final long node;
+
+    /**
+     * 状态字: (距EPOCH的毫秒数 << SEQUENCE_BITS) | 最近一次分配出去的序列号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public LockFreeSnowflakeIdGenerator(long workId, long dataCenter) {
+        if (workId < 0 || workId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workId must between 0 and " + MAX_WORKER_ID + ", but got " + workId);
+        }
+        if (dataCenter < 0 || dataCenter > MAX_DATA_CENTER) {
+            throw new IllegalArgumentException("dataCenter must between 0 and " + MAX_DATA_CENTER + ", but got " + dataCenter);
+        }
+        this.node = (dataCenter << DATACENTER_LEFT_SHIFT_BITS) | (workId << WORKER_ID_LEFT_SHIFT_BITS);
+    }
+
+    @Override
+    public Long nextId() {
+        while (true) {
+            long cur = state.get();
+            long next = nextState(cur);
+            if (next < 0) {
+                // 当前毫秒的序列号已用完，自旋等待下一毫秒
+                Thread.onSpinWait();
+                continue;
+            }
+            if (state.compareAndSet(cur, next)) {
+                return toId(next);
+            }
+        }
+    }
+
+    /**
+     * 批量生成id，一次 CAS 预占同一毫秒内的一段连续序列号
+     *
+     * @param n 数量
+     * @return 单调递增的id列表
+     */
+    @Override
+    public List<Long> nextIds(int n) {
+        List<Long> ids = new ArrayList<>(n);
+        while (ids.size() < n) {
+            long cur = state.get();
+            long first = nextState(cur);
+            if (first < 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long last = first + Math.min(n - ids.size() - 1, SEQUENCE_MASK - (first & SEQUENCE_MASK));
+            if (state.compareAndSet(cur, last)) {
+                for (long s = first; s <= last; s++) {
+                    ids.add(toId(s));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 计算下一个状态字
+     *
+     * @param cur 当前状态字
+     * @return 下一个状态字；返回 -1 表示当前毫秒内的序列号已经用完
+     */
+    private long nextState(long cur) {
+        long now = System.currentTimeMillis() - EPOCH;
+        if (now > (cur >>> SEQUENCE_BITS)) {
+            return now << SEQUENCE_BITS;
+        }
+        // 同一毫秒内，或者时钟回拨时沿用上次的时间戳
+        if ((cur & SEQUENCE_MASK) == SEQUENCE_MASK) {
+            return -1;
+        }
+        return cur + 1;
+    }
+
+    private long toId(long state) {
+        return ((state >>> SEQUENCE_BITS) << TIMESTAMP_LEFT_SHIFT_BITS) | node | (state & SEQUENCE_MASK);
+    }
+}
@@ -16,7 +16,7 @@ import java.util.concurrent.TimeUnit;
  * @date 2024-07-12
  */
 @Slf4j
-public class SnowflakeProducer {
+public class SnowflakeProducer implements IdGenerator {
     private BlockingQueue<Long> queue;
 
     /**
@@ -68,4 +68,9 @@ public class SnowflakeProducer {
             throw new RuntimeException("雪花算法生成id异常!", e);
         }
     }
+
+    @Override
+    public Long nextId() {
+        return genId();
+    }
 }
@@ -2,17 +2,37 @@ package com.github.paicoding.forum.service.article.cache;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.paicoding.forum.api.model.enums.ArticleEventEnum;
+import com.github.paicoding.forum.api.model.event.ArticleMsgEvent;
 import com.github.paicoding.forum.api.model.vo.article.dto.ArticleDTO;
 import com.github.paicoding.forum.api.model.vo.comment.dto.TopCommentDTO;
 import com.github.paicoding.forum.api.model.vo.recommend.SideBarDTO;
 import com.github.paicoding.forum.core.cache.RedisClient;
 import com.github.paicoding.forum.core.config.ArticleCacheProperties;
+import com.github.paicoding.forum.service.article.repository.entity.ArticleDO;
 import com.github.paicoding.forum.service.article.repository.entity.ColumnArticleDO;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * @program: pai_coding
@@ -20,14 +40,17 @@ import java.util.List;
  * @author: XuYifei
  * @create: 2024-10-24
  */
-
+@Slf4j
 @Component
 @EnableConfigurationProperties(ArticleCacheProperties.class)
-public class ArticleCacheManager {
+public class ArticleCacheManager implements MessageListener {
 
     @Autowired
     private ArticleCacheProperties articleCacheProperties;
 
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
     public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     public static final String ARTICLE_SCORE_PREFIX = "article_score:";
@@ -42,6 +65,71 @@ public class ArticleCacheManager {
 
     public static final String ARTICLE_HOT_COMMENT_PREFIX = "article_hot_comment:";
 
+    /**
+     * 本地缓存失效通知的频道，消息内容为文章id
+     */
+    public static final String ARTICLE_CACHE_EVICT_CHANNEL = "pai_article_cache_evict";
+
+    /**
+     * 一级缓存：进程内的本地缓存，按内容大小计算权重；二级缓存：redis
+     */
+    private Cache<String, Object> localCache;
+
+    private final LongAdder redisHit = new LongAdder();
+
+    private final LongAdder redisMiss = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumWeight(articleCacheProperties.getLocalMaximumWeight())
+                .weigher((String key, Object value) -> weigh(value))
+                .expireAfterWrite(articleCacheProperties.getLocalExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(ARTICLE_CACHE_EVICT_CHANNEL));
+    }
+
+    /**
+     * 按照缓存内容的字符数来估算权重，避免长文章把本地缓存撑爆
+     *
+     * @param value
+     * @return
+     */
+    private static int weigh(Object value) {
+        if (value instanceof ArticleDTO article) {
+            int len = 256 + (article.getContent() == null ? 0 : article.getContent().length());
+            return article.getSummary() == null ? len : len + article.getSummary().length();
+        } else if (value instanceof TopCommentDTO comment) {
+            return 256 + (comment.getCommentContent() == null ? 0 : comment.getCommentContent().length());
+        }
+        return 256;
+    }
+
+    /**
+     * 先查本地缓存，未命中时再查redis，并回填本地缓存
+     *
+     * @param key    缓存key
+     * @param loader 从redis中加载的逻辑
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T getWithLocal(String key, Supplier<T> loader) {
+        Object value = localCache.getIfPresent(key);
+        if (value != null) {
+            return (T) value;
+        }
+
+        T ans = loader.get();
+        if (ans == null) {
+            redisMiss.increment();
+            return null;
+        }
+        redisHit.increment();
+        localCache.put(key, ans);
+        return ans;
+    }
+
 
     /**
      * 获取文章的评分
@@ -65,22 +153,36 @@ public class ArticleCacheManager {
     }
 
     public boolean isArticleColumnArticleExist(long articleId){
+        if (localCache.getIfPresent(ARTICLE_COLUMN_RELATION_PREFIX + articleId) != null) {
+            return true;
+        }
         return RedisClient.exists(ARTICLE_COLUMN_RELATION_PREFIX + articleId);
     }
 
     public void setColumnArticle(long articleId, ColumnArticleDO columnArticleDO){
         RedisClient.setObject(ARTICLE_COLUMN_RELATION_PREFIX + articleId, columnArticleDO);
+        if (columnArticleDO != null) {
+            localCache.put(ARTICLE_COLUMN_RELATION_PREFIX + articleId, columnArticleDO);
+        }
     }
 
     public ColumnArticleDO getColumnArticle(long articleId) {
-        Object value = RedisClient.getObject(ARTICLE_COLUMN_RELATION_PREFIX + articleId);
-        if(value != null){
-            return OBJECT_MAPPER.convertValue(value, ColumnArticleDO.class);
-        }
-        return null;
+        return getWithLocal(ARTICLE_COLUMN_RELATION_PREFIX + articleId, () -> {
+            Object value = RedisClient.getObject(ARTICLE_COLUMN_RELATION_PREFIX + articleId);
+            if (value != null) {
+                return OBJECT_MAPPER.convertValue(value, ColumnArticleDO.class);
+            }
+            return null;
+        });
     }
 
 
+    /**
+     * 获取文章详情缓存；本地缓存中的对象是共享的，调用方会修改点赞、计数等字段，因此这里返回一个浅拷贝
+     *
+     * @param articleId
+     * @return
+     */
     public ArticleDTO getArticleInfo(long articleId) {
 //        String str = RedisClient.getStr(ARTICLE_INFO_PREFIX + articleId);
 //        try {
@@ -88,15 +190,25 @@ public class ArticleCacheManager {
 //        } catch (JsonProcessingException e) {
 //            throw new RuntimeException(e);
 //        }
-        Object value = RedisClient.getObject(ARTICLE_INFO_PREFIX + articleId);
-        if(value != null){
-            return OBJECT_MAPPER.convertValue(value, ArticleDTO.class);
-        }
-        return null;
+        ArticleDTO article = getWithLocal(ARTICLE_INFO_PREFIX + articleId, () -> {
+            Object value = RedisClient.getObject(ARTICLE_INFO_PREFIX + articleId);
+            if (value != null) {
+                return OBJECT_MAPPER.convertValue(value, ArticleDTO.class);
+            }
+            return null;
+        });
+        return article == null ? null : copyOf(article);
+    }
+
+    private ArticleDTO copyOf(ArticleDTO source) {
+        ArticleDTO target = new ArticleDTO();
+        BeanUtils.copyProperties(source, target);
+        return target;
     }
 
     public void setArticleInfo(long articleId, ArticleDTO articleDTO){
         RedisClient.setObject(ARTICLE_INFO_PREFIX + articleId, articleDTO);
+        localCache.put(ARTICLE_INFO_PREFIX + articleId, copyOf(articleDTO));
 //        try {
 //            RedisClient.setStr(ARTICLE_INFO_PREFIX + articleId, OBJECT_MAPPER.writeValueAsString(articleDTO));
 //        } catch (JsonProcessingException e) {
@@ -111,9 +223,20 @@ public class ArticleCacheManager {
      * @throws JsonProcessingException
      */
     public TopCommentDTO getHotComment(long articleId) throws JsonProcessingException {
-        String hotCommentStr = RedisClient.getStr(ARTICLE_HOT_COMMENT_PREFIX + articleId);
+        Object value = localCache.getIfPresent(ARTICLE_HOT_COMMENT_PREFIX + articleId);
+        if (value != null) {
+            return (TopCommentDTO) value;
+        }
 
-        return OBJECT_MAPPER.readValue(hotCommentStr, TopCommentDTO.class);
+        String hotCommentStr = RedisClient.getStr(ARTICLE_HOT_COMMENT_PREFIX + articleId);
+        if (hotCommentStr == null) {
+            redisMiss.increment();
+            return null;
+        }
+        redisHit.increment();
+        TopCommentDTO hotComment = OBJECT_MAPPER.readValue(hotCommentStr, TopCommentDTO.class);
+        localCache.put(ARTICLE_HOT_COMMENT_PREFIX + articleId, hotComment);
+        return hotComment;
     }
 
     /**
@@ -124,6 +247,9 @@ public class ArticleCacheManager {
      */
     public void setHotComment(long articleId, TopCommentDTO hotComment) throws JsonProcessingException {
         RedisClient.setStr(ARTICLE_HOT_COMMENT_PREFIX + articleId, OBJECT_MAPPER.writeValueAsString(hotComment));
+        // 热评变更后，通知其他节点丢弃旧值
+        evictLocal(articleId);
+        RedisClient.publish(ARTICLE_CACHE_EVICT_CHANNEL, String.valueOf(articleId));
     }
 
     /**
@@ -162,6 +288,63 @@ public class ArticleCacheManager {
      */
     public void delArticleInfo(long articleId) {
         RedisClient.delObject(ARTICLE_INFO_PREFIX + articleId);
+        evictLocal(articleId);
+        // 广播给其他节点，丢弃它们本地缓存中的旧数据
+        RedisClient.publish(ARTICLE_CACHE_EVICT_CHANNEL, String.valueOf(articleId));
+    }
+
+    /**
+     * 文章上线、下线、删除等状态变更时，缓存中的文章信息随之失效
+     *
+     * @param event
+     */
+    @EventListener(ArticleMsgEvent.class)
+    public void articleChangeListener(ArticleMsgEvent<ArticleDO> event) {
+        ArticleEventEnum type = event.getType();
+        if (type == ArticleEventEnum.CREATE || event.getContent() == null || event.getContent().getId() == null) {
+            return;
+        }
+        delArticleInfo(event.getContent().getId());
+    }
+
+    /**
+     * 接收其他节点广播的失效通知
+     *
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            evictLocal(Long.parseLong(body));
+        } catch (NumberFormatException e) {
+            log.warn("illegal article cache evict message: {}", body);
+        }
+    }
+
+    private void evictLocal(long articleId) {
+        localCache.invalidateAll(List.of(ARTICLE_INFO_PREFIX + articleId,
+                ARTICLE_CONTENT_PREFIX + articleId,
+                ARTICLE_COLUMN_RELATION_PREFIX + articleId,
+                ARTICLE_HOT_COMMENT_PREFIX + articleId));
+    }
+
+    /**
+     * 两级缓存的命中统计
+     *
+     * @return
+     */
+    public Map<String, Object> cacheStats() {
+        CacheStats local = localCache.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localHit", local.hitCount());
+        stats.put("localMiss", local.missCount());
+        stats.put("localEviction", local.evictionCount());
+        stats.put("localSize", localCache.estimatedSize());
+        stats.put("redisHit", redisHit.sum());
+        stats.put("redisMiss", redisMiss.sum());
+        return stats;
     }
 
 }
@@ -0,0 +1,306 @@
+package com.github.paicoding.forum.service.article.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.paicoding.forum.api.model.enums.ArticleEventEnum;
+import com.github.paicoding.forum.api.model.enums.PushStatusEnum;
+import com.github.paicoding.forum.api.model.enums.YesOrNoEnum;
+import com.github.paicoding.forum.api.model.event.ArticleMsgEvent;
+import com.github.paicoding.forum.core.cache.RedisClient;
+import com.github.paicoding.forum.service.article.repository.dao.ArticleDao;
+import com.github.paicoding.forum.service.article.repository.dao.ArticleTagDao;
+import com.github.paicoding.forum.service.article.repository.entity.ArticleDO;
+import com.github.paicoding.forum.service.article.repository.entity.ArticleTagDO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 分类、标签下已上线文章数的索引
+ * <p>
+ * 1. redis中维护每篇已上线文章的归属(分类 + 标签)，以及按分类、按标签的文章数；多个节点共享同一份计数
+ * 2. 文章上线、下线、删除、转审核时，重新读取这篇文章的归属，由lua脚本对比新旧归属后原子地调整计数，重复的事件不会重复计数
+ * 3. 定时从db全量重建，修复事务回滚、事件丢失等原因导致的偏差
+ * 4. 查询时读取本地短时间缓存的计数快照，分类列表、分页总数都不再执行 group by / count 聚合
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+@Component
+public class ArticleCountIndex {
+    /**
+     * 已上线文章的归属 articleId -> "categoryId:tagId1,tagId2"
+     */
+    private static final String MEMBER_KEY = "article_cnt_member";
+
+    /**
+     * 分类 -> 已上线文章数；字段 0 为所有已上线文章数
+     */
+    private static final String CATEGORY_KEY = "article_cnt_category";
+
+    /**
+     * 标签 -> 已上线文章数
+     */
+    private static final String TAG_KEY = "article_cnt_tag";
+
+    /**
+     * 全量重建时先写入的临时key后缀，写完后整体替换
+     */
+    private static final String REBUILD_SUFFIX = "_rebuild";
+
+    private static final Long TOTAL = 0L;
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private static final RedisScript<Long> INDEX_SCRIPT = RedisScript.of(new ClassPathResource("lua/article_count_index.lua"), Long.class);
+
+    /**
+     * 本地计数快照的有效期，秒；其他节点上的变更最多延迟这么久可见
+     */
+    @Value("${paicoding.article-count.local-seconds:5}")
+    private long localSeconds;
+
+    @Resource
+    private ArticleDao articleDao;
+
+    @Resource
+    private ArticleTagDao articleTagDao;
+
+    /**
+     * key: CATEGORY_KEY / TAG_KEY, value: id -> 文章数
+     */
+    private LoadingCache<String, Map<Long, Long>> snapshot;
+
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicLong rebuildCount = new AtomicLong();
+    private final AtomicLong lastRebuildCost = new AtomicLong();
+    private final AtomicLong lastRebuildDrift = new AtomicLong();
+    private final AtomicLong lastRebuildTime = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        snapshot = Caffeine.newBuilder().expireAfterWrite(localSeconds, TimeUnit.SECONDS).build(this::load);
+    }
+
+    private Map<Long, Long> load(String key) {
+        Map<Long, Long> counts = read(key);
+        if (counts.isEmpty() && Boolean.FALSE.equals(RedisClient.exists(MEMBER_KEY))) {
+            // 索引还没有建立（首次启动或者redis数据丢失），先全量构建一次
+            doRebuild();
+            counts = read(key);
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    private Map<Long, Long> read(String key) {
+        Map<String, String> cache = RedisClient.hGetAll(key, String.class);
+        Map<Long, Long> counts = new HashMap<>(cache.size());
+        cache.forEach((id, cnt) -> {
+            long val = NumberUtils.toLong(cnt);
+            if (val > 0) {
+                counts.put(Long.valueOf(id), val);
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * @return key: 分类id, value: 已上线文章数；不包含文章数为0的分类
+     */
+    public Map<Long, Long> categoryCounts() {
+        Map<Long, Long> counts = new HashMap<>(snapshot.get(CATEGORY_KEY));
+        counts.remove(TOTAL);
+        return counts;
+    }
+
+    /**
+     * @param categoryId 分类id，为空或者不大于0时返回所有已上线文章数
+     * @return
+     */
+    public long categoryCount(Long categoryId) {
+        Long key = categoryId == null || categoryId <= 0 ? TOTAL : categoryId;
+        return snapshot.get(CATEGORY_KEY).getOrDefault(key, 0L);
+    }
+
+    /**
+     * @param tagId 标签id，为空或者不大于0时返回所有已上线文章数
+     * @return
+     */
+    public long tagCount(Long tagId) {
+        if (tagId == null || tagId <= 0) {
+            return categoryCount(null);
+        }
+        return snapshot.get(TAG_KEY).getOrDefault(tagId, 0L);
+    }
+
+    /**
+     * 文章状态变化时，更新这篇文章对计数的贡献
+     *
+     * @param event
+     */
+    @EventListener(ArticleMsgEvent.class)
+    public void articleChangeListener(ArticleMsgEvent<ArticleDO> event) {
+        ArticleEventEnum type = event.getType();
+        if (type == ArticleEventEnum.CREATE || event.getContent() == null || event.getContent().getId() == null) {
+            // 创建后紧接着会发布上线或待审核事件
+            return;
+        }
+        refresh(event.getContent().getId());
+    }
+
+    /**
+     * 重新读取文章的归属并更新计数；失败时只记录，由定时重建修复
+     *
+     * @param articleId
+     */
+    public void refresh(Long articleId) {
+        try {
+            ArticleDO article = articleDao.getById(articleId);
+            String member = "";
+            if (article != null && Objects.equals(article.getStatus(), PushStatusEnum.ONLINE.getCode())
+                    && Objects.equals(article.getDeleted(), YesOrNoEnum.NO.getCode())) {
+                List<Long> tags = articleTagDao.listArticleTags(articleId).stream().map(ArticleTagDO::getTagId).toList();
+                member = member(article.getCategoryId(), tags);
+            }
+
+            Long ans = RedisClient.evalLong(INDEX_SCRIPT, Arrays.asList(MEMBER_KEY, CATEGORY_KEY, TAG_KEY),
+                    Arrays.asList(String.valueOf(articleId), member));
+            if (ans != null && ans > 0) {
+                applied.increment();
+                // 当前节点的变更立即可见，其他节点等待本地快照过期
+                snapshot.invalidateAll();
+            } else {
+                unchanged.increment();
+            }
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("refresh article count index error! articleId: {}", articleId, e);
+        }
+    }
+
+    private String member(Long categoryId, List<Long> tags) {
+        return (categoryId == null ? 0 : categoryId) + ":" + tags.stream().distinct().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    /**
+     * 定时从db全量重建索引，默认每10分钟一次
+     * <p>
+     * 重建结果先写入临时key，再通过 rename 整体替换，查询期间不会读到写了一半的计数；
+     * 重建期间发生的少量增量更新可能被覆盖，由下一次重建修复
+     */
+    @Scheduled(initialDelayString = "${paicoding.article-count.reconcile-interval:600000}",
+            fixedDelayString = "${paicoding.article-count.reconcile-interval:600000}")
+    public void rebuild() {
+        doRebuild();
+        snapshot.invalidateAll();
+    }
+
+    private synchronized void doRebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            List<ArticleDO> articles = articleDao.lambdaQuery()
+                    .select(ArticleDO::getId, ArticleDO::getCategoryId)
+                    .eq(ArticleDO::getStatus, PushStatusEnum.ONLINE.getCode())
+                    .eq(ArticleDO::getDeleted, YesOrNoEnum.NO.getCode())
+                    .list();
+            Map<Long, List<Long>> articleTags = articleTagDao.listOnlineArticleTags();
+
+            Map<String, String> members = new HashMap<>(articles.size());
+            Map<String, Long> categories = new HashMap<>();
+            Map<String, Long> tags = new HashMap<>();
+            for (ArticleDO article : articles) {
+                List<Long> tagIds = articleTags.getOrDefault(article.getId(), Collections.emptyList());
+                String member = member(article.getCategoryId(), tagIds);
+                members.put(String.valueOf(article.getId()), member);
+                if (article.getCategoryId() != null && article.getCategoryId() > 0) {
+                    categories.merge(String.valueOf(article.getCategoryId()), 1L, Long::sum);
+                }
+                tagIds.stream().distinct().forEach(tag -> tags.merge(String.valueOf(tag), 1L, Long::sum));
+            }
+            categories.put(String.valueOf(TOTAL), (long) articles.size());
+
+            lastRebuildDrift.set(drift(categories, tags));
+            RedisClient.PipelineAction action = RedisClient.pipelineAction();
+            replace(action, MEMBER_KEY, members);
+            replace(action, CATEGORY_KEY, categories);
+            replace(action, TAG_KEY, tags);
+            action.execute();
+
+            rebuildCount.incrementAndGet();
+            lastRebuildTime.set(System.currentTimeMillis());
+            log.info("article count index rebuilt, articles: {}, categories: {}, tags: {}, drift: {}",
+                    articles.size(), categories.size() - 1, tags.size(), lastRebuildDrift.get());
+        } catch (Exception e) {
+            failures.increment();
+            log.error("rebuild article count index error!", e);
+        } finally {
+            lastRebuildCost.set(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * @return 重建前redis中的计数与db中实际计数不一致的分类、标签数
+     */
+    private long drift(Map<String, Long> categories, Map<String, Long> tags) {
+        return drift(CATEGORY_KEY, categories) + drift(TAG_KEY, tags);
+    }
+
+    private long drift(String key, Map<String, Long> expect) {
+        Map<Long, Long> actual = read(key);
+        long drift = expect.entrySet().stream().filter(e -> !Objects.equals(actual.get(Long.valueOf(e.getKey())), e.getValue())).count();
+        return drift + actual.keySet().stream().filter(id -> !expect.containsKey(String.valueOf(id))).count();
+    }
+
+    private <T> void replace(RedisClient.PipelineAction action, String key, Map<String, T> values) {
+        String tmp = key + REBUILD_SUFFIX;
+        action.add(tmp, (connection, k) -> connection.keyCommands().del(k));
+        if (values.isEmpty()) {
+            action.add(key, (connection, k) -> connection.keyCommands().del(k));
+            return;
+        }
+
+        List<String> fields = new ArrayList<>(values.keySet());
+        for (int i = 0; i < fields.size(); i += REBUILD_BATCH_SIZE) {
+            Map<byte[], byte[]> batch = new HashMap<>();
+            fields.subList(i, Math.min(i + REBUILD_BATCH_SIZE, fields.size()))
+                    .forEach(field -> batch.put(RedisClient.valBytes(field), RedisClient.valBytes(values.get(field))));
+            action.add(tmp, (connection, k) -> connection.hashCommands().hMSet(k, batch));
+        }
+        action.add(tmp, (connection, k) -> connection.keyCommands().rename(k, RedisClient.keyBytes(key)));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("applied", applied.sum());
+        stats.put("unchanged", unchanged.sum());
+        stats.put("failures", failures.sum());
+        stats.put("rebuildCount", rebuildCount.get());
+        stats.put("lastRebuildTime", lastRebuildTime.get());
+        stats.put("lastRebuildCostMs", lastRebuildCost.get());
+        stats.put("lastRebuildDrift", lastRebuildDrift.get());
+        return stats;
+    }
+}
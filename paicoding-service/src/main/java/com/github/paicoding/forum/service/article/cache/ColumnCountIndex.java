@@ -0,0 +1,260 @@
+package com.github.paicoding.forum.service.article.cache;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.paicoding.forum.core.cache.RedisClient;
+import com.github.paicoding.forum.service.article.repository.dao.ColumnDao;
+import com.github.paicoding.forum.service.article.repository.entity.ColumnInfoDO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 专栏的文章数、阅读人数
+ * <p>
+ * 1. 文章数：redis hash 中按专栏保存，专栏文章增删时按专栏重新统计
+ * 2. 阅读人数：每个专栏一个 HyperLogLog，登录用户首次阅读专栏文章（写入 user_foot 的已读状态）时 PFADD 用户id，
+ * 标准误差约 0.81%，不再对 user_foot 做 count(distinct)
+ * 3. 查询：本地缓存 + 批量加载，一页专栏的计数只需要一次redis管道（一次 HMGET + 每个专栏一次 PFCOUNT）
+ * 4. 每天凌晨从db全量重建，修复计数偏差；首次访问还没有统计过的专栏时，从db初始化该专栏；阅读用户按id分页读取，不在内存中持有全部用户
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+@Component
+public class ColumnCountIndex {
+    /**
+     * 专栏 -> 文章数；同时作为专栏计数是否已初始化的标记
+     */
+    private static final String ARTICLE_KEY = "column_cnt_article";
+
+    /**
+     * 专栏阅读用户的 HyperLogLog
+     */
+    private static final String READER_PREFIX = "column_reader_";
+
+    private static final String REBUILD_SUFFIX = "_rebuild";
+
+    /**
+     * 重建阅读用户时，每页读取并由单条 PFADD 写入的用户数
+     */
+    private static final int PFADD_BATCH_SIZE = 1000;
+
+    /**
+     * 本地计数缓存的有效期，秒
+     */
+    @Value("${paicoding.column-count.local-seconds:30}")
+    private long localSeconds;
+
+    @Resource
+    private ColumnDao columnDao;
+
+    private LoadingCache<Long, ColumnCount> cache;
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder batchLoads = new LongAdder();
+    private final LongAdder initialized = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicLong rebuildCount = new AtomicLong();
+    private final AtomicLong lastRebuildCost = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder().expireAfterWrite(localSeconds, TimeUnit.SECONDS).maximumSize(10_000)
+                .build(new CacheLoader<>() {
+                    @Override
+                    public ColumnCount load(Long columnId) {
+                        return loadAll(Set.of(columnId)).get(columnId);
+                    }
+
+                    @Override
+                    public Map<Long, ColumnCount> loadAll(Set<? extends Long> columnIds) {
+                        return ColumnCountIndex.this.loadAll(columnIds);
+                    }
+                });
+    }
+
+    /**
+     * 批量查询专栏的计数
+     *
+     * @param columnIds
+     * @return key: columnId
+     */
+    public Map<Long, ColumnCount> counts(Collection<Long> columnIds) {
+        return cache.getAll(columnIds);
+    }
+
+    public ColumnCount count(Long columnId) {
+        return cache.get(columnId);
+    }
+
+    /**
+     * 登录用户阅读了专栏中的文章
+     *
+     * @param columnId
+     * @param userId
+     */
+    public void read(Long columnId, Long userId) {
+        if (columnId == null || userId == null) {
+            return;
+        }
+        reads.increment();
+        try {
+            RedisClient.pipelineAction()
+                    .add(READER_PREFIX + columnId, String.valueOf(userId), (connection, k, v) -> connection.hyperLogLogCommands().pfAdd(k, v))
+                    .execute();
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("record column reader error! columnId: {}, userId: {}", columnId, userId, e);
+        }
+    }
+
+    /**
+     * 专栏中的文章发生增删后，重新统计这些专栏的文章数
+     *
+     * @param columnIds
+     */
+    public void refreshArticleCount(Long... columnIds) {
+        for (Long columnId : columnIds) {
+            if (columnId == null) {
+                continue;
+            }
+            String field = String.valueOf(columnId);
+            // 还没有初始化的专栏不写入，避免阅读人数没有从db初始化就被当成已统计
+            if (RedisClient.hGet(ARTICLE_KEY, field, String.class) != null) {
+                RedisClient.hSet(ARTICLE_KEY, field, columnDao.countColumnArticles(columnId));
+            }
+            cache.invalidate(columnId);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, ColumnCount> loadAll(Set<? extends Long> columnIds) {
+        batchLoads.increment();
+        List<Long> ids = new ArrayList<>(columnIds);
+        byte[][] fields = ids.stream().map(id -> RedisClient.valBytes(String.valueOf(id))).toArray(byte[][]::new);
+        RedisClient.PipelineAction action = RedisClient.pipelineAction();
+        action.add(ARTICLE_KEY, (connection, k) -> connection.hashCommands().hMGet(k, fields));
+        ids.forEach(id -> action.add(READER_PREFIX + id, (connection, k) -> connection.hyperLogLogCommands().pfCount(k)));
+        List<Object> ans = action.executeAndGet();
+
+        List<byte[]> articleCounts = (List<byte[]>) ans.get(0);
+        Map<Long, ColumnCount> result = new HashMap<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Long columnId = ids.get(i);
+            byte[] articleCount = articleCounts == null ? null : articleCounts.get(i);
+            if (articleCount == null) {
+                // 还没有统计过的专栏（新建的专栏，或者redis数据丢失），从db初始化
+                initialized.increment();
+                result.put(columnId, rebuild(columnId));
+            } else {
+                Long readers = (Long) ans.get(i + 1);
+                result.put(columnId, new ColumnCount(RedisClient.toInt(articleCount), readers == null ? 0 : readers.intValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从db重建一个专栏的计数：阅读用户先写入临时的 HyperLogLog，再 rename 替换
+     *
+     * @param columnId
+     * @return
+     */
+    private ColumnCount rebuild(Long columnId) {
+        return rebuild(columnId, columnDao.countColumnArticles(columnId));
+    }
+
+    private ColumnCount rebuild(Long columnId, int articleCount) {
+        String key = READER_PREFIX + columnId;
+        String tmp = key + REBUILD_SUFFIX;
+
+        RedisClient.PipelineAction action = RedisClient.pipelineAction();
+        action.add(tmp, (connection, k) -> connection.keyCommands().del(k));
+        int readers = 0;
+        long afterUserId = 0;
+        while (true) {
+            List<Long> page = columnDao.listColumnReadUserIds(columnId, afterUserId, PFADD_BATCH_SIZE);
+            if (page.isEmpty()) {
+                break;
+            }
+            byte[][] batch = page.stream().map(id -> RedisClient.valBytes(String.valueOf(id))).toArray(byte[][]::new);
+            action.add(tmp, (connection, k) -> connection.hyperLogLogCommands().pfAdd(k, batch));
+            action.execute();
+            action = RedisClient.pipelineAction();
+            readers += page.size();
+            if (page.size() < PFADD_BATCH_SIZE) {
+                break;
+            }
+            afterUserId = page.get(page.size() - 1);
+        }
+        if (readers == 0) {
+            action.add(key, (connection, k) -> connection.keyCommands().del(k));
+        } else {
+            action.add(tmp, (connection, k) -> connection.keyCommands().rename(k, RedisClient.keyBytes(key)));
+        }
+        action.add(ARTICLE_KEY, String.valueOf(columnId),
+                (connection, k, field) -> connection.hashCommands().hSet(k, field, RedisClient.valBytes(articleCount)));
+        action.execute();
+        return new ColumnCount(articleCount, readers);
+    }
+
+    /**
+     * 每天凌晨从db全量重建所有专栏的计数
+     */
+    @Scheduled(cron = "${paicoding.column-count.rebuild-cron:0 20 4 * * ?}")
+    public void rebuildAll() {
+        long start = System.currentTimeMillis();
+        Map<Long, Long> articleCounts = columnDao.countColumnArticlesGroupByColumn();
+        List<ColumnInfoDO> columns = columnDao.list();
+        for (ColumnInfoDO column : columns) {
+            try {
+                rebuild(column.getId(), articleCounts.getOrDefault(column.getId(), 0L).intValue());
+            } catch (Exception e) {
+                failures.increment();
+                log.error("rebuild column count error! columnId: {}", column.getId(), e);
+            }
+        }
+        cache.invalidateAll();
+        rebuildCount.incrementAndGet();
+        lastRebuildCost.set(System.currentTimeMillis() - start);
+        log.info("column count rebuilt, columns: {}, cost: {}ms", columns.size(), lastRebuildCost.get());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cached", cache.estimatedSize());
+        stats.put("batchLoads", batchLoads.sum());
+        stats.put("reads", reads.sum());
+        stats.put("initialized", initialized.sum());
+        stats.put("failures", failures.sum());
+        stats.put("rebuildCount", rebuildCount.get());
+        stats.put("lastRebuildCostMs", lastRebuildCost.get());
+        return stats;
+    }
+
+    /**
+     * 专栏计数
+     *
+     * @param articleCount 文章数
+     * @param readCount    阅读人数
+     */
+    public record ColumnCount(int articleCount, int readCount) {
+    }
+}
@@ -1,7 +1,6 @@
 package com.github.paicoding.forum.service.article.repository.dao;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.core.toolkit.CollectionUtils;
 import com.baomidou.mybatisplus.core.toolkit.StringUtils;
@@ -15,11 +14,13 @@ import com.github.paicoding.forum.api.model.enums.OfficalStatEnum;
 import com.github.paicoding.forum.api.model.enums.PushStatusEnum;
 import com.github.paicoding.forum.api.model.enums.YesOrNoEnum;
 import com.github.paicoding.forum.api.model.vo.PageParam;
+import com.github.paicoding.forum.api.model.vo.SeekCursor;
 import com.github.paicoding.forum.api.model.vo.article.dto.ArticleAdminDTO;
 import com.github.paicoding.forum.api.model.vo.article.dto.ArticleDTO;
 import com.github.paicoding.forum.api.model.vo.article.dto.SimpleArticleDTO;
 import com.github.paicoding.forum.api.model.vo.article.dto.YearArticleDTO;
 import com.github.paicoding.forum.api.model.vo.user.dto.BaseUserInfoDTO;
+import com.github.paicoding.forum.api.model.vo.user.dto.UserStatisticInfoDTO;
 import com.github.paicoding.forum.core.permission.UserRole;
 import com.github.paicoding.forum.service.article.conveter.ArticleConverter;
 import com.github.paicoding.forum.service.article.repository.entity.ArticleDO;
@@ -29,7 +30,6 @@ import com.github.paicoding.forum.service.article.repository.mapper.ArticleDetai
 import com.github.paicoding.forum.service.article.repository.mapper.ArticleMapper;
 import com.github.paicoding.forum.service.article.repository.mapper.ReadCountMapper;
 import com.github.paicoding.forum.service.article.repository.params.SearchArticleParams;
-import com.google.common.collect.Maps;
 import jakarta.annotation.Resource;
 import org.springframework.stereotype.Repository;
 
@@ -215,8 +215,17 @@ public class ArticleDao extends ServiceImpl<ArticleMapper, ArticleDO> {
         }
 
         Optional.ofNullable(categoryId).ifPresent(cid -> query.eq(ArticleDO::getCategoryId, cid));
+
+        // 游标分页: 直接定位到上一页最后一条记录 (置顶, 创建时间, id) 之后，避免深分页时扫描并丢弃 offset 行
+        SeekCursor cursor = pageParam.getCursor();
+        if (cursor != null && cursor.size() == 3) {
+            query.and(w -> w.lt(ArticleDO::getToppingStat, cursor.key(0))
+                    .or(w1 -> w1.eq(ArticleDO::getToppingStat, cursor.key(0))
+                            .and(w2 -> w2.lt(ArticleDO::getCreateTime, cursor.time(1))
+                                    .or(w3 -> w3.eq(ArticleDO::getCreateTime, cursor.time(1)).lt(ArticleDO::getId, cursor.id())))));
+        }
         query.last(PageParam.getLimitSql(pageParam))
-                .orderByDesc(ArticleDO::getToppingStat,  ArticleDO::getCreateTime);
+                .orderByDesc(ArticleDO::getToppingStat, ArticleDO::getCreateTime, ArticleDO::getId);
         return baseMapper.selectList(query);
     }
 
@@ -228,12 +237,21 @@ public class ArticleDao extends ServiceImpl<ArticleMapper, ArticleDO> {
      * @return
      */
     public IPage<ArticleDO> listArticlesByCategoryIdPagination(int currentPage, int pageSize, Long categoryId) {
+        return listArticlesByCategoryIdPagination(currentPage, pageSize, categoryId, null);
+    }
+
+    /**
+     * 分页查询分类下的文章
+     *
+     * @param total 已知的文章总数，不为空时不再执行 count 查询
+     */
+    public IPage<ArticleDO> listArticlesByCategoryIdPagination(int currentPage, int pageSize, Long categoryId, Long total) {
         if (categoryId != null && categoryId <= 0) {
             // 分类不存在时，表示查所有
             categoryId = null;
         }
 
-        Page<ArticleDO> page = new Page<>(currentPage, pageSize);
+        Page<ArticleDO> page = newPage(currentPage, pageSize, total);
         LambdaQueryWrapper<ArticleDO> query = Wrappers.lambdaQuery();
         query.eq(ArticleDO::getDeleted, YesOrNoEnum.NO.getCode())
                 .eq(ArticleDO::getStatus, PushStatusEnum.ONLINE.getCode());
@@ -243,7 +261,7 @@ public class ArticleDao extends ServiceImpl<ArticleMapper, ArticleDO> {
         query.orderByDesc(ArticleDO::getOfficalStat)
                 .orderByDesc(ArticleDO::getToppingStat, ArticleDO::getCreateTime);
 
-        return baseMapper.selectPage(page, query);
+        return withTotal(baseMapper.selectPage(page, query), total);
     }
 
     /**
@@ -254,45 +272,40 @@ public class ArticleDao extends ServiceImpl<ArticleMapper, ArticleDO> {
      * @return
      */
     public IPage<ArticleDO> listArticlesByTagIdPagination(int currentPage, int pageSize, Long tagId) {
-        Page<ArticleDO> page = new Page<>(currentPage, pageSize);
+        return listArticlesByTagIdPagination(currentPage, pageSize, tagId, null);
+    }
+
+    /**
+     * 分页查询标签下的文章
+     *
+     * @param total 已知的文章总数，不为空时不再执行 count 查询
+     */
+    public IPage<ArticleDO> listArticlesByTagIdPagination(int currentPage, int pageSize, Long tagId, Long total) {
+        Page<ArticleDO> page = newPage(currentPage, pageSize, total);
         if (tagId == null || tagId <= 0) {
             // tag不存在时，说明查所有
             LambdaQueryWrapper<ArticleDO> query = Wrappers.lambdaQuery();
             query.eq(ArticleDO::getDeleted, YesOrNoEnum.NO.getCode())
                     .eq(ArticleDO::getStatus, PushStatusEnum.ONLINE.getCode());
-            return baseMapper.selectPage(page, query);
+            return withTotal(baseMapper.selectPage(page, query), total);
         }else{
-            return articleMapper.selectArticlesByTag(page, tagId);
+            return withTotal(articleMapper.selectArticlesByTag(page, tagId), total);
         }
     }
 
-    public Long countArticleByCategoryId(Long categoryId) {
-        LambdaQueryWrapper<ArticleDO> query = Wrappers.lambdaQuery();
-        query.eq(ArticleDO::getDeleted, YesOrNoEnum.NO.getCode())
-                .eq(ArticleDO::getStatus, PushStatusEnum.ONLINE.getCode())
-                .eq(ArticleDO::getCategoryId, categoryId);
-        return baseMapper.selectCount(query);
+    private Page<ArticleDO> newPage(int currentPage, int pageSize, Long total) {
+        Page<ArticleDO> page = new Page<>(currentPage, pageSize);
+        if (total != null) {
+            page.setSearchCount(false);
+        }
+        return page;
     }
 
-    /**
-     * 按照分类统计文章的数量
-     *
-     * @return key: categoryId, value: count
-     */
-    public Map<Long, Long> countArticleByCategoryId() {
-        QueryWrapper<ArticleDO> query = Wrappers.query();
-        query.select("category_id, count(*) as cnt")
-                .eq("deleted", YesOrNoEnum.NO.getCode())
-                .eq("status", PushStatusEnum.ONLINE.getCode()).groupBy("category_id");
-        List<Map<String, Object>> mapList = baseMapper.selectMaps(query);
-        Map<Long, Long> result = Maps.newHashMapWithExpectedSize(mapList.size());
-        for (Map<String, Object> mp : mapList) {
-            Long cnt = (Long) mp.get("cnt");
-            if (cnt != null && cnt > 0) {
-                result.put((Long) mp.get("category_id"), cnt);
-            }
+    private IPage<ArticleDO> withTotal(IPage<ArticleDO> page, Long total) {
+        if (total != null) {
+            page.setTotal(total);
         }
-        return result;
+        return page;
     }
 
     public List<ArticleDO> listArticlesByBySearchKey(String key, PageParam pageParam) {
@@ -332,8 +345,25 @@ public class ArticleDao extends ServiceImpl<ArticleMapper, ArticleDO> {
     }
 
 
+    /**
+     * 批量累加文章的阅读计数，一条sql完成多篇文章的更新
+     *
+     * @param deltas key: 文章id, value: 阅读数增量
+     * @return
+     */
+    public int batchIncrReadCount(Map<Long, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        List<ReadCountDO> list = new ArrayList<>(deltas.size());
+        deltas.forEach((articleId, delta) -> list.add(new ReadCountDO().setDocumentId(articleId)
+                .setDocumentType(DocumentTypeEnum.ARTICLE.getCode()).setCnt(delta)));
+        return readCountMapper.batchIncrCount(list);
+    }
+
     /**
      * 阅读计数
+     * 单次请求就需要一查一写，高频的阅读计数改由 ReadCountAggregator 聚合后调用 batchIncrReadCount 批量写入
      *
      * @param articleId
      * @return
@@ -366,6 +396,17 @@ public class ArticleDao extends ServiceImpl<ArticleMapper, ArticleDO> {
                 .count().intValue();
     }
 
+    /**
+     * 按作者分组，统计一段用户id区间内每个作者已发布的文章数
+     *
+     * @param startUserId
+     * @param endUserId
+     * @return 只包含 userId, articleCount
+     */
+    public List<UserStatisticInfoDTO> countArticleGroupByUserId(Long startUserId, Long endUserId) {
+        return baseMapper.countArticleGroupByUserId(startUserId, endUserId);
+    }
+
 
     /**
      * 热门文章推荐，适用于首页的侧边栏
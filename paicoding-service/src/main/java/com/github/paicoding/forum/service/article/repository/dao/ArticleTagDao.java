@@ -2,6 +2,7 @@ package com.github.paicoding.forum.service.article.repository.dao;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.github.paicoding.forum.api.model.enums.YesOrNoEnum;
+import com.github.paicoding.forum.api.model.vo.article.dto.ArticleTagDTO;
 import com.github.paicoding.forum.api.model.vo.article.dto.TagDTO;
 import com.github.paicoding.forum.service.article.repository.entity.ArticleTagDO;
 import com.github.paicoding.forum.service.article.repository.mapper.ArticleTagMapper;
@@ -10,7 +11,10 @@ import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -83,6 +87,39 @@ public class ArticleTagDao extends ServiceImpl<ArticleTagMapper, ArticleTagDO> {
         return baseMapper.listArticleTagDetails(articleId);
     }
 
+    /**
+     * 批量查询文章标签，一次 in 查询返回所有文章的标签
+     *
+     * @param articleIds
+     * @return key: 文章id, value: 标签列表
+     */
+    public Map<Long, List<TagDTO>> queryArticleTagDetails(Collection<Long> articleIds) {
+        if (articleIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, List<TagDTO>> result = new HashMap<>(articleIds.size());
+        for (ArticleTagDTO tag : baseMapper.listArticleTagDetailsByArticleIds(articleIds)) {
+            TagDTO dto = new TagDTO();
+            dto.setTagId(tag.getTagId());
+            dto.setTag(tag.getTag());
+            result.computeIfAbsent(tag.getArticleId(), k -> new ArrayList<>()).add(dto);
+        }
+        return result;
+    }
+
+
+    /**
+     * 查询所有已上线文章的标签关系
+     *
+     * @return key: 文章id, value: 标签id列表
+     */
+    public Map<Long, List<Long>> listOnlineArticleTags() {
+        Map<Long, List<Long>> result = new HashMap<>();
+        for (ArticleTagDTO tag : baseMapper.listOnlineArticleTags()) {
+            result.computeIfAbsent(tag.getArticleId(), k -> new ArrayList<>()).add(tag.getTagId());
+        }
+        return result;
+    }
 
     public List<ArticleTagDO> listArticleTags(@Param("articleId") Long articleId) {
         return lambdaQuery().eq(ArticleTagDO::getArticleId, articleId).eq(ArticleTagDO::getDeleted, YesOrNoEnum.NO.getCode()).list();
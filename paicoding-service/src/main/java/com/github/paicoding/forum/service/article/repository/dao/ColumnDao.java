@@ -1,6 +1,7 @@
 package com.github.paicoding.forum.service.article.repository.dao;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.StringUtils;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
@@ -20,7 +21,9 @@ import com.github.paicoding.forum.service.article.repository.params.SearchColumn
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author XuYifei
@@ -89,6 +92,34 @@ public class ColumnDao extends ServiceImpl<ColumnInfoMapper, ColumnInfoDO> {
         return columnArticleMapper.countColumnReadUserNums(columnId).intValue();
     }
 
+    /**
+     * 按用户id分页查询阅读过专栏文章的用户
+     *
+     * @param columnId
+     * @param afterUserId 上一页最后一个用户id，首页传0
+     * @param size
+     * @return 按id升序
+     */
+    public List<Long> listColumnReadUserIds(Long columnId, Long afterUserId, int size) {
+        return columnArticleMapper.listColumnReadUserIds(columnId, afterUserId, size);
+    }
+
+    /**
+     * 按专栏统计文章数
+     *
+     * @return key: columnId, value: 文章数
+     */
+    public Map<Long, Long> countColumnArticlesGroupByColumn() {
+        QueryWrapper<ColumnArticleDO> query = Wrappers.query();
+        query.select("column_id, count(*) as cnt").groupBy("column_id");
+        List<Map<String, Object>> mapList = columnArticleMapper.selectMaps(query);
+        Map<Long, Long> result = new HashMap<>(mapList.size());
+        for (Map<String, Object> mp : mapList) {
+            result.put(((Number) mp.get("column_id")).longValue(), ((Number) mp.get("cnt")).longValue());
+        }
+        return result;
+    }
+
     /**
      * 根据教程ID查询文章信息列表
      * @return
@@ -7,6 +7,7 @@ import com.github.paicoding.forum.api.model.vo.PageParam;
 import com.github.paicoding.forum.api.model.vo.article.dto.ArticleAdminDTO;
 import com.github.paicoding.forum.api.model.vo.article.dto.SimpleArticleDTO;
 import com.github.paicoding.forum.api.model.vo.article.dto.YearArticleDTO;
+import com.github.paicoding.forum.api.model.vo.user.dto.UserStatisticInfoDTO;
 import com.github.paicoding.forum.service.article.repository.entity.ArticleDO;
 import com.github.paicoding.forum.service.article.repository.entity.ReadCountDO;
 import com.github.paicoding.forum.service.article.repository.params.SearchArticleParams;
@@ -89,4 +90,13 @@ public interface ArticleMapper extends BaseMapper<ArticleDO> {
      * @return
      */
     IPage<ArticleDO> selectArticlesByTag(Page<ArticleDO> page, Long tagId);
+
+    /**
+     * 按作者分组，查询用户id区间 [startUserId, endUserId] 内每个作者已发布的文章数
+     *
+     * @param startUserId
+     * @param endUserId
+     * @return 只返回 userId, articleCount
+     */
+    List<UserStatisticInfoDTO> countArticleGroupByUserId(@Param("startUserId") Long startUserId, @Param("endUserId") Long endUserId);
 }
@@ -41,6 +41,16 @@ public interface ColumnArticleMapper extends BaseMapper<ColumnArticleDO> {
      */
     Long countColumnReadUserNums(@Param("columnId") Long columnId);
 
+    /**
+     * 按用户id分页查询阅读过专栏文章的用户
+     *
+     * @param columnId
+     * @param afterUserId 上一页最后一个用户id，首页传0
+     * @param size
+     * @return 去重后按id升序的用户id
+     */
+    List<Long> listColumnReadUserIds(@Param("columnId") Long columnId, @Param("afterUserId") Long afterUserId, @Param("size") int size);
+
     /**
      * 根据教程 ID 文章名称查询文章列表
      *
@@ -2,6 +2,10 @@ package com.github.paicoding.forum.service.article.repository.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.github.paicoding.forum.service.article.repository.entity.ReadCountDO;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * 标签mapper接口
@@ -10,4 +14,19 @@ import com.github.paicoding.forum.service.article.repository.entity.ReadCountDO;
  * @date 2024-07-12
  */
 public interface ReadCountMapper extends BaseMapper<ReadCountDO> {
+
+    /**
+     * 批量累加计数，记录不存在时插入；依赖 (document_id, document_type) 的唯一索引
+     *
+     * @param list cnt 为本次需要累加的增量
+     * @return
+     */
+    @Insert("<script>" +
+            "insert into read_count (`document_id`, `document_type`, `cnt`) values " +
+            "<foreach collection='list' item='item' separator=','>" +
+            "(#{item.documentId}, #{item.documentType}, #{item.cnt})" +
+            "</foreach>" +
+            " on duplicate key update `cnt` = `cnt` + values(`cnt`)" +
+            "</script>")
+    int batchIncrCount(@Param("list") List<ReadCountDO> list);
 }
@@ -73,6 +73,14 @@ public interface ColumnService {
      */
     List<SimpleArticleDTO> queryColumnArticles(long columnId);
 
+    /**
+     * 登录用户首次阅读文章时调用，文章属于专栏时计入专栏的阅读人数
+     *
+     * @param articleId
+     * @param userId
+     */
+    void recordArticleRead(Long articleId, Long userId);
+
     /**
      * 返回教程数量
      *
@@ -7,15 +7,18 @@ import com.github.paicoding.forum.api.model.exception.ExceptionUtil;
 import com.github.paicoding.forum.api.model.vo.PageListVo;
 import com.github.paicoding.forum.api.model.vo.PageParam;
 import com.github.paicoding.forum.api.model.vo.PageVo;
+import com.github.paicoding.forum.api.model.vo.SeekCursor;
 import com.github.paicoding.forum.api.model.vo.article.dto.ArticleDTO;
 import com.github.paicoding.forum.api.model.vo.article.dto.CategoryDTO;
 import com.github.paicoding.forum.api.model.vo.article.dto.SimpleArticleDTO;
 import com.github.paicoding.forum.api.model.vo.article.dto.TagDTO;
 import com.github.paicoding.forum.api.model.vo.constants.StatusEnum;
+import com.github.paicoding.forum.api.model.vo.user.dto.ArticleFootCountDTO;
 import com.github.paicoding.forum.api.model.vo.user.dto.BaseUserInfoDTO;
 import com.github.paicoding.forum.core.util.ArticleUtil;
 import com.github.paicoding.forum.core.util.SpringUtil;
 import com.github.paicoding.forum.service.article.cache.ArticleCacheManager;
+import com.github.paicoding.forum.service.article.cache.ArticleCountIndex;
 import com.github.paicoding.forum.service.article.conveter.ArticleConverter;
 import com.github.paicoding.forum.service.article.repository.dao.ArticleDao;
 import com.github.paicoding.forum.service.article.repository.dao.ArticleTagDao;
@@ -88,6 +91,9 @@ public class ArticleReadServiceImpl implements ArticleReadService {
     @Autowired
     private ArticleCacheManager articleCacheManager;
 
+    @Autowired
+    private ArticleCountIndex articleCountIndex;
+
     // 是否开启ES
     @Value("${elasticsearch.open:false}")
     private Boolean openES;
@@ -178,7 +184,13 @@ public class ArticleReadServiceImpl implements ArticleReadService {
     @Override
     public PageListVo<ArticleDTO> queryArticlesByCategory(Long categoryId, PageParam page) {
         List<ArticleDO> records = articleDao.listArticlesByCategoryId(categoryId, page);
-        return buildArticleListVo(records, page.getPageSize());
+        PageListVo<ArticleDTO> vo = buildArticleListVo(records, page.getPageSize());
+        if (vo.getHasMore() && !records.isEmpty()) {
+            // 下一页的游标: 本页最后一篇文章的 (置顶, 创建时间, id)
+            ArticleDO last = records.get(records.size() - 1);
+            vo.setCursor(SeekCursor.of(last.getToppingStat(), last.getCreateTime().getTime(), last.getId()).encode());
+        }
+        return vo;
     }
 
     /**
@@ -192,9 +204,10 @@ public class ArticleReadServiceImpl implements ArticleReadService {
     @Override
     public IPage<ArticleDTO> queryArticlesByCategoryPagination(int currentPage, int pageSize, String category) {
         CategoryDTO categoryDto = categories(category);
-        IPage<ArticleDO> records = articleDao.listArticlesByCategoryIdPagination(currentPage, pageSize, categoryDto.getCategoryId());
+        IPage<ArticleDO> records = articleDao.listArticlesByCategoryIdPagination(currentPage, pageSize, categoryDto.getCategoryId(),
+                articleCountIndex.categoryCount(categoryDto.getCategoryId()));
 //        return buildArticleListVo(records, page.getPageSize());
-        return records.convert(this::fillArticleRelatedInfo);
+        return convertPage(records);
     }
 
     /**
@@ -206,9 +219,9 @@ public class ArticleReadServiceImpl implements ArticleReadService {
      */
     @Override
     public IPage<ArticleDTO> queryArticlesByTagPagination(int currentPage, int pageSize, Long tagId) {
-        IPage<ArticleDO> records = articleDao.listArticlesByTagIdPagination(currentPage, pageSize, tagId);
+        IPage<ArticleDO> records = articleDao.listArticlesByTagIdPagination(currentPage, pageSize, tagId, articleCountIndex.tagCount(tagId));
 
-        return records.convert(this::fillArticleRelatedInfo);
+        return convertPage(records);
     }
 
     /**
@@ -252,17 +265,17 @@ public class ArticleReadServiceImpl implements ArticleReadService {
     public List<ArticleDTO> queryTopArticlesByCategory(Long categoryId) {
         PageParam page = PageParam.newPageInstance(PageParam.DEFAULT_PAGE_NUM, PageParam.TOP_PAGE_SIZE);
         List<ArticleDO> articleDTOS = articleDao.listArticlesByCategoryId(categoryId, page);
-        return articleDTOS.stream().map(this::fillArticleRelatedInfo).collect(Collectors.toList());
+        return fillArticleRelatedInfo(articleDTOS);
     }
 
     @Override
     public Long queryArticleCountByCategory(Long categoryId) {
-        return articleDao.countArticleByCategoryId(categoryId);
+        return articleCountIndex.categoryCount(categoryId);
     }
 
     @Override
     public Map<Long, Long> queryArticleCountsByCategory() {
-        return articleDao.countArticleByCategoryId();
+        return articleCountIndex.categoryCounts();
     }
 
     @Override
@@ -355,7 +368,7 @@ public class ArticleReadServiceImpl implements ArticleReadService {
         Page<ArticleDO> page = new Page<>(currentPage, pageSize);
         IPage<ArticleDO> articleDOIPage = articleDao.listHistoryArticlesByUserIdPagination(page, userId);
 
-        return articleDOIPage.convert(this::fillArticleRelatedInfo);
+        return convertPage(articleDOIPage);
     }
 
     /**
@@ -371,7 +384,7 @@ public class ArticleReadServiceImpl implements ArticleReadService {
         Page<ArticleDO> page = new Page<>();
         IPage<ArticleDO> articleDOIPage = articleDao.listStarArticlesByUserIdPagination(page, userId);
 
-        return articleDOIPage.convert(this::fillArticleRelatedInfo);
+        return convertPage(articleDOIPage);
     }
 
     /**
@@ -386,7 +399,7 @@ public class ArticleReadServiceImpl implements ArticleReadService {
 
         IPage<ArticleDO> articleDOIPage = articleDao.listArticlesByUserIdPagination(userId, currentPage, pageSize);
 
-        return articleDOIPage.convert(this::fillArticleRelatedInfo);
+        return convertPage(articleDOIPage);
     }
 
     /**
@@ -409,29 +422,58 @@ public class ArticleReadServiceImpl implements ArticleReadService {
 
     @Override
     public PageListVo<ArticleDTO> buildArticleListVo(List<ArticleDO> records, long pageSize) {
-        List<ArticleDTO> result = records.stream().map(this::fillArticleRelatedInfo).collect(Collectors.toList());
-        return PageListVo.newVo(result, pageSize);
+        return PageListVo.newVo(fillArticleRelatedInfo(records), pageSize);
+    }
+
+    private IPage<ArticleDTO> convertPage(IPage<ArticleDO> records) {
+        Map<Long, ArticleDTO> dtoMap = fillArticleRelatedInfo(records.getRecords()).stream()
+                .collect(Collectors.toMap(ArticleDTO::getArticleId, t -> t, (a, b) -> a));
+        return records.convert(record -> dtoMap.get(record.getId()));
     }
 
     /**
-     * 补全文章的阅读计数、作者、分类、标签等信息
+     * 批量补全文章的阅读计数、作者、分类、标签等信息
+     * 先收集整页的文章id、作者id，标签走一次in查询，计数走一次redis管道，作者走一次批量查询，再统一组装，
+     * 避免逐篇文章查询带来的 N+1 问题
      *
-     * @param record
+     * @param records
      * @return
      */
-    private ArticleDTO fillArticleRelatedInfo(ArticleDO record) {
-        ArticleDTO dto = ArticleConverter.toDto(record);
-        // 分类信息
-        dto.getCategory().setCategory(categoryService.queryCategoryName(record.getCategoryId()));
+    private List<ArticleDTO> fillArticleRelatedInfo(List<ArticleDO> records) {
+        if (CollectionUtils.isEmpty(records)) {
+            return new ArrayList<>();
+        }
+
+        List<Long> articleIds = new ArrayList<>(records.size());
+        Set<Long> authorIds = new HashSet<>();
+        records.forEach(record -> {
+            articleIds.add(record.getId());
+            authorIds.add(record.getUserId());
+        });
+
         // 标签列表
-        dto.setTags(articleTagDao.queryArticleTagDetails(record.getId()));
+        Map<Long, List<TagDTO>> tags = articleTagDao.queryArticleTagDetails(articleIds);
         // 阅读计数统计
-        dto.setCount(countService.queryArticleStatisticInfo(record.getId()));
+        Map<Long, ArticleFootCountDTO> counts = countService.queryArticleStatisticInfo(articleIds);
         // 作者信息
-        BaseUserInfoDTO author = userService.queryBasicUserInfo(dto.getAuthor());
-        dto.setAuthorName(author.getUserName());
-        dto.setAuthorAvatar(author.getPhoto());
-        return dto;
+        Map<Long, BaseUserInfoDTO> authors = userService.batchQueryBasicUserInfo(authorIds).stream()
+                .collect(Collectors.toMap(BaseUserInfoDTO::getUserId, t -> t, (a, b) -> a));
+
+        List<ArticleDTO> result = new ArrayList<>(records.size());
+        for (ArticleDO record : records) {
+            ArticleDTO dto = ArticleConverter.toDto(record);
+            // 分类信息，分类走的是本地缓存
+            dto.getCategory().setCategory(categoryService.queryCategoryName(record.getCategoryId()));
+            dto.setTags(tags.getOrDefault(record.getId(), new ArrayList<>()));
+            dto.setCount(counts.getOrDefault(record.getId(), new ArticleFootCountDTO()));
+            BaseUserInfoDTO author = authors.get(dto.getAuthor());
+            if (author != null) {
+                dto.setAuthorName(author.getUserName());
+                dto.setAuthorAvatar(author.getPhoto());
+            }
+            result.add(dto);
+        }
+        return result;
     }
 
     @Override
@@ -169,8 +169,8 @@ public class ArticleWriteServiceImpl implements ArticleWriteService {
         if (article.getStatus() == PushStatusEnum.ONLINE.getCode()) {
             // 修改之后依然直接上线 （对于白名单作者而言）
             SpringUtil.publishEvent(new ArticleMsgEvent<>(this, ArticleEventEnum.ONLINE, article));
-        } else if (review) {
-            // 非白名单作者，修改再审核中的文章，依然是待审核状态
+        } else if (article.getStatus() == PushStatusEnum.REVIEW.getCode()) {
+            // 非白名单作者，修改审核中或已上线的文章，都进入待审核状态；已上线的文章需要从列表计数中移除
             SpringUtil.publishEvent(new ArticleMsgEvent<>(this, ArticleEventEnum.REVIEW, article));
         }
         return article.getId();
@@ -11,6 +11,7 @@ import com.github.paicoding.forum.api.model.vo.constants.StatusEnum;
 import com.github.paicoding.forum.api.model.vo.user.dto.BaseUserInfoDTO;
 import com.github.paicoding.forum.api.model.vo.user.dto.ColumnFootCountDTO;
 import com.github.paicoding.forum.service.article.cache.ArticleCacheManager;
+import com.github.paicoding.forum.service.article.cache.ColumnCountIndex;
 import com.github.paicoding.forum.service.article.conveter.ColumnConvert;
 import com.github.paicoding.forum.service.article.repository.dao.ArticleDao;
 import com.github.paicoding.forum.service.article.repository.dao.ColumnArticleDao;
@@ -23,6 +24,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -45,6 +48,9 @@ public class ColumnServiceImpl implements ColumnService {
     @Autowired
     private ArticleCacheManager articleCacheManager;
 
+    @Autowired
+    private ColumnCountIndex columnCountIndex;
+
     @Override
     public ColumnArticleDO getColumnArticleRelation(Long articleId) {
         if(articleCacheManager.isArticleColumnArticleExist(articleId)){
@@ -63,7 +69,7 @@ public class ColumnServiceImpl implements ColumnService {
     @Override
     public PageListVo<ColumnDTO> listColumn(PageParam pageParam) {
         List<ColumnInfoDO> columnList = columnDao.listOnlineColumns(pageParam);
-        List<ColumnDTO> result = columnList.stream().map(this::buildColumnInfo).collect(Collectors.toList());
+        List<ColumnDTO> result = buildColumnInfos(columnList.stream().map(ColumnConvert::toDto).collect(Collectors.toList()));
         return PageListVo.newVo(result, pageParam.getPageSize());
     }
 
@@ -78,7 +84,9 @@ public class ColumnServiceImpl implements ColumnService {
     @Override
     public IPage<ColumnDTO> listColumnByPage(Long currentPage, Long pageSize) {
         Page<ColumnInfoDO> columnInfoDOPage = columnDao.listOnlineColumnsByPage(currentPage, pageSize);
-        return columnInfoDOPage.convert(this::buildColumnInfo);
+        IPage<ColumnDTO> result = columnInfoDOPage.convert(ColumnConvert::toDto);
+        buildColumnInfos(result.getRecords());
+        return result;
     }
 
     @Override
@@ -96,10 +104,6 @@ public class ColumnServiceImpl implements ColumnService {
         return buildColumnInfo(queryBasicColumnInfo(columnId));
     }
 
-    private ColumnDTO buildColumnInfo(ColumnInfoDO info) {
-        return buildColumnInfo(ColumnConvert.toDto(info));
-    }
-
     /**
      * 构建专栏详情信息
      *
@@ -107,24 +111,51 @@ public class ColumnServiceImpl implements ColumnService {
      * @return
      */
     private ColumnDTO buildColumnInfo(ColumnDTO dto) {
-        // 补齐专栏对应的用户信息
-        BaseUserInfoDTO user = userService.queryBasicUserInfo(dto.getAuthor());
-        dto.setAuthorName(user.getUserName());
-        dto.setAuthorAvatar(user.getPhoto());
-        dto.setAuthorProfile(user.getProfile());
-
-        // 统计计数
-        ColumnFootCountDTO countDTO = new ColumnFootCountDTO();
-        // 更新文章数
-        countDTO.setArticleCount(columnDao.countColumnArticles(dto.getColumnId()));
-        // 专栏阅读人数
-        countDTO.setReadCount(columnDao.countColumnReadPeoples(dto.getColumnId()));
-        // 总的章节数
-        countDTO.setTotalNums(dto.getNums());
-        dto.setCount(countDTO);
+        buildColumnInfos(List.of(dto));
         return dto;
     }
 
+    /**
+     * 批量构建专栏详情信息，作者信息一次批量查询，计数从 ColumnCountIndex 一次批量获取
+     *
+     * @param list
+     * @return
+     */
+    private List<ColumnDTO> buildColumnInfos(List<ColumnDTO> list) {
+        if (list.isEmpty()) {
+            return list;
+        }
+
+        // 补齐专栏对应的用户信息
+        Map<Long, BaseUserInfoDTO> users = userService.batchQueryBasicUserInfo(
+                        list.stream().map(ColumnDTO::getAuthor).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(BaseUserInfoDTO::getUserId, Function.identity(), (a, b) -> a));
+        Map<Long, ColumnCountIndex.ColumnCount> counts = columnCountIndex.counts(
+                list.stream().map(ColumnDTO::getColumnId).collect(Collectors.toSet()));
+
+        for (ColumnDTO dto : list) {
+            BaseUserInfoDTO user = users.get(dto.getAuthor());
+            if (user == null) {
+                user = userService.queryBasicUserInfo(dto.getAuthor());
+            }
+            dto.setAuthorName(user.getUserName());
+            dto.setAuthorAvatar(user.getPhoto());
+            dto.setAuthorProfile(user.getProfile());
+
+            // 统计计数
+            ColumnCountIndex.ColumnCount count = counts.get(dto.getColumnId());
+            ColumnFootCountDTO countDTO = new ColumnFootCountDTO();
+            // 更新文章数
+            countDTO.setArticleCount(count.articleCount());
+            // 专栏阅读人数
+            countDTO.setReadCount(count.readCount());
+            // 总的章节数
+            countDTO.setTotalNums(dto.getNums());
+            dto.setCount(countDTO);
+        }
+        return list;
+    }
+
 
     @Override
     public ColumnArticleDO queryColumnArticle(long columnId, Integer section) {
@@ -135,6 +166,16 @@ public class ColumnServiceImpl implements ColumnService {
         return article;
     }
 
+    @Override
+    public void recordArticleRead(Long articleId, Long userId) {
+        // 缓存中没有时直接查db，不写入缓存：刚发布的文章此时还没有加入专栏，避免缓存空的关联关系
+        ColumnArticleDO relation = articleCacheManager.isArticleColumnArticleExist(articleId)
+                ? articleCacheManager.getColumnArticle(articleId) : columnArticleDao.selectColumnArticleByArticleId(articleId);
+        if (relation != null) {
+            columnCountIndex.read(relation.getColumnId(), userId);
+        }
+    }
+
     @Override
     public List<SimpleArticleDTO> queryColumnArticles(long columnId) {
         return columnDao.listColumnArticles(columnId);
@@ -14,6 +14,7 @@ import com.github.paicoding.forum.api.model.vo.article.dto.SimpleColumnDTO;
 import com.github.paicoding.forum.api.model.vo.constants.StatusEnum;
 import com.github.paicoding.forum.api.model.vo.user.dto.BaseUserInfoDTO;
 import com.github.paicoding.forum.core.util.NumUtil;
+import com.github.paicoding.forum.service.article.cache.ColumnCountIndex;
 import com.github.paicoding.forum.service.article.conveter.ColumnArticleStructMapper;
 import com.github.paicoding.forum.service.article.conveter.ColumnStructMapper;
 import com.github.paicoding.forum.service.article.repository.dao.ArticleDao;
@@ -54,6 +55,9 @@ public class ColumnSettingServiceImpl implements ColumnSettingService {
     @Autowired
     private ColumnDao columnDao;
 
+    @Autowired
+    private ColumnCountIndex columnCountIndex;
+
     @Autowired
     private ArticleDao articleDao;
 
@@ -86,8 +90,10 @@ public class ColumnSettingServiceImpl implements ColumnSettingService {
         if (exist != null) {
             if (!Objects.equals(columnId, exist.getColumnId())) {
                 // 更新
+                Long oldColumnId = exist.getColumnId();
                 exist.setColumnId(columnId);
                 columnArticleDao.updateById(exist);
+                columnCountIndex.refreshArticleCount(oldColumnId, columnId);
             }
         } else {
             // 将文章保存到专栏中，章节序号+1
@@ -98,6 +104,7 @@ public class ColumnSettingServiceImpl implements ColumnSettingService {
             Integer maxSection = columnArticleDao.selectMaxSection(columnId);
             columnArticleDO.setSection(maxSection + 1);
             columnArticleDao.save(columnArticleDO);
+            columnCountIndex.refreshArticleCount(columnId);
         }
     }
 
@@ -119,8 +126,11 @@ public class ColumnSettingServiceImpl implements ColumnSettingService {
             Integer maxSection = columnArticleDao.selectMaxSection(columnArticleDO.getColumnId());
             columnArticleDO.setSection(maxSection + 1);
             columnArticleDao.save(columnArticleDO);
+            columnCountIndex.refreshArticleCount(columnArticleDO.getColumnId());
         } else {
+            ColumnArticleDO exist = columnArticleDao.getById(columnArticleDO.getId());
             columnArticleDao.updateById(columnArticleDO);
+            columnCountIndex.refreshArticleCount(exist == null ? null : exist.getColumnId(), columnArticleDO.getColumnId());
         }
 
         // 同时，更新 article 的 shortTitle 短标题
@@ -143,6 +153,7 @@ public class ColumnSettingServiceImpl implements ColumnSettingService {
         ColumnArticleDO columnArticleDO = columnArticleDao.getById(id);
         if (columnArticleDO != null) {
             columnArticleDao.removeById(id);
+            columnCountIndex.refreshArticleCount(columnArticleDO.getColumnId());
             // 删除的时候，批量更新 section，比如说原来是 1,2,3,4,5,6,7,8,9,10，删除 5，那么 6-10 的 section 都要减 1
             columnArticleDao.update(null, Wrappers.<ColumnArticleDO>lambdaUpdate()
                     .setSql("section = section - 1")
@@ -0,0 +1,628 @@
+package com.github.paicoding.forum.service.chatv2.memory;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.paicoding.forum.core.cache.RedisClient;
+import com.github.paicoding.forum.core.util.IpUtil;
+import com.github.paicoding.forum.core.util.id.IdUtil;
+import com.github.paicoding.forum.service.chatv2.repository.entity.ChatMessageDO;
+import com.github.paicoding.forum.service.chatv2.repository.mapper.ChatMessageMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 对话记忆的存储
+ * <p>
+ * 1. 活跃会话在内存中保留最近 window-size 条消息，多轮对话中每一轮读取记忆不再查询db；所有会话窗口的消息总长度不超过 cache-kb，超出后淘汰最近最少使用的会话，
+ * 长时间无访问的会话也会被移出
+ * 2. 消息序号由 redis 中每个会话的计数器分配，多个实例交替处理同一个会话时也不会分配出重复的序号；消息id在写入前生成，因此 assistant 消息落库前就可以拿到id。
+ * 会话窗口记录自己已知的下一条序号，读取与追加时与计数器比对，落后说明其他实例追加过消息，丢弃本地窗口后重新加载；
+ * redis 不可用时退化为按本地窗口分配序号
+ * 3. 新消息先写入 redis 中本实例的 journal，再进入写缓冲，由定时任务合并为多行insert落库，落库后从 journal 中移除；
+ * 应用重启时只把本实例 journal 中残留的消息重新写入db，不会抢走其他实例仍在写缓冲中的消息；写入按id幂等，重复写入不影响结果
+ * 4. journal 不可用或写缓冲积压超过 max-pending 时，退化为同步写入db
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+@Component
+public class ChatMemoryStore implements SmartInitializingSingleton {
+    /**
+     * 尚未落库的消息，key: 前缀 + 实例标识, field: 消息id, value: 消息json
+     */
+    private static final String JOURNAL_KEY_PREFIX = "chat-memory-journal:";
+    /**
+     * 会话的消息序号计数器，key: 前缀 + 会话id, value: 下一条消息的序号
+     */
+    private static final String SEQ_KEY_PREFIX = "chat-memory-seq:";
+    /**
+     * 序号计数器的有效期，秒；过期后以db中的最大序号为起点重新计数
+     */
+    private static final long SEQ_EXPIRE = 7 * 24 * 3600;
+    private static final RedisScript<Long> SEQ_SCRIPT = RedisScript.of(new ClassPathResource("lua/chat_memory_seq.lua"), Long.class);
+    /**
+     * 单条sql最多写入的消息数
+     */
+    private static final int FLUSH_BATCH_SIZE = 200;
+
+    @Resource
+    private ChatMessageMapper chatMessageMapper;
+
+    @Value("${paicoding.chat-memory.window-size:100}")
+    private int windowSize;
+
+    @Value("${paicoding.chat-memory.cache-kb:65536}")
+    private long cacheKb;
+
+    @Value("${paicoding.chat-memory.idle-minutes:30}")
+    private long idleMinutes;
+
+    @Value("${paicoding.chat-memory.max-pending:10000}")
+    private int maxPending;
+
+    /**
+     * 实例标识，同一实例重启前后需保持不变才能恢复上次未落库的消息；未配置时与id生成器一样按本机ip区分
+     */
+    @Value("${paicoding.chat-memory.instance:}")
+    private String instance;
+
+    private String journalKey;
+
+    /**
+     * key: 会话id(chat_history.id)
+     */
+    private Cache<Long, Window> windows;
+
+    /**
+     * 尚未落库的消息，key: 消息id；落库成功后才移除，保证加载会话窗口时总能看到完整的消息
+     */
+    private final Map<Long, ChatMessageDO> pending = new LinkedHashMap<>();
+
+    /**
+     * 落库、清空会话、回填token用量 互斥，避免与正在写入的批次交错
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * 追加消息持有读锁，清空会话持有写锁：清空时等待正在追加的消息全部进入写缓冲后再一并丢弃，
+     * 避免已清空的会话又写入消息；追加之间互不阻塞，也不等待正在落库的批次
+     */
+    private final ReentrantReadWriteLock clearLock = new ReentrantReadWriteLock();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder staleWindows = new LongAdder();
+    private final LongAdder localSeqs = new LongAdder();
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder buffered = new LongAdder();
+    private final LongAdder directWrites = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong lastFlushCost = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        journalKey = JOURNAL_KEY_PREFIX + (StringUtils.isNotBlank(instance) ? instance : localIp());
+        windows = Caffeine.newBuilder()
+                .maximumWeight(cacheKb)
+                .weigher((Long historyId, Window window) -> window.weight())
+                .expireAfterAccess(idleMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 启动时把上次未落库的消息写入db，在web服务开始接收请求之前执行
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        recover();
+    }
+
+    public void recover() {
+        Map<String, ChatMessageDO> journal;
+        try {
+            journal = RedisClient.hGetAll(journalKey, ChatMessageDO.class);
+        } catch (Exception e) {
+            log.error("load chat memory journal error! unflushed messages will be recovered on next start", e);
+            return;
+        }
+        if (journal.isEmpty()) {
+            return;
+        }
+
+        List<ChatMessageDO> list = new ArrayList<>(journal.values());
+        list.sort(Comparator.comparing(ChatMessageDO::getId));
+        synchronized (pending) {
+            list.forEach(msg -> pending.putIfAbsent(msg.getId(), msg));
+        }
+        recovered.add(list.size());
+        log.info("recover {} unflushed chat messages from journal {}", list.size(), journalKey);
+        flush();
+    }
+
+    /**
+     * 追加消息，分配id与会话内的序号
+     *
+     * @param historyId 会话id
+     * @param messages  按发生顺序排列的消息
+     */
+    public void append(Long historyId, List<ChatMessageDO> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = IdUtil.genIds(messages.size());
+        clearLock.readLock().lock();
+        try {
+            Window window = window(historyId);
+            boolean stale;
+            window.seqLock.lock();
+            try {
+                int start = allocSeq(historyId, messages.size(), window.nextSeq);
+                stale = start != window.nextSeq;
+                for (int i = 0; i < messages.size(); i++) {
+                    ChatMessageDO msg = messages.get(i);
+                    msg.setId(ids.get(i));
+                    msg.setHistoryId(historyId);
+                    msg.setSequenceNum(start + i);
+                    if (!stale) {
+                        window.append(msg, windowSize);
+                    }
+                }
+                window.nextSeq = start + messages.size();
+            } finally {
+                window.seqLock.unlock();
+            }
+            appended.add(messages.size());
+
+            if (pendingSize() < maxPending && journal(messages)) {
+                synchronized (pending) {
+                    messages.forEach(msg -> pending.put(msg.getId(), msg));
+                }
+                buffered.add(messages.size());
+            } else {
+                // journal 不可用或写缓冲积压过多时，同步写入db
+                directWrites.add(messages.size());
+                insert(messages);
+            }
+
+            if (stale) {
+                // 其他实例在该会话中追加过消息，新消息进入写缓冲后再丢弃本地窗口，下次读取时重新加载
+                invalidate(historyId, window);
+            } else {
+                // 重新计算窗口的权重
+                windows.asMap().replace(historyId, window, window);
+            }
+        } finally {
+            clearLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 会话最近的消息
+     *
+     * @param historyId 会话id
+     * @param lastN     不超过 window-size
+     * @return 按序号升序
+     */
+    public List<ChatMessageDO> recent(Long historyId, int lastN) {
+        Window window = window(historyId);
+        if (window.nextSeq < currentSeq(historyId)) {
+            invalidate(historyId, window);
+            window = window(historyId);
+        }
+        return window.last(Math.min(lastN, windowSize));
+    }
+
+    /**
+     * 会话窗口不存在时从db加载；在 caffeine 的 compute 之外查询db，慢查询不会阻塞同一个哈希桶上其他会话的读写
+     */
+    private Window window(Long historyId) {
+        Window window = windows.getIfPresent(historyId);
+        if (window != null) {
+            return window;
+        }
+        window = load(historyId);
+        Window exists = windows.asMap().putIfAbsent(historyId, window);
+        return exists != null ? exists : window;
+    }
+
+    private void invalidate(Long historyId, Window window) {
+        staleWindows.increment();
+        windows.asMap().remove(historyId, window);
+    }
+
+    /**
+     * 从会话的计数器中分配一段连续的序号
+     *
+     * @param historyId
+     * @param count
+     * @param localNext 本地窗口已知的下一条序号，计数器不存在或落后时以它为起点
+     * @return 第一个序号
+     */
+    private int allocSeq(Long historyId, int count, int localNext) {
+        try {
+            Long next = RedisClient.evalLong(SEQ_SCRIPT, List.of(SEQ_KEY_PREFIX + historyId),
+                    List.of(String.valueOf(count), String.valueOf(localNext), String.valueOf(SEQ_EXPIRE)));
+            return (int) (next - count);
+        } catch (Exception e) {
+            localSeqs.add(count);
+            log.warn("alloc chat message sequence error, fallback to local window! historyId: {}", historyId, e);
+            return localNext;
+        }
+    }
+
+    /**
+     * @return 会话计数器中的下一条序号；计数器不存在或 redis 不可用时返回 0，即信任本地窗口
+     */
+    private int currentSeq(Long historyId) {
+        try {
+            return NumberUtils.toInt(RedisClient.getStr(SEQ_KEY_PREFIX + historyId));
+        } catch (Exception e) {
+            log.warn("load chat message sequence error! historyId: {}", historyId, e);
+            return 0;
+        }
+    }
+
+    /**
+     * 会话中最新的 assistant 消息id，该消息可能尚未落库
+     *
+     * @param historyId
+     * @return
+     */
+    public Long latestAssistantMessageId(Long historyId) {
+        Window window = windows.getIfPresent(historyId);
+        Long id = window == null ? null : window.latestId("assistant");
+        if (id != null) {
+            return id;
+        }
+        // 会话窗口已被淘汰时，未落库的消息仍在写缓冲中
+        List<ChatMessageDO> unflushed = unflushed(historyId);
+        for (int i = unflushed.size() - 1; i >= 0; i--) {
+            if ("assistant".equals(unflushed.get(i).getRole())) {
+                return unflushed.get(i).getId();
+            }
+        }
+
+        LambdaQueryWrapper<ChatMessageDO> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(ChatMessageDO::getHistoryId, historyId)
+                .eq(ChatMessageDO::getRole, "assistant")
+                .orderByDesc(ChatMessageDO::getSequenceNum)
+                .last("LIMIT 1");
+        ChatMessageDO messageDO = chatMessageMapper.selectOne(wrapper);
+        return messageDO != null ? messageDO.getId() : null;
+    }
+
+    /**
+     * 会话中尚未落库的消息
+     *
+     * @param historyId
+     * @return 按序号升序
+     */
+    public List<ChatMessageDO> unflushed(Long historyId) {
+        List<ChatMessageDO> list = new ArrayList<>();
+        synchronized (pending) {
+            for (ChatMessageDO msg : pending.values()) {
+                if (historyId.equals(msg.getHistoryId())) {
+                    list.add(msg);
+                }
+            }
+        }
+        list.sort(Comparator.comparing(ChatMessageDO::getSequenceNum));
+        return list;
+    }
+
+    /**
+     * 回填尚未落库的消息的token用量，随消息一起写入db
+     *
+     * @param messageId
+     * @param promptTokens
+     * @param completionTokens
+     * @param totalTokens
+     * @return false 表示消息已落库，需要直接更新db
+     */
+    public boolean attachUsage(Long messageId, Integer promptTokens, Integer completionTokens, Integer totalTokens) {
+        flushLock.lock();
+        try {
+            ChatMessageDO msg;
+            synchronized (pending) {
+                msg = pending.get(messageId);
+            }
+            if (msg == null) {
+                return false;
+            }
+            msg.setPromptTokens(promptTokens);
+            msg.setCompletionTokens(completionTokens);
+            msg.setTotalTokens(totalTokens);
+            journal(List.of(msg));
+            return true;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 清空会话的记忆：丢弃未落库的消息，软删除已落库的消息
+     *
+     * @param historyId
+     */
+    public void clear(Long historyId) {
+        clearLock.writeLock().lock();
+        flushLock.lock();
+        try {
+            List<ChatMessageDO> removed = new ArrayList<>();
+            synchronized (pending) {
+                Iterator<ChatMessageDO> iterator = pending.values().iterator();
+                while (iterator.hasNext()) {
+                    ChatMessageDO msg = iterator.next();
+                    if (historyId.equals(msg.getHistoryId())) {
+                        removed.add(msg);
+                        iterator.remove();
+                    }
+                }
+            }
+            unjournal(removed);
+
+            LambdaQueryWrapper<ChatMessageDO> wrapper = new LambdaQueryWrapper<>();
+            wrapper.eq(ChatMessageDO::getHistoryId, historyId);
+            ChatMessageDO updateDO = new ChatMessageDO();
+            updateDO.setDeleted(1);
+            chatMessageMapper.update(updateDO, wrapper);
+            windows.invalidate(historyId);
+        } finally {
+            flushLock.unlock();
+            clearLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 定时把写缓冲中的消息批量写入db，默认每1s一次
+     */
+    @Scheduled(fixedDelayString = "${paicoding.chat-memory.flush-interval:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<ChatMessageDO> batch;
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(pending.values());
+            }
+
+            long start = System.currentTimeMillis();
+            List<ChatMessageDO> done = write(batch);
+            synchronized (pending) {
+                done.forEach(msg -> pending.remove(msg.getId()));
+            }
+            unjournal(done);
+            flushCount.incrementAndGet();
+            lastFlushCost.set(System.currentTimeMillis() - start);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @param batch
+     * @return 已写入db的消息，以及因数据本身不合法而被丢弃的消息
+     */
+    private List<ChatMessageDO> write(List<ChatMessageDO> batch) {
+        List<ChatMessageDO> done = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i += FLUSH_BATCH_SIZE) {
+            List<ChatMessageDO> sub = batch.subList(i, Math.min(i + FLUSH_BATCH_SIZE, batch.size()));
+            try {
+                chatMessageMapper.batchInsertIgnore(sub);
+                flushedRows.add(sub.size());
+                done.addAll(sub);
+            } catch (DataIntegrityViolationException e) {
+                // 一批中有不合法的数据（如会话已被物理删除），逐条写入，只丢弃写不进去的消息
+                for (ChatMessageDO msg : sub) {
+                    try {
+                        chatMessageMapper.batchInsertIgnore(Collections.singletonList(msg));
+                        flushedRows.increment();
+                    } catch (DataIntegrityViolationException ex) {
+                        dropped.increment();
+                        log.error("drop illegal chat message! id: {}, historyId: {}", msg.getId(), msg.getHistoryId(), ex);
+                    }
+                    done.add(msg);
+                }
+            } catch (RuntimeException e) {
+                // db不可用时保留在写缓冲与journal中，下一轮重试
+                flushFailures.increment();
+                log.error("flush chat messages error! pending: {}", batch.size() - done.size(), e);
+                break;
+            }
+        }
+        return done;
+    }
+
+    private void insert(List<ChatMessageDO> messages) {
+        for (int i = 0; i < messages.size(); i += FLUSH_BATCH_SIZE) {
+            chatMessageMapper.batchInsertIgnore(messages.subList(i, Math.min(i + FLUSH_BATCH_SIZE, messages.size())));
+        }
+    }
+
+    private boolean journal(List<ChatMessageDO> messages) {
+        Map<String, ChatMessageDO> fields = new LinkedHashMap<>();
+        messages.forEach(msg -> fields.put(String.valueOf(msg.getId()), msg));
+        try {
+            RedisClient.hMSet(journalKey, fields);
+            return true;
+        } catch (Exception e) {
+            log.warn("write chat memory journal error, fallback to write db directly!", e);
+            return false;
+        }
+    }
+
+    private void unjournal(List<ChatMessageDO> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        byte[][] fields = new byte[messages.size()][];
+        for (int i = 0; i < messages.size(); i++) {
+            fields[i] = String.valueOf(messages.get(i).getId()).getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            RedisClient.pipelineAction().add(journalKey, (connection, key) -> connection.hDel(key, fields)).execute();
+        } catch (Exception e) {
+            // 残留的消息在重启时会被重复写入，按id幂等
+            log.warn("remove chat memory journal error!", e);
+        }
+    }
+
+    private static String localIp() {
+        try {
+            return IpUtil.getLocalIp4Address();
+        } catch (Exception e) {
+            log.warn("get local ip error, use default journal key!", e);
+            return IpUtil.DEFAULT_IP;
+        }
+    }
+
+    private int pendingSize() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * 从db加载会话最近的消息，并合并尚未落库的消息
+     */
+    private Window load(Long historyId) {
+        loads.increment();
+        LambdaQueryWrapper<ChatMessageDO> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(ChatMessageDO::getHistoryId, historyId)
+                .orderByDesc(ChatMessageDO::getSequenceNum)
+                .last("LIMIT " + windowSize);
+        List<ChatMessageDO> rows = chatMessageMapper.selectList(wrapper);
+
+        // 落库过程中的消息可能同时出现在db与写缓冲中，按id去重
+        Map<Long, ChatMessageDO> merged = new LinkedHashMap<>();
+        rows.forEach(msg -> merged.put(msg.getId(), msg));
+        unflushed(historyId).forEach(msg -> merged.put(msg.getId(), msg));
+        List<ChatMessageDO> list = new ArrayList<>(merged.values());
+        list.sort(Comparator.comparing(ChatMessageDO::getSequenceNum));
+
+        Window window = new Window();
+        window.nextSeq = list.isEmpty() ? 0 : list.get(list.size() - 1).getSequenceNum() + 1;
+        list.forEach(msg -> window.append(msg, windowSize));
+        return window;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats cacheStats = windows.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("windows", windows.estimatedSize());
+        stats.put("weightKb", windows.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L));
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("loads", loads.sum());
+        stats.put("staleWindows", staleWindows.sum());
+        stats.put("localSeqs", localSeqs.sum());
+        stats.put("evictions", cacheStats.evictionCount());
+        stats.put("appended", appended.sum());
+        stats.put("buffered", buffered.sum());
+        stats.put("directWrites", directWrites.sum());
+        stats.put("pending", pendingSize());
+        stats.put("flushCount", flushCount.get());
+        stats.put("flushedRows", flushedRows.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("recovered", recovered.sum());
+        stats.put("lastFlushCostMs", lastFlushCost.get());
+        return stats;
+    }
+
+    /**
+     * 一个会话在内存中的消息窗口
+     */
+    private static class Window {
+        private final ArrayDeque<ChatMessageDO> messages = new ArrayDeque<>();
+        /**
+         * 分配序号并追加消息期间持有，同一实例上对同一会话的追加按序进行；不阻塞读取窗口
+         */
+        private final ReentrantLock seqLock = new ReentrantLock();
+        /**
+         * 本地窗口已知的下一条消息序号，由 seqLock 保护
+         */
+        private volatile int nextSeq;
+        private long chars;
+
+        private synchronized void append(ChatMessageDO msg, int limit) {
+            messages.addLast(msg);
+            chars += length(msg);
+            while (messages.size() > limit) {
+                chars -= length(messages.pollFirst());
+            }
+        }
+
+        private synchronized List<ChatMessageDO> last(int n) {
+            List<ChatMessageDO> list = new ArrayList<>(Math.min(n, messages.size()));
+            Iterator<ChatMessageDO> iterator = messages.descendingIterator();
+            while (iterator.hasNext() && list.size() < n) {
+                list.add(iterator.next());
+            }
+            Collections.reverse(list);
+            return list;
+        }
+
+        private synchronized Long latestId(String role) {
+            Iterator<ChatMessageDO> iterator = messages.descendingIterator();
+            while (iterator.hasNext()) {
+                ChatMessageDO msg = iterator.next();
+                if (role.equals(msg.getRole())) {
+                    return msg.getId();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 按消息内容的长度计算，单位 KB
+         */
+        private synchronized int weight() {
+            return (int) Math.min(Integer.MAX_VALUE, 1 + chars / 1024);
+        }
+
+        private static int length(ChatMessageDO msg) {
+            return msg.getContent() == null ? 0 : msg.getContent().length();
+        }
+    }
+}
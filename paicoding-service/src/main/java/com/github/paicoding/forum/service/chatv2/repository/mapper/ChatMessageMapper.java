@@ -2,6 +2,10 @@ package com.github.paicoding.forum.service.chatv2.repository.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.github.paicoding.forum.service.chatv2.repository.entity.ChatMessageDO;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * LLM 对话消息 Mapper
@@ -10,4 +14,27 @@ import com.github.paicoding.forum.service.chatv2.repository.entity.ChatMessageDO
  * @date 2025-11-16
  */
 public interface ChatMessageMapper extends BaseMapper<ChatMessageDO> {
+
+    /**
+     * 批量写入消息，id 由应用预先生成；id 已存在的记录只更新token用量，重复写入同一批消息不影响结果，
+     * 未携带token用量(为0)的旧副本也不会覆盖已回填的用量
+     *
+     * @param list
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "insert into chat_message (`id`, `history_id`, `role`, `content`, `prompt_tokens`, `completion_tokens`, `total_tokens`, " +
+            "`metadata_json`, `sequence_num`, `timestamp`) values " +
+            "<foreach collection='list' item='item' separator=','>" +
+            "(#{item.id}, #{item.historyId}, #{item.role}, #{item.content}, ifnull(#{item.promptTokens}, 0), " +
+            "ifnull(#{item.completionTokens}, 0), ifnull(#{item.totalTokens}, 0), " +
+            "#{item.metadataJson, typeHandler=com.baomidou.mybatisplus.extension.handlers.JacksonTypeHandler}, " +
+            "#{item.sequenceNum}, #{item.timestamp})" +
+            "</foreach>" +
+            " on duplicate key update " +
+            "`prompt_tokens` = if(values(`total_tokens`) > 0, values(`prompt_tokens`), `prompt_tokens`), " +
+            "`completion_tokens` = if(values(`total_tokens`) > 0, values(`completion_tokens`), `completion_tokens`), " +
+            "`total_tokens` = if(values(`total_tokens`) > 0, values(`total_tokens`), `total_tokens`)" +
+            "</script>")
+    int batchInsertIgnore(@Param("list") List<ChatMessageDO> list);
 }
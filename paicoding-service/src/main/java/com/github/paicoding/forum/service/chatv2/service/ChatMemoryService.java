@@ -1,8 +1,7 @@
 package com.github.paicoding.forum.service.chatv2.service;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.paicoding.forum.service.chatv2.memory.ChatMemoryStore;
 import com.github.paicoding.forum.service.chatv2.repository.entity.ChatMessageDO;
-import com.github.paicoding.forum.service.chatv2.repository.mapper.ChatMessageMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.memory.ChatMemory;
@@ -18,7 +17,7 @@ import java.util.List;
 
 /**
  * Chat Memory 服务 - 实现 Spring AI 的 ChatMemory 接口
- * 使用 MySQL 存储会话记忆
+ * 使用 MySQL 存储会话记忆，活跃会话的最近消息缓存在内存中，新消息批量写入，见 {@link ChatMemoryStore}
  *
  * @author XuYifei
  * @date 2025-11-16
@@ -28,7 +27,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ChatMemoryService implements ChatMemory {
 
-    private final ChatMessageMapper chatMessageMapper;
+    private final ChatMemoryStore chatMemoryStore;
 
     /**
      * 最大消息数量限制
@@ -53,25 +52,18 @@ public class ChatMemoryService implements ChatMemory {
             return;
         }
 
-        // 获取当前最大序号
-        LambdaQueryWrapper<ChatMessageDO> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(ChatMessageDO::getHistoryId, historyId)
-                .orderByDesc(ChatMessageDO::getSequenceNum)
-                .last("LIMIT 1");
-        ChatMessageDO lastMessage = chatMessageMapper.selectOne(wrapper);
-        int nextSeq = (lastMessage == null) ? 0 : lastMessage.getSequenceNum() + 1;
-
-        // 保存消息
+        // 序号与id由会话窗口分配，消息先进入写缓冲，批量落库
+        Date now = new Date();
+        List<ChatMessageDO> messageDOs = new ArrayList<>(messages.size());
         for (Message message : messages) {
             ChatMessageDO messageDO = new ChatMessageDO();
             messageDO.setHistoryId(historyId);
             messageDO.setRole(getRoleFromMessage(message));
             messageDO.setContent(message.getText());
-            messageDO.setSequenceNum(nextSeq++);
-            messageDO.setTimestamp(new Date());
-
-            chatMessageMapper.insert(messageDO);
+            messageDO.setTimestamp(now);
+            messageDOs.add(messageDO);
         }
+        chatMemoryStore.append(historyId, messageDOs);
 
         log.debug("Added {} messages to conversation {}", messages.size(), conversationId);
     }
@@ -97,18 +89,9 @@ public class ChatMemoryService implements ChatMemory {
             return new ArrayList<>();
         }
 
-        // 查询最近的 N 条消息
-        LambdaQueryWrapper<ChatMessageDO> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(ChatMessageDO::getHistoryId, historyId)
-                .orderByDesc(ChatMessageDO::getSequenceNum)
-                .last("LIMIT " + Math.min(lastN, MAX_MESSAGES));
-
-        List<ChatMessageDO> messageDOs = chatMessageMapper.selectList(wrapper);
-
-        // 转换为 Spring AI Message 并反转顺序（因为查询是倒序的）
+        // 活跃会话直接从内存窗口读取，不再每轮查询db
         List<Message> messages = new ArrayList<>();
-        for (int i = messageDOs.size() - 1; i >= 0; i--) {
-            ChatMessageDO messageDO = messageDOs.get(i);
+        for (ChatMessageDO messageDO : chatMemoryStore.recent(historyId, Math.min(lastN, MAX_MESSAGES))) {
             messages.add(convertToMessage(messageDO));
         }
 
@@ -131,13 +114,8 @@ public class ChatMemoryService implements ChatMemory {
             return;
         }
 
-        // 软删除所有消息
-        LambdaQueryWrapper<ChatMessageDO> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(ChatMessageDO::getHistoryId, historyId);
-
-        ChatMessageDO updateDO = new ChatMessageDO();
-        updateDO.setDeleted(1);
-        chatMessageMapper.update(updateDO, wrapper);
+        // 丢弃未落库的消息，软删除已落库的消息
+        chatMemoryStore.clear(historyId);
 
         log.info("Cleared all messages for conversation {}", conversationId);
     }
@@ -146,17 +124,10 @@ public class ChatMemoryService implements ChatMemory {
      * 获取指定会话的最新 assistant 消息 ID
      *
      * @param historyId 会话ID
-     * @return 最新 assistant 消息的数据库 ID，如果没有则返回 null
+     * @return 最新 assistant 消息的 ID（可能尚未落库），如果没有则返回 null
      */
     public Long getLatestAssistantMessageId(Long historyId) {
-        LambdaQueryWrapper<ChatMessageDO> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(ChatMessageDO::getHistoryId, historyId)
-                .eq(ChatMessageDO::getRole, "assistant")
-                .orderByDesc(ChatMessageDO::getSequenceNum)
-                .last("LIMIT 1");
-
-        ChatMessageDO messageDO = chatMessageMapper.selectOne(wrapper);
-        return messageDO != null ? messageDO.getId() : null;
+        return chatMemoryStore.latestAssistantMessageId(historyId);
     }
 
     /**
@@ -1,13 +1,18 @@
 package com.github.paicoding.forum.service.chatv2.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.paicoding.forum.service.chatv2.memory.ChatMemoryStore;
 import com.github.paicoding.forum.service.chatv2.repository.entity.ChatMessageDO;
 import com.github.paicoding.forum.service.chatv2.repository.mapper.ChatMessageMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 消息服务
@@ -21,6 +26,7 @@ import java.util.List;
 public class ChatMessageService {
 
     private final ChatMessageMapper chatMessageMapper;
+    private final ChatMemoryStore chatMemoryStore;
 
     /**
      * 获取会话的所有消息
@@ -33,7 +39,27 @@ public class ChatMessageService {
         wrapper.eq(ChatMessageDO::getHistoryId, historyId)
                 .orderByAsc(ChatMessageDO::getSequenceNum);
 
-        return chatMessageMapper.selectList(wrapper);
+        return withUnflushed(historyId, chatMessageMapper.selectList(wrapper));
+    }
+
+    /**
+     * 合并写缓冲中尚未落库的消息，保证刚结束的一轮对话能立即查到
+     *
+     * @param historyId 会话ID
+     * @param messages  db中的消息
+     * @return 按序号升序
+     */
+    private List<ChatMessageDO> withUnflushed(Long historyId, List<ChatMessageDO> messages) {
+        List<ChatMessageDO> unflushed = chatMemoryStore.unflushed(historyId);
+        if (unflushed.isEmpty()) {
+            return messages;
+        }
+        Map<Long, ChatMessageDO> merged = new LinkedHashMap<>();
+        messages.forEach(msg -> merged.put(msg.getId(), msg));
+        unflushed.forEach(msg -> merged.putIfAbsent(msg.getId(), msg));
+        List<ChatMessageDO> list = new ArrayList<>(merged.values());
+        list.sort(Comparator.comparing(ChatMessageDO::getSequenceNum));
+        return list;
     }
 
     /**
@@ -54,7 +80,8 @@ public class ChatMessageService {
         // 反转顺序（因为查询是倒序的）
         java.util.Collections.reverse(messages);
 
-        return messages;
+        messages = withUnflushed(historyId, messages);
+        return messages.size() > limit ? messages.subList(messages.size() - limit, messages.size()) : messages;
     }
 
     /**
@@ -64,9 +91,12 @@ public class ChatMessageService {
      * @return 消息数量
      */
     public Long countMessages(Long historyId) {
+        // 先取写缓冲的快照：正在落库的消息可能同时出现在db中，db中只统计快照以外的消息，避免重复计数
+        List<Long> unflushed = chatMemoryStore.unflushed(historyId).stream().map(ChatMessageDO::getId).toList();
         LambdaQueryWrapper<ChatMessageDO> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(ChatMessageDO::getHistoryId, historyId);
+        wrapper.eq(ChatMessageDO::getHistoryId, historyId)
+                .notIn(!unflushed.isEmpty(), ChatMessageDO::getId, unflushed);
 
-        return chatMessageMapper.selectCount(wrapper);
+        return chatMessageMapper.selectCount(wrapper) + unflushed.size();
     }
 }
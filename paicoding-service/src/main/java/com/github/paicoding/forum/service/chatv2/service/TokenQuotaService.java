@@ -2,6 +2,7 @@ package com.github.paicoding.forum.service.chatv2.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.github.paicoding.forum.api.model.vo.chatv2.UserModelQuotaVO;
+import com.github.paicoding.forum.service.chatv2.memory.ChatMemoryStore;
 import com.github.paicoding.forum.service.chatv2.repository.entity.*;
 import com.github.paicoding.forum.service.chatv2.repository.mapper.*;
 import lombok.RequiredArgsConstructor;
@@ -29,6 +30,7 @@ public class TokenQuotaService {
     private final QuotaRechargeRecordMapper rechargeRecordMapper;
     private final DefaultQuotaConfigMapper defaultQuotaConfigMapper;
     private final ChatMessageMapper chatMessageMapper;
+    private final ChatMemoryStore chatMemoryStore;
 
     /**
      * 检查用户对指定模型的配额是否充足
@@ -106,7 +108,12 @@ public class TokenQuotaService {
 
         userModelQuotaMapper.updateById(updateQuota);
 
-        // 4. 更新消息的 token 字段
+        // 4. 更新消息的 token 字段；消息尚未落库时随消息一起写入
+        if (chatMemoryStore.attachUsage(messageId, promptTokens, completionTokens, totalTokens)) {
+            log.info("Quota deducted successfully: userId={}, modelId={}, messageId={}, tokens={}, remaining={}",
+                    userId, modelId, messageId, totalTokens, updateQuota.getRemainingQuota());
+            return;
+        }
         ChatMessageDO message = new ChatMessageDO();
         message.setId(messageId);
         message.setPromptTokens(promptTokens);
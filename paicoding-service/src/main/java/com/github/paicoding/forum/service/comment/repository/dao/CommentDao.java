@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.github.paicoding.forum.api.model.enums.YesOrNoEnum;
 import com.github.paicoding.forum.api.model.vo.PageParam;
+import com.github.paicoding.forum.api.model.vo.SeekCursor;
 import com.github.paicoding.forum.service.comment.repository.entity.CommentDO;
 import com.github.paicoding.forum.service.comment.repository.mapper.CommentMapper;
 import org.springframework.stereotype.Repository;
@@ -27,10 +28,13 @@ public class CommentDao extends ServiceImpl<CommentMapper, CommentDO> {
      * @return
      */
     public List<CommentDO> listTopCommentList(Long articleId, PageParam pageParam) {
+        // 游标分页时，直接从上一页最后一条评论的id之后开始查
+        SeekCursor cursor = pageParam.getCursor();
         return lambdaQuery()
                 .eq(CommentDO::getTopCommentId, 0)
                 .eq(CommentDO::getArticleId, articleId)
                 .eq(CommentDO::getDeleted, YesOrNoEnum.NO.getCode())
+                .lt(cursor != null, CommentDO::getId, cursor == null ? null : cursor.id())
                 .last(PageParam.getLimitSql(pageParam))
                 .orderByDesc(CommentDO::getId).list();
     }
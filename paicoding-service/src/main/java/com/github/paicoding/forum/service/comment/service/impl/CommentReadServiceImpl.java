@@ -4,7 +4,9 @@ import com.baomidou.mybatisplus.core.toolkit.CollectionUtils;
 import com.github.paicoding.forum.api.model.context.ReqInfoContext;
 import com.github.paicoding.forum.api.model.enums.DocumentTypeEnum;
 import com.github.paicoding.forum.api.model.enums.PraiseStatEnum;
+import com.github.paicoding.forum.api.model.vo.PageListVo;
 import com.github.paicoding.forum.api.model.vo.PageParam;
+import com.github.paicoding.forum.api.model.vo.SeekCursor;
 import com.github.paicoding.forum.api.model.vo.comment.dto.BaseCommentDTO;
 import com.github.paicoding.forum.api.model.vo.comment.dto.SubCommentDTO;
 import com.github.paicoding.forum.api.model.vo.comment.dto.TopCommentDTO;
@@ -65,19 +67,27 @@ public class CommentReadServiceImpl implements CommentReadService {
         // 3.构建一级评论的子评论
         buildCommentRelation(subComments, topComments);
 
-        // 4.挑出需要返回的数据，排序，并补齐对应的用户信息，最后排序返回
-        List<TopCommentDTO> result = new ArrayList<>();
-        comments.forEach(comment -> {
-            TopCommentDTO dto = topComments.get(comment.getId());
-            fillTopCommentInfo(dto);
-            result.add(dto);
-        });
+        // 4.挑出需要返回的数据，批量补齐整棵评论树的用户信息、点赞信息，最后排序返回
+        List<TopCommentDTO> result = comments.stream().map(comment -> topComments.get(comment.getId())).collect(Collectors.toList());
+        fillCommentInfo(result);
 
         // 返回结果根据时间进行排序
         Collections.sort(result);
         return result;
     }
 
+    @Override
+    public PageListVo<TopCommentDTO> queryArticleComments(Long articleId, PageParam page) {
+        List<TopCommentDTO> list = getArticleComments(articleId, page);
+        PageListVo<TopCommentDTO> vo = PageListVo.newVo(list, page.getPageSize());
+        if (vo.getHasMore() && !list.isEmpty()) {
+            // 一级评论按id倒序查询，下一页从本页最小的评论id之后开始
+            long minId = list.stream().mapToLong(TopCommentDTO::getCommentId).min().getAsLong();
+            vo.setCursor(SeekCursor.of(minId).encode());
+        }
+        return vo;
+    }
+
     /**
      * 构建父子评论关系
      */
@@ -100,51 +110,54 @@ public class CommentReadServiceImpl implements CommentReadService {
     }
 
     /**
-     * 填充评论对应的信息
-     *
-     * @param comment
-     */
-    private void fillTopCommentInfo(TopCommentDTO comment) {
-        fillCommentInfo(comment);
-        comment.getChildComments().forEach(this::fillCommentInfo);
-        Collections.sort(comment.getChildComments());
-    }
-
-    /**
-     * 填充评论对应的信息，如用户信息，点赞数等
+     * 批量填充评论树的信息，如用户信息，点赞数等
+     * <p>
+     * 先收集整棵树中的用户id和评论id，用户信息、点赞数、当前登录用户的点赞状态各查询一次，再在内存中回填，
+     * 查询次数与评论数无关
      *
-     * @param comment
+     * @param topComments 一级评论，包含其子评论
      */
-    private void fillCommentInfo(BaseCommentDTO comment) {
-        BaseUserInfoDTO userInfoDO = userService.queryBasicUserInfo(comment.getUserId());
-        if (userInfoDO == null) {
-            // 如果用户注销，给一个默认的用户
-            comment.setUserName("默认用户");
-            comment.setUserPhoto("");
-            if (comment instanceof TopCommentDTO) {
-                ((TopCommentDTO) comment).setCommentCount(0);
-            }
-        } else {
-            comment.setUserName(userInfoDO.getUserName());
-            comment.setUserPhoto(userInfoDO.getPhoto());
-            if (comment instanceof TopCommentDTO) {
-                ((TopCommentDTO) comment).setCommentCount(((TopCommentDTO) comment).getChildComments().size());
-            }
+    private void fillCommentInfo(List<TopCommentDTO> topComments) {
+        List<BaseCommentDTO> comments = new ArrayList<>();
+        for (TopCommentDTO top : topComments) {
+            comments.add(top);
+            comments.addAll(top.getChildComments());
         }
-
-        // 查询点赞数
-        Long praiseCount = countService.queryCommentPraiseCount(comment.getCommentId());
-        comment.setPraiseCount(praiseCount.intValue());
-
-        // 查询当前登录用于是否点赞过
+        Set<Long> userIds = comments.stream().map(BaseCommentDTO::getUserId).collect(Collectors.toSet());
+        List<Long> commentIds = comments.stream().map(BaseCommentDTO::getCommentId).collect(Collectors.toList());
+
+        // 评论用户信息
+        Map<Long, BaseUserInfoDTO> users = userService.batchQueryBasicUserInfo(userIds).stream()
+                .collect(Collectors.toMap(BaseUserInfoDTO::getUserId, user -> user, (a, b) -> a));
+        // 点赞数
+        Map<Long, Long> praiseCounts = countService.queryCommentPraiseCount(commentIds);
+        // 当前登录用户的点赞记录
         Long loginUserId = ReqInfoContext.getReqInfo().getUserId();
-        if (loginUserId != null) {
-            // 判断当前用户是否点过赞
-            UserFootDO foot = userFootService.queryUserFoot(comment.getCommentId(), DocumentTypeEnum.COMMENT.getCode(), loginUserId);
+        Map<Long, UserFootDO> foots = loginUserId == null ? Collections.emptyMap()
+                : userFootService.queryUserFoots(commentIds, DocumentTypeEnum.COMMENT.getCode(), loginUserId);
+
+        for (BaseCommentDTO comment : comments) {
+            BaseUserInfoDTO userInfoDO = users.get(comment.getUserId());
+            if (userInfoDO == null) {
+                // 如果用户注销，给一个默认的用户
+                comment.setUserName("默认用户");
+                comment.setUserPhoto("");
+                if (comment instanceof TopCommentDTO) {
+                    ((TopCommentDTO) comment).setCommentCount(0);
+                }
+            } else {
+                comment.setUserName(userInfoDO.getUserName());
+                comment.setUserPhoto(userInfoDO.getPhoto());
+                if (comment instanceof TopCommentDTO) {
+                    ((TopCommentDTO) comment).setCommentCount(((TopCommentDTO) comment).getChildComments().size());
+                }
+            }
+
+            comment.setPraiseCount(praiseCounts.getOrDefault(comment.getCommentId(), 0L).intValue());
+            UserFootDO foot = foots.get(comment.getCommentId());
             comment.setPraised(foot != null && Objects.equals(foot.getPraiseStat(), PraiseStatEnum.PRAISE.getCode()));
-        } else {
-            comment.setPraised(false);
         }
+        topComments.forEach(top -> Collections.sort(top.getChildComments()));
     }
 
     /**
@@ -167,7 +180,7 @@ public class CommentReadServiceImpl implements CommentReadService {
         result.setChildComments(subs);
 
         // 填充评论信息
-        fillTopCommentInfo(result);
+        fillCommentInfo(Collections.singletonList(result));
         return result;
     }
 
@@ -0,0 +1,422 @@
+package com.github.paicoding.forum.service.image.ingest;
+
+import com.github.paicoding.forum.core.cache.RedisClient;
+import com.github.paicoding.forum.core.util.Md5Util;
+import com.github.paicoding.forum.service.image.oss.ImageUploader;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 外网图片转存管道
+ * <p>
+ * 1. 独立的有界线程池，不与公共的 AsyncUtil 线程池互相影响；队列满时直接拒绝，返回的 future 以 RejectedExecutionException 结束，
+ * 调用方保留原图地址，不会在请求线程中执行下载与上传
+ * 2. 按域名限制并发下载数，避免同一篇文章的大量图片同时打到一个图床上：超出 per-host 的图片在提交时进入该域名的等待队列，
+ * 由正在下载该域名图片的线程完成后接着处理，线程池中的线程不会因等待许可而阻塞，一个慢域名最多占用 per-host 个线程
+ * 3. 下载时边读边计算md5并写入临时文件，转存时直接从文件流式上传，不在内存中持有整张图片
+ * 4. 去重：redis中持久化 图片url -> 转存地址、图片md5 -> 转存地址 两份索引；
+ * 同一个url只下载一次，不同url但内容相同的图片只上传一次，同一时刻对同一个url的多次转存共享同一个下载任务
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+@Component
+public class ImageIngestPipeline {
+    /**
+     * 图片url的md5 -> 转存后的地址
+     */
+    private static final String URL_INDEX = "img_ingest_url";
+
+    /**
+     * 图片内容的md5 -> 转存后的地址
+     */
+    private static final String HASH_INDEX = "img_ingest_hash";
+
+    /**
+     * 用于根据魔数识别文件类型的文件头长度
+     */
+    private static final int MAGIC_HEAD_SIZE = 64;
+
+    @Value("${paicoding.image-ingest.parallelism:8}")
+    private int parallelism;
+
+    @Value("${paicoding.image-ingest.queue-size:256}")
+    private int queueSize;
+
+    /**
+     * 同一个域名同时下载的图片数；queue-size 同时限制所有域名等待队列的总长度
+     */
+    @Value("${paicoding.image-ingest.per-host:2}")
+    private int perHost;
+
+    @Value("${paicoding.image-ingest.connect-timeout:3000}")
+    private int connectTimeout;
+
+    @Value("${paicoding.image-ingest.read-timeout:5000}")
+    private int readTimeout;
+
+    /**
+     * 单张图片的大小上限，字节
+     */
+    @Value("${paicoding.image-ingest.max-size:10485760}")
+    private long maxSize;
+
+    @Autowired
+    private ImageUploader imageUploader;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 正在转存中的图片url -> 转存结果
+     */
+    private final Map<String, CompletableFuture<String>> inflight = new ConcurrentHashMap<>();
+
+    /**
+     * 有图片正在下载或等待下载的域名，下载全部完成后移除，因此大小不超过正在转存的图片数；由自身加锁保护
+     */
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+
+    /**
+     * 所有域名等待队列中的图片数，由 hosts 的锁保护
+     */
+    private int waiting;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder urlHit = new LongAdder();
+    private final LongAdder inflightJoined = new LongAdder();
+    private final LongAdder downloaded = new LongAdder();
+    private final LongAdder downloadBytes = new LongAdder();
+    private final LongAdder hashHit = new LongAdder();
+    private final LongAdder uploaded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder downloadCost = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat("img-ingest-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交一张外网图片的转存
+     *
+     * @param img 图片地址
+     * @return 转存后的地址；转存失败时异常结束，转存队列已满时以 RejectedExecutionException 结束
+     */
+    public CompletableFuture<String> submit(String img) {
+        return submitAll(List.of(img)).get(img);
+    }
+
+    /**
+     * 批量提交外网图片的转存，所有图片的 url 索引通过一次 HMGET 查询
+     *
+     * @param imgs 图片地址
+     * @return 图片地址 -> 转存结果，与 {@link #submit(String)} 相同
+     */
+    public Map<String, CompletableFuture<String>> submitAll(Collection<String> imgs) {
+        Map<String, String> urlKeys = new LinkedHashMap<>();
+        for (String img : imgs) {
+            urlKeys.putIfAbsent(img, Md5Util.encode(img));
+        }
+        Map<String, CompletableFuture<String>> result = new LinkedHashMap<>();
+        if (urlKeys.isEmpty()) {
+            return result;
+        }
+        submitted.add(urlKeys.size());
+        Map<String, String> index = RedisClient.hMGet(URL_INDEX, new ArrayList<>(urlKeys.values()), String.class);
+        for (Map.Entry<String, String> entry : urlKeys.entrySet()) {
+            String hosted = index == null ? null : index.get(entry.getValue());
+            if (StringUtils.isNotBlank(hosted)) {
+                urlHit.increment();
+                result.put(entry.getKey(), CompletableFuture.completedFuture(hosted));
+            } else {
+                result.put(entry.getKey(), ingestAsync(entry.getKey(), entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 未命中 url 索引的图片，与正在转存的同一张图片共享结果，否则按域名分发下载任务
+     */
+    private CompletableFuture<String> ingestAsync(String img, String urlKey) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> exists = inflight.putIfAbsent(img, future);
+        if (exists != null) {
+            inflightJoined.increment();
+            return exists;
+        }
+
+        String host;
+        try {
+            host = StringUtils.defaultString(StringUtils.lowerCase(toUri(img).getHost()));
+        } catch (IllegalArgumentException e) {
+            failed.increment();
+            inflight.remove(img, future);
+            future.completeExceptionally(e);
+            return future;
+        }
+        dispatch(new Task(img, urlKey, host, future));
+        return future;
+    }
+
+    /**
+     * 域名的并发下载数未达上限时交给线程池，否则进入该域名的等待队列
+     */
+    private void dispatch(Task task) {
+        boolean overflow = false;
+        synchronized (hosts) {
+            HostQueue queue = hosts.computeIfAbsent(task.host(), k -> new HostQueue());
+            if (queue.running < perHost) {
+                queue.running++;
+            } else if (waiting < queueSize) {
+                queue.waiting.addLast(task);
+                waiting++;
+                return;
+            } else {
+                overflow = true;
+            }
+        }
+        if (overflow) {
+            reject(task, new RejectedExecutionException("too many images waiting for download, host: " + task.host()));
+            return;
+        }
+        execute(task);
+    }
+
+    private void execute(Task task) {
+        while (task != null) {
+            Task current = task;
+            try {
+                executor.execute(() -> run(current));
+                return;
+            } catch (RejectedExecutionException e) {
+                reject(current, e);
+                // 交出该域名的下载名额，等待中的图片继续尝试提交
+                task = next(current.host());
+            }
+        }
+    }
+
+    /**
+     * 依次处理同一个域名的等待队列，直到队列为空
+     */
+    private void run(Task task) {
+        while (task != null) {
+            try {
+                task.future().complete(ingest(task.img(), task.urlKey()));
+            } catch (Exception e) {
+                failed.increment();
+                log.warn("外网图片转存异常! img:{}", task.img(), e);
+                task.future().completeExceptionally(e);
+            } finally {
+                inflight.remove(task.img(), task.future());
+            }
+            task = next(task.host());
+        }
+    }
+
+    /**
+     * @return 该域名等待队列中的下一张图片；为空时释放下载名额并返回 null
+     */
+    private Task next(String host) {
+        synchronized (hosts) {
+            HostQueue queue = hosts.get(host);
+            Task next = queue.waiting.pollFirst();
+            if (next != null) {
+                waiting--;
+                return next;
+            }
+            if (--queue.running == 0) {
+                hosts.remove(host);
+            }
+            return null;
+        }
+    }
+
+    private void reject(Task task, RejectedExecutionException e) {
+        rejected.increment();
+        inflight.remove(task.img(), task.future());
+        task.future().completeExceptionally(e);
+    }
+
+    private String ingest(String img, String urlKey) throws Exception {
+        File tmp = Files.createTempFile("img-ingest", ".tmp").toFile();
+        try {
+            String md5 = download(img, tmp);
+            String hosted = RedisClient.hGet(HASH_INDEX, md5, String.class);
+            if (StringUtils.isNotBlank(hosted)) {
+                hashHit.increment();
+            } else {
+                hosted = imageUploader.upload(tmp, md5, fileType(img, tmp));
+                if (StringUtils.isBlank(hosted)) {
+                    throw new IOException("upload failed");
+                }
+                uploaded.increment();
+                RedisClient.hSet(HASH_INDEX, md5, hosted);
+            }
+            RedisClient.hSet(URL_INDEX, urlKey, hosted);
+            return hosted;
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * 下载图片到临时文件
+     *
+     * @return 图片内容的md5
+     */
+    private String download(String img, File target) throws Exception {
+        URI uri = toUri(img);
+        long start = System.currentTimeMillis();
+        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        try {
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("download failed, http code: " + connection.getResponseCode());
+            }
+            if (connection.getContentLengthLong() > maxSize) {
+                throw new IOException("image too large: " + connection.getContentLengthLong());
+            }
+
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            long size = 0;
+            try (InputStream input = new DigestInputStream(connection.getInputStream(), digest);
+                 OutputStream output = Files.newOutputStream(target.toPath())) {
+                byte[] buffer = new byte[8192];
+                int len;
+                while ((len = input.read(buffer)) != -1) {
+                    size += len;
+                    if (size > maxSize) {
+                        throw new IOException("image too large: " + size);
+                    }
+                    output.write(buffer, 0, len);
+                }
+            }
+            downloaded.increment();
+            downloadBytes.add(size);
+            return HexFormat.of().formatHex(digest.digest());
+        } finally {
+            connection.disconnect();
+            downloadCost.add(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 优先从url中获取文件类型，获取不到时根据文件头的魔数判断
+     */
+    private String fileType(String img, File file) throws IOException {
+        String path = toUri(img).getPath();
+        int index = path == null ? -1 : path.lastIndexOf(".");
+        if (index > 0 && index < path.length() - 1 && path.length() - index <= 5) {
+            String ext = path.substring(index + 1);
+            if (StringUtils.isAlphanumeric(ext)) {
+                return ext;
+            }
+        }
+
+        byte[] head = new byte[MAGIC_HEAD_SIZE];
+        int len;
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            len = input.readNBytes(head, 0, head.length);
+        }
+        return imageUploader.getFileType(new ByteArrayInputStream(head, 0, len), null);
+    }
+
+    /**
+     * 解析图片地址：markdown 中的图片地址常带有空格、中文等未编码的字符，严格解析失败时对非法字符编码后再解析；
+     * 已编码的地址按原样解析，避免 % 被二次编码
+     *
+     * @param img 图片地址
+     * @return
+     * @throws IllegalArgumentException 地址无法解析
+     */
+    public static URI toUri(String img) {
+        try {
+            return URI.create(img);
+        } catch (IllegalArgumentException e) {
+            return UriComponentsBuilder.fromUriString(img).encode().build().toUri();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("submitted", submitted.sum());
+        stats.put("urlHit", urlHit.sum());
+        stats.put("inflightJoined", inflightJoined.sum());
+        stats.put("downloaded", downloaded.sum());
+        stats.put("downloadBytes", downloadBytes.sum());
+        stats.put("avgDownloadCostMs", downloaded.sum() == 0 ? 0 : downloadCost.sum() / downloaded.sum());
+        stats.put("hashHit", hashHit.sum());
+        stats.put("uploaded", uploaded.sum());
+        stats.put("failed", failed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("inflight", inflight.size());
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        synchronized (hosts) {
+            stats.put("hosts", hosts.size());
+            stats.put("hostWaiting", waiting);
+        }
+        return stats;
+    }
+
+    private record Task(String img, String urlKey, String host, CompletableFuture<String> future) {
+    }
+
+    /**
+     * 一个域名的下载状态，由 hosts 的锁保护
+     */
+    private static class HostQueue {
+        /**
+         * 正在下载的图片数，不超过 per-host
+         */
+        private int running;
+        private final ArrayDeque<Task> waiting = new ArrayDeque<>();
+    }
+}
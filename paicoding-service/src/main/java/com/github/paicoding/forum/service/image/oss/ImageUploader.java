@@ -4,8 +4,13 @@ import com.github.hui.quick.plugin.base.constants.MediaType;
 import com.github.hui.quick.plugin.base.file.FileReadUtil;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
@@ -27,6 +32,22 @@ public interface ImageUploader {
      */
     String upload(InputStream input, String fileType);
 
+    /**
+     * 本地文件上传，文件内容的md5已知，支持以md5命名的实现可以直接使用，无需再读入内存计算
+     *
+     * @param file
+     * @param md5
+     * @param fileType
+     * @return
+     */
+    default String upload(File file, String md5, String fileType) {
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            return upload(input, fileType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * 判断外网图片是否依然需要处理
      *
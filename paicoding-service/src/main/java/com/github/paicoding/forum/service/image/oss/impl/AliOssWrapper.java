@@ -22,6 +22,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.StreamUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.InputStream;
 
 /**
@@ -97,6 +98,38 @@ public class AliOssWrapper implements ImageUploader, InitializingBean, Disposabl
         }
     }
 
+    /**
+     * 直接从文件流式上传，文件名与 {@link #upload(byte[], String)} 一致，使用内容的md5
+     */
+    @Override
+    public String upload(File file, String md5, String fileType) {
+        StopWatchUtil stopWatchUtil = StopWatchUtil.init("图片上传");
+        try {
+            String fileName = properties.getOss().getPrefix() + md5 + "." + fileType;
+            PutObjectRequest putObjectRequest = new PutObjectRequest(properties.getOss().getBucket(), fileName, file);
+            putObjectRequest.setProcess("true");
+            PutObjectResult result = stopWatchUtil.record("文件上传", () -> ossClient.putObject(putObjectRequest));
+            if (SUCCESS_CODE == result.getResponse().getStatusCode()) {
+                return properties.getOss().getHost() + fileName;
+            } else {
+                log.error("upload to oss error! response:{}", result.getResponse().getStatusCode());
+                return "";
+            }
+        } catch (OSSException oe) {
+            log.error("Oss rejected with an error response! msg:{}, code:{}, reqId:{}, host:{}", oe.getErrorMessage(), oe.getErrorCode(), oe.getRequestId(), oe.getHostId());
+            return "";
+        } catch (Exception ce) {
+            log.error("Caught an ClientException, which means the client encountered "
+                    + "a serious internal problem while trying to communicate with OSS, "
+                    + "such as not being able to access the network. {}", ce.getMessage());
+            return "";
+        } finally {
+            if (log.isDebugEnabled()) {
+                log.debug("upload image size:{} cost: {}", file.length(), stopWatchUtil.prettyPrint());
+            }
+        }
+    }
+
     @Override
     public boolean uploadIgnore(String fileUrl) {
         if (StringUtils.isNotBlank(properties.getOss().getHost()) && fileUrl.startsWith(properties.getOss().getHost())) {
@@ -1,6 +1,5 @@
 package com.github.paicoding.forum.service.image.oss.impl;
 
-import com.github.hui.quick.plugin.base.file.FileWriteUtil;
 import com.github.paicoding.forum.api.model.exception.ExceptionUtil;
 import com.github.paicoding.forum.api.model.vo.constants.StatusEnum;
 import com.github.paicoding.forum.core.config.ImageProperties;
@@ -11,16 +10,26 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StreamUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Random;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
 
 /**
  * 本地保存上传文件
+ * <p>
+ * 按内容寻址存储：文件以内容的md5命名，并按md5的前两级分目录存放（如 ab/cd/abcd...ef.png），相同内容的图片只保存一份；
+ * 上传时边写临时文件边计算md5，写完后原子重命名到最终位置，不在内存中持有整张图片
  *
  * @author XuYifei
  * @date 2024-07-12
@@ -29,49 +38,120 @@ import java.util.Random;
 @ConditionalOnExpression(value = "#{'local'.equals(environment.getProperty('image.oss.type'))}")
 @Component
 public class LocalStorageWrapper implements ImageUploader {
+    /**
+     * 用于根据魔数识别文件类型的文件头长度
+     */
+    private static final int MAGIC_HEAD_SIZE = 64;
+
+    private static final String TMP_DIR = ".tmp";
+
     @Autowired
     private ImageProperties imageProperties;
-    private Random random;
-
-    public LocalStorageWrapper() {
-        random = new Random();
-    }
 
     @Override
     public String upload(InputStream input, String fileType) {
         // 记录耗时分布
         StopWatchUtil stopWatchUtil = StopWatchUtil.init("图片上传");
+        Path tmp = null;
         try {
-            if (fileType == null) {
-                // 根据魔数判断文件类型
-                InputStream finalInput = input;
-                byte[] bytes = stopWatchUtil.record("流转字节", () -> StreamUtils.copyToByteArray(finalInput));
-                input = new ByteArrayInputStream(bytes);
-                fileType = getFileType((ByteArrayInputStream) input, fileType);
-            }
+            Path root = root();
+            Path tmpDir = Files.createDirectories(root.resolve(TMP_DIR));
+            tmp = Files.createTempFile(tmpDir, "upload", ".tmp");
 
-            String path = imageProperties.getAbsTmpPath() + imageProperties.getWebImgPath();
-            String fileName = genTmpFileName();
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] head = new byte[MAGIC_HEAD_SIZE];
+            int headLen = 0;
+            try (InputStream in = new DigestInputStream(input, digest); OutputStream out = Files.newOutputStream(tmp)) {
+                byte[] buffer = new byte[8192];
+                int len;
+                while ((len = in.read(buffer)) != -1) {
+                    if (headLen < head.length) {
+                        int n = Math.min(len, head.length - headLen);
+                        System.arraycopy(buffer, 0, head, headLen, n);
+                        headLen += n;
+                    }
+                    out.write(buffer, 0, len);
+                }
+            }
 
-            InputStream finalInput = input;
-            String finalFileType = fileType;
-            FileWriteUtil.FileInfo file = stopWatchUtil.record("存储", () -> FileWriteUtil.saveFileByStream(finalInput, path, fileName, finalFileType));
-            return imageProperties.buildImgUrl(imageProperties.getWebImgPath() + file.getFilename() + "." + file.getFileType());
+            String md5 = HexFormat.of().formatHex(digest.digest());
+            String type = getFileType(new ByteArrayInputStream(head, 0, headLen), fileType);
+            Path tmpFile = tmp;
+            return stopWatchUtil.record("存储", () -> store(tmpFile, md5, type));
         } catch (Exception e) {
             log.error("Parse img from httpRequest to BufferedImage error! e:", e);
             throw ExceptionUtil.of(StatusEnum.UPLOAD_PIC_FAILED);
         } finally {
+            deleteQuietly(tmp);
             log.info("图片上传耗时: {}", stopWatchUtil.prettyPrint());
         }
     }
 
     /**
-     * 获取文件临时名称
+     * 转存管道已经下载到本地并计算好md5，直接移动到最终位置即可
+     */
+    @Override
+    public String upload(File file, String md5, String fileType) {
+        try {
+            return store(file.toPath(), md5, fileType);
+        } catch (IOException e) {
+            log.error("save local image error! file:{}", file, e);
+            throw ExceptionUtil.of(StatusEnum.UPLOAD_PIC_FAILED);
+        }
+    }
+
+    /**
+     * 将文件移动到按内容寻址的位置；已经存在相同内容的文件时直接复用
      *
-     * @return
+     * @return 图片的访问地址
      */
-    private String genTmpFileName() {
-        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddhhmmssSSS")) + "_" + random.nextInt(100);
+    private String store(Path source, String md5, String fileType) throws IOException {
+        String relative = relativePath(md5, fileType);
+        Path target = root().resolve(relative);
+        if (!Files.exists(target)) {
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                // 不在同一个文件系统时，退化为先拷贝到同目录的临时文件再重命名，保证不会读到写了一半的文件
+                Path tmp = Files.createTempFile(target.getParent(), md5, ".tmp");
+                try {
+                    Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    deleteQuietly(tmp);
+                }
+            }
+        }
+        return imageProperties.buildImgUrl(imageProperties.getWebImgPath() + relative);
+    }
+
+    /**
+     * @return 存储根目录
+     */
+    public Path root() {
+        return Paths.get(imageProperties.getAbsTmpPath(), imageProperties.getWebImgPath());
+    }
+
+    /**
+     * 按md5的前两级分目录，避免单个目录下文件过多
+     */
+    private String relativePath(String md5, String fileType) {
+        if (fileType == null || !fileType.matches("[a-zA-Z0-9]{1,8}")) {
+            fileType = DEFAULT_FILE_TYPE;
+        }
+        return md5.substring(0, 2) + "/" + md5.substring(2, 4) + "/" + md5 + "." + fileType;
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("delete tmp file error! {}", path, e);
+        }
     }
 
     /**
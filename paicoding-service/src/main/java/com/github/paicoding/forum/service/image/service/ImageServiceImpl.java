@@ -1,18 +1,13 @@
 package com.github.paicoding.forum.service.image.service;
 
 import com.github.hui.quick.plugin.base.constants.MediaType;
-import com.github.hui.quick.plugin.base.file.FileReadUtil;
 import com.github.paicoding.forum.api.model.exception.ExceptionUtil;
 import com.github.paicoding.forum.api.model.vo.constants.StatusEnum;
 import com.github.paicoding.forum.core.async.AsyncExecute;
-import com.github.paicoding.forum.core.async.AsyncUtil;
 import com.github.paicoding.forum.core.mdc.MdcDot;
 import com.github.paicoding.forum.core.util.MdImgLoader;
+import com.github.paicoding.forum.service.image.ingest.ImageIngestPipeline;
 import com.github.paicoding.forum.service.image.oss.ImageUploader;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.Maps;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -23,13 +18,14 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.multipart.MultipartHttpServletRequest;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URI;
-import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * @author XuYifei
@@ -38,33 +34,16 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 @Service
 public class ImageServiceImpl implements ImageService {
+    /**
+     * 等待外网图片转存的最长时间，毫秒；超时的图片保留原地址，转存任务继续执行，完成后写入索引供下次直接使用
+     */
+    private static final long INGEST_TIMEOUT = 4000;
 
     @Autowired
     private ImageUploader imageUploader;
 
-    /**
-     * 外网图片转存缓存
-     */
-    private LoadingCache<String, String> imgReplaceCache = CacheBuilder.newBuilder().maximumSize(300).expireAfterWrite(5, TimeUnit.MINUTES).build(new CacheLoader<String, String>() {
-        @Override
-        public String load(String img) {
-            try {
-                InputStream stream = FileReadUtil.getStreamByFileName(img);
-                URI uri = URI.create(img);
-                String path = uri.getPath();
-                int index = path.lastIndexOf(".");
-                String fileType = null;
-                if (index > 0) {
-                    // 从url中获取文件类型
-                    fileType = path.substring(index + 1);
-                }
-                return imageUploader.upload(stream, fileType);
-            } catch (Exception e) {
-                log.error("外网图片转存异常! img:{}", img, e);
-                return "";
-            }
-        }
-    });
+    @Autowired
+    private ImageIngestPipeline imageIngestPipeline;
 
     @Override
     public String saveImg(HttpServletRequest request) {
@@ -104,24 +83,20 @@ public class ImageServiceImpl implements ImageService {
         }
 
         try {
-            String ans = imgReplaceCache.get(img);
-            if (StringUtils.isBlank(ans)) {
-//                return buildUploadFailImgUrl(img);
-                URL url = new URL(img);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setConnectTimeout(5000);
-                connection.setReadTimeout(5000);
-                return imageUploader.upload(connection.getInputStream(), connection.getContentType());
-            }
-            return ans;
+            return imageIngestPipeline.submit(img).get(INGEST_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("外网图片转存超时，保留原地址! img:{}", img);
+            return img;
         } catch (Exception e) {
+            if (rejected(e)) {
+                log.warn("外网图片转存队列已满，保留原地址! img:{}", img);
+                return img;
+            }
             log.error("外网图片转存异常! img:{}", img, e);
             return buildUploadFailImgUrl(img);
         }
     }
 
-
     /**
      * 外网图片自动转存，添加了执行日志，超时限制；避免出现因为超时导致发布文章异常
      *
@@ -137,33 +112,44 @@ public class ImageServiceImpl implements ImageService {
             return content;
         }
 
-        if (imgList.size() == 1) {
-            // 只有一张图片时，没有必要走异步，直接转存并返回
-            MdImgLoader.MdImg img = imgList.get(0);
-            String newImg = saveImg(img.getUrl());
-            return StringUtils.replace(content, img.getOrigin(), "![" + img.getDesc() + "](" + newImg + ")");
-        }
-
-        // 超过1张图片时，做并发的图片转存，提升性能
-        Map<MdImgLoader.MdImg, String> imgReplaceMap = Maps.newHashMapWithExpectedSize(imgList.size());
-        try(AsyncUtil.CompletableFutureBridge bridge = AsyncUtil.concurrentExecutor("MdImgReplace")) {
-            for (MdImgLoader.MdImg img : imgList) {
-                bridge.async(() -> {
-                    imgReplaceMap.put(img, saveImg(img.getUrl()));
-                }, img.getUrl());
+        // 所有图片统一提交到转存管道，由管道负责并发、限流与去重；已转存过的图片一次查询批量命中
+        List<MdImgLoader.MdImg> ingestList = new ArrayList<>();
+        for (MdImgLoader.MdImg img : imgList) {
+            if (!imageUploader.uploadIgnore(img.getUrl())) {
+                ingestList.add(img);
             }
-            bridge.allExecuted();
         }
+        Map<String, CompletableFuture<String>> futures = imageIngestPipeline.submitAll(ingestList.stream().map(MdImgLoader.MdImg::getUrl).toList());
 
         // 图片替换
-        for (Map.Entry<MdImgLoader.MdImg, String> entry : imgReplaceMap.entrySet()) {
-            MdImgLoader.MdImg img = entry.getKey();
-            String newImg = entry.getValue();
+        long deadline = System.currentTimeMillis() + INGEST_TIMEOUT;
+        for (MdImgLoader.MdImg img : ingestList) {
+            String newImg;
+            try {
+                newImg = futures.get(img.getUrl()).get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                log.warn("外网图片转存超时，保留原地址! img:{}", img.getUrl());
+                continue;
+            } catch (Exception e) {
+                if (rejected(e)) {
+                    log.warn("外网图片转存队列已满，保留原地址! img:{}", img.getUrl());
+                    continue;
+                }
+                log.error("外网图片转存异常! img:{}", img.getUrl(), e);
+                newImg = buildUploadFailImgUrl(img.getUrl());
+            }
             content = StringUtils.replace(content, img.getOrigin(), "![" + img.getDesc() + "](" + newImg + ")");
         }
         return content;
     }
 
+    /**
+     * 转存队列已满而被拒绝，图片本身没有问题，下次保存时会重新转存
+     */
+    private static boolean rejected(Exception e) {
+        return e instanceof ExecutionException && e.getCause() instanceof RejectedExecutionException;
+    }
+
     private String buildUploadFailImgUrl(String img) {
         return img.contains("saveError") ? img : img + "?&cause=saveError!";
     }
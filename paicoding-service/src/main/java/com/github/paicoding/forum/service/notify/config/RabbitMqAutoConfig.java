@@ -1,36 +1,26 @@
 package com.github.paicoding.forum.service.notify.config;
 
 import com.github.paicoding.forum.core.config.RabbitmqProperties;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.ApplicationArguments;
-import org.springframework.boot.ApplicationRunner;
+import com.github.paicoding.forum.core.rabbitmq.RabbitmqChannelPool;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 
 /**
+ * 开启rabbitmq时，消息发送使用独立的 channel 池；连接参数与消费端共用 spring.rabbitmq 的配置，但不共用连接
+ *
  * @author XuYifei
  * @date 2024-07-12
  */
-//@Configuration
-@ConditionalOnProperty(value = "rabbitmq.switchFlag")
+@Configuration
+@ConditionalOnProperty(value = "rabbitmq.switchFlag", havingValue = "true")
 @EnableConfigurationProperties(RabbitmqProperties.class)
-public class RabbitMqAutoConfig implements ApplicationRunner {
-//    @Resource
-//    private RabbitmqService rabbitmqService;
+public class RabbitMqAutoConfig {
 
-    @Autowired
-    private RabbitmqProperties rabbitmqProperties;
-
-
-    @Override
-    public void run(ApplicationArguments args) throws Exception {
-//        String host = rabbitmqProperties.getHost();
-//        Integer port = rabbitmqProperties.getPort();
-//        String userName = rabbitmqProperties.getUsername();
-//        String password = rabbitmqProperties.getPassport();
-//        String virtualhost = rabbitmqProperties.getVirtualhost();
-//        Integer poolSize = rabbitmqProperties.getPoolSize();
-//        RabbitmqConnectionPool.initRabbitmqConnectionPool(host, port, userName, password, virtualhost, poolSize);
-//        AsyncUtil.execute(() -> rabbitmqService.processConsumerMsg());
+    @Bean(destroyMethod = "close")
+    public RabbitmqChannelPool rabbitmqChannelPool(CachingConnectionFactory connectionFactory, RabbitmqProperties rabbitmqProperties) {
+        return new RabbitmqChannelPool(connectionFactory.getRabbitConnectionFactory(), rabbitmqProperties);
     }
 }
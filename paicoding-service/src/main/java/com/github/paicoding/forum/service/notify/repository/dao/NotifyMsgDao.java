@@ -13,6 +13,7 @@ import com.github.paicoding.forum.service.notify.repository.mapper.NotifyMsgMapp
 import org.springframework.stereotype.Repository;
 import org.springframework.util.CollectionUtils;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +25,10 @@ import java.util.stream.Collectors;
  */
 @Repository
 public class NotifyMsgDao extends ServiceImpl<NotifyMsgMapper, NotifyMsgDO> {
+    /**
+     * 单条 insert 语句写入的最大记录数
+     */
+    private static final int BATCH_SIZE = 200;
 
     /**
      * 查询消息记录，用于幂等过滤
@@ -44,6 +49,29 @@ public class NotifyMsgDao extends ServiceImpl<NotifyMsgMapper, NotifyMsgDO> {
         return list.get(0);
     }
 
+    /**
+     * 批量写入通知，幂等键已存在的不重复写入
+     *
+     * @param list
+     */
+    public void batchUpsert(List<NotifyMsgDO> list) {
+        for (int i = 0; i < list.size(); i += BATCH_SIZE) {
+            baseMapper.batchUpsert(list.subList(i, Math.min(i + BATCH_SIZE, list.size())));
+        }
+    }
+
+    /**
+     * 根据幂等键删除通知
+     *
+     * @param keys
+     * @return 删除的记录数
+     */
+    public int removeByDedupKeys(Collection<String> keys) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return 0;
+        }
+        return baseMapper.deleteByDedupKeys(keys);
+    }
 
     /**
      * 查询用户的消息通知数量
@@ -50,4 +50,9 @@ public class NotifyMsgDO extends BaseDO {
      * 0 未查看 1 已查看
      */
     private Integer state;
+
+    /**
+     * 幂等键，存在唯一索引；为空表示不去重
+     */
+    private String dedupKey;
 }
@@ -8,6 +8,7 @@ import com.github.paicoding.forum.api.model.vo.notify.dto.NotifyMsgDTO;
 import com.github.paicoding.forum.service.notify.repository.entity.NotifyMsgDO;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -54,4 +55,20 @@ public interface NotifyMsgMapper extends BaseMapper<NotifyMsgDO> {
     IPage<NotifyMsgDTO> listArticleRelatedNoticesPagination(long userId, int type, Page<NotifyMsgDTO> page);
 
     IPage<NotifyMsgDTO> listNormalNoticesPagination(long userId, int type, Page<NotifyMsgDTO> page);
+
+    /**
+     * 批量写入通知，幂等键已存在的记录保持不变
+     *
+     * @param list
+     * @return 影响行数
+     */
+    int batchUpsert(@Param("list") List<NotifyMsgDO> list);
+
+    /**
+     * 根据幂等键删除通知
+     *
+     * @param keys
+     * @return
+     */
+    int deleteByDedupKeys(@Param("keys") Collection<String> keys);
 }
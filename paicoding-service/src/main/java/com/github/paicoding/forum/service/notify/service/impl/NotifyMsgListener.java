@@ -1,23 +1,19 @@
 package com.github.paicoding.forum.service.notify.service.impl;
 
-import com.github.paicoding.forum.api.model.enums.NotifyStatEnum;
 import com.github.paicoding.forum.api.model.enums.NotifyTypeEnum;
 import com.github.paicoding.forum.api.model.vo.notify.NotifyMsgEvent;
-import com.github.paicoding.forum.core.util.SpringUtil;
-import com.github.paicoding.forum.service.article.repository.entity.ArticleDO;
-import com.github.paicoding.forum.service.article.service.ArticleReadService;
-import com.github.paicoding.forum.service.comment.repository.entity.CommentDO;
-import com.github.paicoding.forum.service.comment.service.CommentReadService;
-import com.github.paicoding.forum.service.notify.repository.dao.NotifyMsgDao;
-import com.github.paicoding.forum.service.notify.repository.entity.NotifyMsgDO;
+import com.github.paicoding.forum.service.notify.writer.NotifyMsgWriter;
 import com.github.paicoding.forum.service.user.repository.entity.UserFootDO;
-import com.github.paicoding.forum.service.user.repository.entity.UserRelationDO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationListener;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
+ * 未开启rabbitmq时，站内事件直接写入消息通知；幂等由 NotifyMsgWriter 基于唯一索引保证
+ *
  * @author XuYifei
  * @date 2024-07-12
  */
@@ -25,195 +21,22 @@ import org.springframework.stereotype.Service;
 @Async
 @Service
 public class NotifyMsgListener<T> implements ApplicationListener<NotifyMsgEvent<T>> {
-    private static final Long ADMIN_ID = 1L;
-    private final ArticleReadService articleReadService;
-
-    private final CommentReadService commentReadService;
+    private final NotifyMsgWriter notifyMsgWriter;
 
-    private final NotifyMsgDao notifyMsgDao;
-    public NotifyMsgListener(ArticleReadService articleReadService,
-                             CommentReadService commentReadService,
-                             NotifyMsgDao notifyMsgDao) {
-        this.articleReadService = articleReadService;
-        this.commentReadService = commentReadService;
-        this.notifyMsgDao = notifyMsgDao;
+    public NotifyMsgListener(NotifyMsgWriter notifyMsgWriter) {
+        this.notifyMsgWriter = notifyMsgWriter;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void onApplicationEvent(NotifyMsgEvent<T> msgEvent) {
-        switch (msgEvent.getNotifyType()) {
-            case COMMENT:
-                saveCommentNotify((NotifyMsgEvent<CommentDO>) msgEvent);
-                break;
-            case REPLY:
-                saveReplyNotify((NotifyMsgEvent<CommentDO>) msgEvent);
-                break;
-            case PRAISE:
-            case COLLECT:
-                saveArticleNotify((NotifyMsgEvent<UserFootDO>) msgEvent);
-                break;
-            case CANCEL_PRAISE:
-            case CANCEL_COLLECT:
-                removeArticleNotify((NotifyMsgEvent<UserFootDO>) msgEvent);
-                break;
-            case FOLLOW:
-                saveFollowNotify((NotifyMsgEvent<UserRelationDO>) msgEvent);
-                break;
-            case CANCEL_FOLLOW:
-                removeFollowNotify((NotifyMsgEvent<UserRelationDO>) msgEvent);
-                break;
-            case LOGIN:
-                // todo 用户登录，判断是否需要插入新的通知消息，暂时先不做
-                break;
-            case REGISTER:
-                // 首次注册，插入一个欢迎的消息
-                saveRegisterSystemNotify((Long) msgEvent.getContent());
-                break;
-            default:
-                // todo 系统消息
-        }
-    }
-
-    /**
-     * 评论 + 回复
-     *
-     * @param event
-     */
-    private void saveCommentNotify(NotifyMsgEvent<CommentDO> event) {
-        NotifyMsgDO msg = new NotifyMsgDO();
-        CommentDO comment = event.getContent();
-        ArticleDO article = articleReadService.queryBasicArticle(comment.getArticleId());
-        msg.setNotifyUserId(article.getUserId())
-                .setOperateUserId(comment.getUserId())
-                .setRelatedId(article.getId())
-                .setType(event.getNotifyType().getType())
-                .setState(NotifyStatEnum.UNREAD.getStat()).setMsg(comment.getContent());
-        // 对于评论而言，支持多次评论；因此若之前有也不删除
-        notifyMsgDao.save(msg);
-    }
-
-    /**
-     * 评论回复消息
-     *
-     * @param event
-     */
-    private void saveReplyNotify(NotifyMsgEvent<CommentDO> event) {
-        NotifyMsgDO msg = new NotifyMsgDO();
-        CommentDO comment = event.getContent();
-        CommentDO parent = commentReadService.queryComment(comment.getParentCommentId());
-        msg.setNotifyUserId(parent.getUserId())
-                .setOperateUserId(comment.getUserId())
-                .setRelatedId(comment.getArticleId())
-                .setType(event.getNotifyType().getType())
-                .setState(NotifyStatEnum.UNREAD.getStat()).setMsg(comment.getContent());
-        // 回复同样支持多次回复，不做幂等校验
-        notifyMsgDao.save(msg);
-    }
-
-    /**
-     * 点赞 + 收藏
-     *
-     * @param event
-     */
-    private void saveArticleNotify(NotifyMsgEvent<UserFootDO> event) {
-        UserFootDO foot = event.getContent();
-        NotifyMsgDO msg = new NotifyMsgDO().setRelatedId(foot.getDocumentId())
-                .setNotifyUserId(foot.getDocumentUserId())
-                .setOperateUserId(foot.getUserId())
-                .setType(event.getNotifyType().getType())
-                .setState(NotifyStatEnum.UNREAD.getStat())
-                .setMsg("");
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record == null) {
-            // 若之前已经有对应的通知，则不重复记录；因为一个用户对一篇文章，可以重复的点赞、取消点赞，但是最终我们只通知一次
-            notifyMsgDao.save(msg);
+        // 用户登录、系统消息等暂不产生通知
+        NotifyMsgWriter.Op op = notifyMsgWriter.toOp(msgEvent.getNotifyType(), msgEvent.getContent());
+        if (op != null) {
+            notifyMsgWriter.write(List.of(op));
         }
     }
 
     public void saveArticleNotify(UserFootDO foot, NotifyTypeEnum notifyTypeEnum) {
-        NotifyMsgDO msg = new NotifyMsgDO().setRelatedId(foot.getDocumentId())
-                .setNotifyUserId(foot.getDocumentUserId())
-                .setOperateUserId(foot.getUserId())
-                .setType(notifyTypeEnum.getType() )
-                .setState(NotifyStatEnum.UNREAD.getStat())
-                .setMsg("");
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record == null) {
-            // 若之前已经有对应的通知，则不重复记录；因为一个用户对一篇文章，可以重复的点赞、取消点赞，但是最终我们只通知一次
-            notifyMsgDao.save(msg);
-        }
+        notifyMsgWriter.write(List.of(notifyMsgWriter.toOp(notifyTypeEnum, foot)));
     }
-
-    /**
-     * 取消点赞，取消收藏
-     * @param event
-     */
-    private void removeArticleNotify(NotifyMsgEvent<UserFootDO> event) {
-        UserFootDO foot = event.getContent();
-        NotifyMsgDO msg = new NotifyMsgDO()
-                .setRelatedId(foot.getDocumentId())
-                .setNotifyUserId(foot.getDocumentUserId())
-                .setOperateUserId(foot.getUserId())
-                .setType(event.getNotifyType().getType())
-                .setMsg("");
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record != null) {
-            notifyMsgDao.removeById(record.getId());
-        }
-    }
-
-    /**
-     * 关注
-     *
-     * @param event
-     */
-    private void saveFollowNotify(NotifyMsgEvent<UserRelationDO> event) {
-        UserRelationDO relation = event.getContent();
-        NotifyMsgDO msg = new NotifyMsgDO().setRelatedId(0L)
-                .setNotifyUserId(relation.getUserId())
-                .setOperateUserId(relation.getFollowUserId())
-                .setType(event.getNotifyType().getType())
-                .setState(NotifyStatEnum.UNREAD.getStat())
-                .setMsg("");
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record == null) {
-            // 若之前已经有对应的通知，则不重复记录；因为用户的关注是一对一的，可以重复的关注、取消，但是最终我们只通知一次
-            notifyMsgDao.save(msg);
-        }
-    }
-
-    /**
-     * 取消关注
-     *
-     * @param event
-     */
-    private void removeFollowNotify(NotifyMsgEvent<UserRelationDO> event) {
-        UserRelationDO relation = event.getContent();
-        NotifyMsgDO msg = new NotifyMsgDO()
-                .setRelatedId(0L)
-                .setNotifyUserId(relation.getUserId())
-                .setOperateUserId(relation.getFollowUserId())
-                .setType(event.getNotifyType().getType())
-                .setMsg("");
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record != null) {
-            notifyMsgDao.removeById(record.getId());
-        }
-    }
-
-    private void saveRegisterSystemNotify(Long userId) {
-        NotifyMsgDO msg = new NotifyMsgDO().setRelatedId(0L)
-                .setNotifyUserId(userId)
-                .setOperateUserId(ADMIN_ID)
-                .setType(NotifyTypeEnum.REGISTER.getType())
-                .setState(NotifyStatEnum.UNREAD.getStat())
-                .setMsg(SpringUtil.getConfig("view.site.welcomeInfo"));
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record == null) {
-            // 若之前已经有对应的通知，则不重复记录；因为用户的关注是一对一的，可以重复的关注、取消，但是最终我们只通知一次
-            notifyMsgDao.save(msg);
-        }
-    }
-
 }
@@ -6,11 +6,12 @@ import com.github.paicoding.forum.api.model.enums.NotifyStatEnum;
 import com.github.paicoding.forum.api.model.enums.NotifyTypeEnum;
 import com.github.paicoding.forum.api.model.vo.PageListVo;
 import com.github.paicoding.forum.api.model.vo.PageParam;
+import com.github.paicoding.forum.api.model.vo.SeekCursor;
 import com.github.paicoding.forum.api.model.vo.notify.dto.NotifyMsgDTO;
 import com.github.paicoding.forum.core.util.NumUtil;
 import com.github.paicoding.forum.service.notify.repository.dao.NotifyMsgDao;
-import com.github.paicoding.forum.service.notify.repository.entity.NotifyMsgDO;
 import com.github.paicoding.forum.service.notify.service.NotifyService;
+import com.github.paicoding.forum.service.notify.writer.NotifyMsgWriter;
 import com.github.paicoding.forum.service.user.repository.entity.UserFootDO;
 import com.github.paicoding.forum.service.user.service.UserRelationService;
 import org.springframework.stereotype.Service;
@@ -32,6 +33,9 @@ public class NotifyServiceImpl implements NotifyService {
     @Resource
     private UserRelationService userRelationService;
 
+    @Resource
+    private NotifyMsgWriter notifyMsgWriter;
+
     {
         System.out.println("####NotifyServiceImpl#####");
     }
@@ -59,7 +63,7 @@ public class NotifyServiceImpl implements NotifyService {
         ReqInfoContext.getReqInfo().setMsgNum(queryUserNotifyMsgCount(userId));
         // 更新当前登录用户对粉丝的关注状态
         updateFollowStatus(userId, list);
-        return PageListVo.newVo(list, page.getPageSize());
+        return PageListVo.newVo(list, page.getPageSize(), msg -> SeekCursor.of(msg.getCreateTime().getTime(), msg.getMsgId()));
     }
 
     @Override
@@ -118,17 +122,8 @@ public class NotifyServiceImpl implements NotifyService {
 
     @Override
     public void saveArticleNotify(UserFootDO foot, NotifyTypeEnum notifyTypeEnum) {
-        NotifyMsgDO msg = new NotifyMsgDO().setRelatedId(foot.getDocumentId())
-                .setNotifyUserId(foot.getDocumentUserId())
-                .setOperateUserId(foot.getUserId())
-                .setType(notifyTypeEnum.getType() )
-                .setState(NotifyStatEnum.UNREAD.getStat())
-                .setMsg("");
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record == null) {
-            // 若之前已经有对应的通知，则不重复记录；因为一个用户对一篇文章，可以重复的点赞、取消点赞，但是最终我们只通知一次
-            notifyMsgDao.save(msg);
-        }
+        // 一个用户对一篇文章，可以重复的点赞、取消点赞，但是最终我们只通知一次，由幂等键去重
+        notifyMsgWriter.write(List.of(notifyMsgWriter.toOp(notifyTypeEnum, foot)));
     }
 
 }
@@ -1,15 +1,21 @@
 package com.github.paicoding.forum.service.notify.service.impl;
 
 import com.github.paicoding.forum.api.model.event.MessageQueueEvent;
+import com.github.paicoding.forum.core.rabbitmq.RabbitmqChannelPool;
 import com.github.paicoding.forum.core.util.SpringUtil;
 import com.github.paicoding.forum.service.notify.service.NotifyService;
 import com.github.paicoding.forum.service.notify.service.RabbitmqService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
 @Slf4j
 @Service
 public class RabbitmqServiceImpl implements RabbitmqService {
@@ -29,35 +35,20 @@ public class RabbitmqServiceImpl implements RabbitmqService {
     @Autowired
     private TopicExchange topicExchange;
 
+    /**
+     * 开启rabbitmq时存在
+     */
+    @Autowired(required = false)
+    private RabbitmqChannelPool rabbitmqChannelPool;
+
+    private final MessagePropertiesConverter messagePropertiesConverter = new DefaultMessagePropertiesConverter();
+
 
     @Override
     public boolean enabled() {
         return "true".equalsIgnoreCase(SpringUtil.getConfig("rabbitmq.switchFlag"));
     }
 
-//    @Override
-//    public void publishMsg(String exchange,
-//                           BuiltinExchangeType exchangeType,
-//                           String toutingKey,
-//                           String message) {
-//        try {
-//            //创建连接
-//            RabbitmqConnection rabbitmqConnection = RabbitmqConnectionPool.getConnection();
-//            Connection connection = rabbitmqConnection.getConnection();
-//            //创建消息通道
-//            Channel channel = connection.createChannel();
-//            // 声明exchange中的消息为可持久化，不自动删除
-//            channel.exchangeDeclare(exchange, exchangeType, true, false, null);
-//            // 发布消息
-//            channel.basicPublish(exchange, toutingKey, null, message.getBytes());
-//            log.info("Publish msg: {}", message);
-//            channel.close();
-//            RabbitmqConnectionPool.returnConnection(rabbitmqConnection);
-//        } catch (InterruptedException | IOException | TimeoutException e) {
-//            e.printStackTrace();
-//        }
-//    }
-
     @Override
     public <T> void publishDirectMsg(MessageQueueEvent<T> messageQueueEvent, String key) {
         this.publishDirectMsg(messageQueueEvent, key, true);
@@ -66,8 +57,23 @@ public class RabbitmqServiceImpl implements RabbitmqService {
     public <T> void publishDirectMsg(MessageQueueEvent<T> messageQueueEvent, String key, boolean isPersist) {
         MessageProperties messageProperties = new MessageProperties();
         messageProperties.setDeliveryMode(isPersist? MessageDeliveryMode.PERSISTENT: MessageDeliveryMode.NON_PERSISTENT);
+        // 发送时间，消费端据此统计消费延迟
+        messageProperties.setTimestamp(new Date());
 
         Message message = rabbitTemplate.getMessageConverter().toMessage(messageQueueEvent, messageProperties);
+        if (rabbitmqChannelPool != null) {
+            try {
+                rabbitmqChannelPool.publish(new RabbitmqChannelPool.Msg(directExchange.getName(), key,
+                        messagePropertiesConverter.fromMessageProperties(message.getMessageProperties(), StandardCharsets.UTF_8.name()),
+                        message.getBody()));
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // channel池不可用时退回 RabbitTemplate 发送，消费端按幂等键去重，重复投递不影响结果
+                log.warn("publish by channel pool error, fallback to rabbitTemplate! key: {}", key, e);
+            }
+        }
         rabbitTemplate.convertAndSend(directExchange.getName(), key, message);
     }
 
@@ -0,0 +1,222 @@
+package com.github.paicoding.forum.service.notify.writer;
+
+import com.github.paicoding.forum.api.model.enums.NotifyStatEnum;
+import com.github.paicoding.forum.api.model.enums.NotifyTypeEnum;
+import com.github.paicoding.forum.core.util.SpringUtil;
+import com.github.paicoding.forum.service.article.repository.entity.ArticleDO;
+import com.github.paicoding.forum.service.article.service.ArticleReadService;
+import com.github.paicoding.forum.service.comment.repository.entity.CommentDO;
+import com.github.paicoding.forum.service.comment.service.CommentReadService;
+import com.github.paicoding.forum.service.notify.repository.dao.NotifyMsgDao;
+import com.github.paicoding.forum.service.notify.repository.entity.NotifyMsgDO;
+import com.github.paicoding.forum.service.user.repository.entity.UserFootDO;
+import com.github.paicoding.forum.service.user.repository.entity.UserRelationDO;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息通知的写入
+ * <p>
+ * 1. 通知事件先转换为对 notify_msg 的写操作：新增 or 按幂等键删除
+ * 2. 幂等通过 notify_msg.dedup_key 的唯一索引保证：点赞、收藏、关注、注册欢迎 按 (类型, 通知用户, 触发用户, 关联主体) 去重，评论、回复按评论id去重；
+ * 重复投递的消息直接被 insert ... on duplicate key update 忽略，不需要先查询
+ * 3. 一批操作在一个事务内完成：同一个幂等键按发生顺序合并，先执行删除，再多行insert
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+@Service
+public class NotifyMsgWriter {
+    private static final Long ADMIN_ID = 1L;
+
+    @Resource
+    private ArticleReadService articleReadService;
+
+    @Resource
+    private CommentReadService commentReadService;
+
+    @Resource
+    private NotifyMsgDao notifyMsgDao;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder ops = new LongAdder();
+    private final LongAdder upserted = new LongAdder();
+    private final LongAdder removed = new LongAdder();
+
+    /**
+     * 通知事件中携带的内容类型
+     *
+     * @param type
+     * @return null 表示该类型的事件不产生通知
+     */
+    public static Class<?> contentType(NotifyTypeEnum type) {
+        return switch (type) {
+            case COMMENT, REPLY -> CommentDO.class;
+            case PRAISE, COLLECT, CANCEL_PRAISE, CANCEL_COLLECT -> UserFootDO.class;
+            case FOLLOW, CANCEL_FOLLOW -> UserRelationDO.class;
+            case REGISTER -> Long.class;
+            default -> null;
+        };
+    }
+
+    /**
+     * 将通知事件转换为写操作
+     *
+     * @param type    事件类型
+     * @param content 事件内容，类型见 {@link #contentType(NotifyTypeEnum)}
+     * @return null 表示不需要写入
+     */
+    public Op toOp(NotifyTypeEnum type, Object content) {
+        return switch (type) {
+            case COMMENT -> commentOp(type, (CommentDO) content);
+            case REPLY -> replyOp(type, (CommentDO) content);
+            case PRAISE, COLLECT -> Op.save(footMsg(type, (UserFootDO) content));
+            case CANCEL_PRAISE, CANCEL_COLLECT -> Op.remove(footMsg(type, (UserFootDO) content));
+            case FOLLOW -> Op.save(followMsg(type, (UserRelationDO) content));
+            case CANCEL_FOLLOW -> Op.remove(followMsg(type, (UserRelationDO) content));
+            case REGISTER -> Op.save(registerMsg((Long) content));
+            default -> null;
+        };
+    }
+
+    private Op commentOp(NotifyTypeEnum type, CommentDO comment) {
+        ArticleDO article = articleReadService.queryBasicArticle(comment.getArticleId());
+        if (article == null) {
+            return null;
+        }
+        NotifyMsgDO msg = new NotifyMsgDO().setNotifyUserId(article.getUserId())
+                .setOperateUserId(comment.getUserId())
+                .setRelatedId(article.getId())
+                .setType(type.getType())
+                .setState(NotifyStatEnum.UNREAD.getStat()).setMsg(comment.getContent());
+        // 对于评论而言，支持多次评论，只对同一条评论的重复投递去重
+        return Op.save(msg.setDedupKey(commentKey(type, comment)));
+    }
+
+    private Op replyOp(NotifyTypeEnum type, CommentDO comment) {
+        CommentDO parent = commentReadService.queryComment(comment.getParentCommentId());
+        if (parent == null) {
+            return null;
+        }
+        NotifyMsgDO msg = new NotifyMsgDO().setNotifyUserId(parent.getUserId())
+                .setOperateUserId(comment.getUserId())
+                .setRelatedId(comment.getArticleId())
+                .setType(type.getType())
+                .setState(NotifyStatEnum.UNREAD.getStat()).setMsg(comment.getContent());
+        return Op.save(msg.setDedupKey(commentKey(type, comment)));
+    }
+
+    private NotifyMsgDO footMsg(NotifyTypeEnum type, UserFootDO foot) {
+        // 一个用户对一篇文章，可以重复的点赞、取消点赞，但是最终我们只通知一次
+        return dedup(new NotifyMsgDO().setRelatedId(foot.getDocumentId())
+                .setNotifyUserId(foot.getDocumentUserId())
+                .setOperateUserId(foot.getUserId())
+                .setType(type.getType())
+                .setState(NotifyStatEnum.UNREAD.getStat())
+                .setMsg(""));
+    }
+
+    private NotifyMsgDO followMsg(NotifyTypeEnum type, UserRelationDO relation) {
+        // 用户的关注是一对一的，可以重复的关注、取消，但是最终我们只通知一次
+        return dedup(new NotifyMsgDO().setRelatedId(0L)
+                .setNotifyUserId(relation.getUserId())
+                .setOperateUserId(relation.getFollowUserId())
+                .setType(type.getType())
+                .setState(NotifyStatEnum.UNREAD.getStat())
+                .setMsg(""));
+    }
+
+    private NotifyMsgDO registerMsg(Long userId) {
+        return dedup(new NotifyMsgDO().setRelatedId(0L)
+                .setNotifyUserId(userId)
+                .setOperateUserId(ADMIN_ID)
+                .setType(NotifyTypeEnum.REGISTER.getType())
+                .setState(NotifyStatEnum.UNREAD.getStat())
+                .setMsg(SpringUtil.getConfig("view.site.welcomeInfo")));
+    }
+
+    private static NotifyMsgDO dedup(NotifyMsgDO msg) {
+        return msg.setDedupKey(msg.getType() + ":" + msg.getNotifyUserId() + ":" + msg.getOperateUserId() + ":" + msg.getRelatedId());
+    }
+
+    private static String commentKey(NotifyTypeEnum type, CommentDO comment) {
+        return comment.getId() == null ? null : type.getType() + ":c" + comment.getId();
+    }
+
+    /**
+     * 在一个事务内执行一批写操作
+     *
+     * @param list 按事件发生顺序排列的写操作
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void write(List<Op> list) {
+        if (list.isEmpty()) {
+            return;
+        }
+
+        // 同一个幂等键，只有最后一次操作决定最终的状态；中间出现过删除的，需要先删除旧记录再写入，即重新通知一次
+        Map<String, Op> last = new LinkedHashMap<>();
+        Set<String> removeKeys = new HashSet<>();
+        List<NotifyMsgDO> inserts = new ArrayList<>();
+        for (Op op : list) {
+            String key = op.msg().getDedupKey();
+            if (key == null) {
+                if (!op.remove()) {
+                    inserts.add(op.msg());
+                }
+                continue;
+            }
+            if (op.remove()) {
+                removeKeys.add(key);
+            }
+            last.put(key, op);
+        }
+        last.values().stream().filter(op -> !op.remove()).forEach(op -> inserts.add(op.msg()));
+
+        int removeCnt = notifyMsgDao.removeByDedupKeys(removeKeys);
+        if (!inserts.isEmpty()) {
+            notifyMsgDao.batchUpsert(inserts);
+        }
+
+        batches.increment();
+        ops.add(list.size());
+        removed.add(removeCnt);
+        upserted.add(inserts.size());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batches", batches.sum());
+        stats.put("ops", ops.sum());
+        stats.put("upserted", upserted.sum());
+        stats.put("removed", removed.sum());
+        return stats;
+    }
+
+    /**
+     * 对 notify_msg 的写操作
+     *
+     * @param msg    通知内容
+     * @param remove true 表示按幂等键删除
+     */
+    public record Op(NotifyMsgDO msg, boolean remove) {
+        public static Op save(NotifyMsgDO msg) {
+            return new Op(msg, false);
+        }
+
+        public static Op remove(NotifyMsgDO msg) {
+            return new Op(msg, true);
+        }
+    }
+}
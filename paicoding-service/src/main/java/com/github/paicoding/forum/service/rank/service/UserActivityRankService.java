@@ -21,6 +21,13 @@ public interface UserActivityRankService {
      */
     void addActivityScore(Long userId, ActivityScoreBo activityScore);
 
+    /**
+     * 批量添加活跃分，每个事件的用户取 {@link ActivityScoreBo#getUserId()}
+     *
+     * @param activityScores
+     */
+    void addActivityScores(List<ActivityScoreBo> activityScores);
+
     /**
      * 查询用户的活跃信息
      *
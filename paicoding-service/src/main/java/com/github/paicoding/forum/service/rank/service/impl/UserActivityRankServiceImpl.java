@@ -5,7 +5,6 @@ import com.github.paicoding.forum.api.model.vo.rank.dto.RankItemDTO;
 import com.github.paicoding.forum.api.model.vo.user.dto.SimpleUserInfoDTO;
 import com.github.paicoding.forum.core.cache.RedisClient;
 import com.github.paicoding.forum.core.util.DateUtil;
-import com.github.paicoding.forum.core.util.NumUtil;
 import com.github.paicoding.forum.service.rank.service.UserActivityRankService;
 import com.github.paicoding.forum.service.rank.service.model.ActivityScoreBo;
 import com.github.paicoding.forum.service.user.service.UserService;
@@ -13,10 +12,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +34,13 @@ import java.util.stream.IntStream;
 public class UserActivityRankServiceImpl implements UserActivityRankService {
     private static final String ACTIVITY_SCORE_KEY = "activity_rank_";
 
+    /**
+     * 单次脚本调用最多处理的事件数，避免脚本执行时间过长阻塞redis
+     */
+    private static final int MAX_BATCH_SIZE = 200;
+
+    private static final RedisScript<Long> ACTIVITY_SCORE_SCRIPT = RedisScript.of(new ClassPathResource("lua/activity_score.lua"), Long.class);
+
     @Autowired
     private UserService userService;
 
@@ -64,8 +73,71 @@ public class UserActivityRankServiceImpl implements UserActivityRankService {
         if (userId == null) {
             return;
         }
+        addActivityScores(Collections.singletonList(activityScore.setUserId(userId)));
+    }
+
+    /**
+     * 批量添加活跃分
+     * 幂等判断、加减分、日/月排行榜更新以及有效期初始化都在lua脚本中完成，每批事件只需要一次redis往返，且并发请求之间的幂等判断是原子的
+     *
+     * @param activityScores
+     */
+    @Override
+    public void addActivityScores(List<ActivityScoreBo> activityScores) {
+        if (CollectionUtils.isEmpty(activityScores)) {
+            return;
+        }
+
+        final String today = DateUtil.format(DateTimeFormatter.ofPattern("yyyyMMdd"), System.currentTimeMillis());
+        List<String> keys = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        for (ActivityScoreBo activityScore : activityScores) {
+            ImmutablePair<String, Integer> action = calculateScore(activityScore);
+            if (action == null) {
+                continue;
+            }
+            if (keys.isEmpty()) {
+                keys.add(todayRankKey());
+                keys.add(monthRankKey());
+                args.add(String.valueOf(31 * DateUtil.ONE_DAY_SECONDS));
+                args.add(String.valueOf(31 * DateUtil.ONE_DAY_SECONDS));
+                args.add(String.valueOf(12 * DateUtil.ONE_MONTH_SECONDS));
+            }
+            // 个人用户的操作记录作为幂等键，保存一个月的有效期，方便用户查询自己最近31天的活跃情况
+            keys.add(ACTIVITY_SCORE_KEY + activityScore.getUserId() + today);
+            args.add(String.valueOf(activityScore.getUserId()));
+            args.add(action.getLeft());
+            args.add(String.valueOf(action.getRight()));
+
+            if (keys.size() - 2 >= MAX_BATCH_SIZE) {
+                execute(keys, args);
+                keys = new ArrayList<>();
+                args = new ArrayList<>();
+            }
+        }
+        if (!keys.isEmpty()) {
+            execute(keys, args);
+        }
+    }
+
+    private void execute(List<String> keys, List<String> args) {
+        Long applied = RedisClient.evalLong(ACTIVITY_SCORE_SCRIPT, keys, args);
+        if (log.isDebugEnabled()) {
+            log.debug("活跃度批量更新! size = {}, applied = {}", keys.size() - 2, applied);
+        }
+    }
+
+    /**
+     * 计算活跃度(正为加活跃,负为减活跃)
+     *
+     * @param activityScore
+     * @return 幂等字段 -> 活跃分；不需要更新活跃度时返回null
+     */
+    private ImmutablePair<String, Integer> calculateScore(ActivityScoreBo activityScore) {
+        if (activityScore.getUserId() == null) {
+            return null;
+        }
 
-        // 1. 计算活跃度(正为加活跃,负为减活跃)
         String field;
         int score = 0;
         if (activityScore.getPath() != null) {
@@ -92,61 +164,9 @@ public class UserActivityRankServiceImpl implements UserActivityRankService {
             field = activityScore.getFollowedUserId() + "_follow";
             score = BooleanUtils.isTrue(activityScore.getFollow()) ? 2 : -2;
         } else {
-            return;
-        }
-
-        final String todayRankKey = todayRankKey();
-        final String monthRankKey = monthRankKey();
-        // 2. 幂等：判断之前是否有更新过相关的活跃度信息
-        final String userActionKey = ACTIVITY_SCORE_KEY + userId + DateUtil.format(DateTimeFormatter.ofPattern("yyyyMMdd"), System.currentTimeMillis());
-        Integer ans = RedisClient.hGet(userActionKey, field, Integer.class);
-        if (ans == null) {
-            // 2.1 之前没有加分记录，执行具体的加分
-            if (score > 0) {
-                // 记录加分记录
-                RedisClient.hSet(userActionKey, field, score);
-                // 个人用户的操作记录，保存一个月的有效期，方便用户查询自己最近31天的活跃情况
-                RedisClient.expire(userActionKey, 31 * DateUtil.ONE_DAY_SECONDS);
-
-                // 更新当天和当月的活跃度排行榜
-                Double newAns = RedisClient.zIncrBy(todayRankKey, String.valueOf(userId), score);
-                RedisClient.zIncrBy(monthRankKey, String.valueOf(userId), score);
-                if (log.isDebugEnabled()) {
-                    log.info("活跃度更新加分! key#field = {}#{}, add = {}, newScore = {}", todayRankKey, userId, score, newAns);
-                }
-                if (newAns <= score) {
-                    // 由于上面只实现了日/月活跃度的增加，但是没有设置对应的有效期；为了避免持久保存导致redis占用较高；因此这里设定了缓存的有效期
-                    // 日活跃榜单，保存31天；月活跃榜单，保存1年
-                    // 为什么是 newAns <= score 才设置有效期呢？
-                    // 因为 newAns 是用户当天的活跃度，如果发现和需要增加的活跃度 scopre 相等，则表明是今天的首次添加记录，此时设置有效期就比较符合预期了
-                    // 但是请注意，下面的实现有两个缺陷：
-                    //  1. 对于月的有效期，就变成了本月，每天的首次增加活跃度时，都会重新刷一下它的有效期，这样就和预期中的首次添加缓存时，设置有效期不符
-                    //  2. 若先增加活跃度1，再减少活跃度1，然后再加活跃度1，同样会导致重新算了有效期
-                    // 严谨一些的写法，应该是 先判断 key 的 ttl， 对于没有设置的才进行设置有效期，如下
-                    Long ttl = RedisClient.ttl(todayRankKey);
-                    if (!NumUtil.upZero(ttl)) {
-                        RedisClient.expire(todayRankKey, 31 * DateUtil.ONE_DAY_SECONDS);
-                    }
-                    ttl = RedisClient.ttl(monthRankKey);
-                    if (!NumUtil.upZero(ttl)) {
-                        RedisClient.expire(monthRankKey, 12 * DateUtil.ONE_MONTH_SECONDS);
-                    }
-                }
-            }
-        } else if (ans > 0) {
-            // 2.2 之前已经加过分，因此这次减分可以执行
-            if (score < 0) {
-                // 移除用户的活跃执行记录 --> 即移除用来做防重复添加活跃度的幂等键
-                Boolean oldHave = RedisClient.hDel(userActionKey, field);
-                if (BooleanUtils.isTrue(oldHave)) {
-                    Double newAns = RedisClient.zIncrBy(todayRankKey, String.valueOf(userId), score);
-                    RedisClient.zIncrBy(monthRankKey, String.valueOf(userId), score);
-                    if (log.isDebugEnabled()) {
-                        log.info("活跃度更新减分! key#field = {}#{}, add = {}, newScore = {}", todayRankKey, userId, score, newAns);
-                    }
-                }
-            }
+            return null;
         }
+        return score == 0 ? null : ImmutablePair.of(field, score);
     }
 
     @Override
@@ -10,6 +10,11 @@ import lombok.experimental.Accessors;
 @Data
 @Accessors(chain = true)
 public class ActivityScoreBo {
+    /**
+     * 操作用户，批量更新活跃度时使用
+     */
+    private Long userId;
+
     /**
      * 访问页面增加活跃度
      */
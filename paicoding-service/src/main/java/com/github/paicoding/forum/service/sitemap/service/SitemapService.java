@@ -32,15 +32,16 @@ public interface SitemapService {
      *
      * @param visitIp 访问者ip
      * @param path    访问的资源路径
+     * @param route   匹配到的路由模板，如 /article/detail/{articleId}；为空时（未匹配到接口）不统计资源维度的uv
      */
-    void saveVisitInfo(String visitIp, String path);
+    void saveVisitInfo(String visitIp, String path, String route);
 
 
     /**
      * 查询站点某一天or总的访问信息
      *
      * @param date 日期，为空时，表示查询所有的站点信息
-     * @param path 访问路径，为空时表示查站点信息
+     * @param path 访问路径，为空时表示查站点信息；uv 按路由模板统计，查询资源的uv时需传入路由模板
      * @return
      */
     SiteCntVo querySiteVisitInfo(LocalDate date, String path);
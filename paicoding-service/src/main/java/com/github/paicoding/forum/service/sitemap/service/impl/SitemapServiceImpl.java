@@ -25,6 +25,7 @@ import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -40,6 +41,12 @@ public class SitemapServiceImpl implements SitemapService {
 
     private static final String SITE_MAP_CACHE_KEY = "sitemap";
 
+    /**
+     * 每日uv HyperLogLog 的保留天数，过期后只保留当天的pv
+     */
+    @Value("${paicoding.site-visit.uv-retention-days:31}")
+    private long uvRetentionDays;
+
     @Resource
     private ArticleDao articleDao;
     @Resource
@@ -154,90 +161,72 @@ public class SitemapServiceImpl implements SitemapService {
     /**
      * 保存站点数据模型
      * <p>
-     * 站点统计hash：
+     * pv 计数使用hash：
      * - visit_info:
      * ---- pv: 站点的总pv
-     * ---- uv: 站点的总uv
      * ---- pv_path: 站点某个资源的总访问pv
-     * ---- uv_path: 站点某个资源的总访问uv
-     * - visit_info_ip:
-     * ---- pv: 用户访问的站点总次数
-     * ---- path_pv: 用户访问的路径总次数
      * - visit_info_20230822每日记录, 一天一条记录
-     * ---- pv: 12  # field = 月日_pv, pv的计数
-     * ---- uv: 5   # field = 月日_uv, uv的计数
-     * ---- pv_path: 2 # 资源的当前访问计数
-     * ---- uv_path: # 资源的当天访问uv
-     * ---- pv_ip: # 用户当天的访问次数
-     * ---- pv_path_ip: # 用户对资源的当天访问次数
+     * ---- pv: 12  # 当天的pv计数
+     * ---- pv_path: 2 # 资源的当天访问计数
+     * <p>
+     * uv 使用 HyperLogLog 按ip去重，内存占用不再随 ip数 * 资源数 线性增长（标准误差约0.81%）：
+     * - visit_info_uv: 站点的总uv
+     * - visit_info_uv_route: 站点某个路由的总uv
+     * - visit_info_20230822_uv: 当天的uv
+     * - visit_info_20230822_uv_route: 路由的当天uv
+     * <p>
+     * 资源维度的uv按路由模板（如 /article/detail/{articleId}）统计，key 的数量受接口数量限制，不会随任意路径增长；
+     * 每日的uv保留 uv-retention-days 天。所有的计数更新与有效期设置通过一次管道提交
      *
      * @param visitIp 访问者ip
      * @param path    访问的资源路径
+     * @param route   匹配到的路由模板，为空时不统计资源维度的uv
      */
     @Override
-    public void saveVisitInfo(String visitIp, String path) {
+    public void saveVisitInfo(String visitIp, String path, String route) {
         String globalKey = SitemapConstants.SITE_VISIT_KEY;
-        String day = SitemapConstants.day(LocalDate.now());
-
-        String todayKey = globalKey + "_" + day;
-
-        // 用户的全局访问计数+1
-        Long globalUserVisitCnt = RedisClient.hIncr(globalKey + "_" + visitIp, "pv", 1);
-        // 用户的当日访问计数+1
-        Long todayUserVisitCnt = RedisClient.hIncr(todayKey, "pv_" + visitIp, 1);
+        String todayKey = globalKey + "_" + SitemapConstants.day(LocalDate.now());
 
         RedisClient.PipelineAction pipelineAction = RedisClient.pipelineAction();
-        if (globalUserVisitCnt == 1) {
-            // 站点新用户
-            // 今日的uv + 1
-            pipelineAction.add(todayKey, "uv"
-                    , (connection, key, field) -> {
-                        connection.hIncrBy(key, field, 1);
-                    });
-            pipelineAction.add(todayKey, "uv_" + path
-                    , (connection, key, field) -> connection.hIncrBy(key, field, 1));
-
-            // 全局站点的uv
-            pipelineAction.add(globalKey, "uv", (connection, key, field) -> connection.hIncrBy(key, field, 1));
-            pipelineAction.add(globalKey, "uv_" + path, (connection, key, field) -> connection.hIncrBy(key, field, 1));
-        } else if (todayUserVisitCnt == 1) {
-            // 判断是今天的首次访问，更新今天的uv+1
-            pipelineAction.add(todayKey, "uv", (connection, key, field) -> connection.hIncrBy(key, field, 1));
-            if (RedisClient.hIncr(todayKey, "pv_" + path + "_" + visitIp, 1) == 1) {
-                // 判断是否为今天首次访问这个资源，若是，则uv+1
-                pipelineAction.add(todayKey, "uv_" + path, (connection, key, field) -> connection.hIncrBy(key, field, 1));
-            }
-
-            // 判断是否是用户的首次访问这个path，若是，则全局的path uv计数需要+1
-            if (RedisClient.hIncr(globalKey + "_" + visitIp, "pv_" + path, 1) == 1) {
-                pipelineAction.add(globalKey, "uv_" + path, (connection, key, field) -> connection.hIncrBy(key, field, 1));
-            }
-        }
-
-
-        // 更新pv 以及 用户的path访问信息
-        // 今天的相关信息 pv
+        // 全局 & 今天的 pv
+        pipelineAction.add(globalKey, "pv", (connection, key, field) -> connection.hIncrBy(key, field, 1));
+        pipelineAction.add(globalKey, "pv_" + path, (connection, key, field) -> connection.hIncrBy(key, field, 1));
         pipelineAction.add(todayKey, "pv", (connection, key, field) -> connection.hIncrBy(key, field, 1));
         pipelineAction.add(todayKey, "pv_" + path, (connection, key, field) -> connection.hIncrBy(key, field, 1));
-        if (todayUserVisitCnt > 1) {
-            // 非当天首次访问，则pv+1; 因为首次访问时，在前面更新uv时，已经计数+1了
-            pipelineAction.add(todayKey, "pv_" + path + "_" + visitIp, (connection, key, field) -> connection.hIncrBy(key, field, 1));
-        }
-
 
-        // 全局的 PV
-        pipelineAction.add(globalKey, "pv", (connection, key, field) -> connection.hIncrBy(key, field, 1));
-        pipelineAction.add(globalKey, "pv" + "_" + path, (connection, key, field) -> connection.hIncrBy(key, field, 1));
+        // 全局 & 今天的 uv
+        long expire = TimeUnit.DAYS.toSeconds(uvRetentionDays);
+        pipelineAction.add(uvKey(globalKey, null), visitIp, (connection, key, ip) -> connection.hyperLogLogCommands().pfAdd(key, ip));
+        pipelineAction.add(uvKey(todayKey, null), visitIp, (connection, key, ip) -> connection.hyperLogLogCommands().pfAdd(key, ip));
+        pipelineAction.add(uvKey(todayKey, null), (connection, key) -> connection.keyCommands().expire(key, expire));
+        if (route != null) {
+            pipelineAction.add(uvKey(globalKey, route), visitIp, (connection, key, ip) -> connection.hyperLogLogCommands().pfAdd(key, ip));
+            pipelineAction.add(uvKey(todayKey, route), visitIp, (connection, key, ip) -> connection.hyperLogLogCommands().pfAdd(key, ip));
+            pipelineAction.add(uvKey(todayKey, route), (connection, key) -> connection.keyCommands().expire(key, expire));
+        }
 
-        // 保存访问信息
         pipelineAction.execute();
         if (log.isDebugEnabled()) {
-            log.info("用户访问信息更新完成! 当前用户总访问: {}，今日访问: {}", globalUserVisitCnt, todayUserVisitCnt);
+            log.debug("用户访问信息更新完成! ip: {}, path: {}", visitIp, path);
         }
     }
 
+    /**
+     * uv统计的 HyperLogLog key
+     *
+     * @param statKey 站点 or 当天的统计key
+     * @param path    路由模板，为空时表示站点
+     * @return
+     */
+    private static String uvKey(String statKey, String path) {
+        return path == null ? statKey + "_uv" : statKey + "_uv_" + path;
+    }
+
     /**
      * 查询站点某一天or总的访问信息
+     * <p>
+     * 兼容旧的统计数据：旧版本的uv记录在hash的uv字段中，切换之后不再更新，这里将其与 HyperLogLog 的计数累加；
+     * 切换前后都访问过的用户会被重复计算一次，属于可以接受的误差
      *
      * @param date 日期，为空时，表示查询所有的站点信息
      * @param path 访问路径，为空时表示查站点信息
@@ -259,10 +248,11 @@ public class SitemapServiceImpl implements SitemapService {
         }
 
         Map<String, Integer> map = RedisClient.hMGet(todayKey, Arrays.asList(pvField, uvField), Integer.class);
+        Long uv = RedisClient.pfCount(uvKey(todayKey, path));
         SiteCntVo siteInfo = new SiteCntVo();
         siteInfo.setDay(day);
         siteInfo.setPv(map.getOrDefault(pvField, 0));
-        siteInfo.setUv(map.getOrDefault(uvField, 0));
+        siteInfo.setUv(map.getOrDefault(uvField, 0) + (uv == null ? 0 : uv.intValue()));
         return siteInfo;
     }
 }
@@ -0,0 +1,142 @@
+package com.github.paicoding.forum.service.statistics.aggregator;
+
+import com.github.paicoding.forum.service.article.repository.dao.ArticleDao;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 文章阅读计数的写缓冲
+ * <p>
+ * 每次阅读只在内存中按文章id累加，由定时任务把增量合并成 insert ... on duplicate key update cnt = cnt + ? 批量写入db，
+ * 避免每次阅读都对 read_count 做一次查询 + 一次写入
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+@Component
+public class ReadCountAggregator {
+    /**
+     * 单条sql最多合并的文章数
+     */
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    @Resource
+    private ArticleDao articleDao;
+
+    /**
+     * key: 文章id, value: 尚未落库的阅读增量
+     */
+    private final ConcurrentHashMap<Long, LongAdder> buffer = new ConcurrentHashMap<>();
+
+    /**
+     * 上一轮刷盘时被移除的空闲计数器；移除的瞬间可能还有线程持有它在累加，因此下一轮再把它们的余量取出来
+     */
+    private List<Map.Entry<Long, LongAdder>> retired = new ArrayList<>();
+
+    private final LongAdder pending = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong lastFlushCost = new AtomicLong();
+    private final AtomicLong maxFlushCost = new AtomicLong();
+
+    /**
+     * 阅读计数 +1，只写内存
+     *
+     * @param articleId
+     */
+    public void incr(Long articleId) {
+        buffer.computeIfAbsent(articleId, k -> new LongAdder()).increment();
+        pending.increment();
+    }
+
+    /**
+     * 定时把缓冲的增量批量写入db，默认每5s一次
+     */
+    @Scheduled(fixedDelayString = "${paicoding.read-count.flush-interval:5000}")
+    public synchronized void flush() {
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (Map.Entry<Long, LongAdder> entry : retired) {
+            drain(entry.getKey(), entry.getValue(), deltas);
+        }
+        retired = new ArrayList<>();
+
+        for (Map.Entry<Long, LongAdder> entry : buffer.entrySet()) {
+            if (!drain(entry.getKey(), entry.getValue(), deltas) && buffer.remove(entry.getKey(), entry.getValue())) {
+                // 一个周期内都没有阅读的文章，移出缓冲区，避免冷数据一直占用内存
+                retired.add(entry);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<Long> ids = new ArrayList<>(deltas.keySet());
+        for (int i = 0; i < ids.size(); i += FLUSH_BATCH_SIZE) {
+            Map<Long, Integer> batch = new HashMap<>();
+            ids.subList(i, Math.min(i + FLUSH_BATCH_SIZE, ids.size())).forEach(id -> batch.put(id, deltas.get(id)));
+            int total = batch.values().stream().mapToInt(Integer::intValue).sum();
+            try {
+                articleDao.batchIncrReadCount(batch);
+                flushedRows.add(batch.size());
+                pending.add(-total);
+            } catch (Exception e) {
+                // 写入失败时把增量放回缓冲区，下一轮再试，保证计数不丢
+                flushFailures.increment();
+                batch.forEach((id, delta) -> buffer.computeIfAbsent(id, k -> new LongAdder()).add(delta));
+                log.error("flush article read count error! size: {}", batch.size(), e);
+            }
+        }
+
+        long cost = System.currentTimeMillis() - start;
+        flushCount.incrementAndGet();
+        lastFlushCost.set(cost);
+        maxFlushCost.accumulateAndGet(cost, Math::max);
+    }
+
+    private boolean drain(Long articleId, LongAdder adder, Map<Long, Integer> deltas) {
+        long delta = adder.sumThenReset();
+        if (delta <= 0) {
+            return false;
+        }
+        deltas.merge(articleId, (int) delta, Integer::sum);
+        return true;
+    }
+
+    /**
+     * 应用关闭时，把剩余的增量全部写入db
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        // 第二次刷盘用于取出上一轮被移除的计数器中的余量
+        flush();
+        log.info("read count aggregator drained, pending: {}", pending.sum());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bufferedDelta", pending.sum());
+        stats.put("bufferedArticles", buffer.size());
+        stats.put("flushCount", flushCount.get());
+        stats.put("flushedRows", flushedRows.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        stats.put("lastFlushCostMs", lastFlushCost.get());
+        stats.put("maxFlushCostMs", maxFlushCost.get());
+        return stats;
+    }
+}
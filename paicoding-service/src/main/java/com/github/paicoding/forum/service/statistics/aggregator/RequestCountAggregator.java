@@ -0,0 +1,169 @@
+package com.github.paicoding.forum.service.statistics.aggregator;
+
+import com.github.paicoding.forum.core.cache.RedisClient;
+import com.github.paicoding.forum.service.statistics.service.RequestCountService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求计数的写缓冲
+ * <p>
+ * 每次请求只在本机内存中按 天 + ip 累加，由定时任务把增量通过 pipeline 批量 HINCRBY 到redis中对应日期的计数hash；
+ * redis 是多个节点共享的计数源，RequestCountServiceImpl#persist2Db 再把redis中的计数整体写入db
+ * <p>
+ * 计数按请求发生的日期归属，跨天时前一天的增量仍然累加到前一天的hash中，不会串到新的一天
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+@Component
+public class RequestCountAggregator {
+    /**
+     * 单个 pipeline 最多合并的ip数
+     */
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    /**
+     * redis中每天计数hash的有效期，秒；需要覆盖到第二天的持久化任务执行完毕
+     */
+    @Value("${paicoding.request-count.ttl:259200}")
+    private long ttl;
+
+    /**
+     * key: 日期 + ip, value: 尚未写入redis的请求增量
+     */
+    private final ConcurrentHashMap<DayHost, LongAdder> buffer = new ConcurrentHashMap<>();
+
+    /**
+     * 上一轮刷新时被移除的空闲计数器；移除的瞬间可能还有线程持有它在累加，因此下一轮再把它们的余量取出来
+     */
+    private List<Map.Entry<DayHost, LongAdder>> retired = new ArrayList<>();
+
+    private final LongAdder pending = new LongAdder();
+    private final LongAdder flushedHosts = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong lastFlushCost = new AtomicLong();
+    private final AtomicLong maxFlushCost = new AtomicLong();
+
+    /**
+     * 当天的请求计数 +1，只写内存
+     *
+     * @param host
+     */
+    public void incr(String host) {
+        incr(LocalDate.now(), host);
+    }
+
+    /**
+     * 请求计数 +1，只写内存
+     *
+     * @param day  请求发生的日期
+     * @param host
+     */
+    public void incr(LocalDate day, String host) {
+        buffer.computeIfAbsent(new DayHost(day, host), k -> new LongAdder()).increment();
+        pending.increment();
+    }
+
+    /**
+     * 定时把缓冲的增量批量累加到redis，默认每5s一次
+     */
+    @Scheduled(fixedDelayString = "${paicoding.request-count.flush-interval:5000}")
+    public synchronized void flush() {
+        Map<LocalDate, Map<String, Integer>> deltas = new HashMap<>();
+        for (Map.Entry<DayHost, LongAdder> entry : retired) {
+            drain(entry.getKey(), entry.getValue(), deltas);
+        }
+        retired = new ArrayList<>();
+
+        for (Map.Entry<DayHost, LongAdder> entry : buffer.entrySet()) {
+            if (!drain(entry.getKey(), entry.getValue(), deltas) && buffer.remove(entry.getKey(), entry.getValue())) {
+                // 一个周期内都没有请求的ip，移出缓冲区，前一天的计数器也会在跨天后的下一轮被移除
+                retired.add(entry);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        deltas.forEach((day, dayDeltas) -> {
+            String key = RequestCountService.REQUEST_COUNT_PREFIX + Date.valueOf(day);
+            List<String> hosts = new ArrayList<>(dayDeltas.keySet());
+            for (int i = 0; i < hosts.size(); i += FLUSH_BATCH_SIZE) {
+                Map<String, Integer> batch = new HashMap<>();
+                hosts.subList(i, Math.min(i + FLUSH_BATCH_SIZE, hosts.size())).forEach(host -> batch.put(host, dayDeltas.get(host)));
+                int total = batch.values().stream().mapToInt(Integer::intValue).sum();
+                try {
+                    RedisClient.PipelineAction action = RedisClient.pipelineAction();
+                    batch.forEach((host, cnt) -> action.add(key, host, (connection, k, field) -> connection.hIncrBy(k, field, cnt)));
+                    action.add(key, (connection, k) -> connection.expire(k, ttl));
+                    action.execute();
+                    flushedHosts.add(batch.size());
+                    pending.add(-total);
+                } catch (Exception e) {
+                    // 写入失败时把增量放回缓冲区，下一轮再试，保证计数不丢
+                    flushFailures.increment();
+                    batch.forEach((host, cnt) -> buffer.computeIfAbsent(new DayHost(day, host), k -> new LongAdder()).add(cnt));
+                    log.error("flush request count error! day: {}, size: {}", day, batch.size(), e);
+                }
+            }
+        });
+
+        long cost = System.currentTimeMillis() - start;
+        flushCount.incrementAndGet();
+        lastFlushCost.set(cost);
+        maxFlushCost.accumulateAndGet(cost, Math::max);
+    }
+
+    private boolean drain(DayHost key, LongAdder adder, Map<LocalDate, Map<String, Integer>> deltas) {
+        long delta = adder.sumThenReset();
+        if (delta <= 0) {
+            return false;
+        }
+        deltas.computeIfAbsent(key.day(), k -> new HashMap<>()).merge(key.host(), (int) delta, Integer::sum);
+        return true;
+    }
+
+    /**
+     * 应用关闭时，把剩余的增量全部写入redis
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        // 第二次刷新用于取出上一轮被移除的计数器中的余量
+        flush();
+        log.info("request count aggregator drained, pending: {}", pending.sum());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bufferedDelta", pending.sum());
+        stats.put("bufferedHosts", buffer.size());
+        stats.put("flushCount", flushCount.get());
+        stats.put("flushedHosts", flushedHosts.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        stats.put("lastFlushCostMs", lastFlushCost.get());
+        stats.put("maxFlushCostMs", maxFlushCost.get());
+        return stats;
+    }
+
+    private record DayHost(LocalDate day, String host) {
+    }
+}
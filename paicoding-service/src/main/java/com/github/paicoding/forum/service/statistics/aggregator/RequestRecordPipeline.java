@@ -0,0 +1,191 @@
+package com.github.paicoding.forum.service.statistics.aggregator;
+
+import com.github.paicoding.forum.core.async.MpscRingBuffer;
+import com.github.paicoding.forum.core.mdc.MdcUtil;
+import com.github.paicoding.forum.service.statistics.aggregator.model.RequestRecord;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 请求记录的异步处理管道
+ * <p>
+ * 请求线程只把原始字段写入无锁的环形缓冲区，由一个专用的消费线程负责：
+ * 1. 拼装并输出访问日志
+ * 2. 把请求计数交给 RequestCountAggregator 按 天 + ip 合并，定时批量累加到redis
+ * <p>
+ * 缓冲区写满时，按配置丢弃(drop) 或 短暂阻塞等待(block)，超时仍写不进去的记录会被丢弃
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+@Component
+public class RequestRecordPipeline {
+    private static final Logger REQ_LOG = LoggerFactory.getLogger("req");
+
+    private static final String OVERFLOW_BLOCK = "block";
+
+    /**
+     * 缓冲区为空时消费线程的休眠时间
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 缓冲区容量
+     */
+    @Value("${paicoding.req-record.capacity:8192}")
+    private int capacity;
+
+    /**
+     * 缓冲区写满时的处理策略：drop 直接丢弃; block 阻塞等待，最多等待 blockTimeout 毫秒
+     */
+    @Value("${paicoding.req-record.overflow:drop}")
+    private String overflow;
+
+    @Value("${paicoding.req-record.block-timeout:50}")
+    private long blockTimeout;
+
+    @Resource
+    private RequestCountAggregator requestCountAggregator;
+
+    private MpscRingBuffer<RequestRecord> buffer;
+
+    private Thread consumer;
+
+    private volatile boolean running;
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blockedOffers = new LongAdder();
+    private final AtomicLong logged = new AtomicLong();
+    private volatile int maxQueueDepth;
+
+    @PostConstruct
+    public void init() {
+        buffer = new MpscRingBuffer<>(capacity);
+        running = true;
+        consumer = new Thread(this::consume, "req-record-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+        log.info("request record pipeline started, capacity: {}, overflow: {}", buffer.capacity(), overflow);
+    }
+
+    /**
+     * 提交一条请求记录，不会阻塞请求线程（block 策略下最多等待 blockTimeout 毫秒）
+     *
+     * @param record
+     */
+    public void offer(RequestRecord record) {
+        offered.increment();
+        if (buffer.offer(record)) {
+            return;
+        }
+
+        if (OVERFLOW_BLOCK.equalsIgnoreCase(overflow)) {
+            blockedOffers.increment();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+            while (System.nanoTime() < deadline) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                if (buffer.offer(record)) {
+                    return;
+                }
+            }
+        }
+        dropped.increment();
+    }
+
+    private void consume() {
+        while (running || buffer.size() > 0) {
+            int depth = buffer.size();
+            if (depth > maxQueueDepth) {
+                maxQueueDepth = depth;
+            }
+
+            RequestRecord record = buffer.poll();
+            if (record == null) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            try {
+                writeLog(record);
+            } catch (Exception e) {
+                log.warn("write request log error! uri: {}", record.getUri(), e);
+            }
+            if (record.getClientIp() != null) {
+                requestCountAggregator.incr(record.getDay(), record.getClientIp());
+            }
+        }
+    }
+
+    private void writeLog(RequestRecord req) {
+        StringBuilder msg = new StringBuilder();
+        msg.append("method=").append(req.getMethod()).append("; ");
+        if (StringUtils.isNotBlank(req.getReferer())) {
+            msg.append("referer=").append(URLDecoder.decode(req.getReferer(), StandardCharsets.UTF_8)).append("; ");
+        }
+        msg.append("remoteIp=").append(req.getClientIp());
+        msg.append("; agent=").append(req.getUserAgent());
+
+        if (req.getUserId() != null) {
+            // 打印用户信息
+            msg.append("; user=").append(req.getUserId());
+        }
+
+        msg.append("; uri=").append(req.getUri());
+        if (StringUtils.isNotBlank(req.getQueryString())) {
+            msg.append('?').append(URLDecoder.decode(req.getQueryString(), StandardCharsets.UTF_8));
+        }
+
+        msg.append("; payload=").append(req.getPayload());
+        msg.append("; cost=").append(req.getCost());
+
+        // 日志格式中包含traceId，这里补回请求线程的traceId
+        MdcUtil.add(MdcUtil.TRACE_ID_KEY, req.getTraceId());
+        try {
+            REQ_LOG.info("{}", msg);
+        } finally {
+            MdcUtil.clear();
+        }
+        logged.incrementAndGet();
+    }
+
+    /**
+     * 应用关闭时，等待消费线程处理完剩余的记录
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+        log.info("request record pipeline drained, left: {}", buffer.size());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", buffer.size());
+        stats.put("maxQueueDepth", maxQueueDepth);
+        stats.put("capacity", buffer.capacity());
+        stats.put("overflow", overflow);
+        stats.put("offered", offered.sum());
+        stats.put("blockedOffers", blockedOffers.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("logged", logged.get());
+        return stats;
+    }
+}
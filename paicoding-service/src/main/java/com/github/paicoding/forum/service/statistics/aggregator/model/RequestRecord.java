@@ -0,0 +1,44 @@
+package com.github.paicoding.forum.service.statistics.aggregator.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDate;
+
+/**
+ * 一次请求的访问记录，由请求线程采集原始字段，日志的拼装与计数的合并都交给消费线程
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Data
+@Accessors(chain = true)
+public class RequestRecord {
+    private String traceId;
+
+    private String method;
+
+    private String referer;
+
+    private String clientIp;
+
+    private String userAgent;
+
+    private Long userId;
+
+    private String uri;
+
+    private String queryString;
+
+    private String payload;
+
+    /**
+     * 请求耗时，毫秒
+     */
+    private long cost;
+
+    /**
+     * 请求所在的日期，请求计数按天合并
+     */
+    private LocalDate day;
+}
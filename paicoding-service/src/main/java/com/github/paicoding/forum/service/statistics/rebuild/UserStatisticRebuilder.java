@@ -0,0 +1,221 @@
+package com.github.paicoding.forum.service.statistics.rebuild;
+
+import com.github.paicoding.forum.api.model.vo.user.dto.UserStatisticInfoDTO;
+import com.github.paicoding.forum.core.cache.RedisClient;
+import com.github.paicoding.forum.service.article.repository.dao.ArticleDao;
+import com.github.paicoding.forum.service.statistics.constants.CountConstants;
+import com.github.paicoding.forum.service.user.repository.dao.UserDao;
+import com.github.paicoding.forum.service.user.repository.dao.UserFootDao;
+import com.github.paicoding.forum.service.user.repository.dao.UserRelationDao;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * 用户统计信息的全量重建
+ * <p>
+ * 按用户id把全表切分为固定大小的区间，交给有界的线程池并行处理；每个区间用几条 group by 的聚合sql 算出区间内所有用户的计数，
+ * 再通过一次redis管道批量写回。
+ * <p>
+ * 1. 限流：每个区间执行前都需要从令牌桶中获取许可，避免把从库打满
+ * 2. 断点续跑：处理完成的区间记录在redis当天的checkpoint中，任务中断后当天再次执行会跳过已完成的区间；失败的区间不记录，下次重试
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+@Component
+public class UserStatisticRebuilder {
+    private static final String CHECKPOINT_PREFIX = "user_statistic_rebuild_";
+
+    /**
+     * checkpoint 保留两天
+     */
+    private static final long CHECKPOINT_EXPIRE = 2 * 24 * 3600L;
+
+    /**
+     * 每个区间包含的用户id数
+     */
+    @Value("${paicoding.stat-rebuild.range-size:1000}")
+    private int rangeSize;
+
+    /**
+     * 并行处理区间的线程数
+     */
+    @Value("${paicoding.stat-rebuild.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * 每秒最多开始处理的区间数
+     */
+    @Value("${paicoding.stat-rebuild.ranges-per-second:5}")
+    private double rangesPerSecond;
+
+    @Resource
+    private UserDao userDao;
+
+    @Resource
+    private UserFootDao userFootDao;
+
+    @Resource
+    private UserRelationDao userRelationDao;
+
+    @Resource
+    private ArticleDao articleDao;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final AtomicLong totalRanges = new AtomicLong();
+    private final AtomicLong doneRanges = new AtomicLong();
+    private final AtomicLong skippedRanges = new AtomicLong();
+    private final AtomicLong failedRanges = new AtomicLong();
+    private final AtomicLong refreshedUsers = new AtomicLong();
+    private final AtomicLong lastStartTime = new AtomicLong();
+    private final AtomicLong lastCost = new AtomicLong();
+
+    /**
+     * 全量重建所有用户的统计信息，同一时间只允许一个任务执行
+     *
+     * @return false 表示已有任务在执行
+     */
+    public boolean rebuild() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("用户统计信息正在重建中，忽略本次调度");
+            return false;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("stat-rebuild-%d").setDaemon(true).build());
+        try {
+            long start = System.currentTimeMillis();
+            lastStartTime.set(start);
+            totalRanges.set(0);
+            doneRanges.set(0);
+            skippedRanges.set(0);
+            failedRanges.set(0);
+            refreshedUsers.set(0);
+
+            long maxUserId = userDao.getMaxUserId();
+            String checkpoint = CHECKPOINT_PREFIX + LocalDate.now();
+            Map<String, String> finished = RedisClient.hGetAll(checkpoint, String.class);
+            RateLimiter limiter = RateLimiter.create(rangesPerSecond);
+
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (long rangeStart = 1; rangeStart <= maxUserId; rangeStart += rangeSize) {
+                totalRanges.incrementAndGet();
+                if (finished.containsKey(String.valueOf(rangeStart))) {
+                    skippedRanges.incrementAndGet();
+                    continue;
+                }
+
+                long from = rangeStart, to = Math.min(rangeStart + rangeSize - 1, maxUserId);
+                futures.add(CompletableFuture.runAsync(() -> {
+                    limiter.acquire();
+                    try {
+                        int users = rebuildRange(from, to);
+                        RedisClient.hSet(checkpoint, String.valueOf(from), String.valueOf(users));
+                        refreshedUsers.addAndGet(users);
+                        doneRanges.incrementAndGet();
+                    } catch (Exception e) {
+                        failedRanges.incrementAndGet();
+                        log.error("重建用户统计信息失败! userId: [{}, {}]", from, to, e);
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            RedisClient.expire(checkpoint, CHECKPOINT_EXPIRE);
+
+            lastCost.set(System.currentTimeMillis() - start);
+            log.info("用户统计信息重建完成，共耗时: {}ms, maxUserId: {}, stats: {}", lastCost.get(), maxUserId, stats());
+            return true;
+        } finally {
+            executor.shutdown();
+            running.set(false);
+        }
+    }
+
+    /**
+     * 重建一个区间内所有用户的统计信息
+     *
+     * @return 区间内的用户数
+     */
+    private int rebuildRange(long from, long to) {
+        List<Long> userIds = userDao.listUserIdsBetween(from, to);
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, UserStatisticInfoDTO> counts = new HashMap<>();
+        merge(counts, userFootDao.countArticleGroupByUserId(from, to), (target, row) -> {
+            target.setPraiseCount(row.getPraiseCount());
+            target.setCollectionCount(row.getCollectionCount());
+        });
+        merge(counts, userFootDao.countArticleReadsGroupByUserId(from, to), (target, row) -> target.setReadCount(row.getReadCount()));
+        merge(counts, userRelationDao.countFollowGroupByUserId(from, to), (target, row) -> target.setFollowCount(row.getFollowCount()));
+        merge(counts, userRelationDao.countFansGroupByUserId(from, to), (target, row) -> target.setFansCount(row.getFansCount()));
+        merge(counts, articleDao.countArticleGroupByUserId(from, to), (target, row) -> target.setArticleCount(row.getArticleCount()));
+
+        // 区间内没有任何计数的用户也需要写回0，覆盖redis中过期的计数
+        RedisClient.PipelineAction action = RedisClient.pipelineAction();
+        UserStatisticInfoDTO empty = new UserStatisticInfoDTO();
+        for (Long userId : userIds) {
+            UserStatisticInfoDTO count = counts.getOrDefault(userId, empty);
+            Map<byte[], byte[]> fields = new HashMap<>();
+            putCount(fields, CountConstants.PRAISE_COUNT, count.getPraiseCount());
+            putCount(fields, CountConstants.COLLECTION_COUNT, count.getCollectionCount());
+            putCount(fields, CountConstants.READ_COUNT, count.getReadCount());
+            putCount(fields, CountConstants.FANS_COUNT, count.getFansCount());
+            putCount(fields, CountConstants.FOLLOW_COUNT, count.getFollowCount());
+            putCount(fields, CountConstants.ARTICLE_COUNT, count.getArticleCount());
+            action.add(CountConstants.USER_STATISTIC_INFO + userId, (connection, key) -> connection.hashCommands().hMSet(key, fields));
+        }
+        action.execute();
+        return userIds.size();
+    }
+
+    private void merge(Map<Long, UserStatisticInfoDTO> counts, List<UserStatisticInfoDTO> rows,
+                       BiConsumer<UserStatisticInfoDTO, UserStatisticInfoDTO> setter) {
+        for (UserStatisticInfoDTO row : rows) {
+            if (row.getUserId() != null) {
+                setter.accept(counts.computeIfAbsent(row.getUserId(), k -> new UserStatisticInfoDTO()), row);
+            }
+        }
+    }
+
+    private void putCount(Map<byte[], byte[]> fields, String field, Integer cnt) {
+        fields.put(field.getBytes(StandardCharsets.UTF_8), RedisClient.valBytes(cnt == null ? 0 : cnt));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running.get());
+        stats.put("lastStartTime", lastStartTime.get());
+        stats.put("lastCostMs", lastCost.get());
+        stats.put("totalRanges", totalRanges.get());
+        stats.put("doneRanges", doneRanges.get());
+        stats.put("skippedRanges", skippedRanges.get());
+        stats.put("failedRanges", failedRanges.get());
+        stats.put("refreshedUsers", refreshedUsers.get());
+        stats.put("rangeSize", rangeSize);
+        stats.put("parallelism", parallelism);
+        stats.put("rangesPerSecond", rangesPerSecond);
+        return stats;
+    }
+}
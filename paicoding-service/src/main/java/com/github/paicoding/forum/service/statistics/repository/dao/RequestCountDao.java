@@ -7,7 +7,9 @@ import com.github.paicoding.forum.service.statistics.repository.mapper.RequestCo
 import org.springframework.stereotype.Repository;
 
 import java.sql.Date;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 请求计数
@@ -60,4 +62,30 @@ public class RequestCountDao extends ServiceImpl<RequestCountMapper, RequestCoun
     public void incrementCount(Long id) {
         baseMapper.incrementCount(id);
     }
+
+    /**
+     * 批量写入某一天各个ip的请求计数，已有的计数只会调大
+     *
+     * @param date   日期
+     * @param counts key: ip, value: 最新的计数
+     * @return
+     */
+    public int batchSaveCount(Date date, Map<String, Integer> counts) {
+        if (counts.isEmpty()) {
+            return 0;
+        }
+        return baseMapper.batchSaveCount(toRecords(date, counts));
+    }
+
+    private List<RequestCountDO> toRecords(Date date, Map<String, Integer> counts) {
+        List<RequestCountDO> list = new ArrayList<>(counts.size());
+        counts.forEach((host, cnt) -> {
+            RequestCountDO record = new RequestCountDO();
+            record.setHost(host);
+            record.setCnt(cnt);
+            record.setDate(date);
+            list.add(record);
+        });
+        return list;
+    }
 }
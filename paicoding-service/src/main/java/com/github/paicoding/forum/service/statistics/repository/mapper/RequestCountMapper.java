@@ -3,6 +3,7 @@ package com.github.paicoding.forum.service.statistics.repository.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.github.paicoding.forum.api.model.vo.statistics.dto.StatisticsDayDTO;
 import com.github.paicoding.forum.service.statistics.repository.entity.RequestCountDO;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
@@ -39,4 +40,21 @@ public interface RequestCountMapper extends BaseMapper<RequestCountDO> {
      */
     @Update("update request_count set cnt = cnt + 1 where id = #{id}")
     void incrementCount(Long id);
+
+    /**
+     * 批量写入计数，记录不存在时插入；依赖 (date, host) 的唯一索引
+     * <p>
+     * 只会调大已有的计数，多个节点重复写入、或者redis中的计数丢失时都不会把db中的计数改小
+     *
+     * @param list cnt 为最新的计数
+     * @return
+     */
+    @Insert("<script>" +
+            "insert into request_count (`host`, `cnt`, `date`) values " +
+            "<foreach collection='list' item='item' separator=','>" +
+            "(#{item.host}, #{item.cnt}, #{item.date})" +
+            "</foreach>" +
+            " on duplicate key update `cnt` = greatest(`cnt`, values(`cnt`))" +
+            "</script>")
+    int batchSaveCount(@Param("list") List<RequestCountDO> list);
 }
@@ -3,6 +3,9 @@ package com.github.paicoding.forum.service.statistics.service;
 import com.github.paicoding.forum.api.model.vo.user.dto.ArticleFootCountDTO;
 import com.github.paicoding.forum.api.model.vo.user.dto.UserStatisticInfoDTO;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * 计数统计相关
  *
@@ -39,6 +42,14 @@ public interface CountService {
      */
     Long queryCommentPraiseCount(Long commentId);
 
+    /**
+     * 批量获取评论点赞数量
+     *
+     * @param commentIds
+     * @return key: 评论id, value: 点赞数
+     */
+    Map<Long, Long> queryCommentPraiseCount(Collection<Long> commentIds);
+
 
     /**
      * 查询用户的相关统计信息
@@ -56,6 +67,14 @@ public interface CountService {
      */
     ArticleFootCountDTO queryArticleStatisticInfo(Long articleId);
 
+    /**
+     * 批量查询文章的统计信息，一次redis交互返回所有文章的计数
+     *
+     * @param articleIds
+     * @return key: 文章id, value: 文章的 收藏、点赞、评论、阅读数
+     */
+    Map<Long, ArticleFootCountDTO> queryArticleStatisticInfo(Collection<Long> articleIds);
+
 
     /**
      * 文章计数+1
@@ -6,18 +6,26 @@ import com.github.paicoding.forum.core.cache.RedisClient;
 import com.github.paicoding.forum.core.util.MapUtils;
 import com.github.paicoding.forum.service.article.repository.dao.ArticleDao;
 import com.github.paicoding.forum.service.comment.service.CommentReadService;
+import com.github.paicoding.forum.service.statistics.aggregator.ReadCountAggregator;
 import com.github.paicoding.forum.service.statistics.constants.CountConstants;
+import com.github.paicoding.forum.service.statistics.rebuild.UserStatisticRebuilder;
 import com.github.paicoding.forum.service.statistics.service.CountService;
-import com.github.paicoding.forum.service.user.repository.dao.UserDao;
 import com.github.paicoding.forum.service.user.repository.dao.UserFootDao;
 import com.github.paicoding.forum.service.user.repository.dao.UserRelationDao;
+import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * 计数服务，后续计数相关的可以考虑基于redis来做
@@ -40,7 +48,10 @@ public class CountServiceImpl implements CountService {
     private CommentReadService commentReadService;
 
     @Resource
-    private UserDao userDao;
+    private ReadCountAggregator readCountAggregator;
+
+    @Resource
+    private UserStatisticRebuilder userStatisticRebuilder;
 
     public CountServiceImpl(UserFootDao userFootDao) {
         this.userFootDao = userFootDao;
@@ -74,34 +85,102 @@ public class CountServiceImpl implements CountService {
         return userFootDao.countCommentPraise(commentId);
     }
 
+    @Override
+    public Map<Long, Long> queryCommentPraiseCount(Collection<Long> commentIds) {
+        if (commentIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return userFootDao.countCommentPraise(commentIds);
+    }
+
     @Override
     public UserStatisticInfoDTO queryUserStatisticInfo(Long userId) {
-        Map<String, Integer> ans = RedisClient.hGetAll(CountConstants.USER_STATISTIC_INFO + userId, Integer.class);
-        UserStatisticInfoDTO info = new UserStatisticInfoDTO();
-        info.setFollowCount(ans.getOrDefault(CountConstants.FOLLOW_COUNT, 0));
-        info.setArticleCount(ans.getOrDefault(CountConstants.ARTICLE_COUNT, 0));
-        info.setPraiseCount(ans.getOrDefault(CountConstants.PRAISE_COUNT, 0));
-        info.setCollectionCount(ans.getOrDefault(CountConstants.COLLECTION_COUNT, 0));
-        info.setReadCount(ans.getOrDefault(CountConstants.READ_COUNT, 0));
-        info.setFansCount(ans.getOrDefault(CountConstants.FANS_COUNT, 0));
-        return info;
+        return pipelinedHGetAll(CountConstants.USER_STATISTIC_INFO, Collections.singletonList(userId), this::toUserStatisticInfo).get(userId);
     }
 
     @Override
     public ArticleFootCountDTO queryArticleStatisticInfo(Long articleId) {
-        Map<String, Integer> ans = RedisClient.hGetAll(CountConstants.ARTICLE_STATISTIC_INFO + articleId, Integer.class);
+        return queryArticleStatisticInfo(Collections.singletonList(articleId)).get(articleId);
+    }
+
+    @Override
+    public Map<Long, ArticleFootCountDTO> queryArticleStatisticInfo(Collection<Long> articleIds) {
+        return pipelinedHGetAll(CountConstants.ARTICLE_STATISTIC_INFO, articleIds, this::toArticleFootCount);
+    }
+
+    /**
+     * 通过一次管道交互，批量读取多个计数hash
+     *
+     * @param prefix  计数hash的key前缀
+     * @param ids     用户id/文章id
+     * @param decoder 将hash的原始值解码为计数对象
+     * @return key: id, value: 计数对象；redis中不存在的计数全部为0
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Map<Long, T> pipelinedHGetAll(String prefix, Collection<Long> ids, Function<Map<byte[], byte[]>, T> decoder) {
+        List<Long> keys = new ArrayList<>(new LinkedHashSet<>(ids));
+        RedisClient.PipelineAction action = RedisClient.pipelineAction();
+        keys.forEach(id -> action.add(prefix + id, (connection, key) -> connection.hashCommands().hGetAll(key)));
+        List<Object> records = keys.isEmpty() ? Collections.emptyList() : action.executeAndGet();
+
+        Map<Long, T> result = Maps.newHashMapWithExpectedSize(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Object record = i < records.size() ? records.get(i) : null;
+            result.put(keys.get(i), decoder.apply(record instanceof Map ? (Map<byte[], byte[]>) record : Collections.emptyMap()));
+        }
+        return result;
+    }
+
+    private UserStatisticInfoDTO toUserStatisticInfo(Map<byte[], byte[]> hash) {
+        int followCount = 0, articleCount = 0, praiseCount = 0, collectionCount = 0, readCount = 0, fansCount = 0;
+        for (Map.Entry<byte[], byte[]> entry : hash.entrySet()) {
+            int val = RedisClient.toInt(entry.getValue());
+            switch (new String(entry.getKey(), StandardCharsets.UTF_8)) {
+                case CountConstants.FOLLOW_COUNT -> followCount = val;
+                case CountConstants.ARTICLE_COUNT -> articleCount = val;
+                case CountConstants.PRAISE_COUNT -> praiseCount = val;
+                case CountConstants.COLLECTION_COUNT -> collectionCount = val;
+                case CountConstants.READ_COUNT -> readCount = val;
+                case CountConstants.FANS_COUNT -> fansCount = val;
+                default -> {
+                }
+            }
+        }
+        UserStatisticInfoDTO info = new UserStatisticInfoDTO();
+        info.setFollowCount(followCount);
+        info.setArticleCount(articleCount);
+        info.setPraiseCount(praiseCount);
+        info.setCollectionCount(collectionCount);
+        info.setReadCount(readCount);
+        info.setFansCount(fansCount);
+        return info;
+    }
+
+    private ArticleFootCountDTO toArticleFootCount(Map<byte[], byte[]> hash) {
+        int praiseCount = 0, collectionCount = 0, commentCount = 0, readCount = 0;
+        for (Map.Entry<byte[], byte[]> entry : hash.entrySet()) {
+            int val = RedisClient.toInt(entry.getValue());
+            switch (new String(entry.getKey(), StandardCharsets.UTF_8)) {
+                case CountConstants.PRAISE_COUNT -> praiseCount = val;
+                case CountConstants.COLLECTION_COUNT -> collectionCount = val;
+                case CountConstants.COMMENT_COUNT -> commentCount = val;
+                case CountConstants.READ_COUNT -> readCount = val;
+                default -> {
+                }
+            }
+        }
         ArticleFootCountDTO info = new ArticleFootCountDTO();
-        info.setPraiseCount(ans.getOrDefault(CountConstants.PRAISE_COUNT, 0));
-        info.setCollectionCount(ans.getOrDefault(CountConstants.COLLECTION_COUNT, 0));
-        info.setCommentCount(ans.getOrDefault(CountConstants.COMMENT_COUNT, 0));
-        info.setReadCount(ans.getOrDefault(CountConstants.READ_COUNT, 0));
+        info.setPraiseCount(praiseCount);
+        info.setCollectionCount(collectionCount);
+        info.setCommentCount(commentCount);
+        info.setReadCount(readCount);
         return info;
     }
 
     @Override
     public void incrArticleReadCount(Long authorUserId, Long articleId) {
-        // db层的计数+1
-        articleDao.incrReadCount(articleId);
+        // db层的计数+1，先在内存中聚合，再定时批量落库
+        readCountAggregator.incr(articleId);
         // redis计数器 +1
         RedisClient.pipelineAction()
                 .add(CountConstants.ARTICLE_STATISTIC_INFO + articleId, CountConstants.READ_COUNT,
@@ -116,21 +195,8 @@ public class CountServiceImpl implements CountService {
      */
     @Scheduled(cron = "0 15 4 * * ?")
     public void autoRefreshAllUserStatisticInfo() {
-        Long now = System.currentTimeMillis();
         log.info("开始自动刷新用户统计信息");
-        Long userId = 0L;
-        int batchSize = 20;
-        while (true) {
-            List<Long> userIds = userDao.scanUserId(userId, batchSize);
-            userIds.forEach(this::refreshUserStatisticInfo);
-            if (userIds.size() < batchSize) {
-                userId = userIds.get(userIds.size() - 1);
-                break;
-            } else {
-                userId = userIds.get(batchSize - 1);
-            }
-        }
-        log.info("结束自动刷新用户统计信息，共耗时: {}ms, maxUserId: {}", System.currentTimeMillis() - now, userId);
+        userStatisticRebuilder.rebuild();
     }
 
 
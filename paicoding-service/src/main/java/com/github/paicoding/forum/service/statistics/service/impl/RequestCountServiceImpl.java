@@ -6,6 +6,7 @@ import com.github.paicoding.forum.service.statistics.repository.dao.RequestCount
 import com.github.paicoding.forum.service.statistics.repository.entity.RequestCountDO;
 import com.github.paicoding.forum.service.statistics.service.RequestCountService;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -13,6 +14,7 @@ import org.springframework.stereotype.Service;
 import java.sql.Date;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -23,6 +25,11 @@ import java.util.Map;
 @Slf4j
 @Service
 public class RequestCountServiceImpl implements RequestCountService {
+    /**
+     * 单条sql最多写入的ip数
+     */
+    private static final int PERSIST_BATCH_SIZE = 500;
+
     @Autowired
     private RequestCountDao requestCountDao;
 
@@ -92,26 +99,36 @@ public class RequestCountServiceImpl implements RequestCountService {
     }
 
     /**
-     * 每1小时执行一次定时任务，将redis中的数据同步到db
-     * 固定30分钟是为了防止0点时Date的变化导致数据不准确
+     * 每小时把redis中的请求计数整体写入db
+     * <p>
+     * 1. 固定在30分执行，此时各节点本机缓冲的增量都已写入redis；同时写入前一天的计数，0点前最后一段时间的请求也能落库
+     * 2. 每天的计数按批合并成一条 insert ... on duplicate key update，不再逐个ip查询db
+     * 3. db中的计数只会调大，多个节点同时执行也不会互相覆盖
      */
-    @Scheduled(cron = "0 30 */12 * * ?")
+    @Scheduled(cron = "0 30 * * * ?")
     public void persist2Db() {
-        Date date = Date.valueOf(LocalDate.now());
-        List<RequestCountDO> requestCountDOS = new ArrayList<>();
-        // 将redis的数据同步到db
-        Map<String, String> requestCountDOMap = RedisClient.hGetAll(RequestCountService.REQUEST_COUNT_PREFIX + Date.valueOf(LocalDate.now()), String.class);
-        requestCountDOMap.forEach((host, cnt) -> {
-            RequestCountDO requestCountDO = getRequestCount(host);
-            if(requestCountDO == null){
-                requestCountDO = new RequestCountDO();
-                requestCountDO.setHost(host);
+        LocalDate today = LocalDate.now();
+        persist2Db(Date.valueOf(today.minusDays(1)));
+        persist2Db(Date.valueOf(today));
+    }
+
+    private void persist2Db(Date date) {
+        Map<String, String> cache = RedisClient.hGetAll(RequestCountService.REQUEST_COUNT_PREFIX + date, String.class);
+        if (cache == null || cache.isEmpty()) {
+            return;
+        }
+
+        List<String> hosts = new ArrayList<>(cache.keySet());
+        int rows = 0;
+        for (int i = 0; i < hosts.size(); i += PERSIST_BATCH_SIZE) {
+            Map<String, Integer> batch = new HashMap<>();
+            for (String host : hosts.subList(i, Math.min(i + PERSIST_BATCH_SIZE, hosts.size()))) {
+                if (NumberUtils.isDigits(cache.get(host))) {
+                    batch.put(host, Integer.parseInt(cache.get(host)));
+                }
             }
-            requestCountDO.setCnt(Integer.parseInt(cnt));
-            requestCountDO.setDate(date);
-            requestCountDOS.add(requestCountDO);
-        });
-        insertOrUpdateBatch(requestCountDOS);
-        log.info(">>>>> request_cnt persist2Db success, date: {} <<<<<", date);
+            rows += requestCountDao.batchSaveCount(date, batch);
+        }
+        log.info(">>>>> request_cnt persist2Db success, date: {}, hosts: {}, rows: {} <<<<<", date, hosts.size(), rows);
     }
 }
@@ -3,9 +3,9 @@ package com.github.paicoding.forum.service.statistics.service.impl;
 import com.github.paicoding.forum.api.model.vo.statistics.dto.StatisticsCountDTO;
 import com.github.paicoding.forum.api.model.vo.statistics.dto.StatisticsDayDTO;
 import com.github.paicoding.forum.api.model.vo.user.dto.UserFootStatisticDTO;
-import com.github.paicoding.forum.core.cache.RedisClient;
 import com.github.paicoding.forum.service.article.service.ArticleReadService;
 import com.github.paicoding.forum.service.article.service.ColumnService;
+import com.github.paicoding.forum.service.statistics.aggregator.RequestCountAggregator;
 import com.github.paicoding.forum.service.statistics.service.RequestCountService;
 import com.github.paicoding.forum.service.statistics.service.StatisticsSettingService;
 import com.github.paicoding.forum.service.user.service.UserFootService;
@@ -16,8 +16,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.sql.Date;
-import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -33,6 +31,9 @@ public class StatisticsSettingServiceImpl implements StatisticsSettingService {
     @Autowired
     private RequestCountService requestCountService;
 
+    @Autowired
+    private RequestCountAggregator requestCountAggregator;
+
     @Autowired
     private UserService userService;
 
@@ -50,22 +51,8 @@ public class StatisticsSettingServiceImpl implements StatisticsSettingService {
 
     @Override
     public void saveRequestCount(String host) {
-
-        Integer count = RedisClient.hGet(RequestCountService.REQUEST_COUNT_PREFIX + Date.valueOf(LocalDate.now()), host, Integer.class);
-        if(count != null){
-            RedisClient.hSet(RequestCountService.REQUEST_COUNT_PREFIX + Date.valueOf(LocalDate.now()), host, count);
-        }else{
-            RedisClient.hSet(RequestCountService.REQUEST_COUNT_PREFIX + Date.valueOf(LocalDate.now()), host, 1);
-        }
-
-        // 以下是直接访问DB的逻辑，要操作两次数据库，访问压力太大
-//        RequestCountDO requestCountDO = requestCountService.getRequestCount(host);
-//        if (requestCountDO == null) {
-//            requestCountService.insert(host);
-//        } else {
-//            // 改为数据库直接更新
-//            requestCountService.incrementCount(requestCountDO.getId());
-//        }
+        // 本机内存累加，由 RequestCountAggregator 定时批量写入redis
+        requestCountAggregator.incr(host);
     }
 
     @Override
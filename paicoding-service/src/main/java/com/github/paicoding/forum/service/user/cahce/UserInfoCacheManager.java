@@ -2,10 +2,25 @@ package com.github.paicoding.forum.service.user.cahce;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.paicoding.forum.api.model.vo.user.dto.BaseUserInfoDTO;
 import com.github.paicoding.forum.api.model.vo.user.dto.UserStatisticInfoDTO;
 import com.github.paicoding.forum.core.cache.RedisClient;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
 /**
  * @program: pai_coding
  * @description: 用户信息缓存
@@ -13,8 +28,9 @@ import org.springframework.stereotype.Component;
  * @create: 2024-10-24
  */
 
+@Slf4j
 @Component
-public class UserInfoCacheManager {
+public class UserInfoCacheManager implements MessageListener {
 
     // 配置 ObjectMapper 忽略未知字段，避免删除字段后缓存反序列化失败
     public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
@@ -23,6 +39,72 @@ public class UserInfoCacheManager {
 
     public static final String USER_INFO_PREFIX = "user_info:";
 
+    /**
+     * 用户基础信息变更时，广播给所有节点失效本地缓存
+     */
+    public static final String USER_BASIC_INFO_EVICT_CHANNEL = "pai_user_basic_info_evict";
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 登录用户的基础信息本地缓存，每个请求初始化登录用户时使用，避免每次请求都查询db
+     */
+    private Cache<Long, BaseUserInfoDTO> basicInfoCache;
+
+    @PostConstruct
+    public void init() {
+        basicInfoCache = Caffeine.newBuilder()
+                .maximumSize(10000)
+                // 跨节点失效依赖redis的发布订阅，过期时间作为兜底
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .build();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(USER_BASIC_INFO_EVICT_CHANNEL));
+    }
+
+    /**
+     * 获取用户基础信息，本地缓存未命中时通过 loader 加载
+     *
+     * @param userId
+     * @param loader
+     * @return 缓存对象的拷贝，调用方可以放心修改
+     */
+    public BaseUserInfoDTO getBasicUserInfo(Long userId, Function<Long, BaseUserInfoDTO> loader) {
+        BaseUserInfoDTO user = basicInfoCache.get(userId, loader);
+        if (user == null) {
+            return null;
+        }
+        BaseUserInfoDTO copy = new BaseUserInfoDTO();
+        BeanUtils.copyProperties(user, copy);
+        return copy;
+    }
+
+    /**
+     * 失效用户基础信息的本地缓存，并通知其他节点
+     *
+     * @param userId
+     */
+    public void delBasicUserInfo(Long userId) {
+        basicInfoCache.invalidate(userId);
+        RedisClient.publish(USER_BASIC_INFO_EVICT_CHANNEL, String.valueOf(userId));
+    }
+
+    /**
+     * 接收其他节点广播的失效通知
+     *
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            basicInfoCache.invalidate(Long.parseLong(body));
+        } catch (NumberFormatException e) {
+            log.warn("illegal user basic info evict message: {}", body);
+        }
+    }
+
     /**
      * 获取用户信息缓存
      * @param userId
@@ -32,6 +32,25 @@ public class UserDao extends ServiceImpl<UserInfoMapper, UserInfoDO> {
         return userMapper.getUserIdsOrderByIdAsc(userId, size == null ? PageParam.DEFAULT_PAGE_SIZE : size);
     }
 
+    /**
+     * 查询用户id区间 [startUserId, endUserId] 内的所有用户id
+     *
+     * @param startUserId
+     * @param endUserId
+     * @return
+     */
+    public List<Long> listUserIdsBetween(Long startUserId, Long endUserId) {
+        return userMapper.getUserIdsBetween(startUserId, endUserId);
+    }
+
+    /**
+     * @return 当前最大的用户id，没有用户时返回0
+     */
+    public long getMaxUserId() {
+        Long max = userMapper.getMaxUserId();
+        return max == null ? 0L : max;
+    }
+
     /**
      * 三方账号登录方式
      *
@@ -1,6 +1,7 @@
 package com.github.paicoding.forum.service.user.repository.dao;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.github.paicoding.forum.api.model.enums.DocumentTypeEnum;
@@ -9,11 +10,15 @@ import com.github.paicoding.forum.api.model.vo.PageParam;
 import com.github.paicoding.forum.api.model.vo.user.dto.ArticleFootCountDTO;
 import com.github.paicoding.forum.api.model.vo.user.dto.SimpleUserInfoDTO;
 import com.github.paicoding.forum.api.model.vo.user.dto.UserFootStatisticDTO;
+import com.github.paicoding.forum.api.model.vo.user.dto.UserStatisticInfoDTO;
 import com.github.paicoding.forum.service.user.repository.entity.UserFootDO;
 import com.github.paicoding.forum.service.user.repository.mapper.UserFootMapper;
+import com.google.common.collect.Maps;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -30,6 +35,22 @@ public class UserFootDao extends ServiceImpl<UserFootMapper, UserFootDO> {
         return baseMapper.selectOne(query);
     }
 
+    /**
+     * 批量查询用户对一批文档的足迹
+     *
+     * @param documentIds
+     * @param type
+     * @param userId
+     * @return
+     */
+    public List<UserFootDO> listByDocumentsAndUserId(Collection<Long> documentIds, Integer type, Long userId) {
+        LambdaQueryWrapper<UserFootDO> query = Wrappers.lambdaQuery();
+        query.in(UserFootDO::getDocumentId, documentIds)
+                .eq(UserFootDO::getDocumentType, type)
+                .eq(UserFootDO::getUserId, userId);
+        return baseMapper.selectList(query);
+    }
+
     public List<SimpleUserInfoDTO> listDocumentPraisedUsers(Long documentId, Integer type, int size) {
         return baseMapper.listSimpleUserInfosByArticleId(documentId, type, size);
     }
@@ -80,6 +101,28 @@ public class UserFootDao extends ServiceImpl<UserFootMapper, UserFootDO> {
         return count;
     }
 
+    /**
+     * 按作者分组，统计一段用户id区间内作者的文章点赞、收藏数
+     *
+     * @param startUserId
+     * @param endUserId
+     * @return 只包含 userId, praiseCount, collectionCount
+     */
+    public List<UserStatisticInfoDTO> countArticleGroupByUserId(Long startUserId, Long endUserId) {
+        return baseMapper.countArticleGroupByUserId(startUserId, endUserId);
+    }
+
+    /**
+     * 按作者分组，统计一段用户id区间内作者的文章阅读总数
+     *
+     * @param startUserId
+     * @param endUserId
+     * @return 只包含 userId, readCount
+     */
+    public List<UserStatisticInfoDTO> countArticleReadsGroupByUserId(Long startUserId, Long endUserId) {
+        return baseMapper.countArticleReadsGroupByUserId(startUserId, endUserId);
+    }
+
     /**
      * 查询评论的点赞数
      *
@@ -94,6 +137,27 @@ public class UserFootDao extends ServiceImpl<UserFootMapper, UserFootDO> {
                 .count();
     }
 
+    /**
+     * 按评论分组，批量查询评论的点赞数
+     *
+     * @param commentIds
+     * @return key: commentId, value: 点赞数；没有点赞的评论不返回
+     */
+    public Map<Long, Long> countCommentPraise(Collection<Long> commentIds) {
+        QueryWrapper<UserFootDO> query = Wrappers.query();
+        query.select("document_id, count(*) as cnt")
+                .in("document_id", commentIds)
+                .eq("document_type", DocumentTypeEnum.COMMENT.getCode())
+                .eq("praise_stat", PraiseStatEnum.PRAISE.getCode())
+                .groupBy("document_id");
+        List<Map<String, Object>> mapList = baseMapper.selectMaps(query);
+        Map<Long, Long> result = Maps.newHashMapWithExpectedSize(mapList.size());
+        for (Map<String, Object> mp : mapList) {
+            result.put(((Number) mp.get("document_id")).longValue(), ((Number) mp.get("cnt")).longValue());
+        }
+        return result;
+    }
+
     public UserFootStatisticDTO getFootCount() {
         return baseMapper.getFootCount();
 
@@ -7,6 +7,7 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.github.paicoding.forum.api.model.enums.FollowStateEnum;
 import com.github.paicoding.forum.api.model.vo.PageParam;
 import com.github.paicoding.forum.api.model.vo.user.dto.FollowUserInfoDTO;
+import com.github.paicoding.forum.api.model.vo.user.dto.UserStatisticInfoDTO;
 import com.github.paicoding.forum.service.user.repository.entity.UserRelationDO;
 import com.github.paicoding.forum.service.user.repository.mapper.UserRelationMapper;
 import org.springframework.stereotype.Repository;
@@ -73,6 +74,28 @@ public class UserRelationDao extends ServiceImpl<UserRelationMapper, UserRelatio
         return baseMapper.selectCount(queryWrapper);
     }
 
+    /**
+     * 按用户分组，统计一段用户id区间内每个用户的关注数
+     *
+     * @param startUserId
+     * @param endUserId
+     * @return 只包含 userId, followCount
+     */
+    public List<UserStatisticInfoDTO> countFollowGroupByUserId(Long startUserId, Long endUserId) {
+        return baseMapper.countFollowGroupByUserId(startUserId, endUserId);
+    }
+
+    /**
+     * 按用户分组，统计一段用户id区间内每个用户的粉丝数
+     *
+     * @param startUserId
+     * @param endUserId
+     * @return 只包含 userId, fansCount
+     */
+    public List<UserStatisticInfoDTO> countFansGroupByUserId(Long startUserId, Long endUserId) {
+        return baseMapper.countFansGroupByUserId(startUserId, endUserId);
+    }
+
     /**
      * 获取关注信息
      *
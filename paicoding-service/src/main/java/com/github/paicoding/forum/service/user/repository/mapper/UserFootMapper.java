@@ -5,6 +5,7 @@ import com.github.paicoding.forum.api.model.vo.PageParam;
 import com.github.paicoding.forum.api.model.vo.user.dto.ArticleFootCountDTO;
 import com.github.paicoding.forum.api.model.vo.user.dto.SimpleUserInfoDTO;
 import com.github.paicoding.forum.api.model.vo.user.dto.UserFootStatisticDTO;
+import com.github.paicoding.forum.api.model.vo.user.dto.UserStatisticInfoDTO;
 import com.github.paicoding.forum.service.user.repository.entity.UserFootDO;
 import org.apache.ibatis.annotations.Param;
 
@@ -42,6 +43,24 @@ public interface UserFootMapper extends BaseMapper<UserFootDO> {
      */
     Integer countArticleReadsByUserId(@Param("userId") Long author);
 
+    /**
+     * 按作者分组，查询用户id区间 [startUserId, endUserId] 内作者的文章点赞、收藏数
+     *
+     * @param startUserId
+     * @param endUserId
+     * @return 只返回 userId, praiseCount, collectionCount
+     */
+    List<UserStatisticInfoDTO> countArticleGroupByUserId(@Param("startUserId") Long startUserId, @Param("endUserId") Long endUserId);
+
+    /**
+     * 按作者分组，查询用户id区间 [startUserId, endUserId] 内作者的文章阅读总数
+     *
+     * @param startUserId
+     * @param endUserId
+     * @return 只返回 userId, readCount
+     */
+    List<UserStatisticInfoDTO> countArticleReadsGroupByUserId(@Param("startUserId") Long startUserId, @Param("endUserId") Long endUserId);
+
     /**
      * 查询用户收藏的文章列表
      *
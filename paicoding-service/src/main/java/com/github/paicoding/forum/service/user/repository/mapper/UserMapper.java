@@ -33,4 +33,22 @@ public interface UserMapper extends BaseMapper<UserDO> {
      */
     @Select("select id from user where id > #{offsetUserId} order by id asc limit #{size}")
     List<Long> getUserIdsOrderByIdAsc(@Param("offsetUserId") Long offsetUserId, @Param("size") Long size);
+
+    /**
+     * 查询用户id区间 [startUserId, endUserId] 内的所有用户id
+     *
+     * @param startUserId
+     * @param endUserId
+     * @return
+     */
+    @Select("select id from user where id between #{startUserId} and #{endUserId} order by id asc")
+    List<Long> getUserIdsBetween(@Param("startUserId") Long startUserId, @Param("endUserId") Long endUserId);
+
+    /**
+     * 当前最大的用户id
+     *
+     * @return 没有用户时返回null
+     */
+    @Select("select max(id) from user")
+    Long getMaxUserId();
 }
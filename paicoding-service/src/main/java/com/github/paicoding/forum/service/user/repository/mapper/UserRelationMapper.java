@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.github.paicoding.forum.api.model.vo.PageParam;
 import com.github.paicoding.forum.api.model.vo.user.dto.FollowUserInfoDTO;
+import com.github.paicoding.forum.api.model.vo.user.dto.UserStatisticInfoDTO;
 import com.github.paicoding.forum.service.user.repository.entity.UserRelationDO;
 import org.apache.ibatis.annotations.Param;
 
@@ -42,4 +43,22 @@ public interface UserRelationMapper extends BaseMapper<UserRelationDO> {
     IPage<FollowUserInfoDTO> queryUserFollowListPagination(IPage<FollowUserInfoDTO> page, @Param("userId") Long userId);
 
     IPage<FollowUserInfoDTO> queryUserFansListPagination(IPage<FollowUserInfoDTO> page, Long userId);
+
+    /**
+     * 按用户分组，查询用户id区间 [startUserId, endUserId] 内每个用户的关注数
+     *
+     * @param startUserId
+     * @param endUserId
+     * @return 只返回 userId, followCount
+     */
+    List<UserStatisticInfoDTO> countFollowGroupByUserId(@Param("startUserId") Long startUserId, @Param("endUserId") Long endUserId);
+
+    /**
+     * 按用户分组，查询用户id区间 [startUserId, endUserId] 内每个用户的粉丝数
+     *
+     * @param startUserId
+     * @param endUserId
+     * @return 只返回 userId, fansCount
+     */
+    List<UserStatisticInfoDTO> countFansGroupByUserId(@Param("startUserId") Long startUserId, @Param("endUserId") Long endUserId);
 }
@@ -8,7 +8,9 @@ import com.github.paicoding.forum.api.model.vo.user.dto.UserFootStatisticDTO;
 import com.github.paicoding.forum.service.comment.repository.entity.CommentDO;
 import com.github.paicoding.forum.service.user.repository.entity.UserFootDO;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 用户足迹Service接口
@@ -87,5 +89,15 @@ public interface UserFootService {
      */
     UserFootDO queryUserFoot(Long documentId, Integer type, Long userId);
 
+    /**
+     * 批量查询用户对一批文档的足迹
+     *
+     * @param documentIds
+     * @param type
+     * @param userId
+     * @return key: documentId, value: 足迹；没有足迹的文档不返回
+     */
+    Map<Long, UserFootDO> queryUserFoots(Collection<Long> documentIds, Integer type, Long userId);
+
     UserFootStatisticDTO getFootCount();
 }
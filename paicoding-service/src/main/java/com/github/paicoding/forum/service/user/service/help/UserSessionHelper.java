@@ -4,6 +4,9 @@ import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.github.paicoding.forum.core.cache.RedisClient;
 import com.github.paicoding.forum.core.mdc.SelfTraceIdGenerator;
 import com.github.paicoding.forum.core.util.JsonUtil;
@@ -11,12 +14,18 @@ import com.github.paicoding.forum.core.util.MapUtils;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 使用jwt来存储用户token，则不需要后端来存储session了
@@ -26,7 +35,12 @@ import java.util.Objects;
  */
 @Slf4j
 @Component
-public class UserSessionHelper {
+public class UserSessionHelper implements MessageListener {
+    /**
+     * 用户登出时，广播给所有节点失效本地缓存的token
+     */
+    public static final String SESSION_REVOKE_CHANNEL = "pai_session_revoke";
+
     @Component
     @Data
     @ConfigurationProperties("paicoding.jwt")
@@ -43,6 +57,23 @@ public class UserSessionHelper {
          * 有效期，毫秒时间戳
          */
         private Long expire;
+        /**
+         * 本地缓存的已验签token数量上限
+         */
+        private Integer localCacheSize = 10000;
+        /**
+         * 本地缓存的最长有效期，单位秒；正常情况下登出会广播失效，这里作为广播丢失时的兜底
+         */
+        private Long localCacheSeconds = 10 * 60L;
+    }
+
+    /**
+     * 本地缓存的会话信息
+     *
+     * @param userId   用户id
+     * @param expireAt jwt的过期时间
+     */
+    private record SessionEntry(Long userId, long expireAt) {
     }
 
     private final JwtProperties jwtProperties;
@@ -50,10 +81,39 @@ public class UserSessionHelper {
     private Algorithm algorithm;
     private JWTVerifier verifier;
 
-    public UserSessionHelper(JwtProperties jwtProperties) {
+    /**
+     * 已验签通过的 token -> 用户，避免每次请求都做验签、payload解析以及redis查询
+     */
+    private final Cache<String, SessionEntry> sessionCache;
+
+    public UserSessionHelper(JwtProperties jwtProperties, RedisMessageListenerContainer redisMessageListenerContainer) {
         this.jwtProperties = jwtProperties;
         algorithm = Algorithm.HMAC256(jwtProperties.getSecret());
         verifier = JWT.require(algorithm).withIssuer(jwtProperties.getIssuer()).build();
+
+        long maxLocalNanos = TimeUnit.SECONDS.toNanos(jwtProperties.getLocalCacheSeconds());
+        sessionCache = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getLocalCacheSize())
+                .expireAfter(new Expiry<String, SessionEntry>() {
+                    @Override
+                    public long expireAfterCreate(String key, SessionEntry value, long currentTime) {
+                        // 不超过jwt自身的过期时间
+                        long jwtLeft = TimeUnit.MILLISECONDS.toNanos(value.expireAt() - System.currentTimeMillis());
+                        return Math.max(0, Math.min(jwtLeft, maxLocalNanos));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, SessionEntry value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, SessionEntry value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(SESSION_REVOKE_CHANNEL));
     }
 
     public String genToken(Long userId) {
@@ -71,6 +131,20 @@ public class UserSessionHelper {
 
     public void removeSession(String session) {
         RedisClient.del(session);
+        sessionCache.invalidate(session);
+        // 广播给其他节点，失效它们本地缓存的token
+        RedisClient.publish(SESSION_REVOKE_CHANNEL, session);
+    }
+
+    /**
+     * 接收其他节点广播的登出通知
+     *
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        sessionCache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
     }
 
     /**
@@ -80,6 +154,11 @@ public class UserSessionHelper {
      * @return
      */
     public Long getUserIdBySession(String session) {
+        SessionEntry entry = sessionCache.getIfPresent(session);
+        if (entry != null) {
+            return entry.userId();
+        }
+
         // jwt的校验方式，如果token非法或者过期，则直接验签失败
         try {
             DecodedJWT decodedJWT = verifier.verify(session);
@@ -92,7 +171,10 @@ public class UserSessionHelper {
             if (user == null || !Objects.equals(userId, user)) {
                 return null;
             }
-            return Long.valueOf(user);
+            Long ans = Long.valueOf(user);
+            Date expireAt = decodedJWT.getExpiresAt();
+            sessionCache.put(session, new SessionEntry(ans, expireAt == null ? Long.MAX_VALUE : expireAt.getTime()));
+            return ans;
         } catch (Exception e) {
             log.info("jwt token校验失败! token: {}, msg: {}", session, e.getMessage());
             return null;
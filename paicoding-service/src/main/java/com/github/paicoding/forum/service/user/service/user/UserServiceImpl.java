@@ -90,6 +90,7 @@ public class UserServiceImpl implements UserService {
     public void saveUserInfo(UserInfoSaveReq req) {
         UserInfoDO userInfoDO = UserConverter.toDO(req);
         userDao.updateUserInfo(userInfoDO);
+        userInfoCacheManager.delBasicUserInfo(userInfoDO.getUserId());
     }
 
     @Override
@@ -103,6 +104,15 @@ public class UserServiceImpl implements UserService {
             return null;
         }
 
+        if (clientIp == null) {
+            // 不需要更新ip时，优先走本地缓存
+            BaseUserInfoDTO user = userInfoCacheManager.getBasicUserInfo(userId, id -> UserConverter.toDTO(userDao.getByUserId(id)));
+            if (user == null) {
+                throw ExceptionUtil.of(StatusEnum.USER_NOT_EXISTS, "userId=" + userId);
+            }
+            return user;
+        }
+
         // 查询用户信息，并更新最后一次使用的ip
         UserInfoDO user = userDao.getByUserId(userId);
         if (user == null) {
@@ -120,6 +130,7 @@ public class UserServiceImpl implements UserService {
                 ip.setFirstRegion(ip.getLatestRegion());
             }
             userDao.updateById(user);
+            userInfoCacheManager.delBasicUserInfo(userId);
         }
 
         return UserConverter.toDTO(user);
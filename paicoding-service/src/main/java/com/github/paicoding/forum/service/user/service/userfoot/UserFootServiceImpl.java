@@ -2,10 +2,12 @@ package com.github.paicoding.forum.service.user.service.userfoot;
 
 import com.github.paicoding.forum.api.model.enums.DocumentTypeEnum;
 import com.github.paicoding.forum.api.model.enums.OperateTypeEnum;
+import com.github.paicoding.forum.api.model.enums.ReadStatEnum;
 import com.github.paicoding.forum.api.model.vo.PageParam;
 import com.github.paicoding.forum.api.model.vo.user.dto.SimpleUserInfoDTO;
 import com.github.paicoding.forum.api.model.vo.user.dto.UserFootStatisticDTO;
 import com.github.paicoding.forum.service.article.service.ArticleReadService;
+import com.github.paicoding.forum.service.article.service.ColumnService;
 import com.github.paicoding.forum.service.comment.repository.entity.CommentDO;
 import com.github.paicoding.forum.service.comment.service.CommentReadService;
 import com.github.paicoding.forum.service.user.repository.dao.UserFootDao;
@@ -14,11 +16,15 @@ import com.github.paicoding.forum.service.user.service.UserFootService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * 用户足迹Service
@@ -36,6 +42,9 @@ public class UserFootServiceImpl implements UserFootService {
     @Autowired
     private CommentReadService commentReadService;
 
+    @Autowired
+    private ColumnService columnService;
+
     public UserFootServiceImpl(UserFootDao userFootDao) {
         this.userFootDao = userFootDao;
     }
@@ -53,6 +62,8 @@ public class UserFootServiceImpl implements UserFootService {
     public UserFootDO saveOrUpdateUserFoot(DocumentTypeEnum documentType, Long documentId, Long authorId, Long userId, OperateTypeEnum operateTypeEnum) {
         // 查询是否有该足迹；有则更新，没有则插入
         UserFootDO readUserFootDO = userFootDao.getByDocumentAndUserId(documentId, documentType.getCode(), userId);
+        boolean firstRead = operateTypeEnum == OperateTypeEnum.READ
+                && (readUserFootDO == null || !ReadStatEnum.READ.getCode().equals(readUserFootDO.getReadStat()));
         if (readUserFootDO == null) {
             readUserFootDO = new UserFootDO();
             readUserFootDO.setUserId(userId);
@@ -65,6 +76,10 @@ public class UserFootServiceImpl implements UserFootService {
             readUserFootDO.setUpdateTime(new Date());
             userFootDao.updateById(readUserFootDO);
         }
+        if (firstRead && documentType == DocumentTypeEnum.ARTICLE) {
+            // 与每日重建时统计 user_foot 的口径一致；重复阅读不影响阅读人数，只在首次阅读时记录
+            columnService.recordArticleRead(documentId, userId);
+        }
         return readUserFootDO;
     }
 
@@ -148,6 +163,15 @@ public class UserFootServiceImpl implements UserFootService {
         return userFootDao.getByDocumentAndUserId(documentId, type, userId);
     }
 
+    @Override
+    public Map<Long, UserFootDO> queryUserFoots(Collection<Long> documentIds, Integer type, Long userId) {
+        if (documentIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return userFootDao.listByDocumentsAndUserId(documentIds, type, userId).stream()
+                .collect(Collectors.toMap(UserFootDO::getDocumentId, foot -> foot, (a, b) -> a));
+    }
+
     @Override
     public UserFootStatisticDTO getFootCount() {
         return userFootDao.getFootCount();
@@ -0,0 +1,37 @@
+-- 用户活跃度批量更新：幂等判断 + 日/月排行榜更新 + 有效期初始化，一次往返内原子完成
+-- KEYS[1]: 当天排行榜, KEYS[2]: 当月排行榜, KEYS[3..n]: 每个事件对应的用户当天操作记录(幂等键)
+-- ARGV[1]: 操作记录有效期, ARGV[2]: 日榜有效期, ARGV[3]: 月榜有效期
+-- ARGV[4..]: 每个事件依次占三位 userId, field, score
+-- 返回实际生效的事件数
+local applied = 0
+for i = 3, #KEYS do
+    local base = 3 + (i - 3) * 3
+    local member = ARGV[base + 1]
+    local field = ARGV[base + 2]
+    local score = tonumber(ARGV[base + 3])
+    local old = redis.call('HGET', KEYS[i], field)
+    if score > 0 and not old then
+        -- 之前没有加分记录，记录后加分
+        redis.call('HSET', KEYS[i], field, score)
+        redis.call('EXPIRE', KEYS[i], ARGV[1])
+        redis.call('ZINCRBY', KEYS[1], score, member)
+        redis.call('ZINCRBY', KEYS[2], score, member)
+        applied = applied + 1
+    elseif score < 0 and old and tonumber(old) > 0 then
+        -- 之前加过分，移除幂等键后减分
+        redis.call('HDEL', KEYS[i], field)
+        redis.call('ZINCRBY', KEYS[1], score, member)
+        redis.call('ZINCRBY', KEYS[2], score, member)
+        applied = applied + 1
+    end
+end
+if applied > 0 then
+    -- 只对还没有设置有效期的榜单设置，避免每次更新都刷新有效期
+    if redis.call('TTL', KEYS[1]) == -1 then
+        redis.call('EXPIRE', KEYS[1], ARGV[2])
+    end
+    if redis.call('TTL', KEYS[2]) == -1 then
+        redis.call('EXPIRE', KEYS[2], ARGV[3])
+    end
+end
+return applied
@@ -0,0 +1,33 @@
+-- 文章分类/标签计数索引的增量更新：对比文章之前与现在的归属，只调整发生变化的计数，一次往返内原子完成
+-- KEYS[1]: 文章归属 articleId -> "categoryId:tagId1,tagId2", KEYS[2]: 分类计数(字段 0 为总数), KEYS[3]: 标签计数
+-- ARGV[1]: 文章id, ARGV[2]: 文章现在的归属，空字符串表示文章不在线
+-- 返回 1 表示计数有变化，0 表示无变化
+local old = redis.call('HGET', KEYS[1], ARGV[1]) or ''
+local new = ARGV[2]
+if old == new then
+    return 0
+end
+
+local function apply(member, delta)
+    if member == '' then
+        return
+    end
+    local sep = string.find(member, ':', 1, true)
+    local category = string.sub(member, 1, sep - 1)
+    redis.call('HINCRBY', KEYS[2], '0', delta)
+    if category ~= '0' then
+        redis.call('HINCRBY', KEYS[2], category, delta)
+    end
+    for tag in string.gmatch(string.sub(member, sep + 1), '[^,]+') do
+        redis.call('HINCRBY', KEYS[3], tag, delta)
+    end
+end
+
+apply(old, -1)
+apply(new, 1)
+if new == '' then
+    redis.call('HDEL', KEYS[1], ARGV[1])
+else
+    redis.call('HSET', KEYS[1], ARGV[1], new)
+end
+return 1
@@ -0,0 +1,13 @@
+-- 为会话分配一段连续的消息序号，多个实例共用同一个计数器
+-- KEYS[1]: 会话的序号计数器，值为下一条消息的序号
+-- ARGV[1]: 分配的序号个数, ARGV[2]: 调用方已知的下一条消息序号, ARGV[3]: 计数器有效期
+-- 计数器不存在(首次使用或已过期)或落后于调用方从db加载的序号时，以调用方的序号为起点，避免分配出重复的序号
+-- 返回分配后计数器的值，本次分配的序号为 [返回值 - ARGV[1], 返回值)
+local cur = tonumber(redis.call('GET', KEYS[1]) or '0')
+local floor = tonumber(ARGV[2])
+if cur < floor then
+    cur = floor
+end
+cur = cur + tonumber(ARGV[1])
+redis.call('SET', KEYS[1], cur, 'EX', ARGV[3])
+return cur
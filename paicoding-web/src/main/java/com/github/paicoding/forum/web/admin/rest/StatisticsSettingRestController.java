@@ -3,14 +3,32 @@ package com.github.paicoding.forum.web.admin.rest;
 import com.github.paicoding.forum.api.model.vo.ResVo;
 import com.github.paicoding.forum.api.model.vo.statistics.dto.StatisticsCountDTO;
 import com.github.paicoding.forum.api.model.vo.statistics.dto.StatisticsDayDTO;
+import com.github.paicoding.forum.core.async.AsyncUtil;
+import com.github.paicoding.forum.core.dal.ReadWriteRouter;
+import com.github.paicoding.forum.core.dal.SqlStateInterceptor;
 import com.github.paicoding.forum.core.permission.Permission;
 import com.github.paicoding.forum.core.permission.UserRole;
+import com.github.paicoding.forum.core.rabbitmq.RabbitmqChannelPool;
+import com.github.paicoding.forum.core.senstive.SensitiveService;
+import com.github.paicoding.forum.service.article.cache.ArticleCacheManager;
+import com.github.paicoding.forum.service.article.cache.ArticleCountIndex;
+import com.github.paicoding.forum.service.article.cache.ColumnCountIndex;
+import com.github.paicoding.forum.service.chatv2.memory.ChatMemoryStore;
+import com.github.paicoding.forum.service.image.ingest.ImageIngestPipeline;
+import com.github.paicoding.forum.service.notify.writer.NotifyMsgWriter;
+import com.github.paicoding.forum.service.statistics.aggregator.ReadCountAggregator;
+import com.github.paicoding.forum.service.statistics.aggregator.RequestCountAggregator;
+import com.github.paicoding.forum.service.statistics.aggregator.RequestRecordPipeline;
+import com.github.paicoding.forum.service.statistics.rebuild.UserStatisticRebuilder;
 import com.github.paicoding.forum.service.statistics.service.StatisticsSettingService;
+import com.github.paicoding.forum.web.mq.RabbitmqConsumer;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 数据统计后台
@@ -27,6 +45,63 @@ public class StatisticsSettingRestController {
     @Autowired
     private StatisticsSettingService statisticsSettingService;
 
+    @Autowired
+    private ArticleCacheManager articleCacheManager;
+
+    @Autowired
+    private ArticleCountIndex articleCountIndex;
+
+    @Autowired
+    private ColumnCountIndex columnCountIndex;
+
+    @Autowired
+    private ReadCountAggregator readCountAggregator;
+
+    @Autowired
+    private RequestRecordPipeline requestRecordPipeline;
+
+    @Autowired
+    private RequestCountAggregator requestCountAggregator;
+
+    @Autowired
+    private SensitiveService sensitiveService;
+
+    @Autowired
+    private UserStatisticRebuilder userStatisticRebuilder;
+
+    @Autowired
+    private ImageIngestPipeline imageIngestPipeline;
+
+    @Autowired
+    private NotifyMsgWriter notifyMsgWriter;
+
+    @Autowired
+    private ChatMemoryStore chatMemoryStore;
+
+    /**
+     * 未开启rabbitmq时不存在
+     */
+    @Autowired(required = false)
+    private RabbitmqConsumer rabbitmqConsumer;
+
+    /**
+     * 未开启rabbitmq时不存在
+     */
+    @Autowired(required = false)
+    private RabbitmqChannelPool rabbitmqChannelPool;
+
+    /**
+     * paicoding.sql-stat.mode=off 时不存在
+     */
+    @Autowired(required = false)
+    private SqlStateInterceptor sqlStateInterceptor;
+
+    /**
+     * 开启自动读写分离时存在
+     */
+    @Autowired(required = false)
+    private ReadWriteRouter readWriteRouter;
+
     static final Integer DEFAULT_DAY = 7;
 
     @GetMapping(path = "queryTotal")
@@ -43,4 +118,38 @@ public class StatisticsSettingRestController {
         return ResVo.ok(pvDayList);
     }
 
+    /**
+     * 运行时指标：文章两级缓存的命中统计、阅读计数写缓冲的积压与刷盘耗时、请求记录管道的队列深度与丢弃数、sql耗时分布与最近的慢sql、各数据源的qps与从库延迟、外网图片转存的去重命中、消息发送channel池的等待与确认耗时、ai会话记忆的命中与落库积压等
+     *
+     * @return
+     */
+    @GetMapping(path = "runtimeStats")
+    public ResVo<Map<String, Map<String, Object>>> runtimeStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("articleCache", articleCacheManager.cacheStats());
+        stats.put("articleCount", articleCountIndex.stats());
+        stats.put("columnCount", columnCountIndex.stats());
+        stats.put("readCount", readCountAggregator.stats());
+        stats.put("requestRecord", requestRecordPipeline.stats());
+        stats.put("requestCount", requestCountAggregator.stats());
+        stats.put("userStatisticRebuild", userStatisticRebuilder.stats());
+        stats.put("imageIngest", imageIngestPipeline.stats());
+        stats.put("sensitive", sensitiveService.stats());
+        stats.put("async", AsyncUtil.stats());
+        stats.put("notify", notifyMsgWriter.stats());
+        stats.put("chatMemory", chatMemoryStore.stats());
+        if (rabbitmqConsumer != null) {
+            stats.put("notifyConsumer", rabbitmqConsumer.stats());
+        }
+        if (rabbitmqChannelPool != null) {
+            stats.put("rabbitPublisher", rabbitmqChannelPool.stats());
+        }
+        if (sqlStateInterceptor != null) {
+            stats.put("sql", sqlStateInterceptor.stats());
+        }
+        if (readWriteRouter != null) {
+            stats.put("datasource", readWriteRouter.stats());
+        }
+        return ResVo.ok(stats);
+    }
 }
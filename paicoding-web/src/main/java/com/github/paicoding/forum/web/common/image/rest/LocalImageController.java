@@ -0,0 +1,173 @@
+package com.github.paicoding.forum.web.common.image.rest;
+
+import com.github.paicoding.forum.service.image.oss.impl.LocalStorageWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.regex.Pattern;
+
+/**
+ * 本地存储图片的访问
+ * <p>
+ * 1. 优先使用容器的 sendfile 能力直接由内核把文件写入socket，不支持时通过 FileChannel.transferTo 输出，文件内容不经过用户态的字节数组
+ * 2. 按内容寻址的图片以md5作为强ETag并且永久缓存，浏览器、CDN通过 If-None-Match 低成本地校验
+ * 3. 支持单段 Range 请求
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+@RestController
+@ConditionalOnExpression(value = "#{'local'.equals(environment.getProperty('image.oss.type'))}")
+public class LocalImageController {
+    /**
+     * 按内容寻址存储的文件名：32位md5 + 文件类型
+     */
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{32}\\.[a-zA-Z0-9]+");
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 小于该大小的文件直接拷贝输出即可，与tomcat默认的 sendfileSize 保持一致
+     */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    @Value("${image.web-img-path}")
+    private String webImgPath;
+
+    @Autowired
+    private LocalStorageWrapper localStorageWrapper;
+
+    @GetMapping(path = "${image.web-img-path}**")
+    public void image(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String uri = request.getRequestURI();
+        String prefix = StringUtils.strip(webImgPath, "/");
+        int index = uri.indexOf(prefix);
+        Path root = localStorageWrapper.root().toAbsolutePath().normalize();
+        Path file = index < 0 ? null : root.resolve(uri.substring(index + prefix.length()).replaceFirst("^/+", "")).normalize();
+        if (file == null || !file.startsWith(root) || !Files.isRegularFile(file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attrs.size();
+        String fileName = file.getFileName().toString();
+        boolean immutable = CONTENT_ADDRESSED.matcher(fileName).matches();
+        // 按内容寻址的文件内容不会变化，md5即为强校验值；历史文件使用 大小 + 修改时间
+        String etag = "\"" + (immutable ? fileName.substring(0, 32)
+                : Long.toHexString(length) + "-" + Long.toHexString(attrs.lastModifiedTime().toMillis())) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? "public, max-age=31536000, immutable" : "public, max-age=86400");
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, attrs.lastModifiedTime().toMillis());
+        response.setContentType(MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || "*".equals(ifNoneMatch.trim()))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0, end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] r = parseRange(range, length);
+            if (r == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (r.length == 2) {
+                start = r[0];
+                end = r[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || count <= 0) {
+            return;
+        }
+
+        if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 由容器在请求处理完成后通过 sendfile 输出
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long n = channel.transferTo(position, end + 1 - position, out);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+            }
+        }
+    }
+
+    /**
+     * 解析 Range 请求头，只支持单段的范围，多段的范围按整个文件返回
+     *
+     * @return null 表示范围不合法；长度为0表示返回整个文件；否则为 [start, end]
+     */
+    private long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.contains(",")) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int index = spec.indexOf('-');
+        if (index < 0) {
+            return null;
+        }
+        try {
+            String from = spec.substring(0, index).trim(), to = spec.substring(index + 1).trim();
+            long start, end;
+            if (from.isEmpty()) {
+                // bytes=-500 表示最后500个字节
+                long suffix = Long.parseLong(to);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(from);
+                end = to.isEmpty() ? length - 1 : Math.min(Long.parseLong(to), length - 1);
+            }
+            return start > end || start >= length ? null : new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
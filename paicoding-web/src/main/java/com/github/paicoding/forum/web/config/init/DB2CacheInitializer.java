@@ -1,6 +1,7 @@
 package com.github.paicoding.forum.web.config.init;
 
 import com.github.paicoding.forum.core.cache.CacheSyncUtil;
+import com.github.paicoding.forum.core.cache.RedisClient;
 import com.github.paicoding.forum.service.statistics.repository.entity.RequestCountDO;
 import com.github.paicoding.forum.service.statistics.service.RequestCountService;
 import lombok.extern.slf4j.Slf4j;
@@ -34,9 +35,15 @@ public class DB2CacheInitializer implements CommandLineRunner {
 
 
     private boolean syncRequestCount(){
+        String key = RequestCountService.REQUEST_COUNT_PREFIX + Date.valueOf(LocalDate.now());
+        if (Boolean.TRUE.equals(RedisClient.exists(key))) {
+            // 其他节点已经在累加当天的计数，redis中的计数不小于db，不能再用db中的数据覆盖
+            log.info(">>>>>> request_count 缓存已存在，跳过同步");
+            return true;
+        }
         List<RequestCountDO> requestCountDOS = requestCountService.getTodayRequestCountList();
         try {
-            CacheSyncUtil.syncFromDb2Cache(RequestCountService.REQUEST_COUNT_PREFIX + Date.valueOf(LocalDate.now()), RequestCountDO.class, requestCountDOS);
+            CacheSyncUtil.syncFromDb2Cache(key, RequestCountDO.class, requestCountDOS);
         } catch (IllegalAccessException e) {
             log.error(">>>>>> !! 同步request count数据到缓存失败", e);
             return false;
@@ -27,13 +27,15 @@ public class ArticleListRestController extends BaseViewController {
      * @param categoryId 类目id
      * @param page 请求页
      * @param size 分页数
+     * @param cursor 上一页返回的游标（置顶状态 + 创建时间 + id），传入时按游标分页，忽略 page
      * @return 文章列表
      */
     @GetMapping(path = "data/category/{category}")
     public ResVo<PageListVo<ArticleDTO>> categoryDataList(@PathVariable("category") Long categoryId,
-                                                          @RequestParam(name = "page") Long page,
-                                                          @RequestParam(name = "size", required = false) Long size) {
-        PageParam pageParam = buildPageParam(page, size);
+                                                          @RequestParam(name = "page", required = false, defaultValue = "1") Long page,
+                                                          @RequestParam(name = "size", required = false) Long size,
+                                                          @RequestParam(name = "cursor", required = false) String cursor) {
+        PageParam pageParam = cursor == null ? buildPageParam(page, size) : buildCursorParam(cursor, size, 3);
         PageListVo<ArticleDTO> list = articleService.queryArticlesByCategory(categoryId, pageParam);
         return ResVo.ok(list);
     }
@@ -4,6 +4,7 @@ import com.github.paicoding.forum.api.model.context.ReqInfoContext;
 import com.github.paicoding.forum.api.model.enums.DocumentTypeEnum;
 import com.github.paicoding.forum.api.model.enums.NotifyTypeEnum;
 import com.github.paicoding.forum.api.model.enums.OperateTypeEnum;
+import com.github.paicoding.forum.api.model.vo.PageListVo;
 import com.github.paicoding.forum.api.model.vo.PageParam;
 import com.github.paicoding.forum.api.model.vo.ResVo;
 import com.github.paicoding.forum.api.model.vo.comment.CommentSaveReq;
@@ -23,6 +24,7 @@ import com.github.paicoding.forum.service.comment.service.CommentWriteService;
 import com.github.paicoding.forum.service.user.repository.entity.UserFootDO;
 import com.github.paicoding.forum.service.user.service.UserFootService;
 import com.github.paicoding.forum.web.controller.article.vo.ArticleDetailVo;
+import com.github.paicoding.forum.web.global.BaseViewController;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
@@ -38,7 +40,7 @@ import java.util.Optional;
  **/
 @RestController
 @RequestMapping(path = "comment/api")
-public class CommentRestController {
+public class CommentRestController extends BaseViewController {
     @Autowired
     private ArticleReadService articleReadService;
 
@@ -70,6 +72,23 @@ public class CommentRestController {
         return ResVo.ok(result);
     }
 
+    /**
+     * 评论列表页，支持游标分页；返回结果中带有下一页的游标
+     *
+     * @param articleId
+     * @param pageSize  页大小，不超过 {@link PageParam#DEFAULT_PAGE_SIZE}
+     * @param cursor    上一页返回的游标（评论id），为空时查询第一页
+     * @return
+     */
+    @ResponseBody
+    @RequestMapping(path = "page")
+    public ResVo<PageListVo<TopCommentDTO>> page(Long articleId, Long pageSize, String cursor) {
+        if (NumUtil.nullOrZero(articleId)) {
+            return ResVo.fail(StatusEnum.ILLEGAL_ARGUMENTS_MIXED, "文章id为空");
+        }
+        return ResVo.ok(commentReadService.queryArticleComments(articleId, buildCursorParam(cursor, pageSize, 1)));
+    }
+
     /**
      * 保存评论
      *
@@ -38,7 +38,7 @@ public class NoticeRestController {
         this.notifyService = notifyService;
     }
 
-    private PageListVo<NotifyMsgDTO> listItems(String type, Long page, Long pageSize) {
+    private PageListVo<NotifyMsgDTO> listItems(String type, Long page, Long pageSize, String cursor) {
         NotifyTypeEnum typeEnum = NotifyTypeEnum.typeOf(type);
         if (typeEnum == null) {
             throw ExceptionUtil.of(StatusEnum.ILLEGAL_ARGUMENTS_MIXED, "type" + type + "非法");
@@ -46,8 +46,8 @@ public class NoticeRestController {
         if (pageSize == null) {
             pageSize = PageParam.DEFAULT_PAGE_SIZE;
         }
-        return notifyService.queryUserNotices(ReqInfoContext.getReqInfo().getUserId(),
-                typeEnum, PageParam.newPageInstance(page, pageSize));
+        PageParam pageParam = cursor == null ? PageParam.newPageInstance(page, pageSize) : PageParam.newCursorInstance(cursor, pageSize);
+        return notifyService.queryUserNotices(ReqInfoContext.getReqInfo().getUserId(), typeEnum, pageParam);
 
     }
 
@@ -57,13 +57,15 @@ public class NoticeRestController {
      * @param type     @link NotifyTypeEnum
      * @param page
      * @param pageSize
+     * @param cursor   上一页返回的游标，传入时按游标分页，忽略 page
      * @return
      */
     @RequestMapping(path = "list")
     public ResVo<PageListVo<NotifyMsgDTO>> list(@RequestParam(name = "type") String type,
-                                                @RequestParam("page") Long page,
-                                                @RequestParam(name = "pageSize", required = false) Long pageSize) {
-        return ResVo.ok(listItems(type, page, pageSize));
+                                                @RequestParam(name = "page", required = false, defaultValue = "1") Long page,
+                                                @RequestParam(name = "pageSize", required = false) Long pageSize,
+                                                @RequestParam(name = "cursor", required = false) String cursor) {
+        return ResVo.ok(listItems(type, page, pageSize, cursor));
     }
 
 //    /**
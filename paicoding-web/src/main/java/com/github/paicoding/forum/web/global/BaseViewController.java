@@ -1,6 +1,8 @@
 package com.github.paicoding.forum.web.global;
 
+import com.github.paicoding.forum.api.model.exception.ExceptionUtil;
 import com.github.paicoding.forum.api.model.vo.PageParam;
+import com.github.paicoding.forum.api.model.vo.constants.StatusEnum;
 import org.springframework.beans.factory.annotation.Autowired;
 
 /**
@@ -23,4 +25,27 @@ public class BaseViewController {
         return PageParam.newPageInstance(page, size);
     }
 
+    public PageParam buildCursorParam(String cursor, Long size) {
+        if (size == null || size > PageParam.DEFAULT_PAGE_SIZE) {
+            size = PageParam.DEFAULT_PAGE_SIZE;
+        }
+        return PageParam.newCursorInstance(cursor, size);
+    }
+
+    /**
+     * 游标分页，并校验游标的字段数
+     *
+     * @param cursor 上一页返回的游标，为空时查询第一页
+     * @param size   页大小，超过默认值时按默认值处理
+     * @param fields 游标应包含的排序字段个数（含id）
+     * @return
+     */
+    public PageParam buildCursorParam(String cursor, Long size, int fields) {
+        PageParam pageParam = buildCursorParam(cursor, size);
+        if (cursor != null && !cursor.isBlank() && (pageParam.getCursor() == null || pageParam.getCursor().size() != fields)) {
+            throw ExceptionUtil.of(StatusEnum.ILLEGAL_ARGUMENTS_MIXED, "游标非法");
+        }
+        return pageParam;
+    }
+
 }
@@ -2,13 +2,14 @@ package com.github.paicoding.forum.web.hook.filter;
 
 import cn.hutool.core.date.StopWatch;
 import com.github.paicoding.forum.api.model.context.ReqInfoContext;
-import com.github.paicoding.forum.core.async.AsyncUtil;
+import com.github.paicoding.forum.core.dal.ReadWriteRouter;
 import com.github.paicoding.forum.core.mdc.MdcUtil;
 import com.github.paicoding.forum.core.util.CrossUtil;
 import com.github.paicoding.forum.core.util.EnvUtil;
 import com.github.paicoding.forum.core.util.IpUtil;
 import com.github.paicoding.forum.core.util.SessionUtil;
-import com.github.paicoding.forum.service.statistics.service.StatisticsSettingService;
+import com.github.paicoding.forum.service.statistics.aggregator.RequestRecordPipeline;
+import com.github.paicoding.forum.service.statistics.aggregator.model.RequestRecord;
 import com.github.paicoding.forum.service.user.service.LoginService;
 import com.github.paicoding.forum.web.global.GlobalInitService;
 import jakarta.servlet.*;
@@ -18,13 +19,11 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpMethod;
 
 import java.io.IOException;
-import java.net.URLDecoder;
+import java.time.LocalDate;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -39,7 +38,6 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 @WebFilter(urlPatterns = "/*", filterName = "reqRecordFilter", asyncSupported = true)
 public class ReqRecordFilter implements Filter {
-    private static Logger REQ_LOG = LoggerFactory.getLogger("req");
     /**
      * 返回给前端的traceId，用于日志追踪
      */
@@ -49,7 +47,7 @@ public class ReqRecordFilter implements Filter {
     private GlobalInitService globalInitService;
 
     @Autowired
-    private StatisticsSettingService statisticsSettingService;
+    private RequestRecordPipeline requestRecordPipeline;
 
     @Override
     public void init(FilterConfig filterConfig) {
@@ -79,6 +77,7 @@ public class ReqRecordFilter implements Filter {
             // 一个链路请求完毕，清空MDC相关的变量(如GlobalTraceId，用户信息)
             MdcUtil.clear();
             ReqInfoContext.clear();
+            ReadWriteRouter.clear();
             stopWatch.stop();
 
             if (!isStaticURI(request) && !EnvUtil.isPro()) {
@@ -158,38 +157,27 @@ public class ReqRecordFilter implements Filter {
         return request;
     }
 
+    /**
+     * 采集请求日志与请求计数所需的原始字段，交给 RequestRecordPipeline 异步处理，不阻塞请求线程
+     */
     private void buildRequestLog(ReqInfoContext.ReqInfo req, HttpServletRequest request, long costTime) {
         if (req == null || isStaticURI(request)) {
             return;
         }
 
-        StringBuilder msg = new StringBuilder();
-        msg.append("method=").append(request.getMethod()).append("; ");
-        if (StringUtils.isNotBlank(req.getReferer())) {
-            msg.append("referer=").append(URLDecoder.decode(req.getReferer())).append("; ");
-        }
-        msg.append("remoteIp=").append(req.getClientIp());
-        msg.append("; agent=").append(req.getUserAgent());
-
-        if (req.getUserId() != null) {
-            // 打印用户信息
-            msg.append("; user=").append(req.getUserId());
-        }
-
-        msg.append("; uri=").append(request.getRequestURI());
-        if (StringUtils.isNotBlank(request.getQueryString())) {
-            msg.append('?').append(URLDecoder.decode(request.getQueryString()));
-        }
-
-        msg.append("; payload=").append(req.getPayload());
-        msg.append("; cost=").append(costTime);
-        REQ_LOG.info("{}", msg);
-
-        // 保存请求计数
-        AsyncUtil.concurrentExecutor("保存请求计数信息")
-                        .async(() -> statisticsSettingService.saveRequestCount(req.getClientIp()), "saveRequestCount")
-                        .allExecuted();
-//        statisticsSettingService.saveRequestCount(req.getClientIp());
+        RequestRecord record = new RequestRecord()
+                .setTraceId(req.getTraceId())
+                .setMethod(request.getMethod())
+                .setReferer(req.getReferer())
+                .setClientIp(req.getClientIp())
+                .setUserAgent(req.getUserAgent())
+                .setUserId(req.getUserId())
+                .setUri(request.getRequestURI())
+                .setQueryString(request.getQueryString())
+                .setPayload(req.getPayload())
+                .setCost(costTime)
+                .setDay(LocalDate.now());
+        requestRecordPipeline.offer(record);
     }
 
 
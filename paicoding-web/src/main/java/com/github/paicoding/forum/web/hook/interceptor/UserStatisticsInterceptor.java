@@ -1,6 +1,8 @@
 package com.github.paicoding.forum.web.hook.interceptor;
 
 import com.github.paicoding.forum.api.model.context.ReqInfoContext;
+import com.github.paicoding.forum.core.async.AsyncPool;
+import com.github.paicoding.forum.core.async.AsyncUtil;
 import com.github.paicoding.forum.core.util.SpringUtil;
 import com.github.paicoding.forum.service.sitemap.service.impl.SitemapServiceImpl;
 import com.github.paicoding.forum.service.statistics.service.statistic.UserStatisticService;
@@ -15,7 +17,9 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
 
 import java.util.UUID;
 
@@ -46,6 +50,22 @@ public class UserStatisticsInterceptor {
     }
 
 
+    /**
+     * 异步更新站点的uv/pv计数，不占用请求线程；后台线程池满时直接丢弃
+     * <p>
+     * 只有匹配到接口的请求才按路由模板统计资源维度的uv，静态资源、404 等路径不会产生新的 key
+     */
+    private static void saveVisitInfo(HttpServletRequest request, Object handler) {
+        ReqInfoContext.ReqInfo reqInfo = ReqInfoContext.getReqInfo();
+        if (reqInfo == null) {
+            return;
+        }
+        String ip = reqInfo.getClientIp();
+        String path = reqInfo.getPath();
+        String route = handler instanceof HandlerMethod ? (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE) : null;
+        AsyncUtil.tryExecute(AsyncPool.BACKGROUND, () -> SpringUtil.getBean(SitemapServiceImpl.class).saveVisitInfo(ip, path, route));
+    }
+
     private class OnlineUserByCookieInterceptor implements AsyncHandlerInterceptor {
 
         public OnlineUserByCookieInterceptor() {
@@ -66,12 +86,7 @@ public class UserStatisticsInterceptor {
             }
 
             // 更新uv/pv计数 - check if ReqInfo is available
-            if (ReqInfoContext.getReqInfo() != null) {
-                SpringUtil.getBean(SitemapServiceImpl.class).saveVisitInfo(
-                    ReqInfoContext.getReqInfo().getClientIp(),
-                    ReqInfoContext.getReqInfo().getPath()
-                );
-            }
+            saveVisitInfo(request, handler);
 
             // 检查请求中是否包含 SESSION_ID Cookie
             String sessionId = getSessionIdFromCookies(request);
@@ -142,12 +157,7 @@ public class UserStatisticsInterceptor {
             }
 
             // 更新uv/pv计数 - check if ReqInfo is available
-            if (ReqInfoContext.getReqInfo() != null) {
-                SpringUtil.getBean(SitemapServiceImpl.class).saveVisitInfo(
-                    ReqInfoContext.getReqInfo().getClientIp(),
-                    ReqInfoContext.getReqInfo().getPath()
-                );
-            }
+            saveVisitInfo(request, handler);
 
             HttpSession session = request.getSession(true);
             session.setMaxInactiveInterval(30);
@@ -4,20 +4,35 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.paicoding.forum.api.model.event.MessageQueueEvent;
 import com.github.paicoding.forum.core.common.CommonConstants;
+import com.github.paicoding.forum.core.rabbitmq.RabbitMqConfig;
 import com.github.paicoding.forum.web.mq.comsumer.MessageQueueNotifyMsgConsumer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
 import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.QueueInformation;
 import org.springframework.amqp.rabbit.annotation.Exchange;
 import org.springframework.amqp.rabbit.annotation.Queue;
 import org.springframework.amqp.rabbit.annotation.QueueBinding;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.retry.MessageRecoverer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * @program: pai_coding
- * @description: rabbitmq消费者
+ * @description: rabbitmq消费者，通知消息按批消费：一批消息在一个事务内写入，事务提交后整批确认；
+ *               个别消息无法写入时只将这些消息转入死信队列，整批写入失败时由监听容器有限次重试，由幂等键去重
  * @author: XuYifei
  * @create: 2024-10-30
  */
@@ -30,8 +45,26 @@ public class RabbitmqConsumer {
     @Autowired
     private MessageQueueNotifyMsgConsumer messageQueueNotifyMsgConsumer;
 
+    @Autowired(required = false)
+    private AmqpAdmin amqpAdmin;
+
+    @Autowired
+    @Qualifier(RabbitMqConfig.NOTIFY_DEAD_LETTER_RECOVERER)
+    private MessageRecoverer deadLetterRecoverer;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder consumed = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder illegal = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private final AtomicLong lastBatchCost = new AtomicLong();
+    private final AtomicLong lastLag = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+
 
     @RabbitListener(bindings = @QueueBinding(
                 value = @Queue(
@@ -42,42 +75,85 @@ public class RabbitmqConsumer {
                 exchange = @Exchange(name = CommonConstants.MESSAGE_QUEUE_EXCHANGE_NAME_DIRECT, type = ExchangeTypes.DIRECT),
                 key = {CommonConstants.MESSAGE_QUEUE_KEY_NOTIFY}
             ),
-            concurrency = "10"
+            concurrency = "${paicoding.notify-consumer.concurrency:2}",
+            containerFactory = RabbitMqConfig.BATCH_LISTENER_CONTAINER_FACTORY
     )
-    @SuppressWarnings("unchecked")
-    public <T> void listenNotifyEventQueue(MessageQueueEvent<T> msgEvent) {
-        log.info("消费者2接收到direct.queue2的消息：【{}】", msgEvent);
+    public void listenNotifyEventQueue(List<Message> messages) {
+        long start = System.currentTimeMillis();
+        long lag = 0;
+        List<MessageQueueEvent<Object>> events = new ArrayList<>(messages.size());
+        // 与 events 一一对应的原始消息
+        List<Message> parsed = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            Date timestamp = message.getMessageProperties().getTimestamp();
+            if (timestamp != null) {
+                lag = Math.max(lag, start - timestamp.getTime());
+            }
+            try {
+                events.add(objectMapper.readValue(message.getBody(), new TypeReference<>() {}));
+                parsed.add(message);
+            } catch (Exception e) {
+                // 无法解析的消息重新投递也无法处理，直接跳过
+                illegal.increment();
+                log.warn("skip illegal notify message: {}", message, e);
+            }
+        }
 
-        switch (msgEvent.getNotifyType()){
-            case COMMENT :
-                messageQueueNotifyMsgConsumer.saveCommentNotify(objectMapper.convertValue(msgEvent, new TypeReference<>() {}));
-                break;
-            case REPLY:
-                messageQueueNotifyMsgConsumer.saveReplyNotify(objectMapper.convertValue(msgEvent, new TypeReference<>() {}));
-                break;
-            case PRAISE:
-            case COLLECT:
-                messageQueueNotifyMsgConsumer.saveArticleNotify(objectMapper.convertValue(msgEvent, new TypeReference<>() {}));
-                break;
-            case CANCEL_PRAISE:
-            case CANCEL_COLLECT:
-                messageQueueNotifyMsgConsumer.removeArticleNotify(objectMapper.convertValue(msgEvent, new TypeReference<>() {}));
-                break;
-            case FOLLOW:
-                messageQueueNotifyMsgConsumer.saveFollowNotify(objectMapper.convertValue(msgEvent, new TypeReference<>() {}));
-                break;
-            case CANCEL_FOLLOW:
-                messageQueueNotifyMsgConsumer.removeFollowNotify(objectMapper.convertValue(msgEvent, new TypeReference<>() {}));
-                break;
-            case REGISTER:
-                messageQueueNotifyMsgConsumer.saveRegisterSystemNotify(objectMapper.convertValue(msgEvent, new TypeReference<>() {}));
-                break;
-            case LOGIN:
-                // TODO: 增加一个登录消息
-                break;
-            default:
-                break;
+        MessageQueueNotifyMsgConsumer.BatchResult result;
+        try {
+            result = messageQueueNotifyMsgConsumer.batchConsume(events);
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.error("consume notify messages error! size: {}", messages.size(), e);
+            throw e;
+        }
+        written.add(result.written());
+        for (Integer index : result.failed()) {
+            // 数据不合法的消息重试也无法写入，转入死信队列，避免整批反复重投
+            deadLettered.increment();
+            log.error("dead letter notify message: {}", events.get(index), result.cause());
+            deadLetterRecoverer.recover(parsed.get(index), result.cause());
         }
+
+        batches.increment();
+        consumed.add(messages.size());
+        lastBatchSize.set(messages.size());
+        lastBatchCost.set(System.currentTimeMillis() - start);
+        lastLag.set(lag);
+        maxLag.accumulateAndGet(lag, Math::max);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batches", batches.sum());
+        stats.put("consumed", consumed.sum());
+        stats.put("written", written.sum());
+        stats.put("illegal", illegal.sum());
+        stats.put("failures", failures.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        stats.put("lastBatchSize", lastBatchSize.get());
+        stats.put("lastBatchCostMs", lastBatchCost.get());
+        // 最近一批的处理速度，条/秒
+        stats.put("lastBatchThroughput", lastBatchCost.get() == 0 ? lastBatchSize.get() * 1000 : lastBatchSize.get() * 1000 / lastBatchCost.get());
+        stats.put("lastLagMs", lastLag.get());
+        stats.put("maxLagMs", maxLag.get());
+        stats.put("backlog", backlog());
+        return stats;
     }
 
+    /**
+     * @return 队列中堆积的消息数，-1 表示查询失败
+     */
+    private long backlog() {
+        if (amqpAdmin == null) {
+            return -1;
+        }
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(CommonConstants.MESSAGE_QUEUE_NAME_NOTIFY_EVENT);
+            return info == null ? -1 : info.getMessageCount();
+        } catch (Exception e) {
+            log.warn("query notify queue info error!", e);
+            return -1;
+        }
+    }
 }
@@ -6,8 +6,26 @@ import com.github.paicoding.forum.service.comment.repository.entity.CommentDO;
 import com.github.paicoding.forum.service.user.repository.entity.UserFootDO;
 import com.github.paicoding.forum.service.user.repository.entity.UserRelationDO;
 
+import java.util.List;
+
 
 public interface MessageQueueNotifyMsgConsumer {
+    /**
+     * 批量消费通知消息，在一个事务内写入；整批写入因数据不合法失败时逐条重试，找出无法写入的消息
+     *
+     * @param events 按投递顺序排列的消息
+     * @return 写入结果；db不可用等与具体消息无关的故障直接抛出异常，由 mq 重新投递
+     */
+    BatchResult batchConsume(List<MessageQueueEvent<Object>> events);
+
+    /**
+     * @param written 实际产生写操作的消息数
+     * @param failed  数据不合法、逐条重试后仍写入失败的消息在 events 中的下标
+     * @param cause   最后一次写入失败的异常，failed 为空时为 null
+     */
+    record BatchResult(int written, List<Integer> failed, RuntimeException cause) {
+    }
+
     void saveCommentNotify(MessageQueueEvent<CommentDO> event);
 
     void saveReplyNotify(MessageQueueEvent<CommentDO> event);
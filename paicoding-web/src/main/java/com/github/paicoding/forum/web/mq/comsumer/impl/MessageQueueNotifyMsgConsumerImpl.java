@@ -1,24 +1,24 @@
 package com.github.paicoding.forum.web.mq.comsumer.impl;
 
-import com.github.paicoding.forum.api.model.enums.NotifyStatEnum;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.paicoding.forum.api.model.enums.NotifyTypeEnum;
 import com.github.paicoding.forum.api.model.event.MessageQueueEvent;
-import com.github.paicoding.forum.core.util.SpringUtil;
-import com.github.paicoding.forum.service.article.repository.entity.ArticleDO;
-import com.github.paicoding.forum.service.article.service.ArticleReadService;
+import com.github.paicoding.forum.core.util.TransactionUtil;
 import com.github.paicoding.forum.service.comment.repository.entity.CommentDO;
-import com.github.paicoding.forum.service.comment.service.CommentReadService;
-import com.github.paicoding.forum.service.notify.repository.dao.NotifyMsgDao;
-import com.github.paicoding.forum.service.notify.repository.entity.NotifyMsgDO;
+import com.github.paicoding.forum.service.notify.writer.NotifyMsgWriter;
 import com.github.paicoding.forum.service.user.repository.entity.UserFootDO;
 import com.github.paicoding.forum.service.user.repository.entity.UserRelationDO;
 import com.github.paicoding.forum.web.mq.comsumer.MessageQueueNotifyMsgConsumer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.NonTransientDataAccessException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @program: pai_coding
- * @description:
+ * @description: mq中通知消息的消费，写入与幂等由 NotifyMsgWriter 完成
  * @author: XuYifei
  * @create: 2024-10-30
  */
@@ -26,20 +26,80 @@ import org.springframework.stereotype.Service;
 @Service
 @Slf4j
 public class MessageQueueNotifyMsgConsumerImpl implements MessageQueueNotifyMsgConsumer {
-    private static final Long ADMIN_ID = 1L;
+    private final NotifyMsgWriter notifyMsgWriter;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
-    private final ArticleReadService articleReadService;
+    public MessageQueueNotifyMsgConsumerImpl(NotifyMsgWriter notifyMsgWriter) {
+        this.notifyMsgWriter = notifyMsgWriter;
+    }
 
-    private final CommentReadService commentReadService;
+    @Override
+    public BatchResult batchConsume(List<MessageQueueEvent<Object>> events) {
+        List<NotifyMsgWriter.Op> ops = new ArrayList<>(events.size());
+        // ops 中每个写操作对应的消息下标
+        List<Integer> opEvents = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            MessageQueueEvent<Object> event = events.get(i);
+            Class<?> contentType = NotifyMsgWriter.contentType(event.getNotifyType());
+            if (contentType == null) {
+                // 登录等暂不产生通知的消息
+                continue;
+            }
+            Object content;
+            try {
+                content = objectMapper.convertValue(event.getContent(), contentType);
+            } catch (IllegalArgumentException | ClassCastException e) {
+                // 只跳过内容无法解析的消息；db/redis 异常继续抛出，由 mq 重试整批消息
+                log.warn("skip illegal notify message: {}", event, e);
+                continue;
+            }
+            // 关联的文章、评论已删除时 toOp 返回 null
+            NotifyMsgWriter.Op op = notifyMsgWriter.toOp(event.getNotifyType(), content);
+            if (op != null) {
+                ops.add(op);
+                opEvents.add(i);
+            }
+        }
+        try {
+            notifyMsgWriter.write(ops);
+            return new BatchResult(ops.size(), List.of(), null);
+        } catch (RuntimeException e) {
+            if (!dataError(e)) {
+                // db不可用等故障与具体消息无关，逐条写入也会失败，直接抛出由 mq 退避后重试整批消息
+                throw e;
+            }
+            log.warn("batch write notify messages error, retry one by one! size: {}", ops.size(), e);
+            return writeOneByOne(ops, opEvents);
+        }
+    }
 
-    private final NotifyMsgDao notifyMsgDao;
+    /**
+     * 整批写入因数据不合法失败后逐条写入，找出无法写入的消息，返回它们的下标；
+     * 逐条写入期间出现其他异常时直接抛出，由 mq 重试整批消息，已写入的消息按幂等键重复写入不影响结果
+     */
+    private BatchResult writeOneByOne(List<NotifyMsgWriter.Op> ops, List<Integer> opEvents) {
+        List<Integer> failed = new ArrayList<>();
+        RuntimeException cause = null;
+        for (int i = 0; i < ops.size(); i++) {
+            try {
+                notifyMsgWriter.write(List.of(ops.get(i)));
+            } catch (RuntimeException e) {
+                if (!dataError(e)) {
+                    throw e;
+                }
+                failed.add(opEvents.get(i));
+                cause = e;
+            }
+        }
+        return new BatchResult(ops.size() - failed.size(), failed, cause);
+    }
 
-    public MessageQueueNotifyMsgConsumerImpl(ArticleReadService articleReadService,
-                                             CommentReadService commentReadService,
-                                             NotifyMsgDao notifyMsgDao) {
-        this.articleReadService = articleReadService;
-        this.commentReadService = commentReadService;
-        this.notifyMsgDao = notifyMsgDao;
+    /**
+     * 数据本身不合法导致的写入失败（如违反唯一约束、字段超长），重试也无法写入；db连接失败、锁超时等瞬时故障不属于此类
+     */
+    private static boolean dataError(RuntimeException e) {
+        return e instanceof NonTransientDataAccessException && !TransactionUtil.isTransientFailure(e);
     }
 
     /**
@@ -49,16 +109,7 @@ public class MessageQueueNotifyMsgConsumerImpl implements MessageQueueNotifyMsgC
      */
     @Override
     public void saveCommentNotify(MessageQueueEvent<CommentDO> event) {
-        NotifyMsgDO msg = new NotifyMsgDO();
-        CommentDO comment = event.getContent();
-        ArticleDO article = articleReadService.queryBasicArticle(comment.getArticleId());
-        msg.setNotifyUserId(article.getUserId())
-                .setOperateUserId(comment.getUserId())
-                .setRelatedId(article.getId())
-                .setType(event.getNotifyType().getType())
-                .setState(NotifyStatEnum.UNREAD.getStat()).setMsg(comment.getContent());
-        // 对于评论而言，支持多次评论；因此若之前有也不删除
-        notifyMsgDao.save(msg);
+        write(event.getNotifyType(), event.getContent());
     }
 
     /**
@@ -68,16 +119,7 @@ public class MessageQueueNotifyMsgConsumerImpl implements MessageQueueNotifyMsgC
      */
     @Override
     public void saveReplyNotify(MessageQueueEvent<CommentDO> event) {
-        NotifyMsgDO msg = new NotifyMsgDO();
-        CommentDO comment = event.getContent();
-        CommentDO parent = commentReadService.queryComment(comment.getParentCommentId());
-        msg.setNotifyUserId(parent.getUserId())
-                .setOperateUserId(comment.getUserId())
-                .setRelatedId(comment.getArticleId())
-                .setType(event.getNotifyType().getType())
-                .setState(NotifyStatEnum.UNREAD.getStat()).setMsg(comment.getContent());
-        // 回复同样支持多次回复，不做幂等校验
-        notifyMsgDao.save(msg);
+        write(event.getNotifyType(), event.getContent());
     }
 
     /**
@@ -87,33 +129,12 @@ public class MessageQueueNotifyMsgConsumerImpl implements MessageQueueNotifyMsgC
      */
     @Override
     public void saveArticleNotify(MessageQueueEvent<UserFootDO> event) {
-        UserFootDO foot = event.getContent();
-        NotifyMsgDO msg = new NotifyMsgDO().setRelatedId(foot.getDocumentId())
-                .setNotifyUserId(foot.getDocumentUserId())
-                .setOperateUserId(foot.getUserId())
-                .setType(event.getNotifyType().getType())
-                .setState(NotifyStatEnum.UNREAD.getStat())
-                .setMsg("");
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record == null) {
-            // 若之前已经有对应的通知，则不重复记录；因为一个用户对一篇文章，可以重复的点赞、取消点赞，但是最终我们只通知一次
-            notifyMsgDao.save(msg);
-        }
+        write(event.getNotifyType(), event.getContent());
     }
 
     @Override
     public void saveArticleNotify(UserFootDO foot, NotifyTypeEnum notifyTypeEnum) {
-        NotifyMsgDO msg = new NotifyMsgDO().setRelatedId(foot.getDocumentId())
-                .setNotifyUserId(foot.getDocumentUserId())
-                .setOperateUserId(foot.getUserId())
-                .setType(notifyTypeEnum.getType() )
-                .setState(NotifyStatEnum.UNREAD.getStat())
-                .setMsg("");
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record == null) {
-            // 若之前已经有对应的通知，则不重复记录；因为一个用户对一篇文章，可以重复的点赞、取消点赞，但是最终我们只通知一次
-            notifyMsgDao.save(msg);
-        }
+        write(notifyTypeEnum, foot);
     }
 
     /**
@@ -122,17 +143,7 @@ public class MessageQueueNotifyMsgConsumerImpl implements MessageQueueNotifyMsgC
      */
     @Override
     public void removeArticleNotify(MessageQueueEvent<UserFootDO> event) {
-        UserFootDO foot = event.getContent();
-        NotifyMsgDO msg = new NotifyMsgDO()
-                .setRelatedId(foot.getDocumentId())
-                .setNotifyUserId(foot.getDocumentUserId())
-                .setOperateUserId(foot.getUserId())
-                .setType(event.getNotifyType().getType())
-                .setMsg("");
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record != null) {
-            notifyMsgDao.removeById(record.getId());
-        }
+        write(event.getNotifyType(), event.getContent());
     }
 
     /**
@@ -142,18 +153,7 @@ public class MessageQueueNotifyMsgConsumerImpl implements MessageQueueNotifyMsgC
      */
     @Override
     public void saveFollowNotify(MessageQueueEvent<UserRelationDO> event) {
-        UserRelationDO relation = event.getContent();
-        NotifyMsgDO msg = new NotifyMsgDO().setRelatedId(0L)
-                .setNotifyUserId(relation.getUserId())
-                .setOperateUserId(relation.getFollowUserId())
-                .setType(event.getNotifyType().getType())
-                .setState(NotifyStatEnum.UNREAD.getStat())
-                .setMsg("");
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record == null) {
-            // 若之前已经有对应的通知，则不重复记录；因为用户的关注是一对一的，可以重复的关注、取消，但是最终我们只通知一次
-            notifyMsgDao.save(msg);
-        }
+        write(event.getNotifyType(), event.getContent());
     }
 
     /**
@@ -163,31 +163,18 @@ public class MessageQueueNotifyMsgConsumerImpl implements MessageQueueNotifyMsgC
      */
     @Override
     public void removeFollowNotify(MessageQueueEvent<UserRelationDO> event) {
-        UserRelationDO relation = event.getContent();
-        NotifyMsgDO msg = new NotifyMsgDO()
-                .setRelatedId(0L)
-                .setNotifyUserId(relation.getUserId())
-                .setOperateUserId(relation.getFollowUserId())
-                .setType(event.getNotifyType().getType())
-                .setMsg("");
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record != null) {
-            notifyMsgDao.removeById(record.getId());
-        }
+        write(event.getNotifyType(), event.getContent());
     }
 
     @Override
     public void saveRegisterSystemNotify(Long userId) {
-        NotifyMsgDO msg = new NotifyMsgDO().setRelatedId(0L)
-                .setNotifyUserId(userId)
-                .setOperateUserId(ADMIN_ID)
-                .setType(NotifyTypeEnum.REGISTER.getType())
-                .setState(NotifyStatEnum.UNREAD.getStat())
-                .setMsg(SpringUtil.getConfig("view.site.welcomeInfo"));
-        NotifyMsgDO record = notifyMsgDao.getByUserIdRelatedIdAndType(msg);
-        if (record == null) {
-            // 若之前已经有对应的通知，则不重复记录；因为用户的关注是一对一的，可以重复的关注、取消，但是最终我们只通知一次
-            notifyMsgDao.save(msg);
+        write(NotifyTypeEnum.REGISTER, userId);
+    }
+
+    private void write(NotifyTypeEnum type, Object content) {
+        NotifyMsgWriter.Op op = notifyMsgWriter.toOp(type, content);
+        if (op != null) {
+            notifyMsgWriter.write(List.of(op));
         }
     }
 }
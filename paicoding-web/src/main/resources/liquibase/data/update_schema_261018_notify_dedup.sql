@@ -0,0 +1,10 @@
+-- 消息通知的幂等键，写入时通过唯一索引去重，不再先查询后插入
+-- 点赞、收藏、关注、系统消息：同一个 (类型, 通知用户, 触发用户, 关联主体) 只保留一条；评论、回复：按评论id去重；为空表示不去重
+
+alter table `notify_msg` add column `dedup_key` varchar(128) DEFAULT NULL COMMENT '幂等键' after `state`;
+
+-- 历史数据中每组只给最早的一条设置幂等键，避免重复数据导致唯一索引创建失败
+update `notify_msg` m join (select min(`id`) as `id` from `notify_msg` where `type` in (3, 4, 5, 6) group by `type`, `notify_user_id`, `operate_user_id`, `related_id`) t on m.`id` = t.`id`
+set m.`dedup_key` = concat(m.`type`, ':', m.`notify_user_id`, ':', m.`operate_user_id`, ':', m.`related_id`);
+
+alter table `notify_msg` add unique key `uk_dedup_key` (`dedup_key`);
@@ -0,0 +1,89 @@
+package com.github.paicoding.forum.test;
+
+import com.github.paicoding.forum.api.model.vo.user.dto.BaseUserInfoDTO;
+import com.github.paicoding.forum.service.user.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+
+/**
+ * 以 mock 对象上记录的调用次数，统计一次请求中的远程调用（db/redis往返）次数
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+public class RoundTrips {
+    /**
+     * 代表远程调用的 dao / service mock
+     */
+    private final Object[] mocks;
+
+    private RoundTrips(Object[] mocks) {
+        this.mocks = mocks;
+    }
+
+    public static RoundTrips of(Object... mocks) {
+        return new RoundTrips(mocks);
+    }
+
+    /**
+     * @return 自上次 {@link #reset()} 以来的调用总数
+     */
+    public int count() {
+        int total = 0;
+        for (Object mock : mocks) {
+            total += Mockito.mockingDetails(mock).getInvocations().size();
+        }
+        return total;
+    }
+
+    public void reset() {
+        Mockito.clearInvocations(mocks);
+    }
+
+    /**
+     * 分别以少量、大量数据执行一次，校验两次的远程调用次数都为 expected，即不随数据量增长
+     *
+     * @param expected 期望的远程调用次数
+     * @param small    少量数据的调用
+     * @param large    大量数据的调用
+     * @return 大量数据调用的返回结果，供调用方继续校验
+     */
+    public <T> T assertFixed(int expected, Runnable small, Supplier<T> large) {
+        reset();
+        small.run();
+        int single = count();
+
+        reset();
+        T result = large.get();
+        int batched = count();
+        log.info("round trips for small data = {}, for large data = {}", single, batched);
+        Assert.assertEquals(expected, single);
+        Assert.assertEquals(expected, batched);
+        return result;
+    }
+
+    /**
+     * 批量查询用户信息时，按用户id返回用户名为 user-{userId} 的用户
+     */
+    public static void mockUsers(UserService userService) {
+        Mockito.when(userService.batchQueryBasicUserInfo(anyCollection())).thenAnswer(invocation -> {
+            List<BaseUserInfoDTO> users = new ArrayList<>();
+            for (Long userId : (Collection<Long>) invocation.getArgument(0)) {
+                BaseUserInfoDTO user = new BaseUserInfoDTO();
+                user.setUserId(userId);
+                user.setUserName("user-" + userId);
+                users.add(user);
+            }
+            return users;
+        });
+    }
+}
@@ -0,0 +1,332 @@
+package com.github.paicoding.forum.test.ai;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.paicoding.forum.core.cache.RedisClient;
+import com.github.paicoding.forum.service.chatv2.memory.ChatMemoryStore;
+import com.github.paicoding.forum.service.chatv2.repository.entity.ChatMessageDO;
+import com.github.paicoding.forum.service.chatv2.repository.mapper.ChatMessageMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+
+/**
+ * 对话记忆存储的db访问次数与重启恢复
+ * <p>
+ * 多轮对话中只在首次访问会话时查询一次db，新消息按批次多行写入；db不可用期间写入的消息保留在 journal 中，重启后重新落库；
+ * 多个实例交替处理同一个会话时序号不重复
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+public class ChatMemoryStoreTest {
+    private static final long HISTORY_ID = 1L;
+    private static final int DB_MESSAGES = 5;
+
+    /**
+     * redis 中的 journal，key: journal的key + "#" + 消息id
+     */
+    private final Map<String, byte[]> journal = new ConcurrentHashMap<>();
+    /**
+     * redis 中的序号计数器，key: 计数器的key
+     */
+    private final Map<String, Long> seqs = new ConcurrentHashMap<>();
+    private final List<List<ChatMessageDO>> inserted = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicBoolean dbDown = new AtomicBoolean();
+    /**
+     * 不为空时，加载会话窗口先通知 loading 再等待 release
+     */
+    private volatile CountDownLatch loading;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ChatMessageMapper mapper;
+
+    @BeforeClass
+    public static void initTableInfo() {
+        // LambdaQueryWrapper 依赖实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), ChatMessageDO.class);
+    }
+
+    @Before
+    public void init() {
+        RedisConnection connection = (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RedisConnection.class},
+                (p, method, args) -> switch (method.getName()) {
+                    case "scriptingCommands" -> p;
+                    case "evalSha" -> {
+                        // 与 chat_memory_seq.lua 相同：计数器落后于调用方已知的序号时以后者为起点
+                        byte[][] keysAndArgs = (byte[][]) args[3];
+                        long count = Long.parseLong(new String(keysAndArgs[1]));
+                        long floor = Long.parseLong(new String(keysAndArgs[2]));
+                        yield seqs.merge(new String(keysAndArgs[0]), floor + count, (cur, v) -> Math.max(cur, floor) + count);
+                    }
+                    case "get" -> {
+                        Long seq = seqs.get(new String((byte[]) args[0]));
+                        yield seq == null ? null : String.valueOf(seq).getBytes();
+                    }
+                    case "hMSet" -> {
+                        ((Map<byte[], byte[]>) args[1]).forEach((k, v) -> journal.put(field(args[0], k), v));
+                        yield null;
+                    }
+                    case "hGetAll" -> {
+                        String prefix = field(args[0], new byte[0]);
+                        Map<byte[], byte[]> ans = new LinkedHashMap<>();
+                        journal.forEach((k, v) -> {
+                            if (k.startsWith(prefix)) {
+                                ans.put(k.substring(prefix.length()).getBytes(), v);
+                            }
+                        });
+                        yield ans;
+                    }
+                    case "hDel" -> {
+                        for (byte[] field : (byte[][]) args[1]) {
+                            journal.remove(field(args[0], field));
+                        }
+                        yield (long) ((byte[][]) args[1]).length;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        RedisTemplate<String, Object> template = Mockito.mock(RedisTemplate.class);
+        Mockito.when(template.execute(any(RedisCallback.class))).thenAnswer(inv -> ((RedisCallback<?>) inv.getArgument(0)).doInRedis(connection));
+        Mockito.when(template.executePipelined(any(RedisCallback.class))).thenAnswer(inv -> {
+            ((RedisCallback<?>) inv.getArgument(0)).doInRedis(connection);
+            return Collections.emptyList();
+        });
+        RedisClient.register(template);
+
+        List<ChatMessageDO> history = new ArrayList<>();
+        for (int i = DB_MESSAGES - 1; i >= 0; i--) {
+            ChatMessageDO msg = message(i % 2 == 0 ? "user" : "assistant", "history-" + i);
+            msg.setId(1000L + i);
+            msg.setHistoryId(HISTORY_ID);
+            msg.setSequenceNum(i);
+            history.add(msg);
+        }
+        mapper = Mockito.mock(ChatMessageMapper.class);
+        Mockito.when(mapper.selectList(any())).thenAnswer(inv -> {
+            if (loading != null) {
+                loading.countDown();
+                release.await();
+            }
+            // 已落库的消息
+            List<ChatMessageDO> rows = new ArrayList<>(history);
+            synchronized (inserted) {
+                inserted.forEach(list -> list.stream().filter(msg -> HISTORY_ID == msg.getHistoryId()).forEach(rows::add));
+            }
+            rows.sort(Comparator.comparing(ChatMessageDO::getSequenceNum).reversed());
+            return rows;
+        });
+        Mockito.when(mapper.batchInsertIgnore(anyList())).thenAnswer(inv -> {
+            if (dbDown.get()) {
+                throw new IllegalStateException("db is down");
+            }
+            List<ChatMessageDO> list = new ArrayList<>(inv.getArgument(0));
+            inserted.add(list);
+            return list.size();
+        });
+    }
+
+    private static String field(Object key, byte[] field) {
+        return new String((byte[]) key) + "#" + new String(field);
+    }
+
+    private ChatMemoryStore newStore(long cacheKb) {
+        return newStore(cacheKb, "test");
+    }
+
+    private ChatMemoryStore newStore(long cacheKb, String instance) {
+        ChatMemoryStore store = new ChatMemoryStore();
+        ReflectionTestUtils.setField(store, "instance", instance);
+        ReflectionTestUtils.setField(store, "chatMessageMapper", mapper);
+        ReflectionTestUtils.setField(store, "windowSize", 100);
+        ReflectionTestUtils.setField(store, "cacheKb", cacheKb);
+        ReflectionTestUtils.setField(store, "idleMinutes", 30L);
+        ReflectionTestUtils.setField(store, "maxPending", 10000);
+        store.init();
+        store.afterSingletonsInstantiated();
+        return store;
+    }
+
+    @Test
+    public void testTurnsServedFromWindow() {
+        ChatMemoryStore store = newStore(1024);
+        int turns = 20;
+        for (int i = 0; i < turns; i++) {
+            List<ChatMessageDO> context = store.recent(HISTORY_ID, 100);
+            Assert.assertEquals(DB_MESSAGES + i * 2, context.size());
+            store.append(HISTORY_ID, List.of(message("user", "q" + i), message("assistant", "a" + i)));
+        }
+
+        List<ChatMessageDO> all = store.recent(HISTORY_ID, 100);
+        for (int i = 0; i < all.size(); i++) {
+            Assert.assertEquals(i, (int) all.get(i).getSequenceNum());
+        }
+        Assert.assertEquals(all.get(all.size() - 1).getId(), store.latestAssistantMessageId(HISTORY_ID));
+        Mockito.verify(mapper, Mockito.times(1)).selectList(any());
+        Assert.assertTrue(inserted.isEmpty());
+        Assert.assertEquals(turns * 2, journal.size());
+
+        store.flush();
+        log.info("turns: {}", store.stats());
+        Assert.assertEquals(1, inserted.size());
+        Assert.assertEquals(turns * 2, inserted.get(0).size());
+        Assert.assertTrue(journal.isEmpty());
+        Assert.assertTrue(store.unflushed(HISTORY_ID).isEmpty());
+    }
+
+    @Test
+    public void testAttachUsageBeforeFlush() {
+        ChatMemoryStore store = newStore(1024);
+        store.append(HISTORY_ID, List.of(message("user", "q"), message("assistant", "a")));
+        Long messageId = store.latestAssistantMessageId(HISTORY_ID);
+        Assert.assertTrue(store.attachUsage(messageId, 10, 20, 30));
+
+        store.flush();
+        ChatMessageDO assistant = inserted.get(0).get(1);
+        Assert.assertEquals(messageId, assistant.getId());
+        Assert.assertEquals(30, (int) assistant.getTotalTokens());
+        // 已落库的消息由调用方直接更新db
+        Assert.assertFalse(store.attachUsage(messageId, 10, 20, 30));
+    }
+
+    @Test
+    public void testRecoverAfterRestart() {
+        ChatMemoryStore store = newStore(1024);
+        dbDown.set(true);
+        store.append(HISTORY_ID, List.of(message("user", "q"), message("assistant", "a")));
+        store.flush();
+        Assert.assertEquals(1L, store.stats().get("flushFailures"));
+        Assert.assertEquals(2, store.unflushed(HISTORY_ID).size());
+        List<Long> ids = store.unflushed(HISTORY_ID).stream().map(ChatMessageDO::getId).toList();
+
+        // 模拟进程退出：旧实例的内存状态全部丢失，只剩 redis 中的 journal
+        dbDown.set(false);
+        ChatMemoryStore restarted = newStore(1024);
+        log.info("recover: {}", restarted.stats());
+        Assert.assertEquals(2L, restarted.stats().get("recovered"));
+        Assert.assertEquals(1, inserted.size());
+        Assert.assertEquals(ids, inserted.get(0).stream().map(ChatMessageDO::getId).toList());
+        Assert.assertEquals(List.of(DB_MESSAGES, DB_MESSAGES + 1), inserted.get(0).stream().map(ChatMessageDO::getSequenceNum).toList());
+        Assert.assertTrue(journal.isEmpty());
+    }
+
+    @Test
+    public void testRecoverOwnJournalOnly() {
+        ChatMemoryStore a = newStore(1024, "a");
+        dbDown.set(true);
+        a.append(HISTORY_ID, List.of(message("user", "q"), message("assistant", "a")));
+        a.flush();
+        dbDown.set(false);
+
+        // 其他实例启动时不会写入 a 仍在写缓冲中的消息，a 回填的token用量随自己的批次落库
+        ChatMemoryStore b = newStore(1024, "b");
+        Assert.assertEquals(0L, b.stats().get("recovered"));
+        Assert.assertTrue(inserted.isEmpty());
+        Assert.assertTrue(a.attachUsage(a.latestAssistantMessageId(HISTORY_ID), 10, 20, 30));
+
+        ChatMemoryStore restarted = newStore(1024, "a");
+        Assert.assertEquals(2L, restarted.stats().get("recovered"));
+        Assert.assertEquals(30, (int) inserted.get(0).get(1).getTotalTokens());
+        Assert.assertTrue(journal.isEmpty());
+    }
+
+    @Test
+    public void testClearWaitsForAppend() throws Exception {
+        ChatMemoryStore store = newStore(1024);
+        loading = new CountDownLatch(1);
+        Thread append = new Thread(() -> store.append(HISTORY_ID, List.of(message("user", "q"), message("assistant", "a"))));
+        append.start();
+        Assert.assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        // 追加进行到一半时清空会话，需等待追加完成后把新消息一并丢弃
+        Thread clear = new Thread(() -> store.clear(HISTORY_ID));
+        clear.start();
+        clear.join(200);
+        Assert.assertTrue(clear.isAlive());
+
+        release.countDown();
+        append.join(5000);
+        clear.join(5000);
+        Assert.assertTrue(store.unflushed(HISTORY_ID).isEmpty());
+        Assert.assertTrue(journal.isEmpty());
+        store.flush();
+        Assert.assertTrue(inserted.isEmpty());
+    }
+
+    @Test
+    public void testSeqSharedAcrossInstances() {
+        ChatMemoryStore a = newStore(1024, "a");
+        ChatMemoryStore b = newStore(1024, "b");
+        a.append(HISTORY_ID, List.of(message("user", "q0"), message("assistant", "a0")));
+        a.flush();
+
+        // b 首次访问时加载 a 已落库的消息，接着分配序号
+        Assert.assertEquals(DB_MESSAGES + 2, b.recent(HISTORY_ID, 100).size());
+        b.append(HISTORY_ID, List.of(message("user", "q1"), message("assistant", "a1")));
+        b.flush();
+
+        // a 的本地窗口落后于计数器，追加时按计数器分配序号并丢弃本地窗口
+        a.append(HISTORY_ID, List.of(message("user", "q2"), message("assistant", "a2")));
+        List<ChatMessageDO> all = a.recent(HISTORY_ID, 100);
+        Assert.assertEquals(DB_MESSAGES + 6, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            Assert.assertEquals(i, (int) all.get(i).getSequenceNum());
+        }
+        Assert.assertEquals(List.of("q0", "a0", "q1", "a1", "q2", "a2"),
+                all.subList(DB_MESSAGES, all.size()).stream().map(ChatMessageDO::getContent).toList());
+        log.info("a: {}, b: {}", a.stats(), b.stats());
+        Assert.assertEquals(1L, a.stats().get("staleWindows"));
+
+        // b 读取时发现计数器已前进，重新加载后可以看到 a 落库的消息
+        a.flush();
+        Assert.assertEquals(DB_MESSAGES + 6, b.recent(HISTORY_ID, 100).size());
+        Assert.assertEquals(1L, b.stats().get("staleWindows"));
+    }
+
+    @Test
+    public void testWindowsBoundedByWeight() {
+        ChatMemoryStore store = newStore(64);
+        String content = "x".repeat(8 * 1024);
+        for (long historyId = 1; historyId <= 100; historyId++) {
+            store.append(historyId, List.of(message("user", content), message("assistant", content)));
+        }
+        Cache<?, ?> windows = (Cache<?, ?>) ReflectionTestUtils.getField(store, "windows");
+        windows.cleanUp();
+        Map<String, Object> stats = store.stats();
+        log.info("bounded: {}", stats);
+        Assert.assertTrue((long) stats.get("weightKb") <= 64);
+        Assert.assertTrue((long) stats.get("evictions") > 0);
+    }
+
+    private static ChatMessageDO message(String role, String content) {
+        ChatMessageDO msg = new ChatMessageDO();
+        msg.setRole(role);
+        msg.setContent(content);
+        msg.setTimestamp(new Date());
+        return msg;
+    }
+}
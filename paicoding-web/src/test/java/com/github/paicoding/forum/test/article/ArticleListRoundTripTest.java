@@ -0,0 +1,112 @@
+package com.github.paicoding.forum.test.article;
+
+import com.github.paicoding.forum.api.model.vo.PageListVo;
+import com.github.paicoding.forum.api.model.vo.article.dto.ArticleDTO;
+import com.github.paicoding.forum.api.model.vo.article.dto.TagDTO;
+import com.github.paicoding.forum.api.model.vo.user.dto.ArticleFootCountDTO;
+import com.github.paicoding.forum.service.article.repository.dao.ArticleTagDao;
+import com.github.paicoding.forum.service.article.repository.entity.ArticleDO;
+import com.github.paicoding.forum.service.article.service.CategoryService;
+import com.github.paicoding.forum.service.article.service.impl.ArticleReadServiceImpl;
+import com.github.paicoding.forum.service.statistics.service.CountService;
+import com.github.paicoding.forum.service.user.service.UserService;
+import com.github.paicoding.forum.test.RoundTrips;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+
+/**
+ * 文章列表页补全信息时的远程调用次数（db/redis往返）统计
+ * 标签、计数、作者按整页批量查询（分类走本地缓存），远程调用次数固定为 3 次，不随每页文章数增长
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+public class ArticleListRoundTripTest {
+    private static final int PAGE_SIZE = 20;
+
+    private ArticleReadServiceImpl articleReadService;
+    private ArticleTagDao articleTagDao;
+    private CountService countService;
+    private UserService userService;
+    private RoundTrips roundTrips;
+
+    @Before
+    public void init() {
+        articleTagDao = Mockito.mock(ArticleTagDao.class);
+        countService = Mockito.mock(CountService.class);
+        userService = Mockito.mock(UserService.class);
+        CategoryService categoryService = Mockito.mock(CategoryService.class);
+        Mockito.when(categoryService.queryCategoryName(any())).thenReturn("后端");
+
+        Mockito.when(articleTagDao.queryArticleTagDetails(anyCollection())).thenAnswer(invocation -> {
+            Map<Long, List<TagDTO>> tags = new HashMap<>();
+            for (Long id : (Collection<Long>) invocation.getArgument(0)) {
+                TagDTO tag = new TagDTO();
+                tag.setTagId(id % 3);
+                tag.setTag("tag-" + id % 3);
+                tags.put(id, List.of(tag));
+            }
+            return tags;
+        });
+        Mockito.when(countService.queryArticleStatisticInfo(anyCollection())).thenAnswer(invocation -> {
+            Map<Long, ArticleFootCountDTO> counts = new HashMap<>();
+            for (Long id : (Collection<Long>) invocation.getArgument(0)) {
+                ArticleFootCountDTO count = new ArticleFootCountDTO();
+                count.setReadCount(id.intValue());
+                counts.put(id, count);
+            }
+            return counts;
+        });
+        RoundTrips.mockUsers(userService);
+
+        articleReadService = new ArticleReadServiceImpl();
+        ReflectionTestUtils.setField(articleReadService, "articleTagDao", articleTagDao);
+        ReflectionTestUtils.setField(articleReadService, "countService", countService);
+        ReflectionTestUtils.setField(articleReadService, "userService", userService);
+        ReflectionTestUtils.setField(articleReadService, "categoryService", categoryService);
+        roundTrips = RoundTrips.of(articleTagDao, countService, userService);
+    }
+
+    private List<ArticleDO> mockPage(int size) {
+        List<ArticleDO> records = new ArrayList<>();
+        for (long i = 1; i <= size; i++) {
+            ArticleDO article = new ArticleDO();
+            article.setId(i);
+            article.setUserId(i % 5 + 1);
+            article.setCategoryId(1L);
+            article.setTitle("article-" + i);
+            article.setCreateTime(new Date());
+            article.setUpdateTime(new Date());
+            records.add(article);
+        }
+        return records;
+    }
+
+    @Test
+    public void testListPageRoundTrips() {
+        PageListVo<ArticleDTO> vo = roundTrips.assertFixed(3,
+                () -> articleReadService.buildArticleListVo(mockPage(1), PAGE_SIZE),
+                () -> articleReadService.buildArticleListVo(mockPage(PAGE_SIZE), PAGE_SIZE));
+
+        Assert.assertEquals(PAGE_SIZE, vo.getList().size());
+        for (ArticleDTO dto : vo.getList()) {
+            Assert.assertEquals("user-" + dto.getAuthor(), dto.getAuthorName());
+            Assert.assertEquals(dto.getArticleId().intValue(), dto.getCount().getReadCount().intValue());
+            Assert.assertEquals(1, dto.getTags().size());
+            Assert.assertEquals("后端", dto.getCategory().getCategory());
+        }
+    }
+}
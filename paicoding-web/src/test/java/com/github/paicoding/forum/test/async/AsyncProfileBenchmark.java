@@ -0,0 +1,127 @@
+package com.github.paicoding.forum.test.async;
+
+import com.github.paicoding.forum.core.async.MonitoredExecutor;
+import com.github.paicoding.forum.core.config.AsyncProperties;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AsyncUtil 线程池三种执行模式在混合io负载下的对比
+ * <p>
+ * 模拟请求线程并发查询的场景：64个"请求线程"，每次扇出 FAN_OUT 个任务并等待全部完成，任务中每 IO_RATIO 个里有 IO_RATIO - 1 个是 sleep 模拟的io等待，
+ * 1 个是少量计算；线程池上限统一为 MAX，对比每次扇出的平均耗时，以及 caller-runs 回落到请求线程执行、bounded 拒绝的次数（作为辅助计数 callerRuns 输出在 JMH 结果中）
+ * <p>
+ * 直接运行 main 方法
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Threads(64)
+@Fork(1)
+public class AsyncProfileBenchmark {
+    private static final int FAN_OUT = 8;
+    private static final int IO_RATIO = 4;
+    private static final int IO_MILLIS = 5;
+    private static final int MAX = 50;
+
+    @Param({"CALLER_RUNS", "BOUNDED", "VIRTUAL"})
+    private String profile;
+
+    private MonitoredExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        AsyncProperties.Profile p = AsyncProperties.Profile.valueOf(profile);
+        // bounded 队列满时同样由提交线程执行，保证每次扇出都能完成，拒绝情况通过 callerRuns 体现
+        executor = new MonitoredExecutor("bench", AsyncProperties.Pool.of(p, 16, MAX, 256, AsyncProperties.Overflow.CALLER_RUNS));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 每个请求线程上的辅助计数，由 JMH 汇总后与耗时一起输出
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Fallback {
+        /**
+         * 线程池满后回落到请求线程上执行的任务数
+         */
+        public long callerRuns;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            callerRuns = 0;
+        }
+    }
+
+    @Benchmark
+    public long fanOut(Fallback fallback) {
+        Thread caller = Thread.currentThread();
+        CompletableFuture<?>[] futures = new CompletableFuture[FAN_OUT];
+        for (int i = 0; i < FAN_OUT; i++) {
+            int index = i;
+            futures[i] = CompletableFuture.supplyAsync(() -> {
+                if (Thread.currentThread() == caller) {
+                    // 回落执行时任务同步跑在请求线程上，不存在并发修改
+                    fallback.callerRuns++;
+                }
+                return index % IO_RATIO == 0 ? compute() : io();
+            }, executor);
+        }
+        CompletableFuture.allOf(futures).join();
+        return futures.length;
+    }
+
+    private static long io() {
+        try {
+            Thread.sleep(IO_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return IO_MILLIS;
+    }
+
+    private static long compute() {
+        long ans = 0;
+        for (int i = 0; i < 20_000; i++) {
+            ans += (long) i * i ^ (ans >>> 3);
+        }
+        return ans;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AsyncProfileBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.paicoding.forum.test.basic;
+
+import com.github.paicoding.forum.core.util.IpUtil;
+import org.lionsoul.ip2region.xdb.Searcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.URL;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ip归属地查询的吞吐对比
+ * 1. 每次查询新建基于文件 + vectorIndex 的查询对象（原实现）
+ * 2. 全局共享的内存查询对象
+ * 3. 内存查询对象 + ip区域缓存（IpUtil.getLocationByIp）
+ * <p>
+ * 需要 classpath 下存在 data/ip2region.xdb，直接运行 main 方法
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class IpRegionBenchmark {
+    private String dbFile;
+    private byte[] vIndex;
+    private Searcher memorySearcher;
+    private String[] ips;
+
+    @Setup
+    public void setup() throws Exception {
+        URL url = IpRegionBenchmark.class.getClassLoader().getResource(IpRegionLookupTest.DB_PATH);
+        if (url == null || url.getFile().contains(".jar!")) {
+            throw new IllegalStateException("ip2region.xdb not found");
+        }
+        dbFile = url.getFile();
+        vIndex = Searcher.loadVectorIndexFromFile(dbFile);
+        memorySearcher = Searcher.newWithBuffer(Searcher.loadContentFromFile(dbFile));
+        ips = IpRegionLookupTest.randomIps();
+    }
+
+    private String nextIp() {
+        return ips[ThreadLocalRandom.current().nextInt(ips.length)];
+    }
+
+    @Benchmark
+    public String newSearcherPerLookup() throws Exception {
+        Searcher searcher = Searcher.newWithVectorIndex(dbFile, vIndex);
+        try {
+            return searcher.search(nextIp());
+        } finally {
+            searcher.close();
+        }
+    }
+
+    @Benchmark
+    public String sharedMemorySearcher() throws Exception {
+        return memorySearcher.search(nextIp());
+    }
+
+    @Benchmark
+    public String regionCache() {
+        return IpUtil.getLocationByIp(nextIp()).toRegionStr();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(IpRegionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.paicoding.forum.test.basic;
+
+import com.github.paicoding.forum.core.region.IpRegionInfo;
+import com.github.paicoding.forum.core.util.IpUtil;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.lionsoul.ip2region.xdb.Searcher;
+
+import java.net.URL;
+import java.util.Random;
+
+/**
+ * ip归属地查询：内存查询对象 + ip区域缓存（IpUtil.getLocationByIp）的结果与直接查询一致
+ * <p>
+ * 吞吐对比见 {@link IpRegionBenchmark}；需要 classpath 下存在 data/ip2region.xdb，不存在时跳过
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+public class IpRegionLookupTest {
+    static final String DB_PATH = "data/ip2region.xdb";
+
+    /**
+     * 模拟的访问ip数，登录、会话校验场景下活跃的ip数有限，同一个ip会被反复查询
+     */
+    static final int IP_COUNT = 2000;
+
+    private String dbFile;
+    private String[] ips;
+
+    @Before
+    public void init() {
+        URL url = IpRegionLookupTest.class.getClassLoader().getResource(DB_PATH);
+        Assume.assumeTrue("ip2region.xdb not found, skip", url != null && !url.getFile().contains(".jar!"));
+        dbFile = url.getFile();
+        ips = randomIps();
+    }
+
+    static String[] randomIps() {
+        Random random = new Random(42);
+        String[] ips = new String[IP_COUNT];
+        for (int i = 0; i < IP_COUNT; i++) {
+            ips[i] = (random.nextInt(223) + 1) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256);
+        }
+        return ips;
+    }
+
+    @Test
+    public void testCachedLookupSameAsSearcher() throws Exception {
+        Searcher memorySearcher = Searcher.newWithBuffer(Searcher.loadContentFromFile(dbFile));
+        // 每个ip查询两次，第二次命中区域缓存
+        for (int round = 0; round < 2; round++) {
+            for (String ip : ips) {
+                Assert.assertEquals(new IpRegionInfo(memorySearcher.search(ip)).toRegionStr(), IpUtil.getLocationByIp(ip).toRegionStr());
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.github.paicoding.forum.test.comment;
+
+import com.github.paicoding.forum.api.model.context.ReqInfoContext;
+import com.github.paicoding.forum.api.model.enums.PraiseStatEnum;
+import com.github.paicoding.forum.api.model.vo.comment.dto.SubCommentDTO;
+import com.github.paicoding.forum.api.model.vo.comment.dto.TopCommentDTO;
+import com.github.paicoding.forum.service.comment.repository.dao.CommentDao;
+import com.github.paicoding.forum.service.comment.repository.entity.CommentDO;
+import com.github.paicoding.forum.service.comment.service.impl.CommentReadServiceImpl;
+import com.github.paicoding.forum.service.statistics.service.CountService;
+import com.github.paicoding.forum.service.user.repository.entity.UserFootDO;
+import com.github.paicoding.forum.service.user.service.UserFootService;
+import com.github.paicoding.forum.service.user.service.UserService;
+import com.github.paicoding.forum.test.RoundTrips;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+
+/**
+ * 文章评论树补全信息时的远程调用次数统计
+ * 用户信息、点赞数、当前用户点赞状态按整棵树批量查询，加上查询评论本身的 2 次，远程调用次数固定为 5 次，不随评论数增长
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+public class CommentTreeRoundTripTest {
+    private static final long ARTICLE_ID = 1L;
+    private static final long LOGIN_USER_ID = 7L;
+    private static final int TOP_COUNT = 100;
+    private static final int SUB_PER_TOP = 4;
+
+    private CommentReadServiceImpl commentReadService;
+    private CommentDao commentDao;
+    private UserService userService;
+    private CountService countService;
+    private UserFootService userFootService;
+    private RoundTrips roundTrips;
+
+    private final List<CommentDO> tops = new ArrayList<>();
+    private final List<CommentDO> subs = new ArrayList<>();
+
+    @Before
+    public void init() {
+        commentDao = Mockito.mock(CommentDao.class);
+        userService = Mockito.mock(UserService.class);
+        countService = Mockito.mock(CountService.class);
+        userFootService = Mockito.mock(UserFootService.class);
+
+        Mockito.when(commentDao.listTopCommentList(anyLong(), any())).thenAnswer(invocation -> new ArrayList<>(tops));
+        Mockito.when(commentDao.listSubCommentIdMappers(anyLong(), anyCollection())).thenAnswer(invocation -> new ArrayList<>(subs));
+
+        RoundTrips.mockUsers(userService);
+        Mockito.when(countService.queryCommentPraiseCount(anyCollection())).thenAnswer(invocation -> {
+            Map<Long, Long> counts = new HashMap<>();
+            for (Long commentId : (Collection<Long>) invocation.getArgument(0)) {
+                counts.put(commentId, commentId % 10);
+            }
+            return counts;
+        });
+        Mockito.when(userFootService.queryUserFoots(anyCollection(), anyInt(), anyLong())).thenAnswer(invocation -> {
+            Map<Long, UserFootDO> foots = new HashMap<>();
+            for (Long commentId : (Collection<Long>) invocation.getArgument(0)) {
+                if (commentId % 2 == 0) {
+                    UserFootDO foot = new UserFootDO();
+                    foot.setDocumentId(commentId);
+                    foot.setPraiseStat(PraiseStatEnum.PRAISE.getCode());
+                    foots.put(commentId, foot);
+                }
+            }
+            return foots;
+        });
+
+        commentReadService = new CommentReadServiceImpl();
+        ReflectionTestUtils.setField(commentReadService, "commentDao", commentDao);
+        ReflectionTestUtils.setField(commentReadService, "userService", userService);
+        ReflectionTestUtils.setField(commentReadService, "countService", countService);
+        ReflectionTestUtils.setField(commentReadService, "userFootService", userFootService);
+        roundTrips = RoundTrips.of(commentDao, userService, countService, userFootService);
+
+        ReqInfoContext.ReqInfo reqInfo = new ReqInfoContext.ReqInfo();
+        reqInfo.setUserId(LOGIN_USER_ID);
+        ReqInfoContext.addReqInfo(reqInfo);
+    }
+
+    @After
+    public void clear() {
+        ReqInfoContext.clear();
+    }
+
+    /**
+     * 生成 topCount 条顶级评论，每条下面是 SUB_PER_TOP 层的回复链
+     */
+    private void mockTree(int topCount) {
+        tops.clear();
+        subs.clear();
+        long id = 1;
+        for (int i = 0; i < topCount; i++) {
+            CommentDO top = mockComment(id++, 0L, 0L);
+            tops.add(top);
+            long parent = top.getId();
+            for (int j = 0; j < SUB_PER_TOP; j++) {
+                CommentDO sub = mockComment(id++, top.getId(), parent);
+                subs.add(sub);
+                parent = sub.getId();
+            }
+        }
+    }
+
+    private CommentDO mockComment(long id, long topId, long parentId) {
+        CommentDO comment = new CommentDO();
+        comment.setId(id);
+        comment.setArticleId(ARTICLE_ID);
+        comment.setUserId(id % 50 + 1);
+        comment.setTopCommentId(topId);
+        comment.setParentCommentId(parentId);
+        comment.setContent("comment-" + id);
+        comment.setCreateTime(new Date(id * 1000));
+        return comment;
+    }
+
+    @Test
+    public void testCommentTreeRoundTrips() {
+        List<TopCommentDTO> result = roundTrips.assertFixed(5,
+                () -> {
+                    mockTree(1);
+                    commentReadService.getArticleComments(ARTICLE_ID, null);
+                },
+                () -> {
+                    mockTree(TOP_COUNT);
+                    return commentReadService.getArticleComments(ARTICLE_ID, null);
+                });
+
+        Assert.assertEquals(TOP_COUNT, result.size());
+        for (TopCommentDTO top : result) {
+            Assert.assertEquals(SUB_PER_TOP, top.getChildComments().size());
+            Assert.assertEquals(SUB_PER_TOP, top.getCommentCount().intValue());
+            assertHydrated(top.getCommentId(), top.getUserId(), top.getUserName(), top.getPraiseCount(), top.getPraised());
+            for (SubCommentDTO sub : top.getChildComments()) {
+                assertHydrated(sub.getCommentId(), sub.getUserId(), sub.getUserName(), sub.getPraiseCount(), sub.getPraised());
+            }
+        }
+    }
+
+    private void assertHydrated(Long commentId, Long userId, String userName, Integer praiseCount, Boolean praised) {
+        Assert.assertEquals("user-" + userId, userName);
+        Assert.assertEquals(commentId % 10, praiseCount.longValue());
+        Assert.assertEquals(commentId % 2 == 0, praised);
+    }
+}
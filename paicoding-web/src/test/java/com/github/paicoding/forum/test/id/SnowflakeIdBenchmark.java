@@ -0,0 +1,77 @@
+package com.github.paicoding.forum.test.id;
+
+import com.github.paicoding.forum.core.util.id.snowflake.LockFreeSnowflakeIdGenerator;
+import com.github.paicoding.forum.core.util.id.snowflake.PaiSnowflakeIdGenerator;
+import com.github.paicoding.forum.core.util.id.snowflake.SnowflakeProducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 雪花算法id生成器的吞吐量对比：原有的 队列 + 秒级生成器 vs 无锁毫秒级生成器
+ * <p>
+ * 直接运行 main 方法，分别以 1、8、64 个线程压测
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class SnowflakeIdBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    private SnowflakeProducer producer;
+    private LockFreeSnowflakeIdGenerator lockFreeGenerator;
+
+    @Setup
+    public void setup() {
+        producer = new SnowflakeProducer(new PaiSnowflakeIdGenerator(1, 1));
+        lockFreeGenerator = new LockFreeSnowflakeIdGenerator(1, 1);
+    }
+
+    @Benchmark
+    public Long paiProducer() {
+        return producer.genId();
+    }
+
+    @Benchmark
+    public Long lockFree() {
+        return lockFreeGenerator.nextId();
+    }
+
+    /**
+     * 每次调用生成 BATCH_SIZE 个id，吞吐量需乘以 BATCH_SIZE 才是id数
+     */
+    @Benchmark
+    public void lockFreeBatch(Blackhole bh) {
+        bh.consume(lockFreeGenerator.nextIds(BATCH_SIZE));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 8, 64}) {
+            Options options = new OptionsBuilder()
+                    .include(SnowflakeIdBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.paicoding.forum.test.notify;
+
+import com.github.paicoding.forum.api.model.enums.NotifyTypeEnum;
+import com.github.paicoding.forum.api.model.event.MessageQueueEvent;
+import com.github.paicoding.forum.service.notify.repository.entity.NotifyMsgDO;
+import com.github.paicoding.forum.service.notify.writer.NotifyMsgWriter;
+import com.github.paicoding.forum.service.user.repository.entity.UserFootDO;
+import com.github.paicoding.forum.web.mq.comsumer.MessageQueueNotifyMsgConsumer;
+import com.github.paicoding.forum.web.mq.comsumer.impl.MessageQueueNotifyMsgConsumerImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+
+/**
+ * 通知消息批量消费的失败处理：只有数据不合法时逐条重试并返回失败的消息，db不可用时直接抛出由 mq 重试整批
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+public class NotifyBatchConsumeTest {
+    private NotifyMsgWriter writer;
+    private MessageQueueNotifyMsgConsumer consumer;
+    /**
+     * 调用 write 时每批的大小
+     */
+    private final List<Integer> writes = new ArrayList<>();
+
+    @Before
+    public void init() {
+        writer = Mockito.mock(NotifyMsgWriter.class);
+        Mockito.when(writer.toOp(any(), any())).thenAnswer(inv -> {
+            NotifyMsgDO msg = new NotifyMsgDO();
+            msg.setRelatedId(((UserFootDO) inv.getArgument(1)).getDocumentId());
+            return NotifyMsgWriter.Op.save(msg);
+        });
+        consumer = new MessageQueueNotifyMsgConsumerImpl(writer);
+    }
+
+    /**
+     * @param bad 写入时违反约束的文章id
+     */
+    private void failOn(RuntimeException error, long bad) {
+        Mockito.doAnswer(inv -> {
+            List<NotifyMsgWriter.Op> ops = inv.getArgument(0);
+            writes.add(ops.size());
+            if (ops.stream().anyMatch(op -> op.msg().getRelatedId() == bad)) {
+                throw error;
+            }
+            return null;
+        }).when(writer).write(anyList());
+    }
+
+    @Test
+    public void testDataErrorSplitOneByOne() {
+        failOn(new DataIntegrityViolationException("too long"), 2);
+        MessageQueueNotifyMsgConsumer.BatchResult result = consumer.batchConsume(events(3));
+        Assert.assertEquals(List.of(3, 1, 1, 1), writes);
+        Assert.assertEquals(2, result.written());
+        Assert.assertEquals(List.of(1), result.failed());
+    }
+
+    @Test
+    public void testAllDataErrorReturnFailed() {
+        failOn(new DataIntegrityViolationException("too long"), 1);
+        MessageQueueNotifyMsgConsumer.BatchResult result = consumer.batchConsume(events(1));
+        Assert.assertEquals(0, result.written());
+        Assert.assertEquals(List.of(0), result.failed());
+    }
+
+    @Test
+    public void testTransientErrorNotSplit() {
+        CannotGetJdbcConnectionException down = new CannotGetJdbcConnectionException("db is down");
+        failOn(down, 1);
+        try {
+            consumer.batchConsume(events(3));
+            Assert.fail();
+        } catch (CannotGetJdbcConnectionException e) {
+            Assert.assertSame(down, e);
+        }
+        // 不逐条重试，也不会把消息当作不合法的数据转入死信队列
+        Assert.assertEquals(List.of(3), writes);
+    }
+
+    private static List<MessageQueueEvent<Object>> events(int n) {
+        List<MessageQueueEvent<Object>> events = new ArrayList<>();
+        for (long i = 1; i <= n; i++) {
+            UserFootDO foot = new UserFootDO();
+            foot.setDocumentId(i);
+            foot.setDocumentUserId(100L);
+            foot.setUserId(200L);
+            events.add(new MessageQueueEvent<>(NotifyTypeEnum.PRAISE, foot));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.paicoding.forum.test.notify;
+
+import com.github.paicoding.forum.api.model.enums.NotifyTypeEnum;
+import com.github.paicoding.forum.service.notify.repository.dao.NotifyMsgDao;
+import com.github.paicoding.forum.service.notify.repository.entity.NotifyMsgDO;
+import com.github.paicoding.forum.service.notify.writer.NotifyMsgWriter;
+import com.github.paicoding.forum.service.user.repository.entity.UserFootDO;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.anyList;
+
+/**
+ * 通知写入时同一幂等键的合并规则：只有最后一次操作决定最终状态，中间出现过取消的先删除再写入
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+public class NotifyMsgWriterTest {
+    private NotifyMsgDao notifyMsgDao;
+    private NotifyMsgWriter writer;
+
+    @Before
+    public void init() {
+        notifyMsgDao = Mockito.mock(NotifyMsgDao.class);
+        writer = new NotifyMsgWriter();
+        ReflectionTestUtils.setField(writer, "notifyMsgDao", notifyMsgDao);
+    }
+
+    @Test
+    public void testRepeatedPraiseUpsertOnce() {
+        writer.write(List.of(praise(), praise()));
+
+        Mockito.verify(notifyMsgDao).removeByDedupKeys(Set.of());
+        List<NotifyMsgDO> inserts = captureUpsert();
+        Assert.assertEquals(1, inserts.size());
+        Assert.assertEquals(praiseKey(), inserts.get(0).getDedupKey());
+    }
+
+    @Test
+    public void testPraiseCancelPraiseDeleteThenInsert() {
+        writer.write(List.of(praise(), cancelPraise(), praise()));
+
+        InOrder order = Mockito.inOrder(notifyMsgDao);
+        order.verify(notifyMsgDao).removeByDedupKeys(Set.of(praiseKey()));
+        order.verify(notifyMsgDao).batchUpsert(anyList());
+        List<NotifyMsgDO> inserts = captureUpsert();
+        Assert.assertEquals(1, inserts.size());
+        Assert.assertEquals(praiseKey(), inserts.get(0).getDedupKey());
+    }
+
+    @Test
+    public void testCancelOnlyDeleteWithoutInsert() {
+        writer.write(List.of(cancelPraise()));
+
+        Mockito.verify(notifyMsgDao).removeByDedupKeys(Set.of(praiseKey()));
+        Mockito.verify(notifyMsgDao, Mockito.never()).batchUpsert(anyList());
+    }
+
+    @Test
+    public void testRedeliveredBatchSameCalls() {
+        List<NotifyMsgWriter.Op> batch = List.of(praise(), cancelPraise(), praise(), collect());
+        List<String> first = record(batch);
+        List<String> second = record(batch);
+        String collectKey = NotifyTypeEnum.COLLECT.getType() + ":2:3:1";
+        Assert.assertEquals(List.of("remove [" + praiseKey() + "]", "upsert [" + praiseKey() + ", " + collectKey + "]"), first);
+        Assert.assertEquals(first, second);
+    }
+
+    /**
+     * 用新的 dao 执行一批写操作，按顺序记录对 dao 的调用
+     */
+    private List<String> record(List<NotifyMsgWriter.Op> batch) {
+        init();
+        List<String> calls = new ArrayList<>();
+        Mockito.when(notifyMsgDao.removeByDedupKeys(Mockito.any())).thenAnswer(inv -> {
+            calls.add("remove " + Set.copyOf((Collection<?>) inv.getArgument(0)));
+            return 0;
+        });
+        Mockito.doAnswer(inv -> {
+            List<NotifyMsgDO> list = inv.getArgument(0);
+            calls.add("upsert " + list.stream().map(NotifyMsgDO::getDedupKey).toList());
+            return null;
+        }).when(notifyMsgDao).batchUpsert(anyList());
+        writer.write(batch);
+        return calls;
+    }
+
+    private List<NotifyMsgDO> captureUpsert() {
+        ArgumentCaptor<List<NotifyMsgDO>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(notifyMsgDao).batchUpsert(captor.capture());
+        return captor.getValue();
+    }
+
+    private NotifyMsgWriter.Op praise() {
+        return writer.toOp(NotifyTypeEnum.PRAISE, foot());
+    }
+
+    private NotifyMsgWriter.Op cancelPraise() {
+        return writer.toOp(NotifyTypeEnum.CANCEL_PRAISE, foot());
+    }
+
+    private NotifyMsgWriter.Op collect() {
+        return writer.toOp(NotifyTypeEnum.COLLECT, foot());
+    }
+
+    private static String praiseKey() {
+        return NotifyTypeEnum.PRAISE.getType() + ":2:3:1";
+    }
+
+    private static UserFootDO foot() {
+        UserFootDO foot = new UserFootDO();
+        foot.setDocumentId(1L);
+        foot.setDocumentUserId(2L);
+        foot.setUserId(3L);
+        return foot;
+    }
+}
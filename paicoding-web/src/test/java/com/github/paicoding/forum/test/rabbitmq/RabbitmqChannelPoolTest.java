@@ -0,0 +1,296 @@
+package com.github.paicoding.forum.test.rabbitmq;
+
+import com.github.paicoding.forum.core.config.RabbitmqProperties;
+import com.github.paicoding.forum.core.rabbitmq.RabbitmqChannelPool;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.MessageProperties;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 消息发送 channel 池的行为验证：channel 复用、失效连接的替换、nack 重投、批量确认
+ * <p>
+ * 使用进程内的 broker 替身，ConnectionFactory 创建的 Connection / Channel 均为动态代理，发送即确认，不需要启动 rabbitmq
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+public class RabbitmqChannelPoolTest {
+    private static final String EXCHANGE = "paicoding.direct";
+    private static final String KEY = "notify";
+
+    private InProcessBroker broker;
+    private RabbitmqChannelPool pool;
+
+    @Before
+    public void init() {
+        broker = new InProcessBroker();
+        RabbitmqProperties properties = new RabbitmqProperties();
+        properties.setPoolSize(2);
+        properties.setChannelsPerConnection(2);
+        properties.setBorrowTimeout(1000);
+        pool = new RabbitmqChannelPool(broker, properties);
+    }
+
+    @After
+    public void close() {
+        pool.close();
+    }
+
+    @Test
+    public void testReuseChannel() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            pool.publish(msg("msg-" + i));
+        }
+        Map<String, Object> stats = pool.stats();
+        log.info("reuse: {}", stats);
+        Assert.assertEquals(100, broker.delivered.size());
+        Assert.assertEquals(1, broker.connections.size());
+        Assert.assertEquals(1L, stats.get("created"));
+        Assert.assertEquals(100L, stats.get("acked"));
+        Assert.assertEquals(0, stats.get("inUse"));
+    }
+
+    @Test
+    public void testConcurrentPublishBoundedByCapacity() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch latch = new CountDownLatch(16 * 50);
+        AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < 16 * 50; i++) {
+            String body = "msg-" + i;
+            executor.execute(() -> {
+                try {
+                    pool.publish(msg(body));
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        Map<String, Object> stats = pool.stats();
+        log.info("concurrent: {}", stats);
+        Assert.assertEquals(0, failed.get());
+        Assert.assertEquals(16 * 50, broker.delivered.size());
+        Assert.assertTrue((int) stats.get("peakInUse") <= 4);
+        Assert.assertTrue((long) stats.get("created") <= 4);
+        Assert.assertTrue(broker.connections.size() <= 2);
+    }
+
+    @Test
+    public void testReplaceDeadConnection() throws Exception {
+        pool.publish(msg("before"));
+        broker.connections.get(0).kill();
+
+        // 失效的 channel 被丢弃，在另一个连接上新建
+        pool.publish(msg("after"));
+        Assert.assertEquals(1L, pool.stats().get("replaced"));
+        Assert.assertEquals(0L, pool.stats().get("reconnects"));
+
+        // 再次轮到已断开的连接时重新建立连接
+        broker.connections.get(1).kill();
+        pool.publish(msg("again"));
+        Map<String, Object> stats = pool.stats();
+        log.info("replace: {}", stats);
+        Assert.assertEquals(List.of("before", "after", "again"), broker.delivered);
+        Assert.assertEquals(2L, stats.get("replaced"));
+        Assert.assertEquals(1L, stats.get("reconnects"));
+        Assert.assertEquals(3, broker.connections.size());
+        Assert.assertTrue(broker.connections.get(2).open);
+    }
+
+    @Test
+    public void testRepublishNacked() throws Exception {
+        broker.nackNext.set(1);
+        pool.publish(msg("first"));
+        Assert.assertEquals(1L, pool.stats().get("nacked"));
+        Assert.assertEquals(1, pool.stats().get("pendingRetries"));
+
+        pool.publish(msg("second"));
+        Map<String, Object> stats = pool.stats();
+        log.info("nack: {}", stats);
+        Assert.assertEquals(List.of("first", "second"), broker.delivered);
+        Assert.assertEquals(1L, stats.get("republished"));
+        Assert.assertEquals(0L, stats.get("lost"));
+    }
+
+    @Test
+    public void testPublishAndWaitBatch() throws Exception {
+        List<RabbitmqChannelPool.Msg> batch = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            batch.add(msg("batch-" + i));
+        }
+        Assert.assertTrue(pool.publishAndWait(batch));
+
+        broker.nackNext.set(1);
+        Assert.assertFalse(pool.publishAndWait(List.of(msg("nacked"))));
+
+        Map<String, Object> stats = pool.stats();
+        log.info("batch: {}", stats);
+        Assert.assertEquals(50, broker.delivered.size());
+        Assert.assertEquals(2L, stats.get("batchWaits"));
+        Assert.assertEquals(1, stats.get("pendingRetries"));
+    }
+
+    private static RabbitmqChannelPool.Msg msg(String body) {
+        return new RabbitmqChannelPool.Msg(EXCHANGE, KEY, MessageProperties.PERSISTENT_TEXT_PLAIN, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 进程内的 broker 替身：记录确认成功的消息，nackNext 大于0时对接下来的消息返回 nack
+     */
+    private static class InProcessBroker extends ConnectionFactory {
+        private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        private final List<FakeConnection> connections = new CopyOnWriteArrayList<>();
+        private final AtomicInteger nackNext = new AtomicInteger();
+
+        @Override
+        public Connection newConnection(String clientProvidedName) {
+            FakeConnection connection = new FakeConnection(this);
+            connections.add(connection);
+            return connection.proxy;
+        }
+    }
+
+    private static class FakeConnection {
+        private final InProcessBroker broker;
+        private final List<FakeChannel> channels = new CopyOnWriteArrayList<>();
+        private final Connection proxy;
+        private volatile boolean open = true;
+
+        private FakeConnection(InProcessBroker broker) {
+            this.broker = broker;
+            this.proxy = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class}, (p, method, args) -> switch (method.getName()) {
+                case "createChannel" -> {
+                    FakeChannel channel = new FakeChannel(this);
+                    channels.add(channel);
+                    yield channel.proxy;
+                }
+                case "isOpen" -> open;
+                case "close" -> {
+                    kill();
+                    yield null;
+                }
+                case "getCloseReason" -> null;
+                case "hashCode" -> System.identityHashCode(p);
+                case "equals" -> p == args[0];
+                case "toString" -> "FakeConnection@" + System.identityHashCode(p);
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        /**
+         * 模拟连接断开，连接上的 channel 一并关闭
+         */
+        private void kill() {
+            open = false;
+            channels.forEach(FakeChannel::shutdown);
+        }
+    }
+
+    private static class FakeChannel {
+        private final FakeConnection connection;
+        private final Channel proxy;
+        private final List<ConfirmListener> confirmListeners = new CopyOnWriteArrayList<>();
+        private final List<ShutdownListener> shutdownListeners = new CopyOnWriteArrayList<>();
+        private volatile boolean open = true;
+        private boolean confirm;
+        private boolean nackedSinceWait;
+        private long seq = 1;
+
+        private FakeChannel(FakeConnection connection) {
+            this.connection = connection;
+            this.proxy = (Channel) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Channel.class}, (p, method, args) -> switch (method.getName()) {
+                case "confirmSelect" -> {
+                    confirm = true;
+                    yield null;
+                }
+                case "addConfirmListener" -> {
+                    confirmListeners.add((ConfirmListener) args[0]);
+                    yield null;
+                }
+                case "addShutdownListener" -> {
+                    shutdownListeners.add((ShutdownListener) args[0]);
+                    yield null;
+                }
+                case "getNextPublishSeqNo" -> confirm ? seq : 0L;
+                case "basicPublish" -> {
+                    publish((byte[]) args[args.length - 1]);
+                    yield null;
+                }
+                case "waitForConfirms" -> {
+                    boolean ans = !nackedSinceWait;
+                    nackedSinceWait = false;
+                    yield ans;
+                }
+                case "isOpen" -> open;
+                case "getConnection" -> connection.proxy;
+                case "close" -> {
+                    shutdown();
+                    yield null;
+                }
+                case "hashCode" -> System.identityHashCode(p);
+                case "equals" -> p == args[0];
+                case "toString" -> "FakeChannel@" + System.identityHashCode(p);
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        private void publish(byte[] body) throws Exception {
+            if (!open) {
+                throw new ShutdownSignalException(false, false, new AMQP.Channel.Close.Builder().build(), proxy);
+            }
+            long tag = seq++;
+            boolean nack = connection.broker.nackNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+            if (!nack) {
+                connection.broker.delivered.add(new String(body, StandardCharsets.UTF_8));
+            }
+            if (!confirm) {
+                return;
+            }
+            for (ConfirmListener listener : confirmListeners) {
+                if (nack) {
+                    nackedSinceWait = true;
+                    listener.handleNack(tag, false);
+                } else {
+                    listener.handleAck(tag, false);
+                }
+            }
+        }
+
+        private void shutdown() {
+            if (!open) {
+                return;
+            }
+            open = false;
+            ShutdownSignalException cause = new ShutdownSignalException(false, true, new AMQP.Channel.Close.Builder().build(), proxy);
+            shutdownListeners.forEach(listener -> listener.shutdownCompleted(cause));
+        }
+    }
+}
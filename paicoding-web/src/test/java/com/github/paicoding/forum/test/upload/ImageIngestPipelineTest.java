@@ -0,0 +1,216 @@
+package com.github.paicoding.forum.test.upload;
+
+import com.github.paicoding.forum.core.cache.RedisClient;
+import com.github.paicoding.forum.service.image.ingest.ImageIngestPipeline;
+import com.github.paicoding.forum.service.image.oss.ImageUploader;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * 外网图片转存管道
+ * <p>
+ * 使用本机的 http 服务模拟图床，127.0.0.1 与 localhost 视为两个域名
+ *
+ * @author XuYifei
+ * @date 2026-10-18
+ */
+@Slf4j
+public class ImageIngestPipelineTest {
+    private static final long SLOW_MS = 300;
+
+    /**
+     * redis 中的转存索引，key: hash的key + "#" + field
+     */
+    private final Map<String, byte[]> index = new ConcurrentHashMap<>();
+    /**
+     * 对 redis 的调用次数，key: 命令 + " " + hash的key
+     */
+    private final Map<String, AtomicInteger> redisCalls = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ImageIngestPipeline pipeline;
+
+    @Before
+    public void init() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.startsWith("/slow")) {
+                try {
+                    Thread.sleep(SLOW_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = path.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        RedisConnection connection = (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RedisConnection.class},
+                (p, method, args) -> {
+                    if ("hashCommands".equals(method.getName())) {
+                        return p;
+                    }
+                    redisCalls.computeIfAbsent(method.getName() + " " + new String((byte[]) args[0]), k -> new AtomicInteger()).incrementAndGet();
+                    return switch (method.getName()) {
+                        case "hGet" -> index.get(field(args[0], args[1]));
+                        case "hSet" -> {
+                            index.put(field(args[0], args[1]), (byte[]) args[2]);
+                            yield true;
+                        }
+                        case "hMGet" -> {
+                            List<byte[]> ans = new ArrayList<>();
+                            for (byte[] f : (byte[][]) args[1]) {
+                                ans.add(index.get(field(args[0], f)));
+                            }
+                            yield ans;
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+        RedisTemplate<String, Object> template = Mockito.mock(RedisTemplate.class);
+        Mockito.when(template.execute(any(RedisCallback.class))).thenAnswer(inv -> ((RedisCallback<?>) inv.getArgument(0)).doInRedis(connection));
+        RedisClient.register(template);
+
+        ImageUploader uploader = Mockito.mock(ImageUploader.class);
+        Mockito.when(uploader.upload(any(File.class), anyString(), anyString())).thenAnswer(inv -> "https://cdn.example.com/" + inv.getArgument(1) + "." + inv.getArgument(2));
+
+        pipeline = new ImageIngestPipeline();
+        ReflectionTestUtils.setField(pipeline, "imageUploader", uploader);
+        ReflectionTestUtils.setField(pipeline, "parallelism", 4);
+        ReflectionTestUtils.setField(pipeline, "queueSize", 16);
+        ReflectionTestUtils.setField(pipeline, "perHost", 1);
+        ReflectionTestUtils.setField(pipeline, "connectTimeout", 1000);
+        ReflectionTestUtils.setField(pipeline, "readTimeout", 5000);
+        ReflectionTestUtils.setField(pipeline, "maxSize", 1024L);
+        pipeline.init();
+    }
+
+    @After
+    public void close() {
+        pipeline.shutdown();
+        server.stop(0);
+    }
+
+    private static String field(Object key, Object field) {
+        return new String((byte[]) key) + "#" + new String((byte[]) field);
+    }
+
+    private String url(String host, String path) {
+        return "http://" + host + ":" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    public void testSlowHostNotBlockOthers() throws Exception {
+        List<CompletableFuture<String>> slow = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            slow.add(pipeline.submit(url("127.0.0.1", "/slow-" + i + ".png")));
+        }
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<String>> fast = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            fast.add(pipeline.submit(url("localhost", "/fast-" + i + ".png")));
+        }
+
+        // 慢域名的图片逐张下载，只占用一个线程，其他域名的图片不需要排在它后面
+        CompletableFuture.allOf(fast.toArray(new CompletableFuture[0])).get(SLOW_MS * 2, TimeUnit.MILLISECONDS);
+        long fastCost = System.currentTimeMillis() - start;
+        Assert.assertTrue(slow.stream().anyMatch(f -> !f.isDone()));
+        CompletableFuture.allOf(slow.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        // future 结束后线程才交还域名的下载名额，稍等片刻
+        Map<String, Object> stats = pipeline.stats();
+        for (int i = 0; i < 50 && !Integer.valueOf(0).equals(stats.get("hosts")); i++) {
+            Thread.sleep(10);
+            stats = pipeline.stats();
+        }
+        log.info("fast host cost {}ms, stats: {}", fastCost, stats);
+        Assert.assertEquals(8L, stats.get("downloaded"));
+        Assert.assertEquals(0L, stats.get("failed"));
+        // 下载完成后不再保留域名的状态
+        Assert.assertEquals(0, stats.get("hosts"));
+        Assert.assertEquals(0, stats.get("hostWaiting"));
+    }
+
+    @Test
+    public void testRejectWhenHostQueueFull() throws Exception {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(pipeline.submit(url("127.0.0.1", "/slow-" + i + ".png")));
+        }
+        // 1 张在下载，16 张在等待，其余被拒绝
+        long rejected = futures.stream().filter(CompletableFuture::isCompletedExceptionally).count();
+        Assert.assertEquals(3, rejected);
+        Assert.assertEquals(3L, pipeline.stats().get("rejected"));
+        for (CompletableFuture<String> future : futures) {
+            future.handle((r, e) -> r).get(10, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(17L, pipeline.stats().get("downloaded"));
+    }
+
+    @Test
+    public void testSubmitAllOneIndexLookup() throws Exception {
+        String hosted = url("localhost", "/hosted.png");
+        String fresh = url("localhost", "/fresh.png");
+        CompletableFuture<String> first = pipeline.submit(hosted);
+        String saved = first.get(5, TimeUnit.SECONDS);
+
+        redisCalls.clear();
+        Map<String, CompletableFuture<String>> futures = pipeline.submitAll(List.of(hosted, fresh, hosted));
+        Assert.assertEquals(List.of(hosted, fresh), new ArrayList<>(futures.keySet()));
+        // 已转存过的图片直接命中，不需要等待线程池
+        Assert.assertTrue(futures.get(hosted).isDone());
+        Assert.assertEquals(saved, futures.get(hosted).get());
+        Assert.assertNotNull(futures.get(fresh).get(5, TimeUnit.SECONDS));
+        // 请求线程上只有一次 HMGET，不再逐张 HGET
+        Assert.assertEquals(1, redisCalls.get("hMGet pai_img_ingest_url").get());
+        Assert.assertFalse(redisCalls.containsKey("hGet pai_img_ingest_url"));
+    }
+
+    @Test
+    public void testParseMarkdownImgUrl() {
+        // 未编码的空格、中文
+        URI uri = ImageIngestPipeline.toUri("https://img.example.com/blog/my pic 图片.png?w=100&h=1 0");
+        Assert.assertEquals("img.example.com", uri.getHost());
+        Assert.assertEquals("/blog/my pic 图片.png", uri.getPath());
+        Assert.assertEquals("/blog/my%20pic%20%E5%9B%BE%E7%89%87.png", uri.getRawPath());
+        Assert.assertEquals("w=100&h=1%200", uri.getRawQuery());
+
+        // 已编码的地址不会二次编码
+        uri = ImageIngestPipeline.toUri("https://img.example.com/a%20b/%E5%9B%BE.png?x=%2F#top");
+        Assert.assertEquals("/a%20b/%E5%9B%BE.png", uri.getRawPath());
+        Assert.assertEquals("x=%2F", uri.getRawQuery());
+        Assert.assertEquals("top", uri.getFragment());
+    }
+}